@@ -1,5 +1,6 @@
 package com.heladeria.icecore.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -27,23 +28,39 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
+                        // Los despachos asíncronos (SSE) ya fueron autorizados en la petición original
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // 1. Áreas Públicas (Clientes)
 
                         .requestMatchers(HttpMethod.POST, "/api/pedidos").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/gustos").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/gustos/activos").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/gustos/disponibilidad").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/tipos-producto").permitAll()
-                        .requestMatchers("/api/payments/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/horarios", "/api/business-hours").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/horarios/franjas", "/api/business-hours/franjas").permitAll()
+                        .requestMatchers("/api/pagos/metricas", "/api/payments/metricas").hasRole("ADMIN")
+                        // Pagos: mismas reglas para /api/pagos y su alias /api/payments. El estado de pago del
+                        // checkout se autoriza con el token del pedido (TokenPagoService)
+                        .requestMatchers(HttpMethod.POST, "/api/pagos/create_preference", "/api/payments/create_preference").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/pagos/webhook", "/api/payments/webhook").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/pagos/pedidos/*", "/api/payments/pedidos/*").permitAll()
 
                         // 2. Áreas Privadas (Solo Admin)
                         .requestMatchers("/api/gustos/**").hasRole("ADMIN")
                         .requestMatchers("/api/tipos-producto/**").hasRole("ADMIN")
                         .requestMatchers("/api/pedidos/**").hasRole("ADMIN")
+                        .requestMatchers("/api/catalogo/**").hasRole("ADMIN")
+                        .requestMatchers("/api/repartidores/**").hasRole("ADMIN")
+                        .requestMatchers("/api/analitica/**").hasRole("ADMIN")
 
                         // Todo lo demás requiere autenticación
                         .anyRequest().authenticated())
+                // Mantenemos Basic Auth por ahora para compatibilidad. Las credenciales se verifican
+                // con AutenticacionCache (único AuthenticationProvider): BCrypt solo la primera vez.
                 .httpBasic(basic -> {
-                }); // Mantenemos Basic Auth por ahora para compatibilidad
+                });
 
         return http.build();
     }
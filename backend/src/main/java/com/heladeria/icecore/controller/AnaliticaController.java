@@ -0,0 +1,57 @@
+package com.heladeria.icecore.controller;
+
+import com.heladeria.icecore.service.AnaliticaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+// Reportes de ventas para el panel. Rango de días inclusive: ?desde=2026-01-01&hasta=2026-01-31
+// (por defecto, los últimos 30 días). Se responden con las tablas agregadas (ver AnaliticaService).
+@RestController
+@RequestMapping("/api/analitica")
+@CrossOrigin("*")
+public class AnaliticaController {
+
+    @Autowired
+    private AnaliticaService analiticaService;
+
+    // Pedidos, ingresos y ticket promedio, por día y por hora
+    @GetMapping("/resumen")
+    public ResponseEntity<?> resumen(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        try {
+            return ResponseEntity.ok(analiticaService.resumen(desde, hasta));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Unidades e ingresos por tipo de producto
+    @GetMapping("/tipos")
+    public ResponseEntity<?> porTipo(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        try {
+            return ResponseEntity.ok(analiticaService.porTipo(desde, hasta));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Gustos más pedidos (?limite=10)
+    @GetMapping("/gustos")
+    public ResponseEntity<?> rankingGustos(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            return ResponseEntity.ok(analiticaService.rankingGustos(desde, hasta, limite));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
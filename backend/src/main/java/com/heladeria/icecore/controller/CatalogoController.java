@@ -0,0 +1,28 @@
+package com.heladeria.icecore.controller;
+
+import com.heladeria.icecore.dto.CatalogoMetricasDTO;
+import com.heladeria.icecore.service.CatalogoCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/catalogo")
+@CrossOrigin("*")
+public class CatalogoController {
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    // Aciertos / fallos / recargas de la caché del catálogo
+    @GetMapping("/metricas")
+    public CatalogoMetricasDTO getMetricas() {
+        return catalogoCache.metricas();
+    }
+
+    // Fuerza una recarga completa desde la BD (ej: si se editó la tabla a mano)
+    @PostMapping("/recargar")
+    public CatalogoMetricasDTO recargar() {
+        catalogoCache.recargar();
+        return catalogoCache.metricas();
+    }
+}
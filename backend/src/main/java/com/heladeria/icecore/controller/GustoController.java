@@ -1,11 +1,21 @@
 package com.heladeria.icecore.controller;
 
+import com.heladeria.icecore.dto.GustoCatalogoDTO;
 import com.heladeria.icecore.entity.Gusto;
 import com.heladeria.icecore.service.GustoService;
+import com.heladeria.icecore.service.CatalogoCache;
+import com.heladeria.icecore.service.DisponibilidadFeedService;
+import com.heladeria.icecore.service.ReintentosOptimistas;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -13,17 +23,42 @@ import java.util.List;
 @CrossOrigin("*")
 public class GustoController {
 
+    // El navegador / CDN puede reusar el catálogo 30 s; después revalida con If-None-Match
+    static final CacheControl CACHE_CATALOGO = CacheControl.maxAge(Duration.ofSeconds(30)).cachePublic();
+
     @Autowired
     private GustoService gustoService;
 
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private DisponibilidadFeedService disponibilidadFeedService;
+
+    // Si el cliente ya tiene esta versión del catálogo, 304 sin serializar nada.
+    // Esta lista trae los gramos de cada gusto: su ETag cambia también con cada descuento de stock
     @GetMapping
-    public List<Gusto> getAll() {
-        return gustoService.findAll();
+    public ResponseEntity<List<Gusto>> getAll(WebRequest request) {
+        String etag = catalogoCache.etagConStock();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CACHE_CATALOGO).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CATALOGO).body(gustoService.findAll());
     }
 
     @GetMapping("/activos")
-    public List<Gusto> getAllActive() {
-        return gustoService.findAllActive();
+    public ResponseEntity<List<GustoCatalogoDTO>> getAllActive(WebRequest request) {
+        String etag = catalogoCache.etag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CACHE_CATALOGO).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CATALOGO).body(gustoService.findAllActive());
+    }
+
+    // Cambios de stock / visibilidad en vivo para la tienda (SSE, público)
+    @GetMapping(path = "/disponibilidad", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter disponibilidad() {
+        return disponibilidadFeedService.suscribir();
     }
 
     @PostMapping
@@ -31,17 +66,34 @@ public class GustoController {
         return gustoService.save(gusto);
     }
 
+    // ?activo=true|false deja ese valor (se puede reintentar sin riesgo); sin parámetro, invierte
     @PutMapping("/{id}/toggle")
-    public ResponseEntity<Gusto> toggleActive(@PathVariable Long id) {
-        return ResponseEntity.ok(gustoService.toggleActive(id));
+    public ResponseEntity<Gusto> toggleActive(@PathVariable Long id, @RequestParam(required = false) Boolean activo) {
+        return ResponseEntity.ok(gustoService.toggleActive(id, activo));
+    }
+
+    @PutMapping("/{id}/stock")
+    public ResponseEntity<Gusto> toggleStock(@PathVariable Long id, @RequestParam(required = false) Boolean hayStock) {
+        return ResponseEntity.ok(gustoService.toggleStock(id, hayStock));
     }
 
-    public ResponseEntity<Gusto> toggleStock(@PathVariable Long id) {
-        return ResponseEntity.ok(gustoService.toggleStock(id));
+    // Inventario en gramos: ?gramos=12000 al reponer; sin parámetro deja de controlarse
+    @PutMapping("/{id}/inventario")
+    public ResponseEntity<?> cambiarInventario(@PathVariable Long id, @RequestParam(required = false) Integer gramos) {
+        if (gramos != null && gramos < 0) {
+            return ResponseEntity.badRequest().body("El stock no puede ser negativo");
+        }
+        return ResponseEntity.ok(gustoService.cambiarInventario(id, gramos));
     }
 
     @PutMapping("/{id}")
     public ResponseEntity<Gusto> update(@PathVariable Long id, @RequestBody Gusto gusto) {
         return ResponseEntity.ok(gustoService.update(id, gusto));
     }
+
+    // Otro admin cambió el gusto al mismo tiempo (o el formulario tenía una versión vieja)
+    @ExceptionHandler(ReintentosOptimistas.CambioConcurrenteException.class)
+    public ResponseEntity<String> conflicto(ReintentosOptimistas.CambioConcurrenteException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
 }
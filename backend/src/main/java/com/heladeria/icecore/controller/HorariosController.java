@@ -1,21 +1,47 @@
 package com.heladeria.icecore.controller;
 
+import com.heladeria.icecore.dto.FranjasEntregaDTO;
 import com.heladeria.icecore.entity.Horarios;
+import com.heladeria.icecore.service.FranjasEntregaService;
 import com.heladeria.icecore.service.HorariosService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
+
+// "/api/business-hours" es la ruta que usa el frontend (tienda y panel)
 @RestController
-@RequestMapping("/api/horarios")
+@RequestMapping({ "/api/horarios", "/api/business-hours" })
 public class HorariosController {
 
+    // Los horarios cambian muy rara vez: 5 min de caché y después revalidación con ETag
+    private static final CacheControl CACHE_HORARIOS = CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic();
+
     @Autowired
     private HorariosService horariosService;
 
+    @Autowired
+    private FranjasEntregaService franjasEntregaService;
+
+    // Horarios en memoria: si el cliente ya tiene esta revisión, 304; si no, la copia vigente (sin BD)
     @GetMapping
-    public ResponseEntity<Horarios> getHours() {
-        return ResponseEntity.ok(horariosService.getHours());
+    public ResponseEntity<Horarios> getHours(WebRequest request) {
+        String etag = horariosService.etag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CACHE_HORARIOS).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_HORARIOS).body(horariosService.getHours());
+    }
+
+    // Franjas de entrega con su lugar libre. Se arma en memoria (sin BD) y cambia con cada
+    // pedido, así que no se cachea: el checkout la vuelve a pedir cada minuto.
+    @GetMapping("/franjas")
+    public ResponseEntity<FranjasEntregaDTO> getFranjas() {
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(franjasEntregaService.franjas());
     }
 
     @PutMapping
@@ -1,82 +1,96 @@
 package com.heladeria.icecore.controller;
 
-import com.mercadopago.MercadoPagoConfig;
-import com.mercadopago.client.preference.PreferenceBackUrlsRequest;
-import com.mercadopago.client.preference.PreferenceClient;
-import com.mercadopago.client.preference.PreferenceItemRequest;
-import com.mercadopago.client.preference.PreferenceRequest;
-import com.mercadopago.resources.preference.Preference;
-import org.springframework.beans.factory.annotation.Value;
+import com.heladeria.icecore.dto.EstadoPagoDTO;
+import com.heladeria.icecore.dto.ItemPedidoDTO;
+import com.heladeria.icecore.dto.NotificacionPagoDTO;
+import com.heladeria.icecore.dto.PagosMetricasDTO;
+import com.heladeria.icecore.service.MercadoPagoGateway;
+import com.heladeria.icecore.service.PagosService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+// /api/payments es el camino que usa el frontend; /api/pagos queda por compatibilidad
 @RestController
-@RequestMapping("/api/pagos")
+@RequestMapping({"/api/pagos", "/api/payments"})
 @CrossOrigin("*")
 public class PagosController {
 
-    @Value("${mercadopago.access_token}")
-    private String accessToken;
+    @Autowired
+    private PagosService pagosService;
 
+    // El carrito llega con el mismo formato que los items de POST /api/pedidos:
+    // [{ tipoProductoId, gustoIds, cantidad }]. Los precios los pone el servidor.
     @PostMapping("/create_preference")
-    @SuppressWarnings("unchecked")
-    public ResponseEntity<Map<String, String>> createPreference(@RequestBody List<Map<String, Object>> items) {
+    public ResponseEntity<Map<String, String>> createPreference(@RequestBody List<ItemPedidoDTO> items) {
         try {
-            MercadoPagoConfig.setAccessToken(accessToken);
-
-            List<PreferenceItemRequest> preferenceItems = new ArrayList<>();
-
-            for (Map<String, Object> item : items) {
-
-                Map<String, Object> product = (Map<String, Object>) item.get("product");
-                String title = (String) product.get("nombre");
-
-                List<Map<String, Object>> gustos = (List<Map<String, Object>>) item.get("gustos");
-                if (gustos != null && !gustos.isEmpty()) {
-                    title += " (Con gustos)";
-                }
-
-                Number price = (Number) item.get("price");
-
-                PreferenceItemRequest itemRequest = PreferenceItemRequest.builder()
-                        .title(title)
-                        .quantity(1)
-                        .unitPrice(new BigDecimal(price.toString()))
-                        .currencyId("ARS")
-                        .build();
-
-                preferenceItems.add(itemRequest);
-            }
-
-            PreferenceBackUrlsRequest backUrls = PreferenceBackUrlsRequest.builder()
-                    .success("http://localhost:5173/success")
-                    .failure("http://localhost:5173/failure")
-                    .pending("http://localhost:5173/pending")
-                    .build();
-
-            PreferenceRequest preferenceRequest = PreferenceRequest.builder()
-                    .items(preferenceItems)
-                    .backUrls(backUrls)
-                    .build();
-
-            PreferenceClient client = new PreferenceClient();
-            Preference preference = client.create(preferenceRequest);
-
-            return ResponseEntity.ok(Map.of("init_point", preference.getInitPoint()));
+            return ResponseEntity.ok(Map.of("init_point", pagosService.crearPreferencia(items)));
 
+        } catch (MercadoPagoGateway.PagosSaturadosException saturado) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(Map.of("error", saturado.getMessage()));
         } catch (com.mercadopago.exceptions.MPApiException apiException) {
             return ResponseEntity.internalServerError().body(
                     Map.of("error", apiException.getApiResponse().getContent(), "code",
                             String.valueOf(apiException.getStatusCode())));
+        } catch (RuntimeException e) {
+            // Carrito inválido (producto inexistente, gusto sin stock...)
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    // Checkout asincrónico: el pedido se crea con metodoPago "mercadopago" y el frontend consulta
+    // acá hasta que el worker deja el initPoint (estadoPago ESPERANDO_PAGO) o falla (ERROR).
+    // Es público: se autoriza con el tokenPago que devolvió POST /api/pedidos
+    @GetMapping("/pedidos/{id}")
+    public ResponseEntity<EstadoPagoDTO> getEstadoPago(@PathVariable Long id,
+            @RequestParam(required = false) String token) {
+        try {
+            return ResponseEntity.ok(pagosService.estadoDePedido(id, token));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Notificaciones de Mercado Pago. Llegan como JSON ({type, data.id}) o, en el formato viejo,
+    // como query params (?type=payment&data.id=... / ?topic=payment&id=...).
+    // Si no se puede procesar se responde 500 y Mercado Pago la reintenta más tarde.
+    @PostMapping("/webhook")
+    public ResponseEntity<Void> webhook(@RequestBody(required = false) NotificacionPagoDTO notificacion,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String topic,
+            @RequestParam(name = "data.id", required = false) String dataId,
+            @RequestParam(required = false) String id) {
+        String tipo = notificacion != null && notificacion.type() != null ? notificacion.type()
+                : type != null ? type : topic;
+        String pagoId = notificacion != null && notificacion.data() != null ? notificacion.data().id()
+                : dataId != null ? dataId : id;
+        if (!"payment".equals(tipo) || pagoId == null) {
+            return ResponseEntity.ok().build(); // Otros avisos (merchant_order, etc.) no nos interesan
+        }
+        try {
+            pagosService.registrarPago(Long.valueOf(pagoId));
+            return ResponseEntity.ok().build();
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             e.printStackTrace();
-            return ResponseEntity.internalServerError()
-                    .body(Map.of("error", e.getMessage(), "trace", e.getStackTrace()[0].toString()));
+            return ResponseEntity.internalServerError().build();
         }
     }
+
+    // Preferencias creadas, errores, rechazos por saturación y latencia promedio
+    @GetMapping("/metricas")
+    public PagosMetricasDTO getMetricas() {
+        return pagosService.metricas();
+    }
 }
@@ -1,12 +1,28 @@
 package com.heladeria.icecore.controller;
 
+import com.heladeria.icecore.dto.AsignacionRepartidorDTO;
+import com.heladeria.icecore.dto.CambioEstadoLoteDTO;
 import com.heladeria.icecore.dto.PedidoDTO;
-import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.dto.PedidoFiltroDTO;
+import com.heladeria.icecore.dto.PedidoResumenDTO;
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.service.ExportacionPedidosService;
+import com.heladeria.icecore.service.PedidoFeedService;
+import com.heladeria.icecore.service.PedidoIdempotenciaService;
 import com.heladeria.icecore.service.PedidoService;
+import com.heladeria.icecore.service.ReintentosOptimistas;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -17,23 +33,143 @@ public class PedidoController {
     @Autowired
     private PedidoService pedidoService;
 
+    @Autowired
+    private PedidoFeedService pedidoFeedService;
+
+    @Autowired
+    private PedidoIdempotenciaService pedidoIdempotenciaService;
+
+    @Autowired
+    private ExportacionPedidosService exportacionPedidosService;
+
+    // El checkout manda un "Idempotency-Key" por intento de compra: los reintentos y
+    // dobles clicks con la misma clave devuelven el mismo pedido en lugar de crear otro
     @PostMapping
-    public ResponseEntity<?> create(@RequestBody PedidoDTO pedidoDTO) {
+    public ResponseEntity<?> create(@RequestBody PedidoDTO pedidoDTO,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
-            return ResponseEntity.ok(pedidoService.crearPedido(pedidoDTO));
+            return ResponseEntity.ok(pedidoIdempotenciaService.crear(idempotencyKey, pedidoDTO));
         } catch (RuntimeException e) {
             e.printStackTrace();
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
+    // Los últimos 50 pedidos. Queda por compatibilidad: el panel usa /hoy y /buscar (paginado)
+    @Deprecated
     @GetMapping
-    public List<Pedido> getAll() {
+    public List<PedidoResumenDTO> getAll() {
         return pedidoService.findAll();
     }
 
+    // Lo que muestra el panel en vivo: pedidos abiertos de hoy
+    @GetMapping("/hoy")
+    public List<PedidoResumenDTO> getAbiertosDeHoy() {
+        return pedidoService.findAbiertosDeHoy();
+    }
+
+    // Pedidos de hoy que se pueden sumar a una vuelta de reparto (panel de repartidores)
+    @GetMapping("/para-despachar")
+    public List<PedidoResumenDTO> getParaDespachar() {
+        return pedidoService.findParaDespachar();
+    }
+
+    // Historial filtrado y paginado. Ej: /buscar?estado=ENTREGADO&desde=2026-01-01T00:00:00&limite=50
+    @GetMapping("/buscar")
+    public ResponseEntity<?> buscar(@ModelAttribute PedidoFiltroDTO filtro) {
+        try {
+            return ResponseEntity.ok(pedidoService.buscar(filtro));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Historial completo para contabilidad, escrito a medida que se lee de la BD.
+    // Ej: /export?formato=csv&desde=2026-01-01&hasta=2026-03-31 (formato=ndjson: un pedido JSON por línea)
+    // El cuerpo tiene que declararse como StreamingResponseBody (no "?") para que Spring lo escriba en streaming.
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = ExportacionPedidosService.CSV) String formato) {
+        try {
+            StreamingResponseBody cuerpo = exportacionPedidosService.exportar(desde, hasta, formato);
+            boolean csv = ExportacionPedidosService.CSV.equalsIgnoreCase(formato.strip());
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"pedidos." + (csv ? "csv" : "ndjson") + "\"")
+                    .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                            : MediaType.parseMediaType("application/x-ndjson"))
+                    .body(cuerpo);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN)
+                    .body(salida -> salida.write(e.getMessage().getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    // Feed en vivo de pedidos (SSE). Al reconectar, el navegador manda "Last-Event-ID";
+    // también se acepta ?desde= para clientes que no pueden setear headers.
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(required = false) String desde) {
+        return pedidoFeedService.suscribir(lastEventId != null ? lastEventId : desde);
+    }
+
+    // Un paso de la máquina de estados: ?estado=LISTO&actual=EN_PREPARACION ("actual" = lo que muestra
+    // el panel). Si el pedido ya no está en "actual", otro cambio ganó de mano: 409
     @PatchMapping("/{id}/estado")
-    public ResponseEntity<Pedido> updateEstado(@PathVariable Long id, @RequestParam String estado) {
-        return ResponseEntity.ok(pedidoService.updateEstado(id, estado));
+    public ResponseEntity<?> updateEstado(@PathVariable Long id, @RequestParam String estado,
+            @RequestParam(required = false) String actual) {
+        try {
+            return ResponseEntity.ok(pedidoService.updateEstado(id, EstadoPedido.desde(estado),
+                    actual != null ? EstadoPedido.desde(actual) : null));
+        } catch (ReintentosOptimistas.CambioConcurrenteException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Varios cambios de estado en una transacción (tablero en hora pico):
+    // { "cambios": [ { "pedidoId": 10, "estado": "LISTO", "actual": "EN_PREPARACION" }, ... ] }
+    // Responde 200 con el resultado de cada cambio; los rechazados no frenan a los demás
+    @PatchMapping("/estado")
+    public ResponseEntity<?> cambiarEstados(@RequestBody CambioEstadoLoteDTO lote) {
+        try {
+            return ResponseEntity.ok(pedidoService.cambiarEstados(lote.getCambios()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // ?repartidorId=3 (o ?nombre=Luis); sin parámetros quita el repartidor
+    @PatchMapping("/{id}/repartidor")
+    public ResponseEntity<?> updateRepartidor(@PathVariable Long id,
+            @RequestParam(required = false) Long repartidorId,
+            @RequestParam(required = false) String nombre) {
+        try {
+            return ResponseEntity.ok(pedidoService.updateRepartidor(id, repartidorId, nombre));
+        } catch (ReintentosOptimistas.CambioConcurrenteException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Varios pedidos al mismo repartidor de una vez: { "repartidorId": 3, "pedidoIds": [10, 11, 12] }
+    @PatchMapping("/repartidor")
+    public ResponseEntity<?> asignarRepartidor(@RequestBody AsignacionRepartidorDTO asignacion) {
+        try {
+            return ResponseEntity.ok(pedidoService.asignarRepartidor(asignacion.getPedidoIds(),
+                    asignacion.getRepartidorId()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // El pedido cambió de estado mientras se lo miraba (otro admin, una vuelta que se finalizó...)
+    @ExceptionHandler(ReintentosOptimistas.CambioConcurrenteException.class)
+    public ResponseEntity<String> conflicto(ReintentosOptimistas.CambioConcurrenteException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
     }
 }
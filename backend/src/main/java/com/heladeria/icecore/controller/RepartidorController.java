@@ -0,0 +1,78 @@
+package com.heladeria.icecore.controller;
+
+import com.heladeria.icecore.dto.AsignacionRepartidorDTO;
+import com.heladeria.icecore.dto.CajaRepartidoresDTO;
+import com.heladeria.icecore.dto.VueltaRepartoDTO;
+import com.heladeria.icecore.entity.Repartidor;
+import com.heladeria.icecore.service.RepartidorService;
+import com.heladeria.icecore.service.VueltaRepartoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/repartidores")
+@CrossOrigin("*")
+public class RepartidorController {
+
+    @Autowired
+    private RepartidorService repartidorService;
+
+    @Autowired
+    private VueltaRepartoService vueltaRepartoService;
+
+    // Repartidores activos (los que se pueden asignar), ordenados por nombre
+    @GetMapping
+    public List<Repartidor> getAll() {
+        return repartidorService.findActivos();
+    }
+
+    @PostMapping
+    public ResponseEntity<?> create(@RequestBody Repartidor repartidor) {
+        try {
+            return ResponseEntity.ok(repartidorService.crear(repartidor));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable Long id) {
+        repartidorService.eliminar(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // --- Vueltas de reparto ---
+
+    @GetMapping("/rounds/active")
+    public List<VueltaRepartoDTO> getVueltasEnCalle() {
+        return vueltaRepartoService.enCalle();
+    }
+
+    // { "repartidorId": 3, "pedidoIds": [10, 11, 12] }
+    @PostMapping("/rounds")
+    public ResponseEntity<?> crearVuelta(@RequestBody AsignacionRepartidorDTO vuelta) {
+        try {
+            return ResponseEntity.ok(vueltaRepartoService.crear(vuelta.getRepartidorId(), vuelta.getPedidoIds()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PutMapping("/rounds/{id}/finish")
+    public ResponseEntity<?> finalizarVuelta(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(vueltaRepartoService.finalizar(id));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Efectivo que tiene que rendir cada repartidor en calle
+    @GetMapping("/caja")
+    public CajaRepartidoresDTO getCaja() {
+        return vueltaRepartoService.caja();
+    }
+}
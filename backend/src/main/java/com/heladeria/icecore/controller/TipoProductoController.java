@@ -1,9 +1,14 @@
 package com.heladeria.icecore.controller;
 
 import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.service.CatalogoCache;
+import com.heladeria.icecore.service.ReintentosOptimistas;
 import com.heladeria.icecore.service.TipoProductoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -15,9 +20,19 @@ public class TipoProductoController {
     @Autowired
     private TipoProductoService tipoProductoService;
 
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    // Misma versión / ETag que los gustos: cualquier cambio del catálogo la invalida
     @GetMapping
-    public List<TipoProducto> getAll() {
-        return tipoProductoService.findAll();
+    public ResponseEntity<List<TipoProducto>> getAll(WebRequest request) {
+        String etag = catalogoCache.etag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+                    .cacheControl(GustoController.CACHE_CATALOGO).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(GustoController.CACHE_CATALOGO)
+                .body(tipoProductoService.findAll());
     }
 
     @PostMapping
@@ -29,4 +44,10 @@ public class TipoProductoController {
     public TipoProducto update(@PathVariable Long id, @RequestBody TipoProducto tipoProducto) {
         return tipoProductoService.update(id, tipoProducto);
     }
+
+    // Otro admin cambió el producto al mismo tiempo (o el formulario tenía una versión vieja)
+    @ExceptionHandler(ReintentosOptimistas.CambioConcurrenteException.class)
+    public ResponseEntity<String> conflicto(ReintentosOptimistas.CambioConcurrenteException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
 }
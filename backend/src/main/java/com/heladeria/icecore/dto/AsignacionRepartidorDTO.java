@@ -0,0 +1,14 @@
+package com.heladeria.icecore.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// Cuerpo de PATCH /api/pedidos/repartidor: varios pedidos para el mismo repartidor (una vuelta).
+// repartidorId null = quitarles el repartidor.
+@Data
+public class AsignacionRepartidorDTO {
+
+    private Long repartidorId;
+    private List<Long> pedidoIds;
+}
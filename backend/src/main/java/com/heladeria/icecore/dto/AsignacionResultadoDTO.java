@@ -0,0 +1,14 @@
+package com.heladeria.icecore.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Resultado de una asignación en lote: "omitidos" son los pedidos que no existen
+// o que ya estaban cancelados / entregados. "montoTotal" suma los asignados.
+public record AsignacionResultadoDTO(
+        Long repartidorId,
+        String repartidor,
+        List<Long> asignados,
+        List<Long> omitidos,
+        BigDecimal montoTotal) {
+}
@@ -0,0 +1,11 @@
+package com.heladeria.icecore.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// GET /api/repartidores/caja: efectivo que tiene cada repartidor en calle (lo que debe rendir)
+public record CajaRepartidoresDTO(List<Repartidor> repartidores, BigDecimal total) {
+
+    public record Repartidor(Long id, String nombre, BigDecimal totalDeuda, long cantidadPedidos) {
+    }
+}
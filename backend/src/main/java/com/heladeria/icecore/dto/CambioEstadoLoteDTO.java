@@ -0,0 +1,22 @@
+package com.heladeria.icecore.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// Cuerpo de PATCH /api/pedidos/estado: varios cambios de estado del tablero de una vez.
+// { "cambios": [ { "pedidoId": 10, "estado": "LISTO", "actual": "EN_PREPARACION" }, ... ] }
+// "actual" es opcional (lo que muestra el panel, como en PATCH /{id}/estado).
+@Data
+public class CambioEstadoLoteDTO {
+
+    private List<Cambio> cambios;
+
+    // Los estados llegan como texto para poder rechazar uno mal escrito sin rechazar todo el lote
+    @Data
+    public static class Cambio {
+        private Long pedidoId;
+        private String estado;
+        private String actual;
+    }
+}
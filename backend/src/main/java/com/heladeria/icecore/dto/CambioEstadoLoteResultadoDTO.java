@@ -0,0 +1,20 @@
+package com.heladeria.icecore.dto;
+
+import com.heladeria.icecore.entity.EstadoPedido;
+
+import java.util.List;
+
+// Resultado de un cambio de estado en lote: un renglón por cambio pedido, en el mismo orden.
+// "error" en null = se aplicó (anterior == estado si el pedido ya estaba así).
+public record CambioEstadoLoteResultadoDTO(
+        int aplicados,
+        int rechazados,
+        List<Resultado> resultados) {
+
+    public record Resultado(
+            Long pedidoId,
+            EstadoPedido anterior,
+            EstadoPedido estado,
+            String error) {
+    }
+}
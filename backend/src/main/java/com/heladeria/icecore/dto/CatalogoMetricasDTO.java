@@ -0,0 +1,11 @@
+package com.heladeria.icecore.dto;
+
+// Estado de la caché del catálogo (GET /api/catalogo/metricas)
+public record CatalogoMetricasDTO(
+        long version,
+        long hits,
+        long misses,
+        long recargas,
+        int gustos,
+        int tiposProducto) {
+}
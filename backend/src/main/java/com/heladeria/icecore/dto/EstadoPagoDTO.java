@@ -0,0 +1,8 @@
+package com.heladeria.icecore.dto;
+
+// GET /api/payments/pedidos/{id}?token=...: el checkout lo consulta hasta tener initPoint (y después, el resultado)
+public record EstadoPagoDTO(
+        Long pedidoId,
+        String estadoPago,
+        String initPoint) {
+}
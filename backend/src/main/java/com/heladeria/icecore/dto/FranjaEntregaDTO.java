@@ -0,0 +1,11 @@
+package com.heladeria.icecore.dto;
+
+import java.time.LocalDateTime;
+
+// Una franja de entrega con su lugar libre. El checkout manda "inicio" como franjaEntrega del pedido.
+public record FranjaEntregaDTO(
+        LocalDateTime inicio,
+        String etiqueta,
+        int capacidad,
+        int disponibles) {
+}
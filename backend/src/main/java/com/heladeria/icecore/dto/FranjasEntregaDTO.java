@@ -0,0 +1,9 @@
+package com.heladeria.icecore.dto;
+
+import java.util.List;
+
+// GET /api/business-hours/franjas: si el local está abierto ahora y las franjas que se pueden elegir
+public record FranjasEntregaDTO(
+        boolean abierto,
+        List<FranjaEntregaDTO> franjas) {
+}
@@ -0,0 +1,10 @@
+package com.heladeria.icecore.dto;
+
+// Tarjeta de gusto para la tienda (/api/gustos/activos): solo lo que se muestra al cliente
+public record GustoCatalogoDTO(
+        Long id,
+        String nombre,
+        String descripcion,
+        String categoria,
+        boolean hayStock) {
+}
@@ -0,0 +1,14 @@
+package com.heladeria.icecore.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Un pote dentro de PedidoResumenDTO. Mantiene la forma JSON que ya usa el panel
+// (item.tipoProducto.nombre, item.gustos[].nombre) sin exponer las entidades.
+public record ItemResumenDTO(
+        Long id,
+        ReferenciaDTO tipoProducto,
+        List<ReferenciaDTO> gustos,
+        int cantidad,
+        BigDecimal subtotal) {
+}
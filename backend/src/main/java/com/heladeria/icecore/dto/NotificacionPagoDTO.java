@@ -0,0 +1,11 @@
+package com.heladeria.icecore.dto;
+
+// Cuerpo de los webhooks de Mercado Pago: { "type": "payment", "action": "payment.updated", "data": { "id": "123" } }
+public record NotificacionPagoDTO(
+        String type,
+        String action,
+        Datos data) {
+
+    public record Datos(String id) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.heladeria.icecore.dto;
+
+// Preferencias de Mercado Pago creadas y cuánto tardan (GET /api/pagos/metricas)
+public record PagosMetricasDTO(
+        long creadas,
+        long errores,
+        long rechazadasPorSaturacion,
+        double promedioMs,
+        int enCurso) {
+}
@@ -1,6 +1,7 @@
 package com.heladeria.icecore.dto;
 
 import lombok.Data;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
@@ -14,6 +15,9 @@ public class PedidoDTO {
     private String metodoPago;
     private String horaEntrega; // Franja horaria elegida por el cliente
 
+    // Inicio de la franja elegida (GET /api/business-hours/franjas): reserva un lugar con cupo
+    private LocalDateTime franjaEntrega;
+
     // La lista de ítems (potes) que está pidiendo
     private List<ItemPedidoDTO> items;
 }
@@ -0,0 +1,24 @@
+package com.heladeria.icecore.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Una línea de GET /api/pedidos/export?formato=ndjson (y la base de las filas del CSV)
+public record PedidoExportadoDTO(
+        Long id,
+        LocalDateTime fecha,
+        String estado,
+        String nombreCliente,
+        String apellidoCliente,
+        String telefono,
+        String direccion,
+        String metodoPago,
+        String estadoPago,
+        BigDecimal precioTotal,
+        String repartidor,
+        List<Item> items) {
+
+    public record Item(String producto, int cantidad, BigDecimal subtotal, List<String> gustos) {
+    }
+}
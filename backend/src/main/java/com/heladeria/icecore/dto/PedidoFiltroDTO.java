@@ -0,0 +1,30 @@
+package com.heladeria.icecore.dto;
+
+import com.heladeria.icecore.entity.EstadoPedido;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Parámetros de GET /api/pedidos/buscar. Todos son opcionales.
+@Data
+public class PedidoFiltroDTO {
+
+    // Se puede repetir: ?estado=PENDIENTE&estado=EN_CAMINO
+    private List<EstadoPedido> estado;
+
+    // Rango de fechas [desde, hasta)
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime desde;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime hasta;
+
+    private Long repartidorId;
+    private String metodoPago;
+
+    // Valor "siguienteCursor" de la página anterior (null = primera página)
+    private String cursor;
+
+    private Integer limite;
+}
@@ -0,0 +1,7 @@
+package com.heladeria.icecore.dto;
+
+import java.util.List;
+
+// Una página de resultados. Si siguienteCursor es null, no hay más páginas.
+public record PedidoPaginaDTO<T>(List<T> items, String siguienteCursor) {
+}
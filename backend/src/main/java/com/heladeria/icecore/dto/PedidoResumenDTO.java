@@ -0,0 +1,58 @@
+package com.heladeria.icecore.dto;
+
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.ItemPedido;
+import com.heladeria.icecore.entity.Pedido;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Fila del panel de pedidos. Se arma con SELECTs de columnas puntuales
+// (ver PedidoResumenRepositoryImpl), nunca serializando la entidad Pedido.
+// "repartidor" es solo el nombre, que es lo que muestra y edita el panel.
+public record PedidoResumenDTO(
+        Long id,
+        LocalDateTime fecha,
+        EstadoPedido estado,
+        String nombreCliente,
+        String apellidoCliente,
+        String direccion,
+        String telefono,
+        String horaEntrega,
+        String metodoPago,
+        String estadoPago,
+        BigDecimal precioTotal,
+        String repartidor,
+        List<ItemResumenDTO> items) {
+
+    // Para un pedido que ya está en memoria (ej: recién creado), sin volver a la BD
+    public static PedidoResumenDTO de(Pedido pedido) {
+        List<ItemResumenDTO> items = pedido.getItems().stream()
+                .map(PedidoResumenDTO::item)
+                .toList();
+        return new PedidoResumenDTO(
+                pedido.getId(),
+                pedido.getFecha(),
+                pedido.getEstado(),
+                pedido.getNombreCliente(),
+                pedido.getApellidoCliente(),
+                pedido.getDireccion(),
+                pedido.getTelefono(),
+                pedido.getHoraEntrega(),
+                pedido.getMetodoPago(),
+                pedido.getEstadoPago(),
+                pedido.getPrecioTotal(),
+                pedido.getRepartidor() != null ? pedido.getRepartidor().getNombre() : null,
+                items);
+    }
+
+    private static ItemResumenDTO item(ItemPedido item) {
+        return new ItemResumenDTO(
+                item.getId(),
+                new ReferenciaDTO(item.getTipoProducto().getId(), item.getTipoProducto().getNombre()),
+                item.getGustos().stream().map(g -> new ReferenciaDTO(g.getId(), g.getNombre())).toList(),
+                item.getCantidad(),
+                item.getSubtotal());
+    }
+}
@@ -0,0 +1,5 @@
+package com.heladeria.icecore.dto;
+
+// Referencia liviana a otra entidad: solo lo que el cliente muestra (id + nombre)
+public record ReferenciaDTO(Long id, String nombre) {
+}
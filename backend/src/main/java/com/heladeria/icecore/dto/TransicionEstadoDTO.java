@@ -0,0 +1,11 @@
+package com.heladeria.icecore.dto;
+
+import com.heladeria.icecore.entity.EstadoPedido;
+
+// Respuesta de un cambio de estado: de dónde a dónde pasó el pedido.
+// anterior == estado cuando el pedido ya estaba así (pedido repetido, no se cambió nada).
+public record TransicionEstadoDTO(
+        Long pedidoId,
+        EstadoPedido anterior,
+        EstadoPedido estado) {
+}
@@ -0,0 +1,8 @@
+package com.heladeria.icecore.dto;
+
+import java.math.BigDecimal;
+
+// Ventas de un tipo de producto o de un gusto en un rango de días.
+// Para los gustos "unidades" son los potes que lo llevaban e "ingresos" es null.
+public record VentasPorItemDTO(Long id, String nombre, long unidades, BigDecimal ingresos) {
+}
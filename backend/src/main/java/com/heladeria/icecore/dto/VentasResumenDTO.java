@@ -0,0 +1,23 @@
+package com.heladeria.icecore.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+// GET /api/analitica/resumen: ventas de un rango de días [desde, hasta] (pedidos no cancelados)
+public record VentasResumenDTO(
+        LocalDate desde,
+        LocalDate hasta,
+        long pedidos,
+        BigDecimal ingresos,
+        BigDecimal ticketPromedio,
+        List<Dia> porDia,
+        List<Hora> porHora) {
+
+    public record Dia(LocalDate dia, long pedidos, BigDecimal ingresos) {
+    }
+
+    // Suma de todos los días del rango para cada hora (para ver los horarios pico)
+    public record Hora(int hora, long pedidos, BigDecimal ingresos) {
+    }
+}
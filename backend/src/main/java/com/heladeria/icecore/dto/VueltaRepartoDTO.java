@@ -0,0 +1,31 @@
+package com.heladeria.icecore.dto;
+
+import com.heladeria.icecore.entity.VueltaReparto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Vuelta de reparto como la muestra el panel de repartidores.
+// "efectivoCobrado" es lo que el repartidor tiene que rendir por los pedidos ya entregados.
+public record VueltaRepartoDTO(
+        Long id,
+        ReferenciaDTO repartidor,
+        String estado,
+        LocalDateTime inicio,
+        LocalDateTime fin,
+        int cantidadPedidos,
+        BigDecimal montoTotal,
+        BigDecimal efectivoCobrado) {
+
+    public static VueltaRepartoDTO de(VueltaReparto vuelta) {
+        return new VueltaRepartoDTO(
+                vuelta.getId(),
+                new ReferenciaDTO(vuelta.getRepartidor().getId(), vuelta.getRepartidor().getNombre()),
+                vuelta.getEstado(),
+                vuelta.getInicio(),
+                vuelta.getFin(),
+                vuelta.getCantidadPedidos(),
+                vuelta.getMontoTotal(),
+                vuelta.getEfectivoCobrado());
+    }
+}
@@ -0,0 +1,73 @@
+package com.heladeria.icecore.entity;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+// Estados de un pedido y los pasos permitidos entre ellos.
+// Camino normal: PENDIENTE -> EN_PREPARACION -> LISTO -> EN_CAMINO -> ENTREGADO (o CANCELADO mientras
+// esté abierto), sin saltear pasos salvo el retiro en el local. Además se permiten las correcciones que
+// hace el local: volver un paso atrás, reactivar un cancelado (vuelve a PENDIENTE) o reabrir un entregado
+// por error (vuelve a EN_CAMINO; PedidoService solo lo deja mientras su vuelta siga en la calle).
+// Despachar (asignar repartidor, solo o en una vuelta) es el paso LISTO -> EN_CAMINO: reabrir un
+// entregado también llega a EN_CAMINO, pero no es un despacho.
+public enum EstadoPedido {
+    PENDIENTE,
+    EN_PREPARACION,
+    LISTO,
+    EN_CAMINO,
+    ENTREGADO,
+    CANCELADO;
+
+    private static final Map<EstadoPedido, Set<EstadoPedido>> SIGUIENTES = new EnumMap<>(EstadoPedido.class);
+    private static final Map<EstadoPedido, Set<EstadoPedido>> ANTERIORES = new EnumMap<>(EstadoPedido.class);
+
+    static {
+        SIGUIENTES.put(PENDIENTE, EnumSet.of(EN_PREPARACION, CANCELADO));
+        SIGUIENTES.put(EN_PREPARACION, EnumSet.of(PENDIENTE, LISTO, CANCELADO));
+        // Retira en el local: de LISTO a ENTREGADO sin pasar por la calle
+        SIGUIENTES.put(LISTO, EnumSet.of(EN_PREPARACION, EN_CAMINO, ENTREGADO, CANCELADO));
+        SIGUIENTES.put(EN_CAMINO, EnumSet.of(LISTO, ENTREGADO, CANCELADO));
+        SIGUIENTES.put(ENTREGADO, EnumSet.of(EN_CAMINO));
+        SIGUIENTES.put(CANCELADO, EnumSet.of(PENDIENTE));
+
+        for (EstadoPedido estado : values()) {
+            ANTERIORES.put(estado, EnumSet.noneOf(EstadoPedido.class));
+        }
+        SIGUIENTES.forEach((desde, hacia) -> hacia.forEach(estado -> ANTERIORES.get(estado).add(desde)));
+        SIGUIENTES.replaceAll((estado, siguientes) -> Collections.unmodifiableSet(siguientes));
+        ANTERIORES.replaceAll((estado, anteriores) -> Collections.unmodifiableSet(anteriores));
+    }
+
+    public Set<EstadoPedido> siguientes() {
+        return SIGUIENTES.get(this);
+    }
+
+    // Estados desde los que se puede llegar a este (el "WHERE estado IN (...)" del UPDATE)
+    public Set<EstadoPedido> anteriores() {
+        return ANTERIORES.get(this);
+    }
+
+    public boolean puedePasarA(EstadoPedido otro) {
+        return SIGUIENTES.get(this).contains(otro);
+    }
+
+    // Todavía se está preparando o repartiendo
+    public boolean abierto() {
+        return this != ENTREGADO && this != CANCELADO;
+    }
+
+    // Para parámetros de la API: "en_camino", " LISTO " -> EstadoPedido
+    public static EstadoPedido desde(String texto) {
+        if (texto == null || texto.isBlank()) {
+            throw new RuntimeException("Error: Falta el estado del pedido.");
+        }
+        try {
+            return valueOf(texto.strip().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Error: Estado de pedido no válido: " + texto);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.heladeria.icecore.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.DynamicUpdate;
 
 // @Entity: Le dice a Spring Boot que esta clase representa una tabla en la base de datos.
 // Cada "objeto" de esta clase será una fila en la tabla.
@@ -13,6 +14,9 @@ import lombok.Data;
 // @Table: Define el nombre exacto de la tabla en la base de datos (por defecto
 // sería "gusto").
 @Table(name = "gustos")
+// @DynamicUpdate: el UPDATE lleva solo las columnas que cambiaron. Los checkouts restan gramos con su
+// propio UPDATE (ver InventarioService) sin cambiar la versión: editar el nombre no debe pisarlos.
+@DynamicUpdate
 public class Gusto {
 
     // @Id: Indica que este campo es la Clave Primaria (Primary Key) de la tabla.
@@ -34,9 +38,19 @@ public class Gusto {
     @Column(name = "hay_stock")
     private boolean hayStock = true;
 
+    // Inventario en gramos (ver InventarioService). null = no se lleva la cuenta:
+    // el gusto se vende mientras hayStock sea true. Al llegar a 0, hayStock pasa a false solo.
+    @Column(name = "stock_gramos")
+    private Integer stockGramos;
+
     // Campo para saber si está disponible o no (soft delete o deshabilitado
     // temporalmente)
     // El valor por defecto es true (activo)
     @Column(name = "activo")
     private boolean activo = true;
+
+    // @Version: control de concurrencia optimista. Cada UPDATE verifica que la fila siga en esta
+    // versión; si otro admin la cambió en el medio, falla en lugar de pisar su cambio.
+    @Version
+    private Long version;
 }
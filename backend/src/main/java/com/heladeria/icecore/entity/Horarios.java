@@ -8,8 +8,10 @@ import lombok.Data;
 @Table(name = "business_hours")
 public class Horarios {
 
+    // Configuración única del local: siempre la fila con este id (ver HorariosService)
+    public static final long ID_UNICO = 1L;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     // Turno 1 (ej: 11:00 - 15:00)
@@ -3,6 +3,8 @@ package com.heladeria.icecore.entity;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import java.math.BigDecimal;
 import java.util.List;
 
@@ -12,8 +14,10 @@ import java.util.List;
 @Table(name = "items_pedido")
 public class ItemPedido {
 
+    // Secuencia con reserva de a 50 (ver Pedido.id): los items de un pedido se insertan en un solo lote
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "items_pedido_seq")
+    @SequenceGenerator(name = "items_pedido_seq", sequenceName = "items_pedido_seq", allocationSize = 50)
     private Long id;
 
     // RELACIÓN MUCHOS A UNO (ManyToOne)
@@ -33,7 +37,10 @@ public class ItemPedido {
     // Un item (pote) tiene muchos gustos.
     // Un gusto (Chocolate) puede estar en muchos items (potes de distintos
     // clientes).
+    // SUBSELECT: al tocar los gustos de un item, Hibernate carga los de TODOS los items
+    // traídos por la misma consulta en un solo SELECT (en vez de uno por item).
     @ManyToMany
+    @Fetch(FetchMode.SUBSELECT)
     @JoinTable(name = "item_pedido_gustos", // Tabla intermedia que crea JPA automáticamente
             joinColumns = @JoinColumn(name = "item_pedido_id"), inverseJoinColumns = @JoinColumn(name = "gusto_id"))
     private List<Gusto> gustos;
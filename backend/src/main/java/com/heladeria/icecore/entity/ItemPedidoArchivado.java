@@ -0,0 +1,33 @@
+package com.heladeria.icecore.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Item de un pedido archivado (ver PedidoArchivado). Los gustos quedan como ids en
+// item_pedido_gustos_archivo, igual que en la tabla intermedia en caliente.
+@Entity
+@Data
+@Table(name = "items_pedido_archivo")
+public class ItemPedidoArchivado {
+
+    @Id
+    private Long id;
+
+    @Column(name = "pedido_id", nullable = false)
+    private Long pedidoId;
+
+    @Column(name = "tipo_producto_id")
+    private Long tipoProductoId;
+
+    private int cantidad;
+
+    private BigDecimal subtotal;
+
+    @ElementCollection
+    @CollectionTable(name = "item_pedido_gustos_archivo", joinColumns = @JoinColumn(name = "item_pedido_id"))
+    @Column(name = "gusto_id", nullable = false)
+    private List<Long> gustoIds;
+}
@@ -0,0 +1,50 @@
+package com.heladeria.icecore.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Tarea pendiente de crear la preferencia de Mercado Pago de un pedido.
+// Se inserta en la MISMA transacción que el pedido: si el pedido se guarda, la tarea existe;
+// si hace rollback, tampoco queda la tarea. PagosOutboxWorker las procesa en segundo plano.
+@Entity
+@Data
+@Table(name = "pagos_outbox")
+public class PagoOutbox {
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String ENVIADO = "ENVIADO";
+    public static final String FALLIDO = "FALLIDO";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "pedido_id", nullable = false)
+    private Long pedidoId;
+
+    // PENDIENTE -> ENVIADO, o FALLIDO después de agotar los reintentos
+    @Column(nullable = false)
+    private String estado = PENDIENTE;
+
+    private int intentos;
+
+    // No se procesa antes de esta hora (reintentos con espera creciente)
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento;
+
+    @Column(name = "ultimo_error")
+    private String ultimoError;
+
+    @Column(name = "creado_en", nullable = false)
+    private LocalDateTime creadoEn;
+
+    @PrePersist
+    public void prePersist() {
+        this.creadoEn = LocalDateTime.now();
+        if (this.proximoIntento == null) {
+            this.proximoIntento = this.creadoEn;
+        }
+    }
+}
@@ -12,11 +12,24 @@ import java.util.List;
 @Entity
 @Getter
 @Setter
+// Plan de carga para listar pedidos completos en un número fijo de consultas:
+// repartidor + items + tipoProducto van en un solo JOIN; los gustos de todos los items
+// se traen en una consulta más (ver @Fetch en ItemPedido.gustos).
+@NamedEntityGraph(name = Pedido.GRAFO_DETALLE, attributeNodes = {
+        @NamedAttributeNode("repartidor"),
+        @NamedAttributeNode(value = "items", subgraph = "items")
+}, subgraphs = @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode("tipoProducto")))
+// Los índices de la consulta paginada del panel viven en las migraciones (db/migration/V3__...)
 @Table(name = "pedidos")
 public class Pedido {
 
+    public static final String GRAFO_DETALLE = "Pedido.detalle";
+
+    // Secuencia en lugar de IDENTITY: Hibernate reserva ids de a 50 en memoria, sin un
+    // INSERT previo para conocer el id, y así puede agrupar los INSERT en lotes (jdbc.batch_size).
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pedidos_seq")
+    @SequenceGenerator(name = "pedidos_seq", sequenceName = "pedidos_seq", allocationSize = 50)
     private Long id;
 
     // Datos del Cliente (Podríamos tener una entidad Cliente separada,
@@ -25,19 +38,41 @@ public class Pedido {
     private String apellidoCliente;
     private String direccion;
     private String telefono;
-    private String horaEntrega; // Franja horaria elegida por el cliente
+    private String horaEntrega; // Franja horaria elegida por el cliente (texto, ej: "Hoy a las 11:30")
+
+    // Inicio de la franja con cupo que reservó el pedido (ver FranjasEntregaService)
+    private LocalDateTime franjaEntrega;
 
     private String metodoPago; // "Efectivo", "MP", etc.
 
-    // Estado del pedido para el Admin
-    private String estado; // "PENDIENTE", "EN_CAMINO", "ENTREGADO"
+    // Estado del pedido para el Admin. Solo cambia por los pasos de EstadoPedido (ver PedidoService.updateEstado)
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EstadoPedido estado;
 
     private BigDecimal precioTotal;
 
+    // Pago con Mercado Pago (null si paga en efectivo / transferencia).
+    // PENDIENTE (esperando preferencia) -> ESPERANDO_PAGO -> APROBADO / RECHAZADO / EN_PROCESO / DEVUELTO,
+    // o ERROR si no se pudo crear la preferencia. Lo actualizan PagosOutboxWorker y el webhook.
+    private String estadoPago;
+    private String preferenciaId;
+    private String initPoint; // URL de pago que abre el cliente
+
+    // Solo en la respuesta de POST /api/pedidos: con esto el checkout consulta el estado de pago
+    // (ver TokenPagoService). No se guarda.
+    @Transient
+    private String tokenPago;
+    private String pagoId; // id del pago en Mercado Pago (llega por webhook)
+
     @ManyToOne
     @JoinColumn(name = "repartidor_id")
     private Repartidor repartidor;
 
+    // Vuelta de reparto en la que salió (solo el id: la vuelta no se carga con el pedido)
+    @Column(name = "vuelta_id")
+    private Long vueltaId;
+
     // Fecha y hora automática
     private LocalDateTime fecha;
 
@@ -55,7 +90,7 @@ public class Pedido {
     public void prePersist() {
         this.fecha = LocalDateTime.now();
         if (this.estado == null) {
-            this.estado = "PENDIENTE";
+            this.estado = EstadoPedido.PENDIENTE;
         }
     }
 
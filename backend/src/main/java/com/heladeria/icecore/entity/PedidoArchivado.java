@@ -0,0 +1,44 @@
+package com.heladeria.icecore.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Pedido entregado que ya salió de la tabla en caliente (ver ArchivoPedidosService).
+// Mismas columnas que Pedido; repartidor y vuelta quedan como ids sueltos, sin relación.
+@Entity
+@Data
+@Table(name = "pedidos_archivo")
+public class PedidoArchivado {
+
+    // Es el mismo id que tenía en pedidos (no se genera)
+    @Id
+    private Long id;
+
+    private String nombreCliente;
+    private String apellidoCliente;
+    private String direccion;
+    private String telefono;
+    private String horaEntrega;
+    private LocalDateTime franjaEntrega;
+    private String metodoPago;
+    private String estado;
+    private BigDecimal precioTotal;
+    private String estadoPago;
+    private String preferenciaId;
+    private String initPoint;
+    private String pagoId;
+
+    @Column(name = "repartidor_id")
+    private Long repartidorId;
+
+    @Column(name = "vuelta_id")
+    private Long vueltaId;
+
+    private LocalDateTime fecha;
+
+    @Column(nullable = false)
+    private LocalDateTime archivadoEn;
+}
@@ -28,11 +28,16 @@ public class TipoProducto {
     @Column(nullable = false)
     private BigDecimal precio;
 
-    // Peso aproximado para calcular stock (opcional si es por unidad)
+    // Peso del pote: cada pedido descuenta pesoGramos x cantidad del stock de sus gustos
+    // (ver InventarioService). Opcional si es por unidad.
     private Integer pesoGramos;
 
     // Si es "por peso" (pote) o "por unidad" (palito helado, bombón)
     // Esto nos servirá en el frontend para saber si mostrar selector de gustos o
     // no.
     private Boolean esPorPeso; // true=Pote (usa gustos), false=Unidad (es el producto en sí)
+
+    // Control de concurrencia optimista (igual que en Gusto)
+    @Version
+    private Long version;
 }
@@ -1,11 +1,14 @@
 package com.heladeria.icecore.entity;
 
+import com.heladeria.icecore.service.UsuarioListener;
 import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
 @Data
 @Table(name = "usuarios")
+// Invalida la caché de autenticación cuando cambia la contraseña o el rol
+@EntityListeners(UsuarioListener.class)
 public class Usuario {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,30 @@
+package com.heladeria.icecore.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Potes vendidos que llevaban cada gusto, por día (ver AnaliticaService)
+@Entity
+@Data
+@Table(name = "ventas_gusto_dia")
+public class VentaGustoDia {
+
+    @EmbeddedId
+    private Clave id;
+
+    private long unidades;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Clave implements Serializable {
+        private LocalDate dia;
+        private Long gustoId;
+    }
+}
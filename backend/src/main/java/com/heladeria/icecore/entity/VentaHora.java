@@ -0,0 +1,33 @@
+package com.heladeria.icecore.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Ventas acumuladas por día y hora (pedidos no cancelados). La mantiene AnaliticaService
+// con sumas incrementales: las consultas de ventas nunca recorren la tabla de pedidos.
+@Entity
+@Data
+@Table(name = "ventas_hora")
+public class VentaHora {
+
+    @EmbeddedId
+    private Clave id;
+
+    private long pedidos;
+    private BigDecimal ingresos = BigDecimal.ZERO;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Clave implements Serializable {
+        private LocalDate dia;
+        private int hora;
+    }
+}
@@ -0,0 +1,32 @@
+package com.heladeria.icecore.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Unidades e ingresos por tipo de producto y día (ver AnaliticaService)
+@Entity
+@Data
+@Table(name = "ventas_tipo_dia")
+public class VentaTipoDia {
+
+    @EmbeddedId
+    private Clave id;
+
+    private long unidades;
+    private BigDecimal ingresos = BigDecimal.ZERO;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Clave implements Serializable {
+        private LocalDate dia;
+        private Long tipoProductoId;
+    }
+}
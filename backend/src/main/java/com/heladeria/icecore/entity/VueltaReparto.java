@@ -0,0 +1,39 @@
+package com.heladeria.icecore.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Una salida de un repartidor con varios pedidos (ver VueltaRepartoService).
+// Los totales se actualizan con UPDATE incrementales, no recalculando los pedidos.
+@Entity
+@Data
+@Table(name = "vueltas_reparto")
+public class VueltaReparto {
+
+    public static final String EN_CALLE = "EN_CALLE";
+    public static final String FINALIZADA = "FINALIZADA";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "repartidor_id")
+    private Repartidor repartidor;
+
+    private String estado = EN_CALLE;
+
+    private LocalDateTime inicio;
+    private LocalDateTime fin;
+
+    // Pedidos con los que salió y lo que suman
+    private int cantidadPedidos;
+    private BigDecimal montoTotal = BigDecimal.ZERO;
+
+    // Efectivo de los pedidos ya entregados: lo que el repartidor tiene que rendir al volver
+    private BigDecimal efectivoCobrado = BigDecimal.ZERO;
+    private int pedidosEfectivo;
+}
@@ -0,0 +1,20 @@
+package com.heladeria.icecore.event;
+
+import com.heladeria.icecore.entity.Gusto;
+
+// Un gusto cambió de disponibilidad (stock / visible) o se creó o borró. Se publica después del
+// commit y viaja a las tiendas abiertas por GET /api/gustos/disponibilidad (DisponibilidadFeedService).
+public record DisponibilidadGustoEvent(
+        Long gustoId,
+        boolean activo,
+        boolean hayStock,
+        Long version) {
+
+    public static DisponibilidadGustoEvent de(Gusto gusto) {
+        return new DisponibilidadGustoEvent(gusto.getId(), gusto.isActivo(), gusto.isHayStock(), gusto.getVersion());
+    }
+
+    public static DisponibilidadGustoEvent borrado(Long id) {
+        return new DisponibilidadGustoEvent(id, false, false, null);
+    }
+}
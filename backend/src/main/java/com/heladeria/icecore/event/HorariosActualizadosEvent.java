@@ -0,0 +1,10 @@
+package com.heladeria.icecore.event;
+
+import com.heladeria.icecore.entity.Horarios;
+
+// Se publica después de guardar los horarios (HorariosService.save). Los que arman algo a partir
+// de los horarios (ej: las franjas de entrega) lo escuchan en lugar de volver a leer la BD.
+public record HorariosActualizadosEvent(
+        Horarios horarios,
+        long revision) {
+}
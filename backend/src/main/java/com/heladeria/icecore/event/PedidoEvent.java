@@ -0,0 +1,65 @@
+package com.heladeria.icecore.event;
+
+import com.heladeria.icecore.dto.PedidoResumenDTO;
+import com.heladeria.icecore.dto.TransicionEstadoDTO;
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.Pedido;
+
+import java.util.List;
+
+// Evento que se publica dentro de la transacción de PedidoService.
+// Recién se transmite a los clientes cuando esa transacción hace commit.
+// "pedido" solo viaja en CREADO (con la misma forma que GET /api/pedidos/hoy);
+// en los demás casos alcanza con id + lo que cambió. Los cambios de estado llevan también el
+// estado anterior (la transición), así quien escucha no necesita consultar cómo estaba el pedido.
+// repartidor / estadoPago en null = no cambiaron (salvo en REPARTIDOR_ASIGNADO, donde null es "sin repartidor").
+// "transiciones" solo viaja en ESTADOS_CAMBIADOS (lote del tablero), en lugar de un evento por pedido.
+public record PedidoEvent(
+        PedidoEventType tipo,
+        Long pedidoId,
+        EstadoPedido estado,
+        EstadoPedido estadoAnterior,
+        String repartidor,
+        String estadoPago,
+        PedidoResumenDTO pedido,
+        List<TransicionEstadoDTO> transiciones) {
+
+    public static PedidoEvent creado(Pedido pedido) {
+        return new PedidoEvent(PedidoEventType.CREADO, pedido.getId(), pedido.getEstado(), null,
+                nombreRepartidor(pedido), pedido.getEstadoPago(), PedidoResumenDTO.de(pedido), null);
+    }
+
+    // Un paso de la máquina de estados (PedidoService.updateEstado): sin cargar el pedido
+    public static PedidoEvent transicion(Long pedidoId, EstadoPedido anterior, EstadoPedido estado) {
+        return new PedidoEvent(PedidoEventType.ESTADO_CAMBIADO, pedidoId, estado, anterior, null, null, null, null);
+    }
+
+    // Cambio en lote (ej: al finalizar una vuelta): sin cargar los pedidos
+    public static PedidoEvent estadoCambiado(Long pedidoId, EstadoPedido anterior, EstadoPedido estado,
+            String repartidor, String estadoPago) {
+        return new PedidoEvent(PedidoEventType.ESTADO_CAMBIADO, pedidoId, estado, anterior, repartidor, estadoPago,
+                null, null);
+    }
+
+    // Asignación (de a uno o en lote): los pedidos no se cargan, alcanza con lo que cambió
+    public static PedidoEvent repartidorAsignado(Long pedidoId, EstadoPedido anterior, EstadoPedido estado,
+            String repartidor, String estadoPago) {
+        return new PedidoEvent(PedidoEventType.REPARTIDOR_ASIGNADO, pedidoId, estado, anterior, repartidor,
+                estadoPago, null, null);
+    }
+
+    // Lote del tablero (PedidoService.cambiarEstados): un aviso con todos los pedidos que cambiaron
+    public static PedidoEvent estadosCambiados(List<TransicionEstadoDTO> transiciones) {
+        return new PedidoEvent(PedidoEventType.ESTADOS_CAMBIADOS, null, null, null, null, null, null,
+                List.copyOf(transiciones));
+    }
+
+    public static PedidoEvent pagoActualizado(Pedido pedido) {
+        return new PedidoEvent(PedidoEventType.PAGO_ACTUALIZADO, pedido.getId(), pedido.getEstado(), null,
+                nombreRepartidor(pedido), pedido.getEstadoPago(), null, null);
+    }
+
+    private static String nombreRepartidor(Pedido pedido) {
+        return pedido.getRepartidor() != null ? pedido.getRepartidor().getNombre() : null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.heladeria.icecore.event;
+
+// Tipos de cambio que se transmiten al panel de administración en vivo
+public enum PedidoEventType {
+    CREADO,
+    ESTADO_CAMBIADO,
+    // Cambio de estado en lote desde el tablero: un solo aviso con todas las transiciones
+    ESTADOS_CAMBIADOS,
+    REPARTIDOR_ASIGNADO,
+    // Cambió el estado del pago con Mercado Pago (preferencia creada, aprobado, rechazado...)
+    PAGO_ACTUALIZADO,
+    // El cursor del cliente es demasiado viejo: tiene que recargar la lista completa
+    RESYNC
+}
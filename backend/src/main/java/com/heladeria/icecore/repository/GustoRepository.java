@@ -2,6 +2,10 @@ package com.heladeria.icecore.repository;
 
 import com.heladeria.icecore.entity.Gusto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 // JpaRepository<Entidad, TipoID>
@@ -11,10 +15,13 @@ public interface GustoRepository extends JpaRepository<Gusto, Long> {
     // Solo con definir el nombre del método, Spring crea la consulta SQL por
     // nosotros.
 
-    // Buscar todos los gustos que tengan activo = true
-    List<Gusto> findByActivoTrue();
-
     // Busca un gusto con el mismo nombre (ignorando mayúsculas) pero DIFERENTE id
     // → Permite validar unicidad al editar sin colisionar con el propio registro
     java.util.Optional<Gusto> findByNombreIgnoreCaseAndIdNot(String nombre, Long id);
+
+    // Gramos que quedan de los gustos que llevan inventario, bloqueados hasta el commit (en orden de id,
+    // como el descuento de stock). Filas: id, stock_gramos
+    @Query(value = "SELECT id, stock_gramos FROM gustos WHERE id IN (:ids) AND stock_gramos IS NOT NULL"
+            + " ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Object[]> bloquearStock(@Param("ids") Collection<Long> ids);
 }
@@ -2,8 +2,26 @@ package com.heladeria.icecore.repository;
 
 import com.heladeria.icecore.entity.Horarios;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface HorariosRepository extends JpaRepository<Horarios, Long> {
+
+    // Los horarios son una sola fila (id = Horarios.ID_UNICO): se guardan con un único upsert,
+    // sin leer antes para saber si hay que insertar o actualizar. ON CONFLICT y no MERGE ... USING:
+    // MERGE recién existe desde PostgreSQL 15
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO business_hours (id, apertura_t1, cierre_t1, apertura_t2, cierre_t2, intervalo_minutos)"
+            + " VALUES (" + Horarios.ID_UNICO + ", :aperturaT1, :cierreT1, :aperturaT2, :cierreT2, :intervaloMinutos)"
+            + " ON CONFLICT (id) DO UPDATE SET apertura_t1 = EXCLUDED.apertura_t1, cierre_t1 = EXCLUDED.cierre_t1,"
+            + " apertura_t2 = EXCLUDED.apertura_t2, cierre_t2 = EXCLUDED.cierre_t2,"
+            + " intervalo_minutos = EXCLUDED.intervalo_minutos", nativeQuery = true)
+    int guardar(@Param("aperturaT1") int aperturaT1, @Param("cierreT1") int cierreT1,
+            @Param("aperturaT2") int aperturaT2, @Param("cierreT2") int cierreT2,
+            @Param("intervaloMinutos") int intervaloMinutos);
 }
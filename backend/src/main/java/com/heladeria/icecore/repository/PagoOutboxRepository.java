@@ -0,0 +1,23 @@
+package com.heladeria.icecore.repository;
+
+import com.heladeria.icecore.entity.PagoOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface PagoOutboxRepository extends JpaRepository<PagoOutbox, Long> {
+
+    // Toma un lote de tareas vencidas y las bloquea; SKIP LOCKED saltea las que ya tomó
+    // otra instancia del backend, así dos procesos nunca crean la misma preferencia a la vez.
+    @Query(value = """
+            SELECT * FROM pagos_outbox
+            WHERE estado = 'PENDIENTE' AND proximo_intento <= :ahora
+            ORDER BY proximo_intento, id
+            LIMIT :lote
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<PagoOutbox> reclamarVencidas(@Param("ahora") LocalDateTime ahora, @Param("lote") int lote);
+}
@@ -0,0 +1,78 @@
+package com.heladeria.icecore.repository;
+
+import com.heladeria.icecore.entity.PedidoArchivado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Pasaje de pedidos entregados a las tablas *_archivo: copia (INSERT ... SELECT) y borrado en
+// caliente, todo en SQL y por lote de ids, sin cargar entidades (ver ArchivoPedidosService).
+public interface PedidoArchivadoRepository extends JpaRepository<PedidoArchivado, Long> {
+
+    // Entregados antes del límite y sin un pago pendiente en el outbox. Los bloquea para que un
+    // cambio de estado simultáneo espere (o los saque del lote); SKIP LOCKED saltea los que ya
+    // tiene tomados otra transacción (otra instancia del job o un cambio de estado en curso).
+    @Query(value = """
+            SELECT p.id FROM pedidos p
+            WHERE p.estado = 'ENTREGADO' AND p.fecha < :limite
+              AND NOT EXISTS (SELECT 1 FROM pagos_outbox o WHERE o.pedido_id = p.id AND o.estado = 'PENDIENTE')
+            ORDER BY p.fecha, p.id
+            LIMIT :lote
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<Long> bloquearArchivables(@Param("limite") LocalDateTime limite, @Param("lote") int lote);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO pedidos_archivo (id, nombre_cliente, apellido_cliente, direccion, telefono, hora_entrega,
+                    franja_entrega, metodo_pago, estado, precio_total, estado_pago, preferencia_id, init_point,
+                    pago_id, repartidor_id, vuelta_id, fecha, archivado_en)
+            SELECT id, nombre_cliente, apellido_cliente, direccion, telefono, hora_entrega,
+                    franja_entrega, metodo_pago, estado, precio_total, estado_pago, preferencia_id, init_point,
+                    pago_id, repartidor_id, vuelta_id, fecha, :ahora
+            FROM pedidos WHERE id IN (:ids)
+            """, nativeQuery = true)
+    int copiarPedidos(@Param("ids") List<Long> ids, @Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO items_pedido_archivo (id, pedido_id, tipo_producto_id, cantidad, subtotal)
+            SELECT id, pedido_id, tipo_producto_id, cantidad, subtotal FROM items_pedido WHERE pedido_id IN (:ids)
+            """, nativeQuery = true)
+    int copiarItems(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO item_pedido_gustos_archivo (item_pedido_id, gusto_id)
+            SELECT g.item_pedido_id, g.gusto_id FROM item_pedido_gustos g
+            JOIN items_pedido i ON i.id = g.item_pedido_id
+            WHERE i.pedido_id IN (:ids)
+            """, nativeQuery = true)
+    int copiarGustos(@Param("ids") List<Long> ids);
+
+    // Borrado en caliente, de las hojas hacia el pedido (por las claves foráneas)
+
+    @Modifying
+    @Query(value = """
+            DELETE FROM item_pedido_gustos
+            WHERE item_pedido_id IN (SELECT id FROM items_pedido WHERE pedido_id IN (:ids))
+            """, nativeQuery = true)
+    int borrarGustos(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM items_pedido WHERE pedido_id IN (:ids)", nativeQuery = true)
+    int borrarItems(@Param("ids") List<Long> ids);
+
+    // Las tareas de pago ya resueltas no se archivan: el resultado quedó en el pedido (estado_pago, pago_id)
+    @Modifying
+    @Query(value = "DELETE FROM pagos_outbox WHERE pedido_id IN (:ids)", nativeQuery = true)
+    int borrarOutbox(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM pedidos WHERE id IN (:ids)", nativeQuery = true)
+    int borrarPedidos(@Param("ids") List<Long> ids);
+}
@@ -1,14 +1,96 @@
 package com.heladeria.icecore.repository;
 
+import com.heladeria.icecore.entity.EstadoPedido;
 import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.Repartidor;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+
+// JpaSpecificationExecutor permite combinar filtros opcionales (ver PedidoSpecifications)
+// en una sola consulta, en lugar de un método por cada combinación de filtros.
+//
+// Los listados del panel no cargan entidades: usan buscarResumenes (PedidoResumenRepository).
+// Cuando sí hacen falta los pedidos completos, el grafo Pedido.detalle evita el N+1.
+public interface PedidoRepository extends JpaRepository<Pedido, Long>, JpaSpecificationExecutor<Pedido>,
+        PedidoResumenRepository {
+
+    @Override
+    @EntityGraph(Pedido.GRAFO_DETALLE)
+    List<Pedido> findAll();
+
+    // Un pedido con sus items, tipos y repartidor (ej: para armar la preferencia de Mercado Pago)
+    @EntityGraph(Pedido.GRAFO_DETALLE)
+    Optional<Pedido> findConDetalleById(Long id);
+
+    @EntityGraph(Pedido.GRAFO_DETALLE)
+    List<Pedido> findConDetalleByIdIn(Collection<Long> ids);
+
+    // Pedidos que ocupan cada franja de entrega (para reconstruir los cupos al arrancar)
+    @Query("select p.franjaEntrega, count(p) from Pedido p where p.franjaEntrega >= :desde"
+            + " and p.estado <> com.heladeria.icecore.entity.EstadoPedido.CANCELADO group by p.franjaEntrega")
+    List<Object[]> contarPorFranja(@Param("desde") LocalDateTime desde);
+
+    // Un paso de la máquina de estados en un solo UPDATE, sin cargar el pedido: solo se aplica si el
+    // pedido sigue en alguno de los estados "desde" (0 filas = otro cambio ganó de mano o no existe).
+    // La fila queda bloqueada hasta el commit, así lo que se haga después en la misma transacción
+    // (caja de la vuelta, franja) ve el estado que se acaba de escribir.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Pedido p set p.estado = :nuevo where p.id = :id and p.estado in :desde")
+    int cambiarEstado(@Param("id") Long id, @Param("nuevo") EstadoPedido nuevo,
+            @Param("desde") Collection<EstadoPedido> desde);
+
+    // Asignar o quitar el repartidor de un pedido con el mismo criterio: solo si sigue en "desde"
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Pedido p set p.repartidor = :repartidor, p.estado = :nuevo where p.id = :id and p.estado = :desde")
+    int cambiarRepartidor(@Param("id") Long id, @Param("repartidor") Repartidor repartidor,
+            @Param("nuevo") EstadoPedido nuevo, @Param("desde") EstadoPedido desde);
+
+    @Query("select p.estado from Pedido p where p.id = :id")
+    Optional<EstadoPedido> buscarEstado(@Param("id") Long id);
+
+    // Lo que necesitan los efectos de un cambio de estado (caja de la vuelta), sin cargar el pedido.
+    // Filas: vueltaId, metodoPago, precioTotal
+    @Query("select p.vueltaId, p.metodoPago, p.precioTotal from Pedido p where p.id = :id")
+    List<Object[]> buscarDatosDeCaja(@Param("id") Long id);
+
+    // Pedidos del lote que se pueden despachar (LISTO, ver EstadoPedido), bloqueados hasta el commit.
+    // Uno que volvió a LISTO desde una vuelta que sigue en la calle todavía cuenta en esa vuelta: no se
+    // mueve a otra hasta que la primera se finalice. Filas: id, estado_pago, precio_total, metodo_pago, estado
+    @Query(value = "SELECT id, estado_pago, precio_total, metodo_pago, estado FROM pedidos WHERE id IN (:ids)"
+            + " AND estado = 'LISTO' AND (vuelta_id IS NULL OR vuelta_id NOT IN"
+            + " (SELECT v.id FROM vueltas_reparto v WHERE v.estado = 'EN_CALLE')) ORDER BY id FOR UPDATE",
+            nativeQuery = true)
+    List<Object[]> buscarDespachables(@Param("ids") Collection<Long> ids);
+
+    // Pedidos de un cambio de estado en lote, bloqueados hasta el commit (en orden de id, así dos lotes
+    // con pedidos en común no se bloquean entre sí). Filas: id, estado, vuelta_id, metodo_pago, precio_total
+    @Query(value = "SELECT id, estado, vuelta_id, metodo_pago, precio_total FROM pedidos WHERE id IN (:ids)"
+            + " ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Object[]> bloquearParaCambioDeEstado(@Param("ids") Collection<Long> ids);
 
-public interface PedidoRepository extends JpaRepository<Pedido, Long> {
+    // Una vuelta completa en un solo UPDATE (en lugar de cargar y guardar pedido por pedido)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Pedido p set p.repartidor = :repartidor, p.vueltaId = :vueltaId,"
+            + " p.estado = com.heladeria.icecore.entity.EstadoPedido.EN_CAMINO where p.id in :ids")
+    int asignarRepartidor(@Param("ids") Collection<Long> ids, @Param("repartidor") Repartidor repartidor,
+            @Param("vueltaId") Long vueltaId);
 
-    // Método para filtrar pedidos por su estado (ej: "PENDIENTE", "ENTREGADO")
-    // SQL generado: SELECT * FROM pedidos WHERE estado = ?
-    List<Pedido> findByEstado(String estado);
+    // Pedidos de la vuelta que siguen en camino, bloqueados hasta el commit.
+    // Filas: id, estado_pago, precio_total, metodo_pago
+    @Query(value = "SELECT id, estado_pago, precio_total, metodo_pago FROM pedidos"
+            + " WHERE vuelta_id = :vueltaId AND estado = 'EN_CAMINO' ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Object[]> buscarEnCaminoDeVuelta(@Param("vueltaId") Long vueltaId);
 
-    List<Pedido> findByFechaAfter(java.time.LocalDateTime fecha);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Pedido p set p.estado = com.heladeria.icecore.entity.EstadoPedido.ENTREGADO where p.id in :ids")
+    int marcarEntregados(@Param("ids") Collection<Long> ids);
 }
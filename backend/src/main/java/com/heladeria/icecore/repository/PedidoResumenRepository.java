@@ -0,0 +1,15 @@
+package com.heladeria.icecore.repository;
+
+import com.heladeria.icecore.dto.PedidoResumenDTO;
+import com.heladeria.icecore.entity.Pedido;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+// Fragmento de PedidoRepository para el lado de lectura: arma PedidoResumenDTO
+// con tres SELECTs de columnas (pedidos, items, gustos), sin hidratar entidades.
+public interface PedidoResumenRepository {
+
+    // Ordenado por (fecha DESC, id DESC). spec puede ser null; limite <= 0 significa sin límite.
+    List<PedidoResumenDTO> buscarResumenes(Specification<Pedido> spec, int limite);
+}
@@ -0,0 +1,136 @@
+package com.heladeria.icecore.repository;
+
+import com.heladeria.icecore.dto.ItemResumenDTO;
+import com.heladeria.icecore.dto.PedidoResumenDTO;
+import com.heladeria.icecore.dto.ReferenciaDTO;
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.Repartidor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PedidoResumenRepositoryImpl implements PedidoResumenRepository {
+
+    // Máximo de ids por cláusula IN (PostgreSQL admite hasta 32767 parámetros por sentencia)
+    private static final int TAMANIO_LOTE_IDS = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PedidoResumenDTO> buscarResumenes(Specification<Pedido> spec, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Pedido> pedido = query.from(Pedido.class);
+        Join<Pedido, Repartidor> repartidor = pedido.join("repartidor", JoinType.LEFT);
+
+        query.multiselect(
+                pedido.get("id").alias("id"),
+                pedido.get("fecha").alias("fecha"),
+                pedido.get("estado").alias("estado"),
+                pedido.get("nombreCliente").alias("nombreCliente"),
+                pedido.get("apellidoCliente").alias("apellidoCliente"),
+                pedido.get("direccion").alias("direccion"),
+                pedido.get("telefono").alias("telefono"),
+                pedido.get("horaEntrega").alias("horaEntrega"),
+                pedido.get("metodoPago").alias("metodoPago"),
+                pedido.get("estadoPago").alias("estadoPago"),
+                pedido.get("precioTotal").alias("precioTotal"),
+                repartidor.get("nombre").alias("repartidor"));
+
+        Predicate filtro = spec == null ? null : spec.toPredicate(pedido, query, cb);
+        if (filtro != null) {
+            query.where(filtro);
+        }
+        query.orderBy(cb.desc(pedido.get("fecha")), cb.desc(pedido.get("id")));
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (limite > 0) {
+            typedQuery.setMaxResults(limite);
+        }
+        List<Tuple> filas = typedQuery.getResultList();
+        if (filas.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> ids = filas.stream().map(fila -> fila.get("id", Long.class)).toList();
+        Map<Long, List<ItemResumenDTO>> itemsPorPedido = cargarItems(ids);
+
+        return filas.stream()
+                .map(fila -> new PedidoResumenDTO(
+                        fila.get("id", Long.class),
+                        fila.get("fecha", LocalDateTime.class),
+                        fila.get("estado", EstadoPedido.class),
+                        fila.get("nombreCliente", String.class),
+                        fila.get("apellidoCliente", String.class),
+                        fila.get("direccion", String.class),
+                        fila.get("telefono", String.class),
+                        fila.get("horaEntrega", String.class),
+                        fila.get("metodoPago", String.class),
+                        fila.get("estadoPago", String.class),
+                        fila.get("precioTotal", BigDecimal.class),
+                        fila.get("repartidor", String.class),
+                        itemsPorPedido.getOrDefault(fila.get("id", Long.class), List.of())))
+                .toList();
+    }
+
+    // Items de todos los pedidos de la página + sus gustos: dos consultas por lote de ids
+    private Map<Long, List<ItemResumenDTO>> cargarItems(List<Long> pedidoIds) {
+        Map<Long, List<ItemResumenDTO>> itemsPorPedido = new HashMap<>();
+
+        for (int desde = 0; desde < pedidoIds.size(); desde += TAMANIO_LOTE_IDS) {
+            List<Long> lote = pedidoIds.subList(desde, Math.min(desde + TAMANIO_LOTE_IDS, pedidoIds.size()));
+
+            Map<Long, List<ReferenciaDTO>> gustosPorItem = new HashMap<>();
+            entityManager.createQuery("""
+                    select i.id as itemId, g.id as gustoId, g.nombre as gustoNombre
+                    from ItemPedido i join i.gustos g
+                    where i.pedido.id in :ids
+                    """, Tuple.class)
+                    .setParameter("ids", lote)
+                    .getResultList()
+                    .forEach(fila -> gustosPorItem
+                            .computeIfAbsent(fila.get("itemId", Long.class), k -> new ArrayList<>())
+                            .add(new ReferenciaDTO(fila.get("gustoId", Long.class),
+                                    fila.get("gustoNombre", String.class))));
+
+            entityManager.createQuery("""
+                    select i.pedido.id as pedidoId, i.id as itemId, t.id as tipoId, t.nombre as tipoNombre,
+                           i.cantidad as cantidad, i.subtotal as subtotal
+                    from ItemPedido i join i.tipoProducto t
+                    where i.pedido.id in :ids
+                    order by i.id
+                    """, Tuple.class)
+                    .setParameter("ids", lote)
+                    .getResultList()
+                    .forEach(fila -> {
+                        Long itemId = fila.get("itemId", Long.class);
+                        itemsPorPedido.computeIfAbsent(fila.get("pedidoId", Long.class), k -> new ArrayList<>())
+                                .add(new ItemResumenDTO(
+                                        itemId,
+                                        new ReferenciaDTO(fila.get("tipoId", Long.class),
+                                                fila.get("tipoNombre", String.class)),
+                                        gustosPorItem.getOrDefault(itemId, List.of()),
+                                        fila.get("cantidad", Integer.class),
+                                        fila.get("subtotal", BigDecimal.class)));
+                    });
+        }
+        return itemsPorPedido;
+    }
+}
@@ -0,0 +1,59 @@
+package com.heladeria.icecore.repository;
+
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.Pedido;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+// Filtros combinables para la consulta de pedidos (ver PedidoService.buscar).
+// Cada método devuelve una condición "vacía" si el filtro no vino, así se pueden encadenar con and().
+public final class PedidoSpecifications {
+
+    private PedidoSpecifications() {
+    }
+
+    public static Specification<Pedido> conEstados(Collection<EstadoPedido> estados) {
+        return (root, query, cb) -> estados == null || estados.isEmpty()
+                ? null
+                : root.get("estado").in(estados);
+    }
+
+    public static Specification<Pedido> desde(LocalDateTime desde) {
+        return (root, query, cb) -> desde == null ? null : cb.greaterThanOrEqualTo(root.get("fecha"), desde);
+    }
+
+    public static Specification<Pedido> hasta(LocalDateTime hasta) {
+        return (root, query, cb) -> hasta == null ? null : cb.lessThan(root.get("fecha"), hasta);
+    }
+
+    public static Specification<Pedido> conRepartidor(Long repartidorId) {
+        return (root, query, cb) -> repartidorId == null
+                ? null
+                : cb.equal(root.get("repartidor").get("id"), repartidorId);
+    }
+
+    public static Specification<Pedido> sinRepartidor() {
+        return (root, query, cb) -> cb.isNull(root.get("repartidor"));
+    }
+
+    public static Specification<Pedido> conMetodoPago(String metodoPago) {
+        return (root, query, cb) -> metodoPago == null || metodoPago.isBlank()
+                ? null
+                : cb.equal(root.get("metodoPago"), metodoPago);
+    }
+
+    // Paginación por keyset: trae los pedidos "anteriores" al último de la página previa,
+    // en orden (fecha DESC, id DESC). Usa el índice (fecha, id) en lugar de OFFSET.
+    public static Specification<Pedido> anteriorA(LocalDateTime fecha, Long id) {
+        return (root, query, cb) -> {
+            if (fecha == null || id == null) {
+                return null;
+            }
+            return cb.or(
+                    cb.lessThan(root.get("fecha"), fecha),
+                    cb.and(cb.equal(root.get("fecha"), fecha), cb.lessThan(root.get("id"), id)));
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package com.heladeria.icecore.repository;
+
+import com.heladeria.icecore.entity.VentaGustoDia;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface VentaGustoDiaRepository extends JpaRepository<VentaGustoDia, VentaGustoDia.Clave> {
+
+    // Gustos más pedidos. Filas: gustoId, unidades
+    @Query("select v.id.gustoId, sum(v.unidades) from VentaGustoDia v where v.id.dia between :desde and :hasta"
+            + " group by v.id.gustoId order by sum(v.unidades) desc, v.id.gustoId")
+    List<Object[]> ranking(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta, Pageable limite);
+}
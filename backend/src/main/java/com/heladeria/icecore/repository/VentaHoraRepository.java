@@ -0,0 +1,22 @@
+package com.heladeria.icecore.repository;
+
+import com.heladeria.icecore.entity.VentaHora;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface VentaHoraRepository extends JpaRepository<VentaHora, VentaHora.Clave> {
+
+    // Filas: dia, pedidos, ingresos
+    @Query("select v.id.dia, sum(v.pedidos), sum(v.ingresos) from VentaHora v"
+            + " where v.id.dia between :desde and :hasta group by v.id.dia order by v.id.dia")
+    List<Object[]> totalesPorDia(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    // Filas: hora, pedidos, ingresos
+    @Query("select v.id.hora, sum(v.pedidos), sum(v.ingresos) from VentaHora v"
+            + " where v.id.dia between :desde and :hasta group by v.id.hora order by v.id.hora")
+    List<Object[]> totalesPorHora(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+}
@@ -0,0 +1,17 @@
+package com.heladeria.icecore.repository;
+
+import com.heladeria.icecore.entity.VentaTipoDia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface VentaTipoDiaRepository extends JpaRepository<VentaTipoDia, VentaTipoDia.Clave> {
+
+    // Filas: tipoProductoId, unidades, ingresos (de mayor a menor ingreso)
+    @Query("select v.id.tipoProductoId, sum(v.unidades), sum(v.ingresos) from VentaTipoDia v"
+            + " where v.id.dia between :desde and :hasta group by v.id.tipoProductoId order by sum(v.ingresos) desc")
+    List<Object[]> totalesPorTipo(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+}
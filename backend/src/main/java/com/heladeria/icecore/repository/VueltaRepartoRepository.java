@@ -0,0 +1,54 @@
+package com.heladeria.icecore.repository;
+
+import com.heladeria.icecore.entity.VueltaReparto;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface VueltaRepartoRepository extends JpaRepository<VueltaReparto, Long> {
+
+    @Query("select v from VueltaReparto v join fetch v.repartidor where v.estado = 'EN_CALLE' order by v.inicio")
+    List<VueltaReparto> findEnCalle();
+
+    @Query("select v from VueltaReparto v join fetch v.repartidor where v.id = :id")
+    Optional<VueltaReparto> findConRepartidorById(@Param("id") Long id);
+
+    boolean existsByRepartidorIdAndEstado(Long repartidorId, String estado);
+
+    boolean existsByIdAndEstado(Long id, String estado);
+
+    // Un pedido de la vuelta se entregó (o se corrigió): suma o resta su efectivo sin tocar los demás.
+    // Solo mientras la vuelta sigue en la calle: lo de una vuelta finalizada ya se rindió (0 filas)
+    @Modifying
+    @Query("update VueltaReparto v set v.efectivoCobrado = v.efectivoCobrado + :monto,"
+            + " v.pedidosEfectivo = v.pedidosEfectivo + :pedidos where v.id = :id and v.estado = 'EN_CALLE'")
+    int sumarEfectivo(@Param("id") Long id, @Param("monto") BigDecimal monto, @Param("pedidos") int pedidos);
+
+    // Vueltas de un lote de pedidos que siguen en la calle, bloqueadas hasta el commit (después de los
+    // pedidos, como en updateEstado): su caja no puede rendirse mientras el lote la toca
+    @Query(value = "SELECT id FROM vueltas_reparto WHERE id IN (:ids) AND estado = 'EN_CALLE' ORDER BY id FOR UPDATE",
+            nativeQuery = true)
+    List<Long> bloquearEnCalle(@Param("ids") Collection<Long> ids);
+
+    // Cierra la vuelta sumando el efectivo de los pedidos que se entregaron al finalizarla.
+    // Solo una de dos finalizaciones simultáneas encuentra la vuelta todavía en calle.
+    @Modifying
+    @Query("update VueltaReparto v set v.estado = 'FINALIZADA', v.fin = :fin,"
+            + " v.efectivoCobrado = v.efectivoCobrado + :monto, v.pedidosEfectivo = v.pedidosEfectivo + :pedidos"
+            + " where v.id = :id and v.estado = 'EN_CALLE'")
+    int finalizar(@Param("id") Long id, @Param("fin") LocalDateTime fin, @Param("monto") BigDecimal monto,
+            @Param("pedidos") int pedidos);
+
+    // Caja: lo que tiene cada repartidor en calle. Recorre las vueltas abiertas (una por repartidor),
+    // no los pedidos. Filas: repartidorId, nombre, efectivo, pedidos en efectivo
+    @Query("select v.repartidor.id, v.repartidor.nombre, sum(v.efectivoCobrado), sum(v.pedidosEfectivo)"
+            + " from VueltaReparto v where v.estado = 'EN_CALLE' group by v.repartidor.id, v.repartidor.nombre")
+    List<Object[]> cajaEnCalle();
+}
@@ -0,0 +1,265 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.VentasPorItemDTO;
+import com.heladeria.icecore.dto.VentasResumenDTO;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.ItemPedido;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.repository.VentaGustoDiaRepository;
+import com.heladeria.icecore.repository.VentaHoraRepository;
+import com.heladeria.icecore.repository.VentaTipoDiaRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Ventas agregadas por día / hora / tipo de producto / gusto (tablas ventas_*).
+// Cada pedido que se crea (o se cancela / reactiva) suma o resta su parte a contadores en memoria
+// cuando su transacción hace commit; cada pocos segundos los contadores se vuelcan a las tablas
+// con un lote de upserts (suma sobre lo que ya había). Así el checkout no compite por la misma fila
+// de "ventas de esta hora", y los reportes leen solo agregados: nunca la tabla de pedidos.
+//
+// Lo que todavía no se volcó se pierde si el proceso se cae sin apagarse (al apagar se vuelca).
+@Service
+public class AnaliticaService {
+
+    // Upsert con ON CONFLICT (no MERGE ... USING, que recién existe desde PostgreSQL 15)
+    private static final String SUMAR_HORA = "INSERT INTO ventas_hora (dia, hora, pedidos, ingresos) VALUES (?, ?, ?, ?)"
+            + " ON CONFLICT (dia, hora) DO UPDATE SET pedidos = ventas_hora.pedidos + EXCLUDED.pedidos,"
+            + " ingresos = ventas_hora.ingresos + EXCLUDED.ingresos";
+
+    private static final String SUMAR_TIPO = "INSERT INTO ventas_tipo_dia (dia, tipo_producto_id, unidades, ingresos)"
+            + " VALUES (?, ?, ?, ?)"
+            + " ON CONFLICT (dia, tipo_producto_id) DO UPDATE SET unidades = ventas_tipo_dia.unidades + EXCLUDED.unidades,"
+            + " ingresos = ventas_tipo_dia.ingresos + EXCLUDED.ingresos";
+
+    private static final String SUMAR_GUSTO = "INSERT INTO ventas_gusto_dia (dia, gusto_id, unidades) VALUES (?, ?, ?)"
+            + " ON CONFLICT (dia, gusto_id) DO UPDATE SET unidades = ventas_gusto_dia.unidades + EXCLUDED.unidades";
+
+    // Rango por defecto de los reportes (días hacia atrás, incluyendo hoy) y máximo del ranking
+    private static final int DIAS_POR_DEFECTO = 30;
+    private static final int RANKING_MAXIMO = 100;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private VentaHoraRepository ventaHoraRepository;
+
+    @Autowired
+    private VentaTipoDiaRepository ventaTipoDiaRepository;
+
+    @Autowired
+    private VentaGustoDiaRepository ventaGustoDiaRepository;
+
+    // Los nombres de tipos y gustos salen de la caché, sin JOIN
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    // Cantidad (pedidos o unidades) e ingresos que faltan volcar para una clave
+    private record Delta(long cantidad, BigDecimal ingresos) {
+
+        Delta sumar(Delta otro) {
+            return new Delta(cantidad + otro.cantidad, ingresos.add(otro.ingresos));
+        }
+
+        boolean esCero() {
+            return cantidad == 0 && ingresos.signum() == 0;
+        }
+    }
+
+    private record ClaveHora(LocalDate dia, int hora) {
+    }
+
+    private record ClaveTipo(LocalDate dia, Long tipoProductoId) {
+    }
+
+    private record ClaveGusto(LocalDate dia, Long gustoId) {
+    }
+
+    // Sumas pendientes de volcar. merge() es atómico por clave y el volcado saca cada clave con
+    // remove(): lo que llega después del remove queda en una entrada nueva para el próximo volcado.
+    private final ConcurrentHashMap<ClaveHora, Delta> porHora = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ClaveTipo, Delta> porTipo = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ClaveGusto, Delta> porGusto = new ConcurrentHashMap<>();
+
+    // Suma un pedido (signo 1) o lo resta (signo -1, ej: se canceló). Se calcula ahora, con el pedido
+    // en memoria, y se aplica recién si la transacción hace commit.
+    public void registrar(Pedido pedido, int signo) {
+        if (pedido.getFecha() == null) {
+            return;
+        }
+        LocalDate dia = pedido.getFecha().toLocalDate();
+        BigDecimal signoDecimal = BigDecimal.valueOf(signo);
+
+        ClaveHora hora = new ClaveHora(dia, pedido.getFecha().getHour());
+        Delta deltaHora = new Delta(signo, monto(pedido.getPrecioTotal()).multiply(signoDecimal));
+
+        Map<ClaveTipo, Delta> tipos = new HashMap<>();
+        Map<ClaveGusto, Delta> gustos = new HashMap<>();
+        for (ItemPedido item : pedido.getItems()) {
+            long unidades = (long) item.getCantidad() * signo;
+            TipoProducto tipo = item.getTipoProducto();
+            if (tipo != null) {
+                tipos.merge(new ClaveTipo(dia, tipo.getId()),
+                        new Delta(unidades, monto(item.getSubtotal()).multiply(signoDecimal)), Delta::sumar);
+            }
+            if (item.getGustos() != null) {
+                for (Gusto gusto : item.getGustos()) {
+                    gustos.merge(new ClaveGusto(dia, gusto.getId()), new Delta(unidades, BigDecimal.ZERO), Delta::sumar);
+                }
+            }
+        }
+
+        alConfirmar(() -> {
+            porHora.merge(hora, deltaHora, Delta::sumar);
+            tipos.forEach((clave, delta) -> porTipo.merge(clave, delta, Delta::sumar));
+            gustos.forEach((clave, delta) -> porGusto.merge(clave, delta, Delta::sumar));
+        });
+    }
+
+    // Vuelca las sumas pendientes a las tablas en una transacción (un lote de upserts por tabla).
+    // Si falla, las sumas vuelven a la cola para el próximo intento.
+    @Scheduled(fixedDelayString = "${icecore.analitica.volcado-ms:10000}")
+    @PreDestroy
+    public synchronized void volcar() {
+        Map<ClaveHora, Delta> horas = drenar(porHora);
+        Map<ClaveTipo, Delta> tipos = drenar(porTipo);
+        Map<ClaveGusto, Delta> gustos = drenar(porGusto);
+        if (horas.isEmpty() && tipos.isEmpty() && gustos.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(estado -> {
+                jdbcTemplate.batchUpdate(SUMAR_HORA, horas.entrySet().stream()
+                        .map(e -> new Object[] { Date.valueOf(e.getKey().dia()), e.getKey().hora(),
+                                e.getValue().cantidad(), e.getValue().ingresos() })
+                        .toList());
+                jdbcTemplate.batchUpdate(SUMAR_TIPO, tipos.entrySet().stream()
+                        .map(e -> new Object[] { Date.valueOf(e.getKey().dia()), e.getKey().tipoProductoId(),
+                                e.getValue().cantidad(), e.getValue().ingresos() })
+                        .toList());
+                jdbcTemplate.batchUpdate(SUMAR_GUSTO, gustos.entrySet().stream()
+                        .map(e -> new Object[] { Date.valueOf(e.getKey().dia()), e.getKey().gustoId(),
+                                e.getValue().cantidad() })
+                        .toList());
+            });
+        } catch (RuntimeException e) {
+            horas.forEach((clave, delta) -> porHora.merge(clave, delta, Delta::sumar));
+            tipos.forEach((clave, delta) -> porTipo.merge(clave, delta, Delta::sumar));
+            gustos.forEach((clave, delta) -> porGusto.merge(clave, delta, Delta::sumar));
+            throw e;
+        }
+    }
+
+    // --- Reportes (solo tablas agregadas) ---
+
+    public VentasResumenDTO resumen(LocalDate desde, LocalDate hasta) {
+        LocalDate[] rango = rango(desde, hasta);
+        volcar();
+
+        List<VentasResumenDTO.Dia> porDia = new ArrayList<>();
+        long pedidos = 0;
+        BigDecimal ingresos = BigDecimal.ZERO;
+        for (Object[] fila : ventaHoraRepository.totalesPorDia(rango[0], rango[1])) {
+            long pedidosDia = ((Number) fila[1]).longValue();
+            BigDecimal ingresosDia = (BigDecimal) fila[2];
+            porDia.add(new VentasResumenDTO.Dia((LocalDate) fila[0], pedidosDia, ingresosDia));
+            pedidos += pedidosDia;
+            ingresos = ingresos.add(ingresosDia);
+        }
+        List<VentasResumenDTO.Hora> porHora = ventaHoraRepository.totalesPorHora(rango[0], rango[1]).stream()
+                .map(fila -> new VentasResumenDTO.Hora(((Number) fila[0]).intValue(), ((Number) fila[1]).longValue(),
+                        (BigDecimal) fila[2]))
+                .toList();
+        BigDecimal ticketPromedio = pedidos == 0 ? BigDecimal.ZERO
+                : ingresos.divide(BigDecimal.valueOf(pedidos), 2, RoundingMode.HALF_UP);
+        return new VentasResumenDTO(rango[0], rango[1], pedidos, ingresos, ticketPromedio, porDia, porHora);
+    }
+
+    public List<VentasPorItemDTO> porTipo(LocalDate desde, LocalDate hasta) {
+        LocalDate[] rango = rango(desde, hasta);
+        volcar();
+        Map<Long, TipoProducto> tipos = catalogoCache.actual().tiposPorId();
+        return ventaTipoDiaRepository.totalesPorTipo(rango[0], rango[1]).stream()
+                .map(fila -> {
+                    Long id = (Long) fila[0];
+                    TipoProducto tipo = tipos.get(id);
+                    return new VentasPorItemDTO(id, tipo != null ? tipo.getNombre() : "Producto #" + id,
+                            ((Number) fila[1]).longValue(), (BigDecimal) fila[2]);
+                })
+                .toList();
+    }
+
+    // Gustos más pedidos del rango
+    public List<VentasPorItemDTO> rankingGustos(LocalDate desde, LocalDate hasta, Integer limite) {
+        LocalDate[] rango = rango(desde, hasta);
+        int tamanio = limite == null ? 10 : Math.max(1, Math.min(limite, RANKING_MAXIMO));
+        volcar();
+        Map<Long, Gusto> gustos = catalogoCache.actual().gustosPorId();
+        return ventaGustoDiaRepository.ranking(rango[0], rango[1], PageRequest.of(0, tamanio)).stream()
+                .map(fila -> {
+                    Long id = (Long) fila[0];
+                    Gusto gusto = gustos.get(id);
+                    return new VentasPorItemDTO(id, gusto != null ? gusto.getNombre() : "Gusto #" + id,
+                            ((Number) fila[1]).longValue(), null);
+                })
+                .toList();
+    }
+
+    private static LocalDate[] rango(LocalDate desde, LocalDate hasta) {
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : fin.minusDays(DIAS_POR_DEFECTO - 1);
+        if (inicio.isAfter(fin)) {
+            throw new RuntimeException("Error: La fecha 'desde' es posterior a 'hasta'.");
+        }
+        return new LocalDate[] { inicio, fin };
+    }
+
+    private static BigDecimal monto(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+
+    private static <K> Map<K, Delta> drenar(ConcurrentHashMap<K, Delta> pendientes) {
+        Map<K, Delta> drenadas = new HashMap<>();
+        for (K clave : pendientes.keySet()) {
+            Delta delta = pendientes.remove(clave);
+            if (delta != null && !delta.esCero()) {
+                drenadas.put(clave, delta);
+            }
+        }
+        return drenadas;
+    }
+
+    private static void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
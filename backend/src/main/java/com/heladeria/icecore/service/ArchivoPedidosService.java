@@ -0,0 +1,65 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.repository.PedidoArchivadoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Separa el historial frío del operativo: los pedidos ENTREGADO con más de icecore.archivo.dias
+// pasan a pedidos_archivo / items_pedido_archivo / item_pedido_gustos_archivo. El panel, las
+// franjas y las vueltas trabajan sobre pedidos, que queda con los últimos días; la exportación
+// lee las dos tablas y la analítica no depende de ninguna (lee ventas_*).
+//
+// Se mueve de a lotes, cada uno en su propia transacción corta: copia + borrado de los mismos ids,
+// así un pedido está siempre en una sola de las dos tablas.
+@Service
+public class ArchivoPedidosService {
+
+    @Autowired
+    private PedidoArchivadoRepository pedidoArchivadoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Días que un pedido entregado se queda en la tabla en caliente
+    @Value("${icecore.archivo.dias:30}")
+    private int diasEnCaliente;
+
+    @Value("${icecore.archivo.lote:500}")
+    private int tamanioLote;
+
+    // Devuelve cuántos pedidos se archivaron. La primera pasada espera a que el arranque termine.
+    @Scheduled(fixedDelayString = "${icecore.archivo.intervalo-ms:3600000}",
+            initialDelayString = "${icecore.archivo.espera-inicial-ms:300000}")
+    public int archivar() {
+        LocalDateTime limite = LocalDate.now().minusDays(diasEnCaliente).atStartOfDay();
+        int total = 0;
+        int movidos;
+        do {
+            movidos = transactionTemplate.execute(estado -> moverLote(limite));
+            total += movidos;
+        } while (movidos == tamanioLote);
+        return total;
+    }
+
+    private int moverLote(LocalDateTime limite) {
+        List<Long> ids = pedidoArchivadoRepository.bloquearArchivables(limite, tamanioLote);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        pedidoArchivadoRepository.copiarPedidos(ids, LocalDateTime.now());
+        pedidoArchivadoRepository.copiarItems(ids);
+        pedidoArchivadoRepository.copiarGustos(ids);
+        pedidoArchivadoRepository.borrarGustos(ids);
+        pedidoArchivadoRepository.borrarItems(ids);
+        pedidoArchivadoRepository.borrarOutbox(ids);
+        pedidoArchivadoRepository.borrarPedidos(ids);
+        return ids.size();
+    }
+}
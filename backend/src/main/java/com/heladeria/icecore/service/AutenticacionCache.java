@@ -0,0 +1,138 @@
+package com.heladeria.icecore.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Autenticación HTTP Basic con caché de resultados.
+// Basic manda usuario y contraseña en CADA petición del panel: sin caché, cada una es un
+// SELECT a usuarios + un BCrypt completo (decenas de ms de CPU). Acá solo el primer pedido
+// con unas credenciales paga ese costo; los siguientes, hasta que vence el TTL, se resuelven
+// con un HMAC y una búsqueda en un mapa (microsegundos).
+//
+// La clave del mapa es un HMAC-SHA256 de "usuario:contraseña" con una clave aleatoria del proceso:
+// la contraseña nunca queda en memoria en claro, y un volcado de memoria no sirve para adivinarla.
+// Las credenciales inválidas no se guardan: siempre pasan por BCrypt.
+@Service
+public class AutenticacionCache implements AuthenticationProvider {
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Value("${icecore.auth.cache.ttl-segundos:300}")
+    private long ttlSegundos;
+
+    @Value("${icecore.auth.cache.capacidad:1000}")
+    private int capacidad;
+
+    private DaoAuthenticationProvider delegado;
+    private SecretKeySpec claveHmac;
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+
+    private record Entrada(String username, Authentication resultado, long venceEn) {
+    }
+
+    @PostConstruct
+    void init() {
+        delegado = new DaoAuthenticationProvider(userDetailsService);
+        delegado.setPasswordEncoder(passwordEncoder);
+
+        byte[] secreto = new byte[32];
+        new SecureRandom().nextBytes(secreto);
+        claveHmac = new SecretKeySpec(secreto, "HmacSHA256");
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credenciales = authentication.getCredentials();
+        if (username == null || credenciales == null) {
+            return delegado.authenticate(authentication);
+        }
+
+        String clave = huella(username, credenciales.toString());
+        long ahora = System.nanoTime();
+        Entrada entrada = entradas.get(clave);
+        if (entrada != null && ahora - entrada.venceEn() < 0) {
+            aciertos.increment();
+            return entrada.resultado();
+        }
+
+        fallos.increment();
+        // Si falla, la excepción sale directo y no se guarda nada
+        Authentication resultado = delegado.authenticate(authentication);
+
+        if (entradas.size() >= capacidad) {
+            purgar(ahora);
+        }
+        // Se guarda el resultado sin la contraseña (eraseCredentials del token autenticado)
+        UsernamePasswordAuthenticationToken autenticado = UsernamePasswordAuthenticationToken.authenticated(
+                resultado.getPrincipal(), null, resultado.getAuthorities());
+        entradas.put(clave, new Entrada(username, autenticado, ahora + TimeUnit.SECONDS.toNanos(ttlSegundos)));
+        return autenticado;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    // Cambió la contraseña o el rol de un usuario (o se borró): sus credenciales cacheadas dejan de valer
+    public void invalidar(String username) {
+        entradas.values().removeIf(entrada -> entrada.username().equals(username));
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    private void purgar(long ahora) {
+        entradas.values().removeIf(entrada -> ahora - entrada.venceEn() >= 0);
+        // Sigue lleno (muchas credenciales válidas distintas): se vacía entero, el próximo pedido de cada uno paga BCrypt
+        if (entradas.size() >= capacidad) {
+            entradas.clear();
+        }
+    }
+
+    private String huella(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(claveHmac);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) ':');
+            return HexFormat.of().formatHex(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 no disponible", e);
+        }
+    }
+}
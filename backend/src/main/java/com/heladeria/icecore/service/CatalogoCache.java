@@ -0,0 +1,313 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.CatalogoMetricasDTO;
+import com.heladeria.icecore.dto.GustoCatalogoDTO;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.repository.GustoRepository;
+import com.heladeria.icecore.repository.TipoProductoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Catálogo (gustos + tipos de producto) en memoria.
+// El catálogo cambia pocas veces por día, pero se lee en cada visita a la tienda y en cada pedido.
+// Se guarda como una "foto" inmutable que se reemplaza entera (AtomicReference) cada vez que
+// GustoService / TipoProductoService escriben: los lectores nunca ven un estado a medio actualizar
+// y no necesitan locks ni consultas a la BD.
+//
+// Las entidades de la foto están desacopladas de la BD y se comparten entre hilos: NO modificarlas.
+@Service
+public class CatalogoCache {
+
+    @Autowired
+    private GustoRepository gustoRepository;
+
+    @Autowired
+    private TipoProductoRepository tipoProductoRepository;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    // Parte del ETag que cambia con cada arranque: la versión vuelve a empezar al reiniciar
+    private final String epoca = Long.toString(System.currentTimeMillis(), 36);
+
+    // Cambios de gramos que no movieron la versión de la foto (ver etagConStock)
+    private final AtomicLong revisionStock = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder recargas = new LongAdder();
+
+    // Foto inmutable del catálogo. "version" aumenta con cada cambio (sirve para detectar cambios).
+    public record Snapshot(
+            long version,
+            Map<Long, Gusto> gustosPorId,
+            Map<Long, TipoProducto> tiposPorId,
+            List<Gusto> gustos,
+            List<GustoCatalogoDTO> gustosActivos,
+            List<TipoProducto> tipos) {
+
+        static Snapshot de(long version, Collection<Gusto> gustos, Collection<TipoProducto> tipos) {
+            List<Gusto> gustosOrdenados = gustos.stream()
+                    .sorted(Comparator.comparing(Gusto::getNombre, String.CASE_INSENSITIVE_ORDER))
+                    .toList();
+            List<GustoCatalogoDTO> activos = gustosOrdenados.stream()
+                    .filter(Gusto::isActivo)
+                    .map(g -> new GustoCatalogoDTO(g.getId(), g.getNombre(), g.getDescripcion(),
+                            g.getCategoria(), g.isHayStock()))
+                    .toList();
+            List<TipoProducto> tiposOrdenados = tipos.stream()
+                    .sorted(Comparator.comparing(TipoProducto::getId))
+                    .toList();
+            return new Snapshot(version,
+                    Map.copyOf(gustos.stream().collect(Collectors.toMap(Gusto::getId, Function.identity()))),
+                    Map.copyOf(tipos.stream().collect(Collectors.toMap(TipoProducto::getId, Function.identity()))),
+                    gustosOrdenados, activos, tiposOrdenados);
+        }
+
+        // Dos escrituras que terminan casi juntas pueden llegar en desorden:
+        // la versión (@Version) decide cuál es la más nueva
+        Snapshot conGusto(Gusto gusto) {
+            if (esMasViejo(gusto.getVersion(), gustosPorId.get(gusto.getId()), Gusto::getVersion)) {
+                return this;
+            }
+            Map<Long, Gusto> nuevos = new HashMap<>(gustosPorId);
+            nuevos.put(gusto.getId(), gusto);
+            return de(version + 1, nuevos.values(), tiposPorId.values());
+        }
+
+        private static <T> boolean esMasViejo(Long versionNueva, T actual, Function<T, Long> versionDe) {
+            Long versionActual = actual == null ? null : versionDe.apply(actual);
+            return versionNueva != null && versionActual != null && versionNueva < versionActual;
+        }
+
+        // Gramos y disponibilidad nuevos de varios gustos en UNA foto (copias: las de la foto no se tocan).
+        // La versión (y con ella el ETag de la tienda) solo avanza si algún gusto se agotó o volvió:
+        // un descuento que deja gramos no invalida el catálogo de los clientes
+        Snapshot conStock(Map<Long, Stock> stock) {
+            Map<Long, Gusto> nuevos = new HashMap<>(gustosPorId);
+            boolean cambio = false;
+            boolean cambioDisponibilidad = false;
+            for (Map.Entry<Long, Stock> entrada : stock.entrySet()) {
+                Gusto actual = gustosPorId.get(entrada.getKey());
+                Stock nuevo = entrada.getValue();
+                if (actual == null || esMasViejo(nuevo.version(), actual, Gusto::getVersion)
+                        || (Objects.equals(actual.getStockGramos(), nuevo.gramos())
+                                && actual.isHayStock() == nuevo.hayStock())) {
+                    continue;
+                }
+                nuevos.put(actual.getId(), copiaConStock(actual, nuevo));
+                cambio = true;
+                cambioDisponibilidad |= actual.isHayStock() != nuevo.hayStock();
+            }
+            if (!cambio) {
+                return this;
+            }
+            return de(cambioDisponibilidad ? version + 1 : version, nuevos.values(), tiposPorId.values());
+        }
+
+        private static Gusto copiaConStock(Gusto gusto, Stock stock) {
+            Gusto copia = new Gusto();
+            copia.setId(gusto.getId());
+            copia.setNombre(gusto.getNombre());
+            copia.setDescripcion(gusto.getDescripcion());
+            copia.setCategoria(gusto.getCategoria());
+            copia.setActivo(gusto.isActivo());
+            copia.setVersion(gusto.getVersion());
+            copia.setStockGramos(stock.gramos());
+            copia.setHayStock(stock.hayStock());
+            return copia;
+        }
+
+        Snapshot sinGusto(Long id) {
+            Map<Long, Gusto> nuevos = new HashMap<>(gustosPorId);
+            nuevos.remove(id);
+            return de(version + 1, nuevos.values(), tiposPorId.values());
+        }
+
+        Snapshot conTipo(TipoProducto tipo) {
+            if (esMasViejo(tipo.getVersion(), tiposPorId.get(tipo.getId()), TipoProducto::getVersion)) {
+                return this;
+            }
+            Map<Long, TipoProducto> nuevos = new HashMap<>(tiposPorId);
+            nuevos.put(tipo.getId(), tipo);
+            return de(version + 1, gustosPorId.values(), nuevos.values());
+        }
+
+        Snapshot sinTipo(Long id) {
+            Map<Long, TipoProducto> nuevos = new HashMap<>(tiposPorId);
+            nuevos.remove(id);
+            return de(version + 1, gustosPorId.values(), nuevos.values());
+        }
+    }
+
+    // Stock de un gusto leído de la BD después de un descuento o una reposición (ver InventarioService)
+    public record Stock(Integer gramos, boolean hayStock, Long version) {
+    }
+
+    // Carga completa desde la BD (al arrancar, o si alguien pide el catálogo antes).
+    // Si mientras se leía llegó una escritura (aplicar / quitar), la lectura puede ser anterior a ella:
+    // no se pisa la foto, se vuelve a leer.
+    @EventListener(ApplicationReadyEvent.class)
+    public void recargar() {
+        while (true) {
+            Snapshot antes = snapshot.get();
+            List<Gusto> gustos = gustoRepository.findAll();
+            List<TipoProducto> tipos = tipoProductoRepository.findAll();
+            Snapshot nueva = Snapshot.de(antes == null ? 1 : antes.version() + 1, gustos, tipos);
+            if (snapshot.compareAndSet(antes, nueva)) {
+                recargas.increment();
+                return;
+            }
+        }
+    }
+
+    // --- Lecturas (camino caliente: sin BD) ---
+
+    public Snapshot actual() {
+        Snapshot actual = snapshot.get();
+        if (actual == null) {
+            misses.increment();
+            recargar();
+            return snapshot.get();
+        }
+        hits.increment();
+        return actual;
+    }
+
+    // ETag de todas las respuestas del catálogo: cambia con cada escritura (ver CatalogoController)
+    // salvo los descuentos de stock que no agotan ni reponen un gusto
+    public String etag() {
+        return "\"cat-" + epoca + "-" + version() + "\"";
+    }
+
+    // ETag de la lista del admin, que muestra los gramos: cambia también con cada descuento de stock
+    public String etagConStock() {
+        long stock = revisionStock.get();
+        return "\"cat-" + epoca + "-" + version() + "-" + stock + "\"";
+    }
+
+    private long version() {
+        Snapshot actual = snapshot.get();
+        return actual != null ? actual.version() : actual().version();
+    }
+
+    public List<Gusto> gustos() {
+        return actual().gustos();
+    }
+
+    public List<GustoCatalogoDTO> gustosActivos() {
+        return actual().gustosActivos();
+    }
+
+    public List<TipoProducto> tipos() {
+        return actual().tipos();
+    }
+
+    // Tipos y gustos de un pedido resueltos contra UNA misma foto del catálogo: stock, precios y
+    // gustos activos son los de un mismo momento, aunque un admin esté cambiando algo en paralelo
+    public record Seleccion(Map<Long, TipoProducto> tipos, Map<Long, Gusto> gustos) {
+    }
+
+    public Seleccion seleccionar(Collection<Long> tipoIds, Collection<Long> gustoIds) {
+        Snapshot foto = actual();
+        return new Seleccion(
+                buscar(tipoIds, foto.tiposPorId(), tipoProductoRepository::findAllById, TipoProducto::getId,
+                        this::aplicar),
+                buscar(gustoIds, foto.gustosPorId(), gustoRepository::findAllById, Gusto::getId, this::aplicar));
+    }
+
+    // Cada conjunto de ids se resuelve de una vez. Los que no están en la foto (ej: alta desde otra
+    // instancia) se buscan con UNA sola consulta y se incorporan. Los inexistentes no aparecen en el mapa.
+    private <T> Map<Long, T> buscar(Collection<Long> ids, Map<Long, T> enMemoria,
+            Function<Set<Long>, List<T>> cargarDesdeBd, Function<T, Long> idDe, Consumer<T> incorporar) {
+        Map<Long, T> resultado = new HashMap<>();
+        Set<Long> faltantes = new HashSet<>();
+        for (Long id : ids) {
+            T valor = id == null ? null : enMemoria.get(id);
+            if (valor != null) {
+                resultado.put(id, valor);
+            } else if (id != null) {
+                faltantes.add(id);
+            }
+        }
+        if (faltantes.isEmpty()) {
+            return resultado;
+        }
+
+        misses.increment();
+        for (T valor : cargarDesdeBd.apply(faltantes)) {
+            incorporar.accept(valor);
+            resultado.put(idDe.apply(valor), valor);
+        }
+        return resultado;
+    }
+
+    // --- Escrituras (write-through): se llaman con la entidad ya guardada en la BD ---
+
+    public void aplicar(Gusto gusto) {
+        snapshot.updateAndGet(actual -> actual == null ? null : actual.conGusto(gusto));
+    }
+
+    // Los gramos de varios gustos en un solo cambio de foto. Devuelve los gustos que se agotaron o
+    // volvieron a tener stock (ya con el valor nuevo), para avisar a las tiendas
+    public List<Gusto> aplicarStock(Map<Long, Stock> stock) {
+        while (true) {
+            Snapshot antes = snapshot.get();
+            if (antes == null) {
+                return List.of();
+            }
+            Snapshot despues = antes.conStock(stock);
+            if (despues == antes) {
+                return List.of();
+            }
+            if (snapshot.compareAndSet(antes, despues)) {
+                revisionStock.incrementAndGet();
+                return stock.keySet().stream()
+                        .filter(id -> antes.gustosPorId().containsKey(id))
+                        .map(despues.gustosPorId()::get)
+                        .filter(gusto -> gusto.isHayStock() != antes.gustosPorId().get(gusto.getId()).isHayStock())
+                        .toList();
+            }
+        }
+    }
+
+    public void aplicar(TipoProducto tipo) {
+        snapshot.updateAndGet(actual -> actual == null ? null : actual.conTipo(tipo));
+    }
+
+    public void quitarGusto(Long id) {
+        snapshot.updateAndGet(actual -> actual == null ? null : actual.sinGusto(id));
+    }
+
+    public void quitarTipo(Long id) {
+        snapshot.updateAndGet(actual -> actual == null ? null : actual.sinTipo(id));
+    }
+
+    public CatalogoMetricasDTO metricas() {
+        Snapshot actual = snapshot.get();
+        return new CatalogoMetricasDTO(
+                actual == null ? 0 : actual.version(),
+                hits.sum(),
+                misses.sum(),
+                recargas.sum(),
+                actual == null ? 0 : actual.gustosPorId().size(),
+                actual == null ? 0 : actual.tiposPorId().size());
+    }
+}
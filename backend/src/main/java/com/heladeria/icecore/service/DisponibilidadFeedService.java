@@ -0,0 +1,87 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.event.DisponibilidadGustoEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Canal en vivo (Server-Sent Events) de disponibilidad de gustos para la tienda.
+// Cuando el admin marca un gusto sin stock (o lo oculta), las tiendas abiertas lo dejan de ofrecer
+// al instante, sin polling. No guarda historial: al reconectarse, la tienda vuelve a pedir
+// GET /api/gustos/activos (con ETag, normalmente un 304).
+@Service
+public class DisponibilidadFeedService {
+
+    private static final long TIMEOUT_MS = 15 * 60 * 1000L;
+
+    // Los envíos salen de un solo hilo, en orden, sin demorar la petición del admin
+    private final ExecutorService feedExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "disponibilidad-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    public SseEmitter suscribir() {
+        SseEmitter emitter = new SseEmitter(TIMEOUT_MS);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    // GustoService lo publica con el cambio ya confirmado en la BD
+    @EventListener
+    public void onDisponibilidad(DisponibilidadGustoEvent evento) {
+        feedExecutor.execute(() -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().name("DISPONIBILIDAD").data(evento));
+                } catch (Exception e) {
+                    descartar(emitter);
+                }
+            }
+        });
+    }
+
+    // Mantiene viva la conexión a través de proxies que cortan conexiones inactivas
+    @Scheduled(fixedRate = 25_000)
+    public void heartbeat() {
+        feedExecutor.execute(() -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } catch (Exception e) {
+                    descartar(emitter);
+                }
+            }
+        });
+    }
+
+    public int suscriptores() {
+        return emitters.size();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        feedExecutor.shutdownNow();
+    }
+
+    private void descartar(SseEmitter emitter) {
+        emitters.remove(emitter);
+        try {
+            emitter.complete();
+        } catch (Exception ignored) {
+            // La conexión ya estaba cerrada
+        }
+    }
+}
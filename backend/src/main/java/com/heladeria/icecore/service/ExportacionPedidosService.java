@@ -0,0 +1,240 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.PedidoExportadoDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Exportación del historial de pedidos para contabilidad (CSV o NDJSON), sin pasar por entidades.
+// Una consulta (pedido + items + gustos, ordenada por pedido) se recorre con un cursor de solo
+// avance que trae de a icecore.exportacion.fetch-size filas; cada pedido se arma con sus filas
+// consecutivas y se escribe apenas termina. En memoria nunca hay más de un pedido, sean 100 o 1.000.000.
+// Primero sale lo archivado (tablas *_archivo, ver ArchivoPedidosService) y después lo que sigue en caliente.
+@Service
+public class ExportacionPedidosService {
+
+    public static final String CSV = "csv";
+    public static final String NDJSON = "ndjson";
+
+    // %1$s = pedidos, %2$s = items, %3$s = gustos de cada item (en caliente o archivo)
+    private static final String CONSULTA = """
+            SELECT p.id, p.fecha, p.estado, p.nombre_cliente, p.apellido_cliente, p.telefono, p.direccion,
+                   p.metodo_pago, p.estado_pago, p.precio_total, r.nombre AS repartidor,
+                   i.id AS item_id, t.nombre AS producto, i.cantidad, i.subtotal, g.nombre AS gusto
+            FROM %1$s p
+            LEFT JOIN repartidores r ON r.id = p.repartidor_id
+            LEFT JOIN %2$s i ON i.pedido_id = p.id
+            LEFT JOIN tipos_producto t ON t.id = i.tipo_producto_id
+            LEFT JOIN %3$s ig ON ig.item_pedido_id = i.id
+            LEFT JOIN gustos g ON g.id = ig.gusto_id
+            """;
+
+    private static final String CONSULTA_ARCHIVO = CONSULTA.formatted(
+            "pedidos_archivo", "items_pedido_archivo", "item_pedido_gustos_archivo");
+    private static final String CONSULTA_EN_CALIENTE = CONSULTA.formatted(
+            "pedidos", "items_pedido", "item_pedido_gustos");
+
+    private static final String ENCABEZADO_CSV = "pedido_id,fecha,estado,cliente,telefono,direccion,metodo_pago,"
+            + "estado_pago,total_pedido,repartidor,producto,cantidad,subtotal,gustos";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Filas que el driver trae por viaje. PostgreSQL solo usa cursor (en vez de traer todo el
+    // resultado de una) si la consulta corre dentro de una transacción: ver escribir().
+    @Value("${icecore.exportacion.fetch-size:500}")
+    private int fetchSize;
+
+    // Valida los parámetros ahora (para responder 400) y devuelve el cuerpo que se escribe
+    // después, en el hilo de la respuesta. Rango de días inclusive; sin fechas, todo el historial.
+    public StreamingResponseBody exportar(LocalDate desde, LocalDate hasta, String formato) {
+        String formatoNormalizado = formato == null ? CSV : formato.strip().toLowerCase();
+        if (!CSV.equals(formatoNormalizado) && !NDJSON.equals(formatoNormalizado)) {
+            throw new RuntimeException("Error: Formato de exportación no válido (csv o ndjson).");
+        }
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            throw new RuntimeException("Error: La fecha 'desde' es posterior a 'hasta'.");
+        }
+        return salida -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+            escribir(desde, hasta, formatoNormalizado, writer);
+            writer.flush();
+        };
+    }
+
+    public void escribir(LocalDate desde, LocalDate hasta, String formato, Writer writer) throws IOException {
+        Consumer<PedidoExportadoDTO> escritor;
+        if (NDJSON.equals(formato)) {
+            escritor = pedido -> escribirLinea(writer, JsonMapper.shared().writeValueAsString(pedido));
+        } else {
+            // BOM: Excel abre el archivo como UTF-8 y respeta las tildes
+            writer.write('\uFEFF');
+            escribirLinea(writer, ENCABEZADO_CSV);
+            escritor = pedido -> escribirCsv(writer, pedido);
+        }
+
+        StringBuilder filtro = new StringBuilder();
+        List<Object> parametros = new ArrayList<>();
+        if (desde != null) {
+            filtro.append(parametros.isEmpty() ? " WHERE" : " AND").append(" p.fecha >= ?");
+            parametros.add(Timestamp.valueOf(desde.atStartOfDay()));
+        }
+        if (hasta != null) {
+            filtro.append(parametros.isEmpty() ? " WHERE" : " AND").append(" p.fecha < ?");
+            parametros.add(Timestamp.valueOf(hasta.plusDays(1).atStartOfDay()));
+        }
+        filtro.append(" ORDER BY p.fecha, p.id, i.id");
+
+        Agrupador agrupador = new Agrupador(escritor);
+        TransactionTemplate lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        // Las dos consultas ven la misma foto: un pedido que el job archiva en el medio no sale
+        // dos veces ni se pierde
+        lectura.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        try {
+            lectura.executeWithoutResult(estado -> {
+                recorrer(CONSULTA_ARCHIVO + filtro, parametros, agrupador);
+                recorrer(CONSULTA_EN_CALIENTE + filtro, parametros, agrupador);
+            });
+        } catch (UncheckedIOException e) {
+            // El cliente cortó la descarga: se cierra el cursor y se avisa al contenedor
+            throw e.getCause();
+        }
+    }
+
+    private void recorrer(String sql, List<Object> parametros, Agrupador agrupador) {
+        jdbcTemplate.query(conexion -> {
+            PreparedStatement ps = conexion.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < parametros.size(); i++) {
+                ps.setObject(i + 1, parametros.get(i));
+            }
+            return ps;
+        }, agrupador);
+        agrupador.terminar();
+    }
+
+    // Arma cada pedido con sus filas consecutivas (una por gusto de cada item) y lo entrega al
+    // escritor cuando aparece el siguiente. Solo guarda el pedido en curso.
+    private static class Agrupador implements RowCallbackHandler {
+
+        private final Consumer<PedidoExportadoDTO> escritor;
+
+        private PedidoExportadoDTO pedido;
+        private List<PedidoExportadoDTO.Item> items;
+        private Long itemId;
+        private List<String> gustos;
+
+        Agrupador(Consumer<PedidoExportadoDTO> escritor) {
+            this.escritor = escritor;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong("id");
+            if (pedido == null || pedido.id() != id) {
+                terminar();
+                items = new ArrayList<>();
+                Timestamp fecha = rs.getTimestamp("fecha");
+                pedido = new PedidoExportadoDTO(id, fecha != null ? fecha.toLocalDateTime() : null,
+                        rs.getString("estado"), rs.getString("nombre_cliente"), rs.getString("apellido_cliente"),
+                        rs.getString("telefono"), rs.getString("direccion"), rs.getString("metodo_pago"),
+                        rs.getString("estado_pago"), rs.getBigDecimal("precio_total"), rs.getString("repartidor"),
+                        items);
+            }
+
+            long filaItem = rs.getLong("item_id");
+            if (rs.wasNull()) {
+                return; // pedido sin items
+            }
+            if (itemId == null || itemId != filaItem) {
+                itemId = filaItem;
+                gustos = new ArrayList<>();
+                items.add(new PedidoExportadoDTO.Item(rs.getString("producto"), rs.getInt("cantidad"),
+                        rs.getBigDecimal("subtotal"), gustos));
+            }
+            String gusto = rs.getString("gusto");
+            if (gusto != null) {
+                gustos.add(gusto);
+            }
+        }
+
+        void terminar() {
+            if (pedido != null) {
+                escritor.accept(pedido);
+                pedido = null;
+                itemId = null;
+            }
+        }
+    }
+
+    // Una fila por item (los datos del pedido se repiten); un pedido sin items ocupa una fila igual
+    private static void escribirCsv(Writer writer, PedidoExportadoDTO pedido) {
+        String cliente = pedido.apellidoCliente() == null ? pedido.nombreCliente()
+                : pedido.nombreCliente() + " " + pedido.apellidoCliente();
+        String datosPedido = String.join(",", String.valueOf(pedido.id()),
+                campo(pedido.fecha()), campo(pedido.estado()), campo(cliente), campo(pedido.telefono()),
+                campo(pedido.direccion()), campo(pedido.metodoPago()), campo(pedido.estadoPago()),
+                campo(pedido.precioTotal()), campo(pedido.repartidor()));
+        if (pedido.items().isEmpty()) {
+            escribirLinea(writer, datosPedido + ",,,,");
+            return;
+        }
+        for (PedidoExportadoDTO.Item item : pedido.items()) {
+            escribirLinea(writer, String.join(",", datosPedido, campo(item.producto()),
+                    String.valueOf(item.cantidad()), campo(item.subtotal()), campo(String.join(" / ", item.gustos()))));
+        }
+    }
+
+    // Campo CSV (RFC 4180): entre comillas si trae coma, comillas o salto de línea
+    private static String campo(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor instanceof BigDecimal monto ? monto.toPlainString()
+                : valor instanceof LocalDateTime fecha ? fecha.withNano(0).toString()
+                : valor.toString();
+        if (texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0
+                || texto.indexOf('\r') >= 0) {
+            return '"' + texto.replace("\"", "\"\"") + '"';
+        }
+        return texto;
+    }
+
+    private static void escribirLinea(Writer writer, String linea) {
+        try {
+            writer.write(linea);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
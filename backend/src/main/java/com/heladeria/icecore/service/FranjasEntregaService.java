@@ -0,0 +1,217 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.FranjaEntregaDTO;
+import com.heladeria.icecore.dto.FranjasEntregaDTO;
+import com.heladeria.icecore.entity.Horarios;
+import com.heladeria.icecore.event.HorariosActualizadosEvent;
+import com.heladeria.icecore.repository.PedidoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Franjas de entrega con cupo limitado.
+// Las franjas salen de Horarios (turnos + intervaloMinutos) para hoy y mañana. Cada franja tiene
+// un contador en memoria de pedidos tomados: reservar es un compareAndSet sobre ese contador
+// (sin locks ni consultas), así dos checkouts simultáneos nunca pasan el cupo.
+// Los contadores se reconstruyen desde la BD al arrancar (pedidos no cancelados con franja).
+//
+// Los contadores viven en este proceso: con una sola instancia del backend (como el feed SSE).
+@Service
+public class FranjasEntregaService {
+
+    @Autowired
+    private HorariosService horariosService;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    // Pedidos que se pueden entregar en una misma franja
+    @Value("${icecore.entregas.capacidad-franja:8}")
+    private int capacidadFranja;
+
+    // Pedidos tomados por franja (inicio de la franja -> cantidad)
+    private final ConcurrentHashMap<LocalDateTime, AtomicInteger> ocupadas = new ConcurrentHashMap<>();
+
+    // Minutos del día en que empieza cada franja (de los dos turnos), armados a partir de los horarios.
+    // Se recalculan solo cuando cambian los horarios (HorariosActualizadosEvent).
+    private record Plantilla(Horarios horarios, List<Integer> minutos) {
+
+        static Plantilla de(Horarios h) {
+            List<Integer> minutos = new ArrayList<>();
+            int intervalo = Math.max(1, h.getIntervaloMinutos());
+            for (int m = h.getAperturaT1(); m < h.getCierreT1(); m += intervalo) {
+                minutos.add(m);
+            }
+            for (int m = h.getAperturaT2(); m < h.getCierreT2(); m += intervalo) {
+                minutos.add(m);
+            }
+            return new Plantilla(h, List.copyOf(minutos));
+        }
+    }
+
+    private final AtomicReference<Plantilla> plantilla = new AtomicReference<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconciliar() {
+        ocupadas.clear();
+        for (Object[] fila : pedidoRepository.contarPorFranja(LocalDate.now().atStartOfDay())) {
+            ocupadas.put((LocalDateTime) fila[0], new AtomicInteger(((Number) fila[1]).intValue()));
+        }
+    }
+
+    // Los horarios cambiaron (PUT /api/business-hours): las franjas nuevas se ofrecen desde ya.
+    // Los pedidos ya tomados conservan su franja y su lugar.
+    @EventListener
+    public void horariosActualizados(HorariosActualizadosEvent evento) {
+        plantilla.set(Plantilla.de(evento.horarios()));
+    }
+
+    // Franjas que todavía se pueden elegir, con su lugar libre (GET /api/business-hours/franjas)
+    public FranjasEntregaDTO franjas() {
+        Plantilla p = plantillaVigente();
+        Horarios h = p.horarios();
+        LocalDateTime ahora = LocalDateTime.now();
+        int minutoActual = ahora.getHour() * 60 + ahora.getMinute();
+        boolean abierto = (minutoActual >= h.getAperturaT1() && minutoActual < h.getCierreT1())
+                || (minutoActual >= h.getAperturaT2() && minutoActual < h.getCierreT2());
+
+        List<FranjaEntregaDTO> franjas = new ArrayList<>();
+        for (LocalDateTime inicio : franjasDesde(p, ahora)) {
+            int libres = Math.max(0, capacidadFranja - ocupadasEn(inicio));
+            franjas.add(new FranjaEntregaDTO(inicio, etiqueta(inicio), capacidadFranja, libres));
+        }
+        return new FranjasEntregaDTO(abierto, franjas);
+    }
+
+    // Toma un lugar en la franja para el pedido que se está creando. Si la transacción
+    // termina en rollback, el lugar se devuelve solo.
+    public void reservar(LocalDateTime franja) {
+        if (!franjasDesde(plantillaVigente(), LocalDateTime.now()).contains(franja)) {
+            throw new RuntimeException("Error: La franja de entrega elegida ya no está disponible.");
+        }
+        AtomicInteger contador = ocupadas.computeIfAbsent(franja, f -> new AtomicInteger());
+        int actual;
+        do {
+            actual = contador.get();
+            if (actual >= capacidadFranja) {
+                throw new RuntimeException("Error: La franja de las " + etiqueta(franja)
+                        + " ya está completa. Elegí otro horario.");
+            }
+        } while (!contador.compareAndSet(actual, actual + 1));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        contador.decrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    // Franja de un pedido que solo trae horaEntrega (el texto de la etiqueta, ej: "Hoy a las 11:30"):
+    // mientras haya franjas que ofrecer, la hora tiene que ser una de ellas, así el cupo no se saltea
+    // mandando solo el texto. Sin franjas (horarios sin turnos) la hora queda como texto libre.
+    public Optional<LocalDateTime> franjaDe(String horaEntrega) {
+        List<LocalDateTime> ofrecidas = franjasDesde(plantillaVigente(), LocalDateTime.now());
+        if (ofrecidas.isEmpty()) {
+            return Optional.empty();
+        }
+        String hora = horaEntrega.strip();
+        return Optional.of(ofrecidas.stream()
+                .filter(franja -> etiqueta(franja).equalsIgnoreCase(hora))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException(
+                        "Error: La hora de entrega \"" + hora + "\" no es una franja disponible.")));
+    }
+
+    // Un pedido cancelado deja su lugar (al hacer commit del cambio de estado)
+    public void liberar(LocalDateTime franja) {
+        alConfirmar(() -> {
+            AtomicInteger contador = ocupadas.get(franja);
+            if (contador != null) {
+                contador.updateAndGet(n -> Math.max(0, n - 1));
+            }
+        });
+    }
+
+    // Un pedido cancelado que se reactiva vuelve a ocupar su franja (aunque ya esté llena:
+    // el pedido existía de antes)
+    public void ocupar(LocalDateTime franja) {
+        alConfirmar(() -> ocupadas.computeIfAbsent(franja, f -> new AtomicInteger()).incrementAndGet());
+    }
+
+    // Texto que ve el cliente y el panel, ej: "Hoy a las 11:30"
+    public String etiqueta(LocalDateTime franja) {
+        String dia = franja.toLocalDate().equals(LocalDate.now()) ? "Hoy"
+                : franja.toLocalDate().equals(LocalDate.now().plusDays(1)) ? "Mañana"
+                : franja.toLocalDate().toString();
+        return String.format("%s a las %02d:%02d", dia, franja.getHour(), franja.getMinute());
+    }
+
+    // Las franjas que ya pasaron no se vuelven a consultar
+    @Scheduled(fixedDelayString = "${icecore.entregas.purga-ms:3600000}")
+    public void purgarPasadas() {
+        LocalDateTime limite = LocalDateTime.now().minusHours(1);
+        ocupadas.keySet().removeIf(franja -> franja.isBefore(limite));
+    }
+
+    int ocupadasEn(LocalDateTime franja) {
+        AtomicInteger contador = ocupadas.get(franja);
+        return contador == null ? 0 : contador.get();
+    }
+
+    // Los horarios ya están en memoria (HorariosService): la plantilla se arma en la primera consulta
+    private Plantilla plantillaVigente() {
+        Plantilla p = plantilla.get();
+        if (p == null) {
+            plantilla.compareAndSet(null, Plantilla.de(horariosService.getHours()));
+            p = plantilla.get();
+        }
+        return p;
+    }
+
+    // Inicio de cada franja de hoy (las que todavía no empezaron) y de mañana, en orden
+    private static List<LocalDateTime> franjasDesde(Plantilla p, LocalDateTime ahora) {
+        List<LocalDateTime> franjas = new ArrayList<>();
+        for (int dia = 0; dia <= 1; dia++) {
+            LocalDateTime medianoche = ahora.toLocalDate().plusDays(dia).atStartOfDay();
+            for (int m : p.minutos()) {
+                LocalDateTime inicio = medianoche.plusMinutes(m);
+                if (inicio.isAfter(ahora)) {
+                    franjas.add(inicio);
+                }
+            }
+        }
+        return franjas;
+    }
+
+    private static void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
@@ -1,13 +1,17 @@
 package com.heladeria.icecore.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import com.heladeria.icecore.dto.GustoCatalogoDTO;
 import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.event.DisponibilidadGustoEvent;
 import com.heladeria.icecore.repository.GustoRepository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class GustoService {
@@ -15,14 +19,26 @@ public class GustoService {
     @Autowired
     private GustoRepository gustoRepository;
 
+    // Las lecturas salen de la caché; cada escritura la actualiza con lo que quedó guardado
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    // Los cambios se hacen con control de versión (@Version en Gusto) y se reintentan si chocan
+    @Autowired
+    private ReintentosOptimistas reintentosOptimistas;
+
+    // Avisa a las tiendas abiertas (ver DisponibilidadFeedService)
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // Devuelve todos los gustos, activos o no
     public List<Gusto> findAll() {
-        return gustoRepository.findAll();
+        return catalogoCache.gustos();
     }
 
-    // Devuelve todos los gustos activos
-    public List<Gusto> findAllActive() {
-        return gustoRepository.findByActivoTrue();
+    // Devuelve todos los gustos activos, como tarjetas del catálogo
+    public List<GustoCatalogoDTO> findAllActive() {
+        return catalogoCache.gustosActivos();
     }
 
     public Optional<Gusto> findById(Long id) {
@@ -30,39 +46,71 @@ public class GustoService {
     }
 
     public Gusto save(Gusto gusto) {
-        return gustoRepository.save(gusto);
+        Gusto guardado = gustoRepository.save(gusto);
+        confirmado(guardado);
+        return guardado;
     }
 
     public void deleteById(Long id) {
         gustoRepository.deleteById(id);
+        catalogoCache.quitarGusto(id);
+        eventPublisher.publishEvent(DisponibilidadGustoEvent.borrado(id));
     }
 
-    public Gusto toggleStock(Long id) {
-        Gusto gusto = gustoRepository.findById(id).orElseThrow(() -> new RuntimeException("Gusto no encontrado"));
-        gusto.setHayStock(!gusto.isHayStock());
-        return gustoRepository.save(gusto);
+    // hayStock: valor a dejar (idempotente, se puede reintentar); null invierte el actual
+    public Gusto toggleStock(Long id, Boolean hayStock) {
+        return modificar(id, gusto -> gusto.setHayStock(hayStock != null ? hayStock : !gusto.isHayStock()));
     }
 
-    public Gusto toggleActive(Long id) {
-        Gusto gusto = gustoRepository.findById(id).orElseThrow(() -> new RuntimeException("Gusto no encontrado"));
-        gusto.setActivo(!gusto.isActivo());
-        return gustoRepository.save(gusto);
+    public Gusto toggleActive(Long id, Boolean activo) {
+        return modificar(id, gusto -> gusto.setActivo(activo != null ? activo : !gusto.isActivo()));
     }
 
-    public Gusto update(Long id, Gusto gustoDetails) {
-        Gusto gusto = gustoRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Gusto no encontrado con id: " + id));
+    // Carga de inventario (ej: entró un balde nuevo). gramos null = dejar de llevar la cuenta.
+    // Con stock vuelve a estar a la venta; en 0 queda agotado.
+    public Gusto cambiarInventario(Long id, Integer gramos) {
+        return modificar(id, gusto -> {
+            gusto.setStockGramos(gramos);
+            if (gramos != null) {
+                gusto.setHayStock(gramos > 0);
+            }
+        });
+    }
 
-        // Verifica que el nuevo nombre no esté en uso por OTRO gusto
-        gustoRepository.findByNombreIgnoreCaseAndIdNot(gustoDetails.getNombre(), id)
-                .ifPresent(duplicate -> {
-                    throw new RuntimeException("Ya existe un sabor con el nombre \"" + gustoDetails.getNombre() + "\"");
-                });
+    // Si el formulario manda la versión que cargó y el gusto cambió desde entonces, no se pisa: 409
+    public Gusto update(Long id, Gusto gustoDetails) {
+        return modificar(id, gusto -> {
+            if (gustoDetails.getVersion() != null && !gustoDetails.getVersion().equals(gusto.getVersion())) {
+                throw new ReintentosOptimistas.CambioConcurrenteException();
+            }
+
+            // Verifica que el nuevo nombre no esté en uso por OTRO gusto
+            gustoRepository.findByNombreIgnoreCaseAndIdNot(gustoDetails.getNombre(), id)
+                    .ifPresent(duplicate -> {
+                        throw new RuntimeException("Ya existe un sabor con el nombre \"" + gustoDetails.getNombre() + "\"");
+                    });
+
+            gusto.setNombre(gustoDetails.getNombre());
+            gusto.setDescripcion(gustoDetails.getDescripcion());
+            gusto.setCategoria(gustoDetails.getCategoria());
+        });
+    }
 
-        gusto.setNombre(gustoDetails.getNombre());
-        gusto.setDescripcion(gustoDetails.getDescripcion());
-        gusto.setCategoria(gustoDetails.getCategoria());
+    // Leer - modificar - guardar en una transacción; si otra escritura ganó, se repite sobre el dato nuevo
+    private Gusto modificar(Long id, Consumer<Gusto> cambio) {
+        Gusto guardado = reintentosOptimistas.ejecutar(() -> {
+            Gusto gusto = gustoRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Gusto no encontrado con id: " + id));
+            cambio.accept(gusto);
+            return gustoRepository.saveAndFlush(gusto);
+        });
+        confirmado(guardado);
+        return guardado;
+    }
 
-        return gustoRepository.save(gusto);
+    // Ya en la BD: se actualiza la caché (que valida los pedidos) y se avisa a las tiendas
+    private void confirmado(Gusto guardado) {
+        catalogoCache.aplicar(guardado);
+        eventPublisher.publishEvent(DisponibilidadGustoEvent.de(guardado));
     }
 }
@@ -1,35 +1,86 @@
 package com.heladeria.icecore.service;
 
 import com.heladeria.icecore.entity.Horarios;
+import com.heladeria.icecore.event.HorariosActualizadosEvent;
 import com.heladeria.icecore.repository.HorariosRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
+// Horarios del local: una sola fila de configuración que se lee en cada visita a la tienda
+// y en cada checkout, y cambia muy de vez en cuando.
+// Se carga una vez y queda en memoria como un valor inmutable que se reemplaza entero al guardar
+// (mismo criterio que CatalogoCache): las lecturas nunca van a la BD.
+//
+// El objeto Horarios que devuelve getHours() se comparte entre hilos: NO modificarlo.
 @Service
 public class HorariosService {
 
     @Autowired
     private HorariosRepository horariosRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Horarios vigentes + revisión para el ETag (aumenta con cada save())
+    private record Vigentes(Horarios horarios, long revision) {
+    }
+
+    private final AtomicReference<Vigentes> vigentes = new AtomicReference<>();
+    private final String epoca = Long.toString(System.currentTimeMillis(), 36);
+
+    public String etag() {
+        return "\"hor-" + epoca + "-" + actuales().revision() + "\"";
+    }
+
     public Horarios getHours() {
-        return horariosRepository.findAll()
-                .stream()
-                .findFirst()
-                .orElseGet(this::createDefault);
+        return actuales().horarios();
     }
 
+    // Un solo upsert (insertar o actualizar la fila única); después se reemplaza la copia en memoria
+    // y se avisa a los que dependen de los horarios
     public Horarios save(Horarios hours) {
-        List<Horarios> existing = horariosRepository.findAll();
-        if (!existing.isEmpty()) {
-            hours.setId(existing.get(0).getId());
+        Horarios nuevos = copia(hours);
+        horariosRepository.guardar(nuevos.getAperturaT1(), nuevos.getCierreT1(),
+                nuevos.getAperturaT2(), nuevos.getCierreT2(), nuevos.getIntervaloMinutos());
+        Vigentes guardados = vigentes.updateAndGet(
+                actual -> new Vigentes(nuevos, actual == null ? 1 : actual.revision() + 1));
+        eventPublisher.publishEvent(new HorariosActualizadosEvent(guardados.horarios(), guardados.revision()));
+        return guardados.horarios();
+    }
+
+    // Carga desde la BD (al arrancar, o si alguien pide los horarios antes): la fila guardada,
+    // o los valores por defecto si todavía no se configuró (no se escribe nada hasta el primer save)
+    @EventListener(ApplicationReadyEvent.class)
+    public void recargar() {
+        Horarios cargados = horariosRepository.findById(Horarios.ID_UNICO)
+                .map(HorariosService::copia)
+                .orElseGet(() -> copia(new Horarios()));
+        vigentes.updateAndGet(actual -> new Vigentes(cargados, actual == null ? 0 : actual.revision() + 1));
+    }
+
+    private Vigentes actuales() {
+        Vigentes actual = vigentes.get();
+        if (actual == null) {
+            recargar();
+            actual = vigentes.get();
         }
-        return horariosRepository.save(hours);
+        return actual;
     }
 
-    private Horarios createDefault() {
-        Horarios defaults = new Horarios();
-        return horariosRepository.save(defaults);
+    // Copia desacoplada de la BD y del JSON recibido
+    private static Horarios copia(Horarios origen) {
+        Horarios copia = new Horarios();
+        copia.setId(Horarios.ID_UNICO);
+        copia.setAperturaT1(origen.getAperturaT1());
+        copia.setCierreT1(origen.getCierreT1());
+        copia.setAperturaT2(origen.getAperturaT2());
+        copia.setCierreT2(origen.getCierreT2());
+        copia.setIntervaloMinutos(origen.getIntervaloMinutos());
+        return copia;
     }
 }
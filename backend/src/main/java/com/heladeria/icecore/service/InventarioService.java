@@ -0,0 +1,185 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.ItemPedido;
+import com.heladeria.icecore.event.DisponibilidadGustoEvent;
+import com.heladeria.icecore.repository.GustoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Inventario en gramos por gusto (Gusto.stockGramos; null = no se controla, solo vale hayStock).
+// Cada pedido descuenta lo suyo con UN lote de UPDATE condicionales (uno por gusto), dentro de la
+// transacción del pedido: la BD hace la resta y la verificación a la vez, así que dos checkouts
+// simultáneos nunca dejan el stock en negativo, sin cargar ni guardar entidades.
+@Service
+public class InventarioService {
+
+    // Resta solo si alcanza. Si el pote se termina, el gusto pasa a "sin stock" en la misma sentencia.
+    // No toca version: un checkout no es una edición del gusto (el formulario del admin no choca con las
+    // ventas, y Gusto se guarda con @DynamicUpdate, así editarlo no reescribe los gramos).
+    private static final String DESCONTAR = "UPDATE gustos SET stock_gramos = stock_gramos - ?,"
+            + " hay_stock = CASE WHEN stock_gramos - ? > 0 THEN hay_stock ELSE FALSE END"
+            + " WHERE id = ? AND stock_gramos >= ?";
+
+    // Devuelve lo de un pedido cancelado: si el pote vuelve a tener gramos, el gusto vuelve a estar en stock.
+    // Un gusto que dejó de llevar inventario (stock_gramos null) o que ya no existe no toca ninguna fila.
+    private static final String REPONER = "UPDATE gustos SET stock_gramos = stock_gramos + ?,"
+            + " hay_stock = CASE WHEN stock_gramos + ? > 0 THEN TRUE ELSE hay_stock END"
+            + " WHERE id = ? AND stock_gramos IS NOT NULL";
+
+    private static final String LEER_STOCK = "SELECT id, stock_gramos, hay_stock, version FROM gustos WHERE id IN (";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Las lecturas del stock ya confirmado se aplican a la caché en el orden en que se hicieron: dos
+    // checkouts que terminan juntos no dejan en la foto los gramos del que leyó primero.
+    // ReentrantLock y no synchronized: los checkouts corren en hilos virtuales y la lectura va a la BD
+    private final ReentrantLock refrescando = new ReentrantLock();
+
+    @Autowired
+    private GustoRepository gustoRepository;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Gramos que consume cada gusto: pesoGramos x cantidad repartido entre los gustos del pote
+    // (el resto de la división va a los primeros, así la suma da el peso exacto)
+    public Map<Long, Integer> consumo(List<ItemPedido> items) {
+        Map<Long, Integer> gramosPorGusto = new TreeMap<>();
+        for (ItemPedido item : items) {
+            Integer peso = item.getTipoProducto().getPesoGramos();
+            List<Gusto> gustos = item.getGustos();
+            if (peso == null || peso <= 0 || gustos == null || gustos.isEmpty()) {
+                continue;
+            }
+            int total = peso * item.getCantidad();
+            int porGusto = total / gustos.size();
+            int resto = total % gustos.size();
+            for (int i = 0; i < gustos.size(); i++) {
+                Gusto gusto = gustos.get(i);
+                if (gusto.getStockGramos() != null) {
+                    gramosPorGusto.merge(gusto.getId(), porGusto + (i < resto ? 1 : 0), Integer::sum);
+                }
+            }
+        }
+        return gramosPorGusto;
+    }
+
+    // Debe llamarse dentro de la transacción del pedido: si falta stock de algún gusto, la excepción
+    // hace rollback de todo (incluidas las restas de los otros gustos del lote)
+    public void descontar(Map<Long, Integer> gramosPorGusto, Map<Long, Gusto> gustosPorId) {
+        if (gramosPorGusto.isEmpty()) {
+            return;
+        }
+        // Siempre en orden de id: dos pedidos con los mismos gustos bloquean las filas en el mismo orden
+        List<Map.Entry<Long, Integer>> restas = new ArrayList<>(new TreeMap<>(gramosPorGusto).entrySet());
+        int[][] resultados = jdbcTemplate.batchUpdate(DESCONTAR, restas, restas.size(), (ps, resta) -> {
+            ps.setInt(1, resta.getValue());
+            ps.setInt(2, resta.getValue());
+            ps.setLong(3, resta.getKey());
+            ps.setInt(4, resta.getValue());
+        });
+        for (int i = 0; i < restas.size(); i++) {
+            int filas = resultados[0][i];
+            if (filas == 0) {
+                Gusto gusto = gustosPorId.get(restas.get(i).getKey());
+                throw new RuntimeException("Error: No queda suficiente "
+                        + (gusto != null ? gusto.getNombre() : "stock") + " para este pedido.");
+            }
+            if (filas != 1 && filas != Statement.SUCCESS_NO_INFO) {
+                throw new IllegalStateException("Descuento de stock inesperado: " + filas + " filas");
+            }
+        }
+
+        refrescarAlConfirmar(restas.stream().map(Map.Entry::getKey).toList());
+    }
+
+    // Saldo de cada gusto con inventario, con las filas bloqueadas hasta el commit: lo que se aparte de
+    // este saldo con reservar se puede descontar después en la misma transacción sin que falte
+    public Map<Long, Integer> bloquearSaldo(Collection<Long> gustoIds) {
+        Map<Long, Integer> saldo = new HashMap<>();
+        if (!gustoIds.isEmpty()) {
+            for (Object[] fila : gustoRepository.bloquearStock(gustoIds)) {
+                saldo.put(((Number) fila[0]).longValue(), ((Number) fila[1]).intValue());
+            }
+        }
+        return saldo;
+    }
+
+    // Aparta del saldo los gramos de un pedido solo si alcanzan todos; si no, devuelve el gusto que falta
+    // (uno sin fila en el saldo ya no lleva inventario o no existe: descontar tampoco lo restaría)
+    public Long reservar(Map<Long, Integer> gramosPorGusto, Map<Long, Integer> saldo) {
+        for (Map.Entry<Long, Integer> resta : gramosPorGusto.entrySet()) {
+            if (saldo.getOrDefault(resta.getKey(), 0) < resta.getValue()) {
+                return resta.getKey();
+            }
+        }
+        gramosPorGusto.forEach((gustoId, gramos) -> saldo.merge(gustoId, -gramos, Integer::sum));
+        return null;
+    }
+
+    // Lo contrario de descontar, con el mismo lote de UPDATE (cancelar un pedido devuelve sus gramos)
+    public void reponer(Map<Long, Integer> gramosPorGusto) {
+        if (gramosPorGusto.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, Integer>> sumas = new ArrayList<>(new TreeMap<>(gramosPorGusto).entrySet());
+        jdbcTemplate.batchUpdate(REPONER, sumas, sumas.size(), (ps, suma) -> {
+            ps.setInt(1, suma.getValue());
+            ps.setInt(2, suma.getValue());
+            ps.setLong(3, suma.getKey());
+        });
+        refrescarAlConfirmar(sumas.stream().map(Map.Entry::getKey).toList());
+    }
+
+    private void refrescarAlConfirmar(List<Long> ids) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refrescar(ids);
+                }
+            });
+        } else {
+            refrescar(ids);
+        }
+    }
+
+    // Ya confirmado: la caché (que valida los pedidos) toma el stock nuevo en UNA consulta sin cargar
+    // entidades y en un solo cambio de foto; si algún gusto se agotó o volvió, se avisa a las tiendas
+    void refrescar(List<Long> ids) {
+        List<Gusto> cambiados;
+        refrescando.lock();
+        try {
+            Map<Long, CatalogoCache.Stock> stock = new HashMap<>();
+            String sql = LEER_STOCK + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+            jdbcTemplate.query(sql, (ResultSet rs) -> {
+                stock.put(rs.getLong(1), new CatalogoCache.Stock(rs.getObject(2, Integer.class),
+                        rs.getBoolean(3), rs.getObject(4, Long.class)));
+            }, ids.toArray());
+            cambiados = catalogoCache.aplicarStock(stock);
+        } finally {
+            refrescando.unlock();
+        }
+        cambiados.forEach(gusto -> eventPublisher.publishEvent(DisponibilidadGustoEvent.de(gusto)));
+    }
+}
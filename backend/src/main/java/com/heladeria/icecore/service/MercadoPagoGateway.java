@@ -0,0 +1,104 @@
+package com.heladeria.icecore.service;
+
+import com.mercadopago.MercadoPagoConfig;
+import com.mercadopago.client.payment.PaymentClient;
+import com.mercadopago.client.preference.PreferenceClient;
+import com.mercadopago.client.preference.PreferenceRequest;
+import com.mercadopago.exceptions.MPApiException;
+import com.mercadopago.exceptions.MPException;
+import com.mercadopago.net.MPHttpClient;
+import com.mercadopago.resources.payment.Payment;
+import com.mercadopago.resources.preference.Preference;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Única salida hacia la API de Mercado Pago.
+// Las peticiones corren en hilos virtuales (spring.threads.virtual.enabled), así que una llamada
+// lenta ya no ocupa un hilo de Tomcat; pero sin límite, un proveedor lento acumularía cientos de
+// llamadas abiertas. Este "bulkhead" deja pasar como mucho N a la vez: el resto espera un
+// momento y, si no hay lugar, falla enseguida (503) en vez de quedarse colgado.
+@Service
+public class MercadoPagoGateway {
+
+    // Llamadas simultáneas a Mercado Pago (también es el tamaño del pool de conexiones del SDK)
+    @Value("${icecore.pagos.max-concurrentes:20}")
+    private int maxConcurrentes;
+
+    // Cuánto espera un checkout por un lugar libre antes de rendirse
+    @Value("${icecore.pagos.espera-ms:200}")
+    private long esperaMs;
+
+    @Value("${icecore.pagos.timeout-conexion-ms:2000}")
+    private int timeoutConexionMs;
+
+    // Máximo sin recibir datos de la API una vez conectados
+    @Value("${icecore.pagos.timeout-lectura-ms:5000}")
+    private int timeoutLecturaMs;
+
+    private Semaphore lugares;
+    private MPHttpClient httpClient;
+    private PreferenceClient preferenceClient;
+    private PaymentClient paymentClient;
+
+    // El SDK toma estos valores al crear su cliente HTTP (la primera vez que se usa)
+    @PostConstruct
+    void init() {
+        lugares = new Semaphore(maxConcurrentes, true);
+        MercadoPagoConfig.setMaxConnections(maxConcurrentes);
+        MercadoPagoConfig.setConnectionTimeout(timeoutConexionMs);
+        MercadoPagoConfig.setConnectionRequestTimeout(timeoutConexionMs);
+        MercadoPagoConfig.setSocketTimeout(timeoutLecturaMs);
+        if (httpClient == null) {
+            httpClient = MercadoPagoConfig.getHttpClient();
+        }
+        preferenceClient = new PreferenceClient(httpClient);
+        paymentClient = new PaymentClient(httpClient);
+    }
+
+    public Preference crearPreferencia(PreferenceRequest request) throws MPException, MPApiException {
+        return conLugar(() -> preferenceClient.create(request));
+    }
+
+    // Estado real de un pago (el webhook solo avisa el id; los datos se leen de la API)
+    public Payment buscarPago(Long pagoId) throws MPException, MPApiException {
+        return conLugar(() -> paymentClient.get(pagoId));
+    }
+
+    private interface LlamadaMercadoPago<T> {
+        T ejecutar() throws MPException, MPApiException;
+    }
+
+    private <T> T conLugar(LlamadaMercadoPago<T> llamada) throws MPException, MPApiException {
+        boolean conLugar;
+        try {
+            conLugar = lugares.tryAcquire(esperaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PagosSaturadosException();
+        }
+        if (!conLugar) {
+            throw new PagosSaturadosException();
+        }
+        try {
+            return llamada.ejecutar();
+        } finally {
+            lugares.release();
+        }
+    }
+
+    // Llamadas en curso, para métricas / tests
+    public int enCurso() {
+        return maxConcurrentes - lugares.availablePermits();
+    }
+
+    // Mercado Pago está respondiendo lento y ya hay demasiados checkouts esperándolo
+    public static class PagosSaturadosException extends RuntimeException {
+        public PagosSaturadosException() {
+            super("El servicio de pagos está demorado, intentá de nuevo en unos segundos.");
+        }
+    }
+}
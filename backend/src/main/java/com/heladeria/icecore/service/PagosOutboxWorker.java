@@ -0,0 +1,123 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.entity.PagoOutbox;
+import com.heladeria.icecore.repository.PagoOutboxRepository;
+import com.mercadopago.exceptions.MPApiException;
+import com.mercadopago.resources.preference.Preference;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Crea en segundo plano las preferencias de Mercado Pago de los pedidos nuevos (tabla pagos_outbox).
+// El POST del pedido vuelve enseguida; el checkout consulta GET /api/payments/pedidos/{id}
+// hasta que aparece el initPoint. Si Mercado Pago falla o está lento, la tarea se reintenta
+// con espera creciente y nunca se pierde (está en la BD, en la misma transacción que el pedido).
+@Service
+public class PagosOutboxWorker {
+
+    // Tiempo que una tarea tomada queda reservada para este proceso (si se cae a mitad, otro la retoma)
+    private static final Duration RESERVA = Duration.ofMinutes(2);
+
+    @Autowired
+    private PagoOutboxRepository pagoOutboxRepository;
+
+    @Autowired
+    private PagosService pagosService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${icecore.pagos.outbox.lote:20}")
+    private int tamanioLote;
+
+    @Value("${icecore.pagos.outbox.max-intentos:8}")
+    private int maxIntentos;
+
+    // Espera del primer reintento; se duplica en cada fallo hasta el máximo
+    @Value("${icecore.pagos.outbox.espera-inicial-ms:2000}")
+    private long esperaInicialMs;
+
+    @Value("${icecore.pagos.outbox.espera-maxima-ms:300000}")
+    private long esperaMaximaMs;
+
+    @Scheduled(fixedDelayString = "${icecore.pagos.outbox.intervalo-ms:1000}")
+    public void procesarPendientes() {
+        List<PagoOutbox> lote;
+        do {
+            lote = reclamarLote();
+            // Las llamadas del lote salen en paralelo (MercadoPagoGateway limita cuántas a la vez)
+            try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (PagoOutbox tarea : lote) {
+                    hilos.execute(() -> procesar(tarea));
+                }
+            }
+        } while (lote.size() == tamanioLote);
+    }
+
+    // Transacción corta: bloquea (SKIP LOCKED) un lote de tareas vencidas y las reserva corriendo
+    // proximo_intento, así otra instancia o la próxima pasada no las toma mientras se procesan
+    private List<PagoOutbox> reclamarLote() {
+        return transactionTemplate.execute(estado -> {
+            LocalDateTime ahora = LocalDateTime.now();
+            List<PagoOutbox> tareas = pagoOutboxRepository.reclamarVencidas(ahora, tamanioLote);
+            tareas.forEach(tarea -> tarea.setProximoIntento(ahora.plus(RESERVA)));
+            return tareas;
+        });
+    }
+
+    private void procesar(PagoOutbox tarea) {
+        Preference preference;
+        try {
+            preference = pagosService.crearPreferenciaDePedido(tarea.getPedidoId());
+            if (preference.getInitPoint() == null) {
+                throw new IllegalStateException("Mercado Pago devolvió una preferencia sin init_point");
+            }
+        } catch (Exception e) {
+            fallo(tarea, e);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(estado -> {
+            pedidoService.registrarPreferencia(tarea.getPedidoId(), preference.getId(), preference.getInitPoint());
+            tarea.setEstado(PagoOutbox.ENVIADO);
+            tarea.setIntentos(tarea.getIntentos() + 1);
+            tarea.setUltimoError(null);
+            pagoOutboxRepository.save(tarea);
+        });
+    }
+
+    private void fallo(PagoOutbox tarea, Exception e) {
+        int intentos = tarea.getIntentos() + 1;
+        // Un 4xx de la API (ej: datos inválidos) no se arregla reintentando
+        boolean definitivo = intentos >= maxIntentos
+                || (e instanceof MPApiException api && api.getStatusCode() >= 400 && api.getStatusCode() < 500
+                        && api.getStatusCode() != 429);
+        transactionTemplate.executeWithoutResult(estado -> {
+            tarea.setIntentos(intentos);
+            tarea.setUltimoError(recortar(e));
+            if (definitivo) {
+                tarea.setEstado(PagoOutbox.FALLIDO);
+                pedidoService.actualizarPago(tarea.getPedidoId(), "ERROR", null);
+            } else {
+                long espera = Math.min(esperaMaximaMs, esperaInicialMs << Math.min(intentos - 1, 20));
+                tarea.setProximoIntento(LocalDateTime.now().plus(Duration.ofMillis(espera)));
+            }
+            pagoOutboxRepository.save(tarea);
+        });
+    }
+
+    private static String recortar(Exception e) {
+        String mensaje = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return mensaje.length() > 500 ? mensaje.substring(0, 500) : mensaje;
+    }
+}
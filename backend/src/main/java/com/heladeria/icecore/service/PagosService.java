@@ -0,0 +1,249 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.EstadoPagoDTO;
+import com.heladeria.icecore.dto.ItemPedidoDTO;
+import com.heladeria.icecore.dto.PagosMetricasDTO;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.ItemPedido;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.repository.PedidoRepository;
+import com.mercadopago.MercadoPagoConfig;
+import com.mercadopago.client.preference.PreferenceBackUrlsRequest;
+import com.mercadopago.client.preference.PreferenceItemRequest;
+import com.mercadopago.client.preference.PreferenceRequest;
+import com.mercadopago.exceptions.MPApiException;
+import com.mercadopago.exceptions.MPException;
+import com.mercadopago.resources.payment.Payment;
+import com.mercadopago.resources.preference.Preference;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Checkout con Mercado Pago.
+// El SDK se configura una sola vez al arrancar (token, URLs de retorno) y las llamadas salen por
+// MercadoPagoGateway, que reutiliza el mismo cliente HTTP con su pool de conexiones keep-alive.
+// Los precios salen SIEMPRE del catálogo (CatalogoCache): el carrito del cliente solo dice qué
+// productos y gustos quiere, nunca cuánto cuestan.
+@Service
+public class PagosService {
+
+    @Autowired
+    private MercadoPagoGateway mercadoPagoGateway;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private TokenPagoService tokenPagoService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${mercadopago.access_token}")
+    private String accessToken;
+
+    // Adonde vuelve el cliente después de pagar
+    @Value("${icecore.frontend.url:http://localhost:5173}")
+    private String frontendUrl;
+
+    // URL pública de POST /api/payments/webhook; vacía = Mercado Pago usa la configurada en su panel
+    @Value("${icecore.pagos.webhook-url:}")
+    private String webhookUrl;
+
+    private PreferenceBackUrlsRequest backUrls;
+
+    private final LongAdder creadas = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder saturadas = new LongAdder();
+    private final LongAdder nanosTotales = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        MercadoPagoConfig.setAccessToken(accessToken);
+        backUrls = PreferenceBackUrlsRequest.builder()
+                .success(frontendUrl + "/success")
+                .failure(frontendUrl + "/failure")
+                .pending(frontendUrl + "/pending")
+                .build();
+    }
+
+    // Devuelve el init_point (URL de pago de Mercado Pago)
+    public String crearPreferencia(List<ItemPedidoDTO> carrito) throws MPException, MPApiException {
+        PreferenceRequest request = PreferenceRequest.builder()
+                .items(itemsDesdeCatalogo(carrito))
+                .backUrls(backUrls)
+                .build();
+        return enviar(request).getInitPoint();
+    }
+
+    // Preferencia de un pedido ya guardado (la crea PagosOutboxWorker en segundo plano).
+    // Los precios son los que quedaron en el pedido; external_reference = id del pedido,
+    // así el webhook sabe a qué pedido corresponde cada pago.
+    public Preference crearPreferenciaDePedido(Long pedidoId) throws MPException, MPApiException {
+        // La lectura va en su propia transacción corta: la llamada a Mercado Pago no retiene la conexión
+        PreferenceRequest request = transactionTemplate.execute(estado -> {
+            Pedido pedido = pedidoRepository.findConDetalleById(pedidoId)
+                    .orElseThrow(() -> new RuntimeException("Pedido no encontrado id: " + pedidoId));
+            return requestDePedido(pedido);
+        });
+        return enviar(request);
+    }
+
+    private PreferenceRequest requestDePedido(Pedido pedido) {
+        List<PreferenceItemRequest> items = new ArrayList<>();
+        for (ItemPedido item : pedido.getItems()) {
+            List<String> nombresGustos = item.getGustos().stream().map(Gusto::getNombre).toList();
+            items.add(PreferenceItemRequest.builder()
+                    .id(String.valueOf(item.getTipoProducto().getId()))
+                    .title(titulo(item.getTipoProducto(), nombresGustos))
+                    .quantity(item.getCantidad())
+                    .unitPrice(item.getSubtotal().divide(BigDecimal.valueOf(item.getCantidad()), 2, RoundingMode.HALF_UP))
+                    .currencyId("ARS")
+                    .build());
+        }
+        PreferenceRequest.PreferenceRequestBuilder request = PreferenceRequest.builder()
+                .items(items)
+                .backUrls(backUrls)
+                .externalReference(String.valueOf(pedido.getId()));
+        if (!webhookUrl.isBlank()) {
+            request.notificationUrl(webhookUrl);
+        }
+        return request.build();
+    }
+
+    // Webhook: Mercado Pago avisa solo el id del pago; el estado se lee de su API (no se confía en el aviso)
+    public void registrarPago(Long pagoId) throws MPException, MPApiException {
+        Payment pago = mercadoPagoGateway.buscarPago(pagoId);
+        Long pedidoId;
+        try {
+            pedidoId = Long.valueOf(pago.getExternalReference());
+        } catch (NumberFormatException e) {
+            return; // Pago que no salió de un pedido de la tienda (ej: link de pago manual)
+        }
+        pedidoService.actualizarPago(pedidoId, estadoPagoDe(pago.getStatus()), String.valueOf(pago.getId()));
+    }
+
+    // Lo que consulta el checkout mientras espera la preferencia o el resultado del pago
+    // Sin el token del pedido responde igual que si no existiera: no se puede sondear ids ajenos
+    public EstadoPagoDTO estadoDePedido(Long pedidoId, String token) {
+        if (!tokenPagoService.valido(pedidoId, token)) {
+            throw new RuntimeException("Pedido no encontrado id: " + pedidoId);
+        }
+        Pedido pedido = pedidoRepository.findById(pedidoId)
+                .orElseThrow(() -> new RuntimeException("Pedido no encontrado id: " + pedidoId));
+        return new EstadoPagoDTO(pedido.getId(), pedido.getEstadoPago(), pedido.getInitPoint());
+    }
+
+    static String estadoPagoDe(String status) {
+        if (status == null) {
+            return "EN_PROCESO";
+        }
+        return switch (status) {
+            case "approved" -> "APROBADO";
+            case "rejected", "cancelled" -> "RECHAZADO";
+            case "refunded", "charged_back" -> "DEVUELTO";
+            default -> "EN_PROCESO"; // pending, in_process, authorized, in_mediation
+        };
+    }
+
+    private Preference enviar(PreferenceRequest request) throws MPException, MPApiException {
+        long inicio = System.nanoTime();
+        try {
+            Preference preference = mercadoPagoGateway.crearPreferencia(request);
+            creadas.increment();
+            nanosTotales.add(System.nanoTime() - inicio);
+            return preference;
+        } catch (MercadoPagoGateway.PagosSaturadosException e) {
+            saturadas.increment();
+            throw e;
+        } catch (MPException | RuntimeException e) {
+            errores.increment();
+            throw e;
+        }
+    }
+
+    List<PreferenceItemRequest> itemsDesdeCatalogo(List<ItemPedidoDTO> carrito) {
+        if (carrito == null || carrito.isEmpty()) {
+            throw new RuntimeException("Error: El carrito está vacío.");
+        }
+
+        Set<Long> tipoIds = new HashSet<>();
+        Set<Long> gustoIds = new HashSet<>();
+        for (ItemPedidoDTO item : carrito) {
+            tipoIds.add(item.getTipoProductoId());
+            if (item.getGustoIds() != null) {
+                gustoIds.addAll(item.getGustoIds());
+            }
+        }
+        CatalogoCache.Seleccion catalogo = catalogoCache.seleccionar(tipoIds, gustoIds);
+        Map<Long, TipoProducto> tipos = catalogo.tipos();
+        Map<Long, Gusto> gustosPorId = catalogo.gustos();
+
+        List<PreferenceItemRequest> items = new ArrayList<>();
+        for (ItemPedidoDTO item : carrito) {
+            TipoProducto tipo = tipos.get(item.getTipoProductoId());
+            if (tipo == null) {
+                throw new RuntimeException("Tipo de producto no encontrado");
+            }
+            if (item.getCantidad() < 1) {
+                throw new RuntimeException("Error: Cantidad inválida para " + tipo.getNombre() + ".");
+            }
+
+            List<Long> idsDelItem = item.getGustoIds() != null ? item.getGustoIds() : List.of();
+            if (idsDelItem.size() > tipo.getMaxGustos()) {
+                throw new RuntimeException("Error: El producto " + tipo.getNombre()
+                        + " solo permite " + tipo.getMaxGustos() + " gustos.");
+            }
+            List<String> nombresGustos = new ArrayList<>();
+            for (Long gustoId : new LinkedHashSet<>(idsDelItem)) {
+                Gusto gusto = gustosPorId.get(gustoId);
+                if (gusto == null) {
+                    throw new RuntimeException("Error: Uno o más gustos no existen.");
+                }
+                if (!gusto.isActivo() || !gusto.isHayStock()) {
+                    throw new RuntimeException("Error: El gusto " + gusto.getNombre() + " no está disponible.");
+                }
+                nombresGustos.add(gusto.getNombre());
+            }
+
+            items.add(PreferenceItemRequest.builder()
+                    .id(String.valueOf(tipo.getId()))
+                    .title(titulo(tipo, nombresGustos))
+                    .quantity(item.getCantidad())
+                    .unitPrice(tipo.getPrecio())
+                    .currencyId("ARS")
+                    .build());
+        }
+        return items;
+    }
+
+    private static String titulo(TipoProducto tipo, List<String> nombresGustos) {
+        return nombresGustos.isEmpty() ? tipo.getNombre()
+                : tipo.getNombre() + " (" + String.join(", ", nombresGustos) + ")";
+    }
+
+    public PagosMetricasDTO metricas() {
+        long total = creadas.sum();
+        double promedioMs = total == 0 ? 0 : nanosTotales.sum() / 1e6 / total;
+        return new PagosMetricasDTO(total, errores.sum(), saturadas.sum(), promedioMs, mercadoPagoGateway.enCurso());
+    }
+}
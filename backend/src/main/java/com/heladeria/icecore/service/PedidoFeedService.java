@@ -0,0 +1,255 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.event.PedidoEvent;
+import com.heladeria.icecore.event.PedidoEventType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Canal en vivo (Server-Sent Events) para el panel de pedidos.
+// Reemplaza el polling de GET /api/pedidos: cada cambio confirmado en la BD se empuja
+// a los paneles abiertos, y un panel que se reconecta solo recibe lo que se perdió.
+@Service
+public class PedidoFeedService {
+
+    private static final long TIMEOUT_MS = 15 * 60 * 1000L;
+
+    // Cuánto espera el apagado a que el hilo del feed termine lo que ya tenía encolado
+    private static final long PLAZO_CIERRE_MS = 2_000;
+
+    // Cuántos eventos recientes se guardan para poder reanudar una conexión cortada
+    @Value("${icecore.feed.buffer:500}")
+    private int capacidadBuffer;
+
+    // Eventos que pueden esperar para un mismo panel: si su conexión no los saca, se lo desconecta
+    // (al reconectarse con su Last-Event-ID recupera lo que falte)
+    @Value("${icecore.feed.cola-por-cliente:256}")
+    private int capacidadCola;
+
+    // Un envío trabado más que esto (proxy o cliente que no lee) desconecta al panel
+    @Value("${icecore.feed.plazo-envio-ms:10000}")
+    private long plazoEnvioMs;
+
+    // Identifica a este proceso: si el servidor se reinició, los cursores anteriores no sirven
+    private final String epoca = Long.toString(System.currentTimeMillis(), 36);
+
+    // La secuencia y el buffer se tocan solo desde este hilo, así los eventos se numeran siempre en
+    // orden y sin locks. Este hilo no escribe en ninguna conexión: deja cada evento en la cola de cada
+    // panel, y el hilo (virtual) de ese panel lo envía; un panel lento no demora a los demás.
+    private final ExecutorService feedExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "pedido-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Deque<Entrada> buffer = new ArrayDeque<>();
+    private final List<Suscriptor> suscriptores = new CopyOnWriteArrayList<>();
+    private long secuencia = 0;
+
+    private record Entrada(long secuencia, PedidoEvent evento) {
+    }
+
+    // Un panel conectado: su cola de envíos y el hilo virtual que la vacía en orden
+    private final class Suscriptor {
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> cola = new ArrayBlockingQueue<>(capacidadCola);
+        private final Thread hilo;
+        private volatile long enviandoDesde; // System.nanoTime() del envío en curso, 0 si no hay
+        private volatile boolean descartado;
+
+        private Suscriptor(SseEmitter emitter) {
+            this.emitter = emitter;
+            this.hilo = Thread.ofVirtual().name("pedido-feed-cliente").unstarted(this::enviarPendientes);
+        }
+
+        private void enviarPendientes() {
+            try {
+                while (!descartado) {
+                    SseEmitter.SseEventBuilder evento = cola.take();
+                    enviandoDesde = System.nanoTime();
+                    emitter.send(evento);
+                    enviandoDesde = 0;
+                }
+            } catch (Exception e) {
+                // Conexión cerrada, o descartado (interrupt) mientras esperaba
+            } finally {
+                descartar(this);
+                try {
+                    emitter.complete();
+                } catch (Exception ignored) {
+                    // La conexión ya estaba cerrada
+                }
+            }
+        }
+
+        // Desde el hilo del feed: nunca bloquea. Un envío trabado o la cola llena = el panel no da
+        // abasto y se lo desconecta.
+        private boolean encolar(SseEmitter.SseEventBuilder evento) {
+            if (descartado || trabado() || !cola.offer(evento)) {
+                descartar(this);
+                return false;
+            }
+            return true;
+        }
+
+        private boolean trabado() {
+            long desde = enviandoDesde;
+            return desde != 0 && System.nanoTime() - desde > TimeUnit.MILLISECONDS.toNanos(plazoEnvioMs);
+        }
+    }
+
+    // cursor: último id de evento que vio el cliente ("Last-Event-ID"), o null si recién abre el panel
+    public SseEmitter suscribir(String cursor) {
+        return suscribir(cursor, new SseEmitter(TIMEOUT_MS));
+    }
+
+    SseEmitter suscribir(String cursor, SseEmitter emitter) {
+        Suscriptor suscriptor = new Suscriptor(emitter);
+        emitter.onCompletion(() -> descartar(suscriptor));
+        emitter.onTimeout(() -> descartar(suscriptor));
+        emitter.onError(e -> descartar(suscriptor));
+        suscriptor.hilo.start();
+
+        boolean enCola = enFeed(() -> {
+            if (reenviarDesde(suscriptor, cursor)) {
+                suscriptores.add(suscriptor);
+                // Se cerró mientras tanto: que no quede en la lista
+                if (suscriptor.descartado) {
+                    suscriptores.remove(suscriptor);
+                }
+            }
+        });
+        if (!enCola) {
+            descartar(suscriptor); // el servidor se está apagando: se cierra la conexión recién abierta
+        }
+        return emitter;
+    }
+
+    // AFTER_COMMIT: si la transacción hace rollback, el evento nunca llega a los paneles
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPedidoEvent(PedidoEvent evento) {
+        enFeed(() -> publicar(evento));
+    }
+
+    // Mantiene viva la conexión a través de proxies que cortan conexiones inactivas.
+    // De paso desconecta a los paneles con un envío trabado aunque no haya pedidos nuevos.
+    @Scheduled(fixedRate = 25_000)
+    public void heartbeat() {
+        enFeed(() -> {
+            for (Suscriptor suscriptor : suscriptores) {
+                suscriptor.encolar(SseEmitter.event().comment("ping"));
+            }
+        });
+    }
+
+    // Al apagar se dejan terminar las tareas ya encoladas (un momento, no más) y después se cierran
+    // las conexiones. Lo que llegue más tarde (un commit en curso, el heartbeat) se descarta en enFeed.
+    @PreDestroy
+    public void cerrar() {
+        feedExecutor.shutdown();
+        try {
+            if (!feedExecutor.awaitTermination(PLAZO_CIERRE_MS, TimeUnit.MILLISECONDS)) {
+                feedExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            feedExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        suscriptores.forEach(this::descartar);
+    }
+
+    // Todo lo que toca la secuencia y el buffer pasa por el hilo del feed. Cerrado, no hay a quién
+    // avisar: la tarea se descarta sin error (false) en lugar de tirar RejectedExecutionException
+    // en el commit de un pedido
+    private boolean enFeed(Runnable tarea) {
+        if (feedExecutor.isShutdown()) {
+            return false;
+        }
+        try {
+            feedExecutor.execute(tarea);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false; // se cerró entre la verificación y el execute
+        }
+    }
+
+    private void publicar(PedidoEvent evento) {
+        Entrada entrada = new Entrada(++secuencia, evento);
+        buffer.addLast(entrada);
+        while (buffer.size() > capacidadBuffer) {
+            buffer.removeFirst();
+        }
+        for (Suscriptor suscriptor : suscriptores) {
+            enviar(suscriptor, entrada);
+        }
+    }
+
+    // Reenvía los eventos posteriores al cursor. Devuelve false si el panel ya se descartó.
+    private boolean reenviarDesde(Suscriptor suscriptor, String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return true;
+        }
+
+        long desde = parsearCursor(cursor);
+        long masViejo = buffer.isEmpty() ? secuencia + 1 : buffer.peekFirst().secuencia();
+
+        // Cursor de otro proceso, más viejo que el buffer o con más eventos pendientes de los que entran
+        // en la cola del panel: no podemos reconstruir el delta
+        if (desde < 0 || desde > secuencia || desde < masViejo - 1 || secuencia - desde > capacidadCola) {
+            return enviar(suscriptor, new Entrada(secuencia,
+                    new PedidoEvent(PedidoEventType.RESYNC, null, null, null, null, null, null, null)));
+        }
+
+        for (Entrada entrada : buffer) {
+            if (entrada.secuencia() > desde && !enviar(suscriptor, entrada)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Formato del cursor: "<epoca>-<secuencia>". Devuelve -1 si no corresponde a este proceso.
+    private long parsearCursor(String cursor) {
+        int guion = cursor.lastIndexOf('-');
+        if (guion <= 0 || !cursor.substring(0, guion).equals(epoca)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(cursor.substring(guion + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean enviar(Suscriptor suscriptor, Entrada entrada) {
+        return suscriptor.encolar(SseEmitter.event()
+                .id(epoca + "-" + entrada.secuencia())
+                .name(entrada.evento().tipo().name())
+                .data(entrada.evento()));
+    }
+
+    // Saca al panel del feed y corta su hilo. No completa el emitter desde acá: si un envío está
+    // trabado, complete() esperaría al mismo lock; lo hace el hilo del panel al salir.
+    private void descartar(Suscriptor suscriptor) {
+        suscriptor.descartado = true;
+        suscriptores.remove(suscriptor);
+        if (Thread.currentThread() != suscriptor.hilo) {
+            suscriptor.hilo.interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.PedidoDTO;
+import com.heladeria.icecore.entity.Pedido;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Alta de pedidos idempotente (header "Idempotency-Key" del checkout).
+// Con conexiones móviles inestables el cliente reintenta o toca dos veces "confirmar":
+// cada clave ejecuta crearPedido UNA sola vez, y los duplicados que llegan mientras el
+// primero está en curso esperan ese mismo resultado en vez de validar e insertar de nuevo.
+@Service
+public class PedidoIdempotenciaService {
+
+    private static final int LARGO_MAXIMO_CLAVE = 100;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    // Máximo de claves recordadas: al pasarse se descartan primero las vencidas y después las más viejas
+    @Value("${icecore.idempotencia.capacidad:10000}")
+    private int capacidad;
+
+    // Cuánto tiempo se recuerda una clave (un reintento del checkout llega en segundos, no en horas)
+    @Value("${icecore.idempotencia.ttl-minutos:30}")
+    private long ttlMinutos;
+
+    // Cuánto espera un duplicado al pedido original antes de rendirse
+    @Value("${icecore.idempotencia.espera-segundos:30}")
+    private long esperaSegundos;
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    // dto: para detectar una clave reutilizada con otro carrito
+    private record Entrada(PedidoDTO dto, CompletableFuture<Pedido> resultado, long creadaEn) {
+    }
+
+    public Pedido crear(String clave, PedidoDTO dto) {
+        // Sin clave (clientes viejos) se comporta como antes
+        if (clave == null || clave.isBlank()) {
+            return pedidoService.crearPedido(dto);
+        }
+        if (clave.length() > LARGO_MAXIMO_CLAVE) {
+            throw new RuntimeException("Error: Idempotency-Key demasiado larga (máximo " + LARGO_MAXIMO_CLAVE + ").");
+        }
+
+        Entrada propia = new Entrada(dto, new CompletableFuture<>(), System.currentTimeMillis());
+        while (true) {
+            Entrada previa = entradas.putIfAbsent(clave, propia);
+            if (previa == null) {
+                break;
+            }
+            if (!vencida(previa, propia.creadaEn())) {
+                return esperar(previa, dto);
+            }
+            // La clave quedó de hace mucho: se reemplaza, salvo que otro hilo se adelante
+            if (entradas.replace(clave, previa, propia)) {
+                break;
+            }
+        }
+
+        if (entradas.size() > capacidad) {
+            recortar();
+        }
+
+        try {
+            Pedido pedido = pedidoService.crearPedido(dto);
+            propia.resultado().complete(pedido);
+            return pedido;
+        } catch (RuntimeException e) {
+            // Si falló (validación, BD caída) la clave se libera: el reintento vuelve a ejecutar
+            entradas.remove(clave, propia);
+            propia.resultado().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Pedido esperar(Entrada previa, PedidoDTO dto) {
+        if (!previa.dto().equals(dto)) {
+            throw new RuntimeException("Error: La Idempotency-Key ya se usó para otro pedido.");
+        }
+        try {
+            return previa.resultado().get(esperaSegundos, TimeUnit.SECONDS);
+        } catch (ExecutionException | CompletionException e) {
+            // El intento original falló: el duplicado ve el mismo error
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new RuntimeException("Error al crear el pedido.", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Error: El pedido todavía se está procesando, reintentá en unos segundos.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Error: Se interrumpió la espera del pedido.");
+        }
+    }
+
+    private boolean vencida(Entrada entrada, long ahora) {
+        // Una en curso nunca vence: si no, un pedido lento se podría ejecutar dos veces
+        return entrada.resultado().isDone()
+                && ahora - entrada.creadaEn() > TimeUnit.MINUTES.toMillis(ttlMinutos);
+    }
+
+    @Scheduled(fixedRate = 60_000)
+    public void purgarVencidas() {
+        long ahora = System.currentTimeMillis();
+        entradas.values().removeIf(entrada -> vencida(entrada, ahora));
+    }
+
+    // Se pasó la capacidad (pico de pedidos o alguien mandando claves al azar):
+    // afuera las vencidas y, si no alcanza, las terminadas más viejas hasta quedar al 90%
+    private synchronized void recortar() {
+        purgarVencidas();
+        int sobrantes = entradas.size() - capacidad * 9 / 10;
+        if (sobrantes <= 0) {
+            return;
+        }
+        entradas.entrySet().stream()
+                .filter(e -> e.getValue().resultado().isDone())
+                .sorted(Comparator.comparingLong(e -> e.getValue().creadaEn()))
+                .limit(sobrantes)
+                .toList()
+                .forEach(e -> entradas.remove(e.getKey(), e.getValue()));
+    }
+
+    int cantidadClaves() {
+        return entradas.size();
+    }
+}
@@ -1,34 +1,99 @@
 package com.heladeria.icecore.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.heladeria.icecore.dto.AsignacionResultadoDTO;
+import com.heladeria.icecore.dto.CambioEstadoLoteDTO;
+import com.heladeria.icecore.dto.CambioEstadoLoteResultadoDTO;
 import com.heladeria.icecore.dto.ItemPedidoDTO;
 import com.heladeria.icecore.dto.PedidoDTO;
+import com.heladeria.icecore.dto.PedidoFiltroDTO;
+import com.heladeria.icecore.dto.PedidoPaginaDTO;
+import com.heladeria.icecore.dto.PedidoResumenDTO;
+import com.heladeria.icecore.dto.TransicionEstadoDTO;
+import com.heladeria.icecore.entity.EstadoPedido;
 import com.heladeria.icecore.entity.Gusto;
 import com.heladeria.icecore.entity.ItemPedido;
+import com.heladeria.icecore.entity.PagoOutbox;
 import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.Repartidor;
 import com.heladeria.icecore.entity.TipoProducto;
-import com.heladeria.icecore.repository.GustoRepository;
+import com.heladeria.icecore.entity.VueltaReparto;
+import com.heladeria.icecore.event.PedidoEvent;
+import com.heladeria.icecore.repository.PagoOutboxRepository;
 import com.heladeria.icecore.repository.PedidoRepository;
-import com.heladeria.icecore.repository.TipoProductoRepository;
+import com.heladeria.icecore.repository.VueltaRepartoRepository;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.heladeria.icecore.repository.PedidoSpecifications.*;
 
 @Service
 public class PedidoService {
 
+    // Estados que todavía le importan al panel (los que faltan preparar o entregar)
+    public static final List<EstadoPedido> ESTADOS_ABIERTOS = List.of(EstadoPedido.PENDIENTE,
+            EstadoPedido.EN_PREPARACION, EstadoPedido.LISTO, EstadoPedido.EN_CAMINO);
+
+    // Valor de metodoPago que usa el checkout para pagar con Mercado Pago
+    public static final String METODO_MERCADO_PAGO = "mercadopago";
+
+    private static final int LIMITE_POR_DEFECTO = 50;
+    private static final int LIMITE_MAXIMO = 200;
+
     @Autowired
     private PedidoRepository pedidoRepository;
 
+    // Tipos y gustos se validan contra la caché del catálogo, sin ir a la BD por cada item
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    // Los eventos se transmiten al panel en vivo recién cuando la transacción hace commit
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PagoOutboxRepository pagoOutboxRepository;
+
+    @Autowired
+    private FranjasEntregaService franjasEntregaService;
+
+    @Autowired
+    private InventarioService inventarioService;
+
+    @Autowired
+    private TokenPagoService tokenPagoService;
+
+    // Repartidores en memoria: asignar no consulta la tabla de repartidores
+    @Autowired
+    private RepartidorService repartidorService;
+
+    @Autowired
+    private VueltaRepartoRepository vueltaRepartoRepository;
+
+    // Ventas agregadas: cada alta o cancelación suma / resta su parte al hacer commit
     @Autowired
-    private TipoProductoRepository tipoProductoRepository;
+    private AnaliticaService analiticaService;
 
+    // Cambios de estado en lote: un batch JDBC de UPDATE en lugar de uno por pedido
     @Autowired
-    private GustoRepository gustoRepository;
+    private JdbcTemplate jdbcTemplate;
 
     // @Transactional: Asegura que si algo falla a mitad de camino, NO se guarde
     // nada en la BD (rollback).
@@ -44,15 +109,33 @@ public class PedidoService {
         pedido.setMetodoPago(pedidoDTO.getMetodoPago());
         pedido.setHoraEntrega(pedidoDTO.getHoraEntrega());
 
+        if (pedidoDTO.getItems() == null || pedidoDTO.getItems().isEmpty()) {
+            throw new RuntimeException("Error: El pedido no tiene productos.");
+        }
+
+        // 2. Juntamos TODOS los ids del carrito y los resolvemos de una sola vez
+        // (catálogo en memoria; si falta alguno, a lo sumo una consulta para tipos y otra para gustos),
+        // así el costo no crece con la cantidad de potes.
+        Set<Long> tipoIds = new HashSet<>();
+        Set<Long> gustoIds = new HashSet<>();
+        for (ItemPedidoDTO itemDTO : pedidoDTO.getItems()) {
+            tipoIds.add(itemDTO.getTipoProductoId());
+            gustoIds.addAll(gustosDe(itemDTO));
+        }
+        CatalogoCache.Seleccion catalogo = catalogoCache.seleccionar(tipoIds, gustoIds);
+        Map<Long, TipoProducto> tipos = catalogo.tipos();
+        Map<Long, Gusto> gustosPorId = catalogo.gustos();
+
         BigDecimal total = BigDecimal.ZERO;
         List<ItemPedido> items = new ArrayList<>();
 
-        // 2. Recorremos los ítems que nos mandaron (los potes)
+        // 3. Recorremos los ítems que nos mandaron (los potes) validando contra los mapas
         for (ItemPedidoDTO itemDTO : pedidoDTO.getItems()) {
 
-            // Buscamos el tipo de producto en la BD
-            TipoProducto tipo = tipoProductoRepository.findById(itemDTO.getTipoProductoId())
-                    .orElseThrow(() -> new RuntimeException("Tipo de producto no encontrado"));
+            TipoProducto tipo = tipos.get(itemDTO.getTipoProductoId());
+            if (tipo == null) {
+                throw new RuntimeException("Tipo de producto no encontrado");
+            }
 
             if (!tipo.getEsPorPeso()) {
                 if (itemDTO.getCantidad() < 5) {
@@ -63,21 +146,28 @@ public class PedidoService {
 
             // --- LÓGICA DE NEGOCIO PRINCIPAL ---
             // Validamos que la cantidad de gustos elegidos no supere la capacidad del pote
-            if (itemDTO.getGustoIds().size() > tipo.getMaxGustos()) {
+            List<Long> idsDelItem = gustosDe(itemDTO);
+            if (idsDelItem.size() > tipo.getMaxGustos()) {
                 throw new RuntimeException("Error: El producto " + tipo.getNombre()
                         + " solo permite " + tipo.getMaxGustos() + " gustos.");
             }
 
-            // Buscamos todos los gustos elgidos en la BD
-            List<Gusto> gustos = gustoRepository.findAllById(itemDTO.getGustoIds());
-
-            // Validamos que existan todos
-            if (gustos.size() != itemDTO.getGustoIds().size()) {
+            // Validamos que existan todos (sin repetidos) y que se puedan vender hoy
+            List<Gusto> gustos = new ArrayList<>();
+            for (Long gustoId : new LinkedHashSet<>(idsDelItem)) {
+                Gusto gusto = gustosPorId.get(gustoId);
+                if (gusto == null) {
+                    throw new RuntimeException("Error: Uno o más gustos no existen.");
+                }
+                if (!gusto.isActivo() || !gusto.isHayStock()) {
+                    throw new RuntimeException("Error: El gusto " + gusto.getNombre() + " no está disponible.");
+                }
+                gustos.add(gusto);
+            }
+            if (gustos.size() != idsDelItem.size()) {
                 throw new RuntimeException("Error: Uno o más gustos no existen.");
             }
 
-            // (Opcional) Validar stock o si están activos aquí
-
             // Creamos el ItemPedido real
             ItemPedido item = new ItemPedido();
             item.setPedido(pedido); // Vinculamos con el padre
@@ -109,54 +199,521 @@ public class PedidoService {
                     + totalCuartoKilo + ").");
         }
 
-        // 3. Asignamos los items y el precio total al pedido
+        // 4. Asignamos los items y el precio total al pedido
         pedido.setItems(items);
         pedido.setPrecioTotal(total);
 
-        // 4. Guardamos todo en la BD
-        return pedidoRepository.save(pedido);
+        // Franja de entrega con cupo: se toma el lugar recién ahora, con el pedido ya validado
+        // (si algo falla de acá al commit, FranjasEntregaService lo devuelve). Un cliente que solo manda
+        // horaEntrega ocupa la franja de esa hora igual que si la hubiera elegido
+        LocalDateTime franja = pedidoDTO.getFranjaEntrega();
+        if (franja == null && pedidoDTO.getHoraEntrega() != null && !pedidoDTO.getHoraEntrega().isBlank()) {
+            franja = franjasEntregaService.franjaDe(pedidoDTO.getHoraEntrega()).orElse(null);
+        }
+        if (franja != null) {
+            franjasEntregaService.reservar(franja);
+            pedido.setFranjaEntrega(franja);
+            pedido.setHoraEntrega(franjasEntregaService.etiqueta(franja));
+        }
+
+        // Descuento de stock en gramos: un lote de UPDATE condicionales en esta misma transacción
+        // (si no alcanza para algún gusto, se cancela el pedido entero)
+        inventarioService.descontar(inventarioService.consumo(items), gustosPorId);
+
+        boolean pagaConMercadoPago = METODO_MERCADO_PAGO.equalsIgnoreCase(pedido.getMetodoPago());
+        if (pagaConMercadoPago) {
+            pedido.setEstadoPago("PENDIENTE");
+        }
+
+        // 5. Guardamos todo en la BD
+        Pedido guardado = pedidoRepository.save(pedido);
+
+        // La preferencia de Mercado Pago se crea en segundo plano (PagosOutboxWorker):
+        // el cliente no espera a la API de pagos, y la tarea queda en la misma transacción que el pedido
+        if (pagaConMercadoPago) {
+            PagoOutbox tarea = new PagoOutbox();
+            tarea.setPedidoId(guardado.getId());
+            pagoOutboxRepository.save(tarea);
+            guardado.setTokenPago(tokenPagoService.generar(guardado.getId()));
+        }
+
+        analiticaService.registrar(guardado, 1);
+        eventPublisher.publishEvent(PedidoEvent.creado(guardado));
+        return guardado;
     }
 
-    public List<Pedido> findAll() {
-        return pedidoRepository.findAll();
+    private static List<Long> gustosDe(ItemPedidoDTO itemDTO) {
+        return itemDTO.getGustoIds() != null ? itemDTO.getGustoIds() : List.of();
     }
 
-    public Pedido updateEstado(Long id, String nuevoEstado) {
-        Pedido pedido = pedidoRepository.findById(id)
+    // Listados: siempre proyecciones (PedidoResumenDTO), ordenadas por (fecha DESC, id DESC).
+    // Sin filtro, solo la primera página de buscar (los más recientes): el historial completo no se
+    // devuelve de una vez (para recorrerlo: buscar con cursor, o la exportación)
+    @Transactional(readOnly = true)
+    public List<PedidoResumenDTO> findAll() {
+        return pedidoRepository.buscarResumenes(null, LIMITE_POR_DEFECTO);
+    }
+
+    // Pedidos de hoy que siguen abiertos: lo único que necesita el panel en vivo
+    @Transactional(readOnly = true)
+    public List<PedidoResumenDTO> findAbiertosDeHoy() {
+        Specification<Pedido> spec = Specification.allOf(
+                conEstados(ESTADOS_ABIERTOS),
+                desde(LocalDate.now().atStartOfDay()));
+        return pedidoRepository.buscarResumenes(spec, 0);
+    }
+
+    // Pedidos de hoy listos para armar una vuelta de reparto: LISTO y sin repartidor
+    @Transactional(readOnly = true)
+    public List<PedidoResumenDTO> findParaDespachar() {
+        Specification<Pedido> spec = Specification.allOf(
+                conEstados(List.of(EstadoPedido.LISTO)),
+                desde(LocalDate.now().atStartOfDay()),
+                sinRepartidor());
+        return pedidoRepository.buscarResumenes(spec, 0);
+    }
+
+    // Consulta filtrada y paginada por keyset (fecha DESC, id DESC), sin OFFSET.
+    // Pide un registro de más para saber si existe una página siguiente sin hacer COUNT.
+    @Transactional(readOnly = true)
+    public PedidoPaginaDTO<PedidoResumenDTO> buscar(PedidoFiltroDTO filtro) {
+        int limite = filtro.getLimite() == null
+                ? LIMITE_POR_DEFECTO
+                : Math.max(1, Math.min(filtro.getLimite(), LIMITE_MAXIMO));
+
+        LocalDateTime cursorFecha = null;
+        Long cursorId = null;
+        if (filtro.getCursor() != null && !filtro.getCursor().isBlank()) {
+            String[] partes = filtro.getCursor().split("_");
+            try {
+                cursorFecha = LocalDateTime.parse(partes[0]);
+                cursorId = Long.parseLong(partes[1]);
+            } catch (DateTimeParseException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new RuntimeException("Cursor inválido: " + filtro.getCursor());
+            }
+        }
+
+        Specification<Pedido> spec = Specification.allOf(
+                conEstados(filtro.getEstado()),
+                desde(filtro.getDesde()),
+                hasta(filtro.getHasta()),
+                conRepartidor(filtro.getRepartidorId()),
+                conMetodoPago(filtro.getMetodoPago()),
+                anteriorA(cursorFecha, cursorId));
+
+        List<PedidoResumenDTO> pagina = pedidoRepository.buscarResumenes(spec, limite + 1);
+
+        String siguienteCursor = null;
+        if (pagina.size() > limite) {
+            pagina = pagina.subList(0, limite);
+            PedidoResumenDTO ultimo = pagina.get(limite - 1);
+            siguienteCursor = ultimo.fecha() + "_" + ultimo.id();
+        }
+        return new PedidoPaginaDTO<>(pagina, siguienteCursor);
+    }
+
+    // Un paso de la máquina de estados (ver EstadoPedido) en un solo UPDATE condicional, sin cargar el pedido.
+    // "actual" es el estado que tenía el pedido en la pantalla de quien lo cambia (el panel lo manda):
+    // si en la BD ya no está así, otro cambio ganó de mano y se responde 409 en lugar de pisarlo.
+    // Sin "actual" se lee el estado primero (una consulta más) y se reintenta una vez si cambió en el medio.
+    @Transactional
+    public TransicionEstadoDTO updateEstado(Long id, EstadoPedido nuevo, EstadoPedido actual) {
+        if (nuevo == null) {
+            throw new RuntimeException("Error: Falta el estado del pedido.");
+        }
+        EstadoPedido anterior = actual != null ? actual : estadoDe(id);
+        for (int intento = 1; ; intento++) {
+            if (anterior != nuevo && !anterior.puedePasarA(nuevo)) {
+                throw new RuntimeException("Error: Un pedido " + anterior + " no puede pasar a " + nuevo + ".");
+            }
+            if (pedidoRepository.cambiarEstado(id, nuevo, List.of(anterior)) == 1) {
+                break;
+            }
+            // Ninguna fila: el pedido no existe o ya no está en "anterior"
+            EstadoPedido enBd = estadoDe(id);
+            if (enBd == nuevo) {
+                return new TransicionEstadoDTO(id, nuevo, nuevo); // otro hizo el mismo cambio
+            }
+            if (actual != null || intento >= 2) {
+                throw new ReintentosOptimistas.CambioConcurrenteException();
+            }
+            anterior = enBd;
+        }
+        if (anterior == nuevo) {
+            // El UPDATE no cambió nada (ya estaba así): ni efectos ni aviso
+            return new TransicionEstadoDTO(id, anterior, nuevo);
+        }
+        aplicarEfectos(id, anterior, nuevo);
+        eventPublisher.publishEvent(PedidoEvent.transicion(id, anterior, nuevo));
+        return new TransicionEstadoDTO(id, anterior, nuevo);
+    }
+
+    private EstadoPedido estadoDe(Long id) {
+        return pedidoRepository.buscarEstado(id)
                 .orElseThrow(() -> new RuntimeException("Pedido no encontrado id: " + id));
-        pedido.setEstado(nuevoEstado);
-        return pedidoRepository.save(pedido);
     }
 
-    @Autowired
-    private com.heladeria.icecore.repository.RepartidorRepository repartidorRepository;
+    // Lo que arrastra un cambio de estado ya aplicado. El UPDATE dejó el pedido bloqueado hasta el commit
+    // (y se bloquea antes que la vuelta, como al finalizarla). Los pasos del día a día
+    // (PENDIENTE -> EN_PREPARACION -> LISTO -> EN_CAMINO) no tocan nada más.
+    private void aplicarEfectos(Long id, EstadoPedido anterior, EstadoPedido nuevo) {
+        // Cancelar devuelve el lugar de la franja de entrega y los gramos de helado, y deja de contar en
+        // las ventas (reactivarlo vuelve a ocupar la franja, a descontar el stock y a sumar). Es el único
+        // paso que carga el pedido: las ventas y el stock se calculan por tipo y por gusto
+        boolean quedaCancelado = nuevo == EstadoPedido.CANCELADO;
+        if ((anterior == EstadoPedido.CANCELADO) != quedaCancelado) {
+            cancelacionCambiada(id, quedaCancelado);
+        }
+        // Entregar un pedido en efectivo de una vuelta suma a lo que tiene que rendir el repartidor,
+        // mientras la vuelta siga en la calle. Reabrir un entregado solo se puede mientras su vuelta siga
+        // en la calle: sin vuelta o con la vuelta ya rendida se rechaza (la excepción deshace también el
+        // UPDATE del pedido); entregar uno tarde no toca esa caja.
+        boolean quedaEntregado = nuevo == EstadoPedido.ENTREGADO;
+        if ((anterior == EstadoPedido.ENTREGADO) != quedaEntregado) {
+            Object[] caja = pedidoRepository.buscarDatosDeCaja(id).get(0);
+            Long vueltaId = (Long) caja[0];
+            boolean efectivo = pagaEnEfectivo((String) caja[1]);
+            if (vueltaId == null && !quedaEntregado) {
+                throw new RuntimeException("Error: Solo se puede reabrir un pedido entregado en una vuelta de reparto.");
+            }
+            if (vueltaId != null && (efectivo || !quedaEntregado)) {
+                BigDecimal monto = efectivo && caja[2] != null ? (BigDecimal) caja[2] : BigDecimal.ZERO;
+                int pedidos = efectivo ? 1 : 0;
+                int filas = vueltaRepartoRepository.sumarEfectivo(vueltaId,
+                        quedaEntregado ? monto : monto.negate(), quedaEntregado ? pedidos : -pedidos);
+                if (filas == 0 && !quedaEntregado) {
+                    throw new ReintentosOptimistas.CambioConcurrenteException(
+                            "Error: La vuelta del pedido ya se rindió: no se puede reabrir.");
+                }
+            }
+        }
+    }
 
-    public com.heladeria.icecore.entity.Repartidor findRepartidorByName(String nombre) {
-        // Implement logic to find repartidor by name if needed, or change
-        // updateRepartidor logic
-        // For simplicity, let's assume updateRepartidor now takes ID or we find by name
-        return repartidorRepository.findAll().stream()
-                .filter(r -> r.getNombre().equalsIgnoreCase(nombre))
-                .findFirst()
-                .orElse(null);
+    private void cancelacionCambiada(Long id, boolean quedaCancelado) {
+        Pedido pedido = pedidoRepository.findConDetalleById(id)
+                .orElseThrow(() -> new RuntimeException("Pedido no encontrado id: " + id));
+        Map<Long, Integer> consumo = inventarioService.consumo(pedido.getItems());
+        if (quedaCancelado) {
+            inventarioService.reponer(consumo);
+        } else {
+            // Si mientras tanto se vendió lo que quedaba, no se puede reactivar (rollback del cambio)
+            Map<Long, Gusto> gustosPorId = new HashMap<>();
+            for (ItemPedido item : pedido.getItems()) {
+                item.getGustos().forEach(gusto -> gustosPorId.put(gusto.getId(), gusto));
+            }
+            inventarioService.descontar(consumo, gustosPorId);
+        }
+        if (pedido.getFranjaEntrega() != null) {
+            if (quedaCancelado) {
+                franjasEntregaService.liberar(pedido.getFranjaEntrega());
+            } else {
+                franjasEntregaService.ocupar(pedido.getFranjaEntrega());
+            }
+        }
+        analiticaService.registrar(pedido, quedaCancelado ? -1 : 1);
+    }
+
+    // Varios cambios de estado del tablero (hora pico: marcar listos / entregados de a muchos) en una
+    // transacción: una lectura que bloquea todos los pedidos, un batch de UPDATE condicionales y un solo
+    // aviso al panel. Cada cambio se valida igual que en updateEstado y se informa por separado:
+    // uno que no existe o no puede pasar al estado pedido no frena a los demás.
+    @Transactional
+    public CambioEstadoLoteResultadoDTO cambiarEstados(List<CambioEstadoLoteDTO.Cambio> cambios) {
+        if (cambios == null || cambios.isEmpty()) {
+            throw new RuntimeException("Error: No hay cambios de estado.");
+        }
+        if (cambios.size() > LIMITE_MAXIMO) {
+            throw new RuntimeException("Error: No se pueden cambiar más de " + LIMITE_MAXIMO + " pedidos a la vez.");
+        }
+        Set<Long> ids = new HashSet<>();
+        for (CambioEstadoLoteDTO.Cambio cambio : cambios) {
+            if (cambio.getPedidoId() != null) {
+                ids.add(cambio.getPedidoId());
+            }
+        }
+        Map<Long, Object[]> filas = new HashMap<>();
+        Set<Long> vueltas = new HashSet<>();
+        if (!ids.isEmpty()) {
+            for (Object[] fila : pedidoRepository.bloquearParaCambioDeEstado(ids)) {
+                filas.put(((Number) fila[0]).longValue(), fila);
+                if (fila[2] != null) {
+                    vueltas.add(((Number) fila[2]).longValue());
+                }
+            }
+        }
+        // Solo la caja de una vuelta en la calle se toca; una ya rendida no se reabre (ver aplicarEfectos)
+        Set<Long> vueltasEnCalle = vueltas.isEmpty() ? Set.of()
+                : new HashSet<>(vueltaRepartoRepository.bloquearEnCalle(vueltas));
+        // Reactivar un cancelado vuelve a descontar su helado: cada renglón se valida contra el stock
+        // bloqueado (pedidos, vueltas y después gustos), así uno que ya no alcanza se rechaza solo
+        // en lugar de hacer fallar el descuento y con él todo el lote
+        Map<Long, Pedido> cancelados = new HashMap<>();
+        Map<Long, Integer> saldo = Map.of();
+        List<Long> idsCancelados = filas.values().stream()
+                .filter(fila -> EstadoPedido.CANCELADO.name().equals(fila[1]))
+                .map(fila -> ((Number) fila[0]).longValue())
+                .toList();
+        if (!idsCancelados.isEmpty()) {
+            Set<Long> gustos = new HashSet<>();
+            for (Pedido pedido : pedidoRepository.findConDetalleByIdIn(idsCancelados)) {
+                cancelados.put(pedido.getId(), pedido);
+                gustos.addAll(inventarioService.consumo(pedido.getItems()).keySet());
+            }
+            saldo = inventarioService.bloquearSaldo(gustos);
+        }
+
+        List<CambioEstadoLoteResultadoDTO.Resultado> resultados = new ArrayList<>();
+        List<TransicionEstadoDTO> transiciones = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>(); // renglón de "resultados" de cada transición
+        Set<Long> vistos = new HashSet<>();
+        for (CambioEstadoLoteDTO.Cambio cambio : cambios) {
+            Long id = cambio.getPedidoId();
+            try {
+                if (id == null) {
+                    throw new RuntimeException("Error: Falta el id del pedido.");
+                }
+                if (!vistos.add(id)) {
+                    throw new RuntimeException("Error: El pedido " + id + " está más de una vez en el lote.");
+                }
+                Object[] fila = filas.get(id);
+                if (fila == null) {
+                    throw new RuntimeException("Pedido no encontrado id: " + id);
+                }
+                EstadoPedido nuevo = EstadoPedido.desde(cambio.getEstado());
+                EstadoPedido anterior = EstadoPedido.valueOf((String) fila[1]);
+                if (anterior != nuevo) {
+                    if (cambio.getActual() != null && EstadoPedido.desde(cambio.getActual()) != anterior) {
+                        throw new RuntimeException("Error: El pedido " + id + " ya está " + anterior + ".");
+                    }
+                    if (!anterior.puedePasarA(nuevo)) {
+                        throw new RuntimeException("Error: Un pedido " + anterior + " no puede pasar a " + nuevo + ".");
+                    }
+                    if (anterior == EstadoPedido.ENTREGADO && fila[2] == null) {
+                        throw new RuntimeException("Error: Solo se puede reabrir un pedido entregado en una vuelta de reparto.");
+                    }
+                    if (anterior == EstadoPedido.ENTREGADO && !vueltasEnCalle.contains(((Number) fila[2]).longValue())) {
+                        throw new RuntimeException("Error: La vuelta del pedido " + id + " ya se rindió: no se puede reabrir.");
+                    }
+                    if (anterior == EstadoPedido.CANCELADO) {
+                        reservarStock(cancelados.get(id), saldo);
+                    }
+                    transiciones.add(new TransicionEstadoDTO(id, anterior, nuevo));
+                    indices.add(resultados.size());
+                }
+                resultados.add(new CambioEstadoLoteResultadoDTO.Resultado(id, anterior, nuevo, null));
+            } catch (RuntimeException e) {
+                resultados.add(new CambioEstadoLoteResultadoDTO.Resultado(id, null, null, e.getMessage()));
+            }
+        }
+
+        List<TransicionEstadoDTO> aplicadas = new ArrayList<>();
+        if (!transiciones.isEmpty()) {
+            // Las filas quedaron bloqueadas por la lectura, así que la guarda "AND estado = ?" no debería
+            // fallar; si igual no tocó la fila, ese pedido se informa como rechazado y no arrastra efectos
+            int[] actualizadas = jdbcTemplate.batchUpdate("UPDATE pedidos SET estado = ? WHERE id = ? AND estado = ?",
+                    transiciones.stream()
+                            .map(t -> new Object[] { t.estado().name(), t.pedidoId(), t.anterior().name() })
+                            .toList());
+            for (int i = 0; i < transiciones.size(); i++) {
+                TransicionEstadoDTO transicion = transiciones.get(i);
+                if (actualizadas[i] == 0) {
+                    resultados.set(indices.get(i), new CambioEstadoLoteResultadoDTO.Resultado(transicion.pedidoId(),
+                            null, null, "Error: El pedido " + transicion.pedidoId() + " cambió mientras se procesaba el lote."));
+                } else {
+                    aplicadas.add(transicion);
+                }
+            }
+        }
+        if (!aplicadas.isEmpty()) {
+            efectosDelLote(aplicadas, filas, vueltasEnCalle);
+            eventPublisher.publishEvent(PedidoEvent.estadosCambiados(aplicadas));
+        }
+
+        int rechazados = (int) resultados.stream().filter(r -> r.error() != null).count();
+        return new CambioEstadoLoteResultadoDTO(resultados.size() - rechazados, rechazados, resultados);
     }
 
-    public Pedido updateRepartidor(Long id, String nombreRepartidor) {
+    // Aparta del saldo bloqueado el helado de un pedido cancelado que se reactiva en el lote
+    private void reservarStock(Pedido pedido, Map<Long, Integer> saldo) {
+        Long faltante = inventarioService.reservar(inventarioService.consumo(pedido.getItems()), saldo);
+        if (faltante != null) {
+            String nombre = pedido.getItems().stream()
+                    .flatMap(item -> item.getGustos().stream())
+                    .filter(gusto -> gusto.getId().equals(faltante))
+                    .map(Gusto::getNombre)
+                    .findFirst().orElse("stock");
+            throw new RuntimeException("Error: No queda suficiente " + nombre + " para reactivar el pedido "
+                    + pedido.getId() + ".");
+        }
+    }
+
+    // Igual que aplicarEfectos, con los datos ya leídos: el efectivo entregado se suma con un UPDATE
+    // por vuelta (no por pedido), en orden de id, y solo en las vueltas que siguen en la calle
+    private void efectosDelLote(List<TransicionEstadoDTO> transiciones, Map<Long, Object[]> filas,
+            Set<Long> vueltasEnCalle) {
+        Map<Long, BigDecimal> efectivoPorVuelta = new TreeMap<>();
+        Map<Long, Integer> pedidosPorVuelta = new HashMap<>();
+        for (TransicionEstadoDTO transicion : transiciones) {
+            boolean quedaCancelado = transicion.estado() == EstadoPedido.CANCELADO;
+            if ((transicion.anterior() == EstadoPedido.CANCELADO) != quedaCancelado) {
+                cancelacionCambiada(transicion.pedidoId(), quedaCancelado);
+            }
+            boolean quedaEntregado = transicion.estado() == EstadoPedido.ENTREGADO;
+            Object[] fila = filas.get(transicion.pedidoId());
+            if ((transicion.anterior() == EstadoPedido.ENTREGADO) != quedaEntregado && fila[2] != null
+                    && vueltasEnCalle.contains(((Number) fila[2]).longValue()) && pagaEnEfectivo((String) fila[3])) {
+                Long vueltaId = ((Number) fila[2]).longValue();
+                BigDecimal monto = fila[4] != null ? (BigDecimal) fila[4] : BigDecimal.ZERO;
+                efectivoPorVuelta.merge(vueltaId, quedaEntregado ? monto : monto.negate(), BigDecimal::add);
+                pedidosPorVuelta.merge(vueltaId, quedaEntregado ? 1 : -1, Integer::sum);
+            }
+        }
+        efectivoPorVuelta.forEach((vueltaId, monto) ->
+                vueltaRepartoRepository.sumarEfectivo(vueltaId, monto, pedidosPorVuelta.get(vueltaId)));
+    }
+
+    // La preferencia de Mercado Pago está lista: el cliente ya puede ir a pagar (ver PagosOutboxWorker)
+    @Transactional
+    public Pedido registrarPreferencia(Long id, String preferenciaId, String initPoint) {
         Pedido pedido = pedidoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Pedido no encontrado id: " + id));
+        pedido.setPreferenciaId(preferenciaId);
+        pedido.setInitPoint(initPoint);
+        // Si el webhook del pago llegó antes, no se pisa su resultado
+        if (pedido.getEstadoPago() == null || "PENDIENTE".equals(pedido.getEstadoPago())) {
+            pedido.setEstadoPago("ESPERANDO_PAGO");
+        }
+        eventPublisher.publishEvent(PedidoEvent.pagoActualizado(pedido));
+        return pedido;
+    }
+
+    // Estado del pago informado por Mercado Pago (webhook) o ERROR si no se pudo crear la preferencia
+    @Transactional
+    public Pedido actualizarPago(Long id, String estadoPago, String pagoId) {
+        Pedido pedido = pedidoRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Pedido no encontrado id: " + id));
+        if (estadoPago.equals(pedido.getEstadoPago()) && (pagoId == null || pagoId.equals(pedido.getPagoId()))) {
+            return pedido; // Notificación repetida: nada que cambiar
+        }
+        pedido.setEstadoPago(estadoPago);
+        if (pagoId != null) {
+            pedido.setPagoId(pagoId);
+        }
+        eventPublisher.publishEvent(PedidoEvent.pagoActualizado(pedido));
+        return pedido;
+    }
 
-        if (nombreRepartidor != null && !nombreRepartidor.isEmpty()) {
-            com.heladeria.icecore.entity.Repartidor rep = findRepartidorByName(nombreRepartidor);
-            if (rep == null) {
-                // If not found, maybe create or throw? For now, throw.
-                throw new RuntimeException("Repartidor no encontrado: " + nombreRepartidor);
+    // Asignar por id (o por nombre, para clientes viejos); null / vacío = quitar el repartidor.
+    // Asignar despacha un pedido LISTO (pasa a EN_CAMINO); quitarlo de un pedido en camino lo vuelve a LISTO.
+    // Igual que updateEstado: un UPDATE condicional sobre el estado leído, sin cargar el pedido.
+    @Transactional
+    public TransicionEstadoDTO updateRepartidor(Long id, Long repartidorId, String nombreRepartidor) {
+        Repartidor repartidor = null;
+        if (repartidorId != null) {
+            repartidor = repartidorService.porId(repartidorId);
+        } else if (nombreRepartidor != null && !nombreRepartidor.isEmpty()) {
+            repartidor = repartidorService.porNombre(nombreRepartidor);
+        }
+
+        EstadoPedido anterior = estadoDe(id);
+        EstadoPedido nuevo;
+        if (repartidor != null) {
+            if (anterior != EstadoPedido.LISTO) {
+                throw new RuntimeException("Error: Un pedido " + anterior + " no se puede despachar.");
+            }
+            // Como en el despacho de una vuelta: uno que volvió a LISTO sigue contando en su vuelta en calle
+            Long vueltaId = (Long) pedidoRepository.buscarDatosDeCaja(id).get(0)[0];
+            if (vueltaId != null && vueltaRepartoRepository.existsByIdAndEstado(vueltaId, VueltaReparto.EN_CALLE)) {
+                throw new RuntimeException("Error: El pedido " + id
+                        + " es de una vuelta que sigue en la calle. Finalizala antes de despacharlo.");
             }
-            pedido.setRepartidor(rep);
-            pedido.setEstado("EN_CAMINO");
+            nuevo = EstadoPedido.EN_CAMINO;
         } else {
-            pedido.setRepartidor(null);
+            nuevo = anterior == EstadoPedido.EN_CAMINO ? EstadoPedido.LISTO : anterior;
+        }
+        if (pedidoRepository.cambiarRepartidor(id, repartidor, nuevo, anterior) == 0) {
+            throw new ReintentosOptimistas.CambioConcurrenteException();
         }
 
-        return pedidoRepository.save(pedido);
+        eventPublisher.publishEvent(PedidoEvent.repartidorAsignado(id, anterior, nuevo,
+                repartidor != null ? repartidor.getNombre() : null, null));
+        return new TransicionEstadoDTO(id, anterior, nuevo);
+    }
+
+    // Despacho de una vuelta: todos los pedidos al mismo repartidor en una transacción y un solo UPDATE.
+    // Solo salen los pedidos LISTO (ver buscarDespachables); los demás se informan como omitidos.
+    @Transactional
+    public AsignacionResultadoDTO asignarRepartidor(List<Long> pedidoIds, Long repartidorId) {
+        return asignarRepartidor(pedidoIds, repartidorId, null);
+    }
+
+    // Igual, pero dejando los pedidos asociados a una vuelta de reparto (ver VueltaRepartoService)
+    @Transactional
+    public AsignacionResultadoDTO asignarRepartidor(List<Long> pedidoIds, Long repartidorId, Long vueltaId) {
+        if (repartidorId == null) {
+            throw new RuntimeException("Error: Falta el repartidor.");
+        }
+        if (pedidoIds == null || pedidoIds.isEmpty()) {
+            throw new RuntimeException("Error: No hay pedidos para asignar.");
+        }
+        if (pedidoIds.size() > LIMITE_MAXIMO) {
+            throw new RuntimeException("Error: No se pueden asignar más de " + LIMITE_MAXIMO + " pedidos a la vez.");
+        }
+        Repartidor repartidor = repartidorService.porId(repartidorId);
+        Set<Long> pedidos = new LinkedHashSet<>(pedidoIds);
+
+        List<Long> asignados = new ArrayList<>();
+        List<PedidoEvent> eventos = new ArrayList<>();
+        BigDecimal montoTotal = BigDecimal.ZERO;
+        for (Object[] fila : pedidoRepository.buscarDespachables(pedidos)) {
+            Long id = ((Number) fila[0]).longValue();
+            asignados.add(id);
+            eventos.add(PedidoEvent.repartidorAsignado(id, EstadoPedido.valueOf((String) fila[4]),
+                    EstadoPedido.EN_CAMINO, repartidor.getNombre(), (String) fila[1]));
+            if (fila[2] != null) {
+                montoTotal = montoTotal.add((BigDecimal) fila[2]);
+            }
+        }
+        if (!asignados.isEmpty()) {
+            pedidoRepository.asignarRepartidor(asignados, repartidor, vueltaId);
+            eventos.forEach(eventPublisher::publishEvent);
+        }
+
+        List<Long> omitidos = pedidos.stream().filter(id -> !asignados.contains(id)).toList();
+        return new AsignacionResultadoDTO(repartidor.getId(), repartidor.getNombre(), asignados, omitidos,
+                montoTotal);
+    }
+
+    // Pedidos de una vuelta que se dieron por entregados al finalizarla, y el efectivo que sumaron
+    public record Entregados(List<Long> pedidoIds, BigDecimal efectivo, int pedidosEfectivo) {
+    }
+
+    // El repartidor volvió: lo que seguía en camino en su vuelta queda entregado (un solo UPDATE)
+    @Transactional
+    public Entregados entregarVuelta(Long vueltaId, String nombreRepartidor) {
+        List<Long> ids = new ArrayList<>();
+        List<PedidoEvent> eventos = new ArrayList<>();
+        BigDecimal efectivo = BigDecimal.ZERO;
+        int pedidosEfectivo = 0;
+        for (Object[] fila : pedidoRepository.buscarEnCaminoDeVuelta(vueltaId)) {
+            Long id = ((Number) fila[0]).longValue();
+            ids.add(id);
+            eventos.add(PedidoEvent.estadoCambiado(id, EstadoPedido.EN_CAMINO, EstadoPedido.ENTREGADO,
+                    nombreRepartidor, (String) fila[1]));
+            if (pagaEnEfectivo((String) fila[3])) {
+                efectivo = efectivo.add(fila[2] != null ? (BigDecimal) fila[2] : BigDecimal.ZERO);
+                pedidosEfectivo++;
+            }
+        }
+        if (!ids.isEmpty()) {
+            pedidoRepository.marcarEntregados(ids);
+            eventos.forEach(eventPublisher::publishEvent);
+        }
+        return new Entregados(ids, efectivo, pedidosEfectivo);
+    }
+
+    // Lo que el repartidor cobra en mano (Mercado Pago y transferencias no pasan por su caja)
+    public static boolean pagaEnEfectivo(String metodoPago) {
+        return metodoPago != null && metodoPago.equalsIgnoreCase("efectivo");
     }
 }
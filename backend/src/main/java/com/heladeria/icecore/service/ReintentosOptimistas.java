@@ -0,0 +1,46 @@
+package com.heladeria.icecore.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+// Ejecuta un "leer - modificar - guardar" sobre entidades con @Version (gustos, tipos de producto).
+// Si otra escritura ganó de mano (la versión ya no coincide), se repite todo desde la lectura,
+// así el cambio se aplica sobre el estado nuevo en lugar de pisarlo.
+@Service
+public class ReintentosOptimistas {
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${icecore.catalogo.reintentos:3}")
+    private int maxIntentos;
+
+    // La operación corre en su propia transacción; devuelve la entidad ya confirmada en la BD
+    public <T> T ejecutar(Supplier<T> operacion) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(estado -> operacion.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (intento >= maxIntentos) {
+                    throw new CambioConcurrenteException();
+                }
+            }
+        }
+    }
+
+    // El dato cambió mientras se editaba (versión vieja) o hay demasiadas escrituras a la vez: 409
+    public static class CambioConcurrenteException extends RuntimeException {
+        public CambioConcurrenteException() {
+            super("Otro usuario modificó este dato al mismo tiempo. Recargá e intentá de nuevo.");
+        }
+
+        public CambioConcurrenteException(String mensaje) {
+            super(mensaje);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.entity.Repartidor;
+import com.heladeria.icecore.repository.RepartidorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Repartidores activos en memoria, indexados por id y por nombre (sin distinguir mayúsculas).
+// Asignar un pedido se hace en cada despacho y la lista cambia muy pocas veces: como con el
+// catálogo (CatalogoCache), se guarda una foto inmutable que se reemplaza entera al crear o
+// dar de baja un repartidor, recién cuando esa transacción hace commit.
+//
+// Las entidades de la foto se comparten entre hilos: NO modificarlas.
+@Service
+public class RepartidorService {
+
+    @Autowired
+    private RepartidorRepository repartidorRepository;
+
+    private record Directorio(Map<Long, Repartidor> porId, Map<String, Repartidor> porNombre,
+            List<Repartidor> activos) {
+
+        static Directorio de(Collection<Repartidor> repartidores) {
+            List<Repartidor> activos = repartidores.stream()
+                    .filter(Repartidor::isActivo)
+                    .sorted(Comparator.comparing(Repartidor::getNombre, String.CASE_INSENSITIVE_ORDER))
+                    .toList();
+            return new Directorio(
+                    Map.copyOf(activos.stream().collect(Collectors.toMap(Repartidor::getId, Function.identity()))),
+                    Map.copyOf(activos.stream().collect(Collectors.toMap(r -> clave(r.getNombre()),
+                            Function.identity(), (primero, otro) -> primero))),
+                    activos);
+        }
+
+        Directorio con(Repartidor repartidor) {
+            Map<Long, Repartidor> nuevos = new HashMap<>(porId);
+            nuevos.put(repartidor.getId(), repartidor);
+            return de(nuevos.values());
+        }
+
+        Directorio sin(Long id) {
+            Map<Long, Repartidor> nuevos = new HashMap<>(porId);
+            nuevos.remove(id);
+            return de(nuevos.values());
+        }
+    }
+
+    private final AtomicReference<Directorio> directorio = new AtomicReference<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recargar() {
+        directorio.set(Directorio.de(repartidorRepository.findByActivoTrue()));
+    }
+
+    // --- Lecturas (sin BD) ---
+
+    public List<Repartidor> findActivos() {
+        return actual().activos();
+    }
+
+    public Repartidor porId(Long id) {
+        Repartidor repartidor = actual().porId().get(id);
+        if (repartidor == null) {
+            throw new RuntimeException("Repartidor no encontrado id: " + id);
+        }
+        return repartidor;
+    }
+
+    public Repartidor porNombre(String nombre) {
+        Repartidor repartidor = actual().porNombre().get(clave(nombre));
+        if (repartidor == null) {
+            throw new RuntimeException("Repartidor no encontrado: " + nombre);
+        }
+        return repartidor;
+    }
+
+    // --- Escrituras ---
+
+    @Transactional
+    public Repartidor crear(Repartidor repartidor) {
+        if (repartidor.getNombre() == null || repartidor.getNombre().isBlank()) {
+            throw new RuntimeException("Error: El repartidor necesita un nombre.");
+        }
+        repartidor.setNombre(repartidor.getNombre().strip());
+        if (actual().porNombre().containsKey(clave(repartidor.getNombre()))) {
+            throw new RuntimeException("Error: Ya existe un repartidor llamado " + repartidor.getNombre() + ".");
+        }
+        repartidor.setId(null);
+        repartidor.setActivo(true);
+        Repartidor guardado = repartidorRepository.save(repartidor);
+        alConfirmar(() -> directorio.updateAndGet(d -> d.con(guardado)));
+        return guardado;
+    }
+
+    // Baja lógica: los pedidos ya entregados siguen apuntando al repartidor
+    @Transactional
+    public void eliminar(Long id) {
+        Repartidor repartidor = repartidorRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Repartidor no encontrado id: " + id));
+        repartidor.setActivo(false);
+        alConfirmar(() -> directorio.updateAndGet(d -> d.sin(id)));
+    }
+
+    private Directorio actual() {
+        Directorio actual = directorio.get();
+        if (actual == null) {
+            recargar();
+            actual = directorio.get();
+        }
+        return actual;
+    }
+
+    private static String clave(String nombre) {
+        return nombre == null ? "" : nombre.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
@@ -13,8 +13,16 @@ public class TipoProductoService {
     @Autowired
     private TipoProductoRepository tipoProductoRepository;
 
+    // Las lecturas salen de la caché; cada escritura la actualiza con lo que quedó guardado
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    // Mismo control de versión que los gustos (@Version en TipoProducto)
+    @Autowired
+    private ReintentosOptimistas reintentosOptimistas;
+
     public List<TipoProducto> findAll() {
-        return tipoProductoRepository.findAll();
+        return catalogoCache.tipos();
     }
 
     public Optional<TipoProducto> findById(Long id) {
@@ -22,19 +30,30 @@ public class TipoProductoService {
     }
 
     public TipoProducto save(TipoProducto tipoProducto) {
-        return tipoProductoRepository.save(tipoProducto);
+        TipoProducto guardado = tipoProductoRepository.save(tipoProducto);
+        catalogoCache.aplicar(guardado);
+        return guardado;
     }
 
     public void deleteById(Long id) {
         tipoProductoRepository.deleteById(id);
+        catalogoCache.quitarTipo(id);
     }
 
+    // Si el formulario manda una versión vieja (otro admin cambió el precio mientras tanto): 409
     public TipoProducto update(Long id, TipoProducto details) {
-        TipoProducto producto = tipoProductoRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
-        producto.setNombre(details.getNombre());
-        producto.setPrecio(details.getPrecio());
-        producto.setMaxGustos(details.getMaxGustos());
-        return tipoProductoRepository.save(producto);
+        TipoProducto guardado = reintentosOptimistas.ejecutar(() -> {
+            TipoProducto producto = tipoProductoRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+            if (details.getVersion() != null && !details.getVersion().equals(producto.getVersion())) {
+                throw new ReintentosOptimistas.CambioConcurrenteException();
+            }
+            producto.setNombre(details.getNombre());
+            producto.setPrecio(details.getPrecio());
+            producto.setMaxGustos(details.getMaxGustos());
+            return tipoProductoRepository.saveAndFlush(producto);
+        });
+        catalogoCache.aplicar(guardado);
+        return guardado;
     }
 }
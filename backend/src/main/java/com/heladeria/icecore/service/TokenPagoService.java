@@ -0,0 +1,59 @@
+package com.heladeria.icecore.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Token para consultar el estado de pago de un pedido sin login (GET /api/payments/pedidos/{id}).
+// Es un HMAC del id: solo lo tiene quien creó el pedido (viaja en la respuesta de POST /api/pedidos),
+// no se guarda en la BD y no se puede adivinar recorriendo ids.
+@Service
+public class TokenPagoService {
+
+    // Con varias instancias (o para que un checkout en curso sobreviva a un reinicio) tiene que ser el
+    // mismo en todas; vacío = uno al azar por proceso
+    @Value("${icecore.pagos.token-secreto:}")
+    private String secreto;
+
+    private SecretKeySpec clave;
+
+    @PostConstruct
+    void init() {
+        byte[] bytes;
+        if (secreto == null || secreto.isBlank()) {
+            bytes = new byte[32];
+            new SecureRandom().nextBytes(bytes);
+        } else {
+            bytes = secreto.getBytes(StandardCharsets.UTF_8);
+        }
+        clave = new SecretKeySpec(bytes, "HmacSHA256");
+    }
+
+    public String generar(Long pedidoId) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(clave);
+            byte[] firma = mac.doFinal(Long.toString(pedidoId).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(firma);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 no disponible", e);
+        }
+    }
+
+    // Comparación en tiempo constante: la respuesta no da pistas de cuántos caracteres coinciden
+    public boolean valido(Long pedidoId, String token) {
+        if (pedidoId == null || token == null || token.isBlank()) {
+            return false;
+        }
+        return MessageDigest.isEqual(generar(pedidoId).getBytes(StandardCharsets.US_ASCII),
+                token.getBytes(StandardCharsets.US_ASCII));
+    }
+}
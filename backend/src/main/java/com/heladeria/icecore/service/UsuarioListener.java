@@ -0,0 +1,33 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.entity.Usuario;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Listener JPA de Usuario (Hibernate lo crea a través de Spring, por eso puede tener @Autowired).
+// Al cambiar la contraseña / rol o borrar un usuario, saca sus credenciales de AutenticacionCache.
+public class UsuarioListener {
+
+    @Autowired
+    private AutenticacionCache autenticacionCache;
+
+    @PostUpdate
+    @PostRemove
+    public void usuarioCambiado(Usuario usuario) {
+        String username = usuario.getUsername();
+        autenticacionCache.invalidar(username);
+        // Y de nuevo al terminar la transacción: una petición concurrente pudo volver a cachear
+        // la contraseña vieja (todavía válida en la BD) antes del commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    autenticacionCache.invalidar(username);
+                }
+            });
+        }
+    }
+}
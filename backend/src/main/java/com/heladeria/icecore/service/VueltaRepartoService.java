@@ -0,0 +1,96 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.AsignacionResultadoDTO;
+import com.heladeria.icecore.dto.CajaRepartidoresDTO;
+import com.heladeria.icecore.dto.VueltaRepartoDTO;
+import com.heladeria.icecore.entity.Repartidor;
+import com.heladeria.icecore.entity.VueltaReparto;
+import com.heladeria.icecore.repository.VueltaRepartoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Vueltas de reparto: un repartidor sale con varios pedidos listos y al volver rinde el efectivo.
+//
+// La caja no se calcula recorriendo pedidos: cada vuelta guarda el efectivo cobrado y se actualiza
+// con un UPDATE incremental cuando se entrega uno de sus pedidos (PedidoService.updateEstado) o
+// cuando se finaliza la vuelta. La caja es la suma de las vueltas en calle (una por repartidor).
+@Service
+public class VueltaRepartoService {
+
+    @Autowired
+    private VueltaRepartoRepository vueltaRepartoRepository;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private RepartidorService repartidorService;
+
+    // Arma la vuelta y despacha sus pedidos en un solo UPDATE (ver PedidoService.asignarRepartidor)
+    @Transactional
+    public VueltaRepartoDTO crear(Long repartidorId, List<Long> pedidoIds) {
+        if (repartidorId == null) {
+            throw new RuntimeException("Error: Falta el repartidor.");
+        }
+        Repartidor repartidor = repartidorService.porId(repartidorId);
+        if (vueltaRepartoRepository.existsByRepartidorIdAndEstado(repartidorId, VueltaReparto.EN_CALLE)) {
+            throw new RuntimeException("Error: " + repartidor.getNombre()
+                    + " ya tiene una vuelta en calle. Finalizala antes de armar otra.");
+        }
+
+        VueltaReparto vuelta = new VueltaReparto();
+        vuelta.setRepartidor(repartidor);
+        vuelta.setInicio(LocalDateTime.now());
+        vuelta = vueltaRepartoRepository.save(vuelta);
+
+        AsignacionResultadoDTO despacho = pedidoService.asignarRepartidor(pedidoIds, repartidorId, vuelta.getId());
+        if (despacho.asignados().isEmpty()) {
+            throw new RuntimeException("Error: Ninguno de los pedidos elegidos se puede despachar.");
+        }
+        vuelta.setCantidadPedidos(despacho.asignados().size());
+        vuelta.setMontoTotal(despacho.montoTotal());
+        return VueltaRepartoDTO.de(vueltaRepartoRepository.save(vuelta));
+    }
+
+    @Transactional(readOnly = true)
+    public List<VueltaRepartoDTO> enCalle() {
+        return vueltaRepartoRepository.findEnCalle().stream().map(VueltaRepartoDTO::de).toList();
+    }
+
+    // El repartidor volvió: lo que seguía en camino queda entregado y la vuelta se cierra con su efectivo.
+    // Primero se bloquean los pedidos y después la vuelta (el mismo orden que updateEstado).
+    @Transactional
+    public VueltaRepartoDTO finalizar(Long id) {
+        VueltaReparto vuelta = vueltaRepartoRepository.findConRepartidorById(id)
+                .orElseThrow(() -> new RuntimeException("Vuelta no encontrada id: " + id));
+        if (!VueltaReparto.EN_CALLE.equals(vuelta.getEstado())) {
+            throw new RuntimeException("Error: La vuelta ya fue finalizada.");
+        }
+
+        PedidoService.Entregados entregados = pedidoService.entregarVuelta(id, vuelta.getRepartidor().getNombre());
+        if (vueltaRepartoRepository.finalizar(id, LocalDateTime.now(), entregados.efectivo(),
+                entregados.pedidosEfectivo()) == 0) {
+            throw new RuntimeException("Error: La vuelta ya fue finalizada.");
+        }
+        return vueltaRepartoRepository.findConRepartidorById(id).map(VueltaRepartoDTO::de).orElseThrow();
+    }
+
+    @Transactional(readOnly = true)
+    public CajaRepartidoresDTO caja() {
+        List<CajaRepartidoresDTO.Repartidor> repartidores = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (Object[] fila : vueltaRepartoRepository.cajaEnCalle()) {
+            BigDecimal deuda = (BigDecimal) fila[2];
+            repartidores.add(new CajaRepartidoresDTO.Repartidor((Long) fila[0], (String) fila[1], deuda,
+                    ((Number) fila[3]).longValue()));
+            total = total.add(deuda);
+        }
+        return new CajaRepartidoresDTO(repartidores, total);
+    }
+}
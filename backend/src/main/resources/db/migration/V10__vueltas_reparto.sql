@@ -0,0 +1,22 @@
+-- Vueltas de reparto: un repartidor sale con varios pedidos y al volver rinde el efectivo.
+-- El efectivo cobrado se va sumando a medida que se entregan los pedidos (ver VueltaRepartoService),
+-- así la caja de cada repartidor no necesita recorrer sus pedidos.
+
+CREATE TABLE vueltas_reparto (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    repartidor_id    BIGINT      NOT NULL REFERENCES repartidores (id),
+    estado           VARCHAR(20) NOT NULL,
+    inicio           TIMESTAMP(6) NOT NULL,
+    fin              TIMESTAMP(6),
+    cantidad_pedidos INTEGER     NOT NULL DEFAULT 0,
+    monto_total      NUMERIC(38, 2) NOT NULL DEFAULT 0,
+    efectivo_cobrado NUMERIC(38, 2) NOT NULL DEFAULT 0,
+    pedidos_efectivo INTEGER     NOT NULL DEFAULT 0
+);
+
+-- Un repartidor tiene como mucho una vuelta en calle
+CREATE UNIQUE INDEX uq_vueltas_reparto_en_calle ON vueltas_reparto (repartidor_id) WHERE estado = 'EN_CALLE';
+
+ALTER TABLE pedidos ADD COLUMN vuelta_id BIGINT REFERENCES vueltas_reparto (id);
+
+CREATE INDEX idx_pedidos_vuelta ON pedidos (vuelta_id) WHERE vuelta_id IS NOT NULL;
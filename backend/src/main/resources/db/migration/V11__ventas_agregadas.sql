@@ -0,0 +1,53 @@
+-- Ventas agregadas por día / hora / tipo de producto / gusto (ver AnaliticaService).
+-- Se mantienen con sumas incrementales al crear y cancelar pedidos; los reportes leen solo estas tablas.
+
+CREATE TABLE ventas_hora (
+    dia      DATE    NOT NULL,
+    hora     INTEGER NOT NULL,
+    pedidos  BIGINT  NOT NULL DEFAULT 0,
+    ingresos NUMERIC(38, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (dia, hora)
+);
+
+CREATE TABLE ventas_tipo_dia (
+    dia              DATE   NOT NULL,
+    tipo_producto_id BIGINT NOT NULL,
+    unidades         BIGINT NOT NULL DEFAULT 0,
+    ingresos         NUMERIC(38, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (dia, tipo_producto_id)
+);
+
+CREATE TABLE ventas_gusto_dia (
+    dia      DATE   NOT NULL,
+    gusto_id BIGINT NOT NULL,
+    unidades BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (dia, gusto_id)
+);
+
+-- Carga inicial con los pedidos que ya existen (una sola vez; después se suman de a uno).
+-- Cuentan los estados que V13 deja abiertos o entregados, con la misma normalización (upper/trim):
+-- lo que V13 cierra como CANCELADO (sin estado o desconocido) tampoco suma acá
+
+INSERT INTO ventas_hora (dia, hora, pedidos, ingresos)
+SELECT CAST(fecha AS DATE), EXTRACT(HOUR FROM fecha), COUNT(*), COALESCE(SUM(precio_total), 0)
+FROM pedidos
+WHERE fecha IS NOT NULL
+  AND upper(trim(estado)) IN ('PENDIENTE', 'EN_PREPARACION', 'LISTO', 'EN_CAMINO', 'ENTREGADO')
+GROUP BY CAST(fecha AS DATE), EXTRACT(HOUR FROM fecha);
+
+INSERT INTO ventas_tipo_dia (dia, tipo_producto_id, unidades, ingresos)
+SELECT CAST(p.fecha AS DATE), i.tipo_producto_id, SUM(i.cantidad), COALESCE(SUM(i.subtotal), 0)
+FROM items_pedido i
+JOIN pedidos p ON p.id = i.pedido_id
+WHERE p.fecha IS NOT NULL AND i.tipo_producto_id IS NOT NULL
+  AND upper(trim(p.estado)) IN ('PENDIENTE', 'EN_PREPARACION', 'LISTO', 'EN_CAMINO', 'ENTREGADO')
+GROUP BY CAST(p.fecha AS DATE), i.tipo_producto_id;
+
+INSERT INTO ventas_gusto_dia (dia, gusto_id, unidades)
+SELECT CAST(p.fecha AS DATE), g.gusto_id, SUM(i.cantidad)
+FROM item_pedido_gustos g
+JOIN items_pedido i ON i.id = g.item_pedido_id
+JOIN pedidos p ON p.id = i.pedido_id
+WHERE p.fecha IS NOT NULL
+  AND upper(trim(p.estado)) IN ('PENDIENTE', 'EN_PREPARACION', 'LISTO', 'EN_CAMINO', 'ENTREGADO')
+GROUP BY CAST(p.fecha AS DATE), g.gusto_id;
@@ -0,0 +1,46 @@
+-- Archivo de pedidos entregados viejos (ver ArchivoPedidosService). Mismas columnas que las tablas
+-- en caliente, sin claves foráneas hacia ellas: el panel y las búsquedas del día recorren solo
+-- pedidos / items_pedido, que quedan del tamaño de los últimos días. Exportación y analítica
+-- siguen viendo todo (la exportación une ambas tablas; la analítica lee ventas_*).
+
+CREATE TABLE pedidos_archivo (
+    id               BIGINT PRIMARY KEY,
+    nombre_cliente   VARCHAR(255),
+    apellido_cliente VARCHAR(255),
+    direccion        VARCHAR(255),
+    telefono         VARCHAR(255),
+    hora_entrega     VARCHAR(255),
+    franja_entrega   TIMESTAMP(6),
+    metodo_pago      VARCHAR(255),
+    estado           VARCHAR(255),
+    precio_total     NUMERIC(38, 2),
+    estado_pago      VARCHAR(30),
+    preferencia_id   VARCHAR(100),
+    init_point       VARCHAR(500),
+    pago_id          VARCHAR(50),
+    repartidor_id    BIGINT,
+    vuelta_id        BIGINT,
+    fecha            TIMESTAMP(6),
+    archivado_en     TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE items_pedido_archivo (
+    id               BIGINT PRIMARY KEY,
+    pedido_id        BIGINT NOT NULL,
+    tipo_producto_id BIGINT,
+    cantidad         INTEGER NOT NULL,
+    subtotal         NUMERIC(38, 2)
+);
+
+CREATE TABLE item_pedido_gustos_archivo (
+    item_pedido_id BIGINT NOT NULL,
+    gusto_id       BIGINT NOT NULL
+);
+
+-- La exportación filtra por rango de fechas y arma cada pedido con sus items y gustos
+CREATE INDEX idx_pedidos_archivo_fecha_id ON pedidos_archivo (fecha, id);
+CREATE INDEX idx_items_pedido_archivo_pedido_id ON items_pedido_archivo (pedido_id);
+CREATE INDEX idx_item_pedido_gustos_archivo_item ON item_pedido_gustos_archivo (item_pedido_id);
+
+-- El job busca entregados viejos: solo esos entran en el índice
+CREATE INDEX idx_pedidos_entregados_fecha ON pedidos (fecha, id) WHERE estado = 'ENTREGADO';
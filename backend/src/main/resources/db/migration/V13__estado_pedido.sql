@@ -0,0 +1,13 @@
+-- El estado del pedido pasa a ser un enum (EstadoPedido) y solo cambia por sus pasos permitidos.
+-- Primero se normalizan las variantes de mayúsculas y espacios que dejó el texto libre ("listo ", "Entregado").
+UPDATE pedidos SET estado = upper(trim(estado)) WHERE estado IS NOT NULL;
+
+-- Lo que igual no es un estado conocido (o no tiene estado) se cierra como CANCELADO: reabrirlo como
+-- PENDIENTE lo devolvería a la cola de la cocina y a las vueltas de reparto.
+UPDATE pedidos SET estado = 'CANCELADO'
+WHERE estado IS NULL OR estado NOT IN ('PENDIENTE', 'EN_PREPARACION', 'LISTO', 'EN_CAMINO', 'ENTREGADO', 'CANCELADO');
+
+ALTER TABLE pedidos ALTER COLUMN estado SET NOT NULL;
+
+ALTER TABLE pedidos ADD CONSTRAINT ck_pedidos_estado
+    CHECK (estado IN ('PENDIENTE', 'EN_PREPARACION', 'LISTO', 'EN_CAMINO', 'ENTREGADO', 'CANCELADO'));
@@ -0,0 +1,70 @@
+-- Esquema tal como lo venía generando Hibernate (ddl-auto=update) antes de pasar a Flyway.
+-- En una base existente no se ejecuta: spring.flyway.baseline-on-migrate la marca como versión 1.
+
+CREATE TABLE usuarios (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    role     VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE gustos (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    nombre      VARCHAR(255) NOT NULL UNIQUE,
+    descripcion VARCHAR(255),
+    categoria   VARCHAR(255) NOT NULL,
+    hay_stock   BOOLEAN      NOT NULL,
+    activo      BOOLEAN      NOT NULL
+);
+
+CREATE TABLE tipos_producto (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    nombre            VARCHAR(255)   NOT NULL,
+    capacidad_sabores INTEGER        NOT NULL,
+    precio            NUMERIC(38, 2) NOT NULL,
+    peso_gramos       INTEGER,
+    es_por_peso       BOOLEAN
+);
+
+CREATE TABLE repartidores (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    nombre   VARCHAR(255),
+    telefono VARCHAR(255),
+    activo   BOOLEAN NOT NULL
+);
+
+CREATE TABLE business_hours (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    apertura_t1       INTEGER NOT NULL,
+    cierre_t1         INTEGER NOT NULL,
+    apertura_t2       INTEGER NOT NULL,
+    cierre_t2         INTEGER NOT NULL,
+    intervalo_minutos INTEGER NOT NULL
+);
+
+CREATE TABLE pedidos (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    nombre_cliente   VARCHAR(255),
+    apellido_cliente VARCHAR(255),
+    direccion        VARCHAR(255),
+    telefono         VARCHAR(255),
+    hora_entrega     VARCHAR(255),
+    metodo_pago      VARCHAR(255),
+    estado           VARCHAR(255),
+    precio_total     NUMERIC(38, 2),
+    repartidor_id    BIGINT REFERENCES repartidores (id),
+    fecha            TIMESTAMP(6)
+);
+
+CREATE TABLE items_pedido (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    pedido_id        BIGINT REFERENCES pedidos (id),
+    tipo_producto_id BIGINT REFERENCES tipos_producto (id),
+    cantidad         INTEGER NOT NULL,
+    subtotal         NUMERIC(38, 2)
+);
+
+CREATE TABLE item_pedido_gustos (
+    item_pedido_id BIGINT NOT NULL REFERENCES items_pedido (id),
+    gusto_id       BIGINT NOT NULL REFERENCES gustos (id)
+);
@@ -0,0 +1,18 @@
+-- Pedidos / items_pedido pasan de IDENTITY a secuencias con reserva de a 50 (ver @SequenceGenerator).
+-- Se puede correr aunque la base ya se haya migrado a mano con el script anterior.
+--
+-- Hibernate (optimizador "pooled") toma el valor de la secuencia como el TOPE del bloque reservado:
+-- con nextval = N usa los ids N-49..N. Por eso la secuencia arranca en MAX(id) + 50 y no en MAX(id) + 1.
+
+CREATE SEQUENCE IF NOT EXISTS pedidos_seq INCREMENT BY 50;
+SELECT setval('pedidos_seq', COALESCE((SELECT MAX(id) FROM pedidos), 0) + 50, false);
+ALTER TABLE pedidos ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE pedidos ALTER COLUMN id DROP DEFAULT;
+
+CREATE SEQUENCE IF NOT EXISTS items_pedido_seq INCREMENT BY 50;
+SELECT setval('items_pedido_seq', COALESCE((SELECT MAX(id) FROM items_pedido), 0) + 50, false);
+ALTER TABLE items_pedido ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE items_pedido ALTER COLUMN id DROP DEFAULT;
+
+-- item_pedido_gustos no tiene id propio (clave = item_pedido_id + gusto_id): con batch_size
+-- sus filas ya se insertan en lote junto con los items.
@@ -0,0 +1,25 @@
+-- Índices para las consultas calientes del panel y de la tienda.
+-- IF NOT EXISTS: los tres primeros ya los podía haber creado Hibernate con ddl-auto=update.
+
+-- Keyset del listado / búsqueda de pedidos: ORDER BY fecha DESC, id DESC (ver PedidoSpecifications)
+CREATE INDEX IF NOT EXISTS idx_pedidos_fecha_id ON pedidos (fecha DESC, id DESC);
+
+-- Filtro por estado con el mismo orden
+CREATE INDEX IF NOT EXISTS idx_pedidos_estado_fecha_id ON pedidos (estado, fecha DESC, id DESC);
+
+-- Filtro por repartidor: solo los pedidos asignados, los demás no entran al índice
+CREATE INDEX IF NOT EXISTS idx_pedidos_repartidor_fecha_id ON pedidos (repartidor_id, fecha DESC, id DESC)
+    WHERE repartidor_id IS NOT NULL;
+
+-- Pedidos abiertos (tablero de hoy, PedidoService.ESTADOS_ABIERTOS): parcial, así el índice
+-- queda chico aunque el histórico de ENTREGADO / CANCELADO crezca sin límite.
+CREATE INDEX IF NOT EXISTS idx_pedidos_abiertos_fecha_id ON pedidos (fecha DESC, id DESC)
+    WHERE estado IN ('PENDIENTE', 'EN_PREPARACION', 'LISTO', 'EN_CAMINO');
+
+-- PostgreSQL no indexa las claves foráneas solo: sin estos índices, traer los items / gustos
+-- de una página de pedidos recorre toda la tabla.
+CREATE INDEX IF NOT EXISTS idx_items_pedido_pedido_id ON items_pedido (pedido_id);
+CREATE INDEX IF NOT EXISTS idx_item_pedido_gustos_item_pedido_id ON item_pedido_gustos (item_pedido_id);
+
+-- Borrar un gusto verifica la clave foránea en item_pedido_gustos; sin índice, recorre toda la tabla
+CREATE INDEX IF NOT EXISTS idx_item_pedido_gustos_gusto_id ON item_pedido_gustos (gusto_id);
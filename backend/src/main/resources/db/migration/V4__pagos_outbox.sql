@@ -0,0 +1,21 @@
+-- Pagos con Mercado Pago asincrónicos: el pedido se guarda junto con una fila en pagos_outbox
+-- (misma transacción) y un proceso en segundo plano crea la preferencia (ver PagosOutboxWorker).
+
+ALTER TABLE pedidos ADD COLUMN estado_pago VARCHAR(30);
+ALTER TABLE pedidos ADD COLUMN preferencia_id VARCHAR(100);
+ALTER TABLE pedidos ADD COLUMN init_point VARCHAR(500);
+ALTER TABLE pedidos ADD COLUMN pago_id VARCHAR(50);
+
+CREATE TABLE pagos_outbox (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    pedido_id       BIGINT       NOT NULL REFERENCES pedidos (id),
+    estado          VARCHAR(20)  NOT NULL,
+    intentos        INTEGER      NOT NULL DEFAULT 0,
+    proximo_intento TIMESTAMP(6) NOT NULL,
+    ultimo_error    VARCHAR(500),
+    creado_en       TIMESTAMP(6) NOT NULL
+);
+
+-- El worker solo mira las pendientes que ya vencieron: índice parcial, las enviadas no entran
+CREATE INDEX idx_pagos_outbox_pendientes ON pagos_outbox (proximo_intento, id) WHERE estado = 'PENDIENTE';
+CREATE INDEX idx_pagos_outbox_pedido_id ON pagos_outbox (pedido_id);
@@ -0,0 +1,7 @@
+-- Franja de entrega con cupo: inicio de la franja elegida (ver FranjasEntregaService).
+-- hora_entrega queda como el texto que ve el cliente; los pedidos viejos no tienen franja.
+
+ALTER TABLE pedidos ADD COLUMN franja_entrega TIMESTAMP(6);
+
+-- Al arrancar se cuentan los pedidos de hoy en adelante por franja
+CREATE INDEX idx_pedidos_franja_entrega ON pedidos (franja_entrega) WHERE franja_entrega IS NOT NULL;
@@ -0,0 +1,9 @@
+-- Los horarios son una única fila de configuración con id = 1 (se guarda con INSERT ... ON CONFLICT (id),
+-- ver HorariosRepository).
+-- Si quedaron varias filas (save() viejo), se conserva la primera.
+
+DELETE FROM business_hours WHERE id <> (SELECT MIN(id) FROM business_hours);
+UPDATE business_hours SET id = 1;
+
+ALTER TABLE business_hours ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE business_hours ADD CONSTRAINT business_hours_fila_unica CHECK (id = 1);
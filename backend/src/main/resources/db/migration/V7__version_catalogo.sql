@@ -0,0 +1,5 @@
+-- Control de concurrencia optimista (@Version) en gustos y tipos de producto:
+-- dos admins cambiando el mismo gusto a la vez ya no se pisan los cambios.
+
+ALTER TABLE gustos ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE tipos_producto ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,5 @@
+-- Inventario en gramos por gusto (NULL = no se controla). Cada pedido lo descuenta con un
+-- UPDATE ... WHERE stock_gramos >= ? por gusto (ver InventarioService).
+
+ALTER TABLE gustos ADD COLUMN stock_gramos INTEGER;
+ALTER TABLE gustos ADD CONSTRAINT gustos_stock_no_negativo CHECK (stock_gramos IS NULL OR stock_gramos >= 0);
@@ -0,0 +1,10 @@
+-- Los pedidos se asignan por id o por nombre del repartidor (sin distinguir mayúsculas):
+-- no puede haber dos repartidores activos con el mismo nombre.
+-- Si ya había repetidos, queda activo el más antiguo.
+
+UPDATE repartidores r SET activo = FALSE
+WHERE r.activo AND EXISTS (
+    SELECT 1 FROM repartidores o
+    WHERE o.activo AND LOWER(o.nombre) = LOWER(r.nombre) AND o.id < r.id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_repartidores_nombre_activo ON repartidores (LOWER(nombre)) WHERE activo;
@@ -0,0 +1,95 @@
+package com.heladeria.icecore.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Corre las migraciones de Flyway contra un PostgreSQL real y verifica con EXPLAIN que las
+// consultas calientes del panel usan los índices de V3 en lugar de recorrer la tabla.
+// ddl-auto=validate: si una entidad no coincide con el esquema migrado, el contexto no levanta.
+// Solo corre con el perfil de Maven "postgres" (mvn -Ppostgres test); sin Docker se saltea igual.
+@Tag("postgres")
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MigracionesIndicesTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void cargarHistorico() {
+        // Un histórico grande y casi todo ENTREGADO, como en producción: los pedidos abiertos son pocos y recientes
+        jdbcTemplate.execute("INSERT INTO repartidores (nombre, activo) VALUES ('Luis', true), ('Claudio', true)");
+        jdbcTemplate.execute("INSERT INTO tipos_producto (nombre, capacidad_sabores, precio, es_por_peso) VALUES ('1 Kilo', 4, 10000, true)");
+        jdbcTemplate.execute("INSERT INTO gustos (nombre, categoria, hay_stock, activo) "
+                + "SELECT 'Gusto ' || g, 'Cremas', true, true FROM generate_series(1, 40) g");
+        jdbcTemplate.execute("INSERT INTO pedidos (id, nombre_cliente, estado, precio_total, repartidor_id, fecha) "
+                + "SELECT n, 'Cliente ' || n, "
+                + "CASE WHEN n > 49900 THEN 'PENDIENTE' ELSE 'ENTREGADO' END, 10000, "
+                + "(SELECT MIN(id) FROM repartidores) + n % 2, "
+                + "now() - make_interval(mins => 50000 - n) "
+                + "FROM generate_series(1, 50000) n");
+        jdbcTemplate.execute("INSERT INTO items_pedido (id, pedido_id, tipo_producto_id, cantidad, subtotal) "
+                + "SELECT n, n, (SELECT MIN(id) FROM tipos_producto), 1, 10000 FROM generate_series(1, 50000) n");
+        jdbcTemplate.execute("INSERT INTO item_pedido_gustos (item_pedido_id, gusto_id) "
+                + "SELECT n, (SELECT MIN(id) FROM gustos) + n % 40 FROM generate_series(1, 50000) n");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void primeraPaginaDelPanelUsaElIndiceDeKeyset() {
+        String plan = explicar("SELECT id FROM pedidos ORDER BY fecha DESC, id DESC LIMIT 50");
+
+        assertThat(plan).contains("idx_pedidos_fecha_id").doesNotContain("Seq Scan on pedidos");
+    }
+
+    @Test
+    void pedidosAbiertosDeHoyNoRecorrenElHistorico() {
+        String plan = explicar("SELECT id FROM pedidos "
+                + "WHERE estado IN ('PENDIENTE', 'EN_PREPARACION', 'LISTO', 'EN_CAMINO') "
+                + "AND fecha >= date_trunc('day', now()) ORDER BY fecha DESC, id DESC");
+
+        assertThat(plan).contains("idx_pedidos_abiertos_fecha_id").doesNotContain("Seq Scan on pedidos");
+    }
+
+    @Test
+    void filtroPorRepartidorUsaSuIndice() {
+        String plan = explicar("SELECT id FROM pedidos WHERE repartidor_id = (SELECT MIN(id) FROM repartidores) "
+                + "ORDER BY fecha DESC, id DESC LIMIT 50");
+
+        assertThat(plan).contains("idx_pedidos_repartidor_fecha_id").doesNotContain("Seq Scan on pedidos");
+    }
+
+    @Test
+    void itemsYGustosDeUnaPaginaSeBuscanPorIndice() {
+        String items = explicar("SELECT id FROM items_pedido WHERE pedido_id IN (10, 20, 30, 40, 50)");
+        String gustos = explicar("SELECT gusto_id FROM item_pedido_gustos WHERE item_pedido_id IN (10, 20, 30, 40, 50)");
+        String porGusto = explicar("SELECT 1 FROM item_pedido_gustos WHERE gusto_id = 0");
+
+        assertThat(items).contains("idx_items_pedido_pedido_id");
+        assertThat(gustos).contains("idx_item_pedido_gustos_item_pedido_id");
+        assertThat(porGusto).doesNotContain("Seq Scan on item_pedido_gustos");
+    }
+
+    private String explicar(String sql) {
+        List<String> filas = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+        return String.join("\n", filas);
+    }
+}
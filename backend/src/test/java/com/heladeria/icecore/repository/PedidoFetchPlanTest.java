@@ -0,0 +1,155 @@
+package com.heladeria.icecore.repository;
+
+import com.heladeria.icecore.dto.PedidoFiltroDTO;
+import com.heladeria.icecore.dto.PedidoResumenDTO;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.ItemPedido;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.Repartidor;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.service.PedidoService;
+import com.heladeria.icecore.service.PedidoServiceTestConfig;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Regresión de N+1: listar pedidos completos (items, tipo, gustos, repartidor)
+// tiene que costar una cantidad fija de consultas, sin importar cuántos pedidos haya.
+// Los listados del panel (proyecciones) además no deben hidratar ninguna entidad.
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(PedidoServiceTestConfig.class)
+class PedidoFetchPlanTest {
+
+    private static final int CANTIDAD_PEDIDOS = 500;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void cargarPedidos() {
+        List<Repartidor> repartidores = new ArrayList<>();
+        for (String nombre : List.of("Luis", "Claudio", "Matias")) {
+            Repartidor repartidor = new Repartidor();
+            repartidor.setNombre(nombre);
+            entityManager.persist(repartidor);
+            repartidores.add(repartidor);
+        }
+
+        List<TipoProducto> tipos = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            TipoProducto tipo = new TipoProducto();
+            tipo.setNombre("Pote " + i);
+            tipo.setMaxGustos(4);
+            tipo.setPrecio(BigDecimal.valueOf(1000L * i));
+            tipo.setEsPorPeso(true);
+            entityManager.persist(tipo);
+            tipos.add(tipo);
+        }
+
+        List<Gusto> gustos = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            Gusto gusto = new Gusto();
+            gusto.setNombre("Gusto " + i);
+            gusto.setCategoria("Cremas");
+            entityManager.persist(gusto);
+            gustos.add(gusto);
+        }
+
+        for (int i = 0; i < CANTIDAD_PEDIDOS; i++) {
+            Pedido pedido = new Pedido();
+            pedido.setNombreCliente("Cliente " + i);
+            pedido.setMetodoPago("Efectivo");
+            pedido.setPrecioTotal(BigDecimal.TEN);
+            pedido.setRepartidor(repartidores.get(i % repartidores.size()));
+            for (int j = 0; j < 2; j++) {
+                ItemPedido item = new ItemPedido();
+                item.setPedido(pedido);
+                item.setTipoProducto(tipos.get((i + j) % tipos.size()));
+                item.setGustos(new ArrayList<>(List.of(
+                        gustos.get((i + j) % gustos.size()),
+                        gustos.get((i + j + 1) % gustos.size()))));
+                item.setCantidad(1);
+                item.setSubtotal(BigDecimal.TEN);
+                pedido.getItems().add(item);
+            }
+            entityManager.persist(pedido);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findAllCargaElGrafoCompletoEnDosConsultas() {
+        List<Pedido> pedidos = pedidoRepository.findAll();
+        recorrerComoJackson(pedidos);
+
+        assertThat(pedidos).hasSize(CANTIDAD_PEDIDOS);
+        // pedidos+repartidor+items+tipo en un JOIN, gustos en un SUBSELECT
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void abiertosDeHoyEsUnaProyeccionEnTresConsultas() {
+        List<PedidoResumenDTO> pedidos = pedidoService.findAbiertosDeHoy();
+
+        assertThat(pedidos).hasSize(CANTIDAD_PEDIDOS);
+        assertThat(pedidos.get(0).items()).hasSize(2);
+        assertThat(pedidos.get(0).items().get(0).gustos()).hasSize(2);
+        assertThat(pedidos.get(0).repartidor()).isNotNull();
+        // pedidos+repartidor, items+tipo, gustos
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void paginaDelHistorialNoDependeDelTamanioDePagina() {
+        PedidoFiltroDTO filtro = new PedidoFiltroDTO();
+        filtro.setLimite(200);
+
+        List<PedidoResumenDTO> pagina = pedidoService.buscar(filtro).items();
+
+        assertThat(pagina).hasSize(200);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    // Toca las mismas relaciones que serializa el controller
+    private void recorrerComoJackson(List<Pedido> pedidos) {
+        for (Pedido pedido : pedidos) {
+            if (pedido.getRepartidor() != null) {
+                pedido.getRepartidor().getNombre();
+            }
+            for (ItemPedido item : pedido.getItems()) {
+                item.getTipoProducto().getNombre();
+                item.getGustos().forEach(Gusto::getNombre);
+            }
+        }
+    }
+}
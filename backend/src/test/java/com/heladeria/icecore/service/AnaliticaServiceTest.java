@@ -0,0 +1,222 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.ItemPedidoDTO;
+import com.heladeria.icecore.dto.PedidoDTO;
+import com.heladeria.icecore.dto.VentasPorItemDTO;
+import com.heladeria.icecore.dto.VentasResumenDTO;
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.repository.GustoRepository;
+import com.heladeria.icecore.repository.TipoProductoRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+// Analítica de ventas: los reportes salen de las tablas ventas_* (sin tocar pedidos),
+// las cancelaciones restan, y los volcados concurrentes con el checkout no pierden ni duplican ventas.
+// El volcado es un INSERT ... ON CONFLICT que H2 no entiende: corre contra PostgreSQL 14 (sin MERGE)
+// con las migraciones de Flyway, solo con el perfil de Maven "postgres" (mvn -Ppostgres test).
+@Tag("postgres")
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PedidoServiceTestConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AnaliticaServiceTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:14-alpine");
+
+    @Autowired
+    private AnaliticaService analiticaService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private GustoRepository gustoRepository;
+
+    @Autowired
+    private TipoProductoRepository tipoProductoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TipoProducto kilo;
+    private TipoProducto cuarto;
+    private Gusto chocolate;
+    private Gusto limon;
+
+    @BeforeEach
+    void setUp() {
+        kilo = tipo("1 Kilo", "12000");
+        cuarto = tipo("1/4 Kilo", "4000");
+        chocolate = gusto("Chocolate");
+        limon = gusto("Limón");
+        catalogoCache.recargar();
+    }
+
+    @AfterEach
+    void limpiar() {
+        analiticaService.volcar();
+        jdbcTemplate.execute("DELETE FROM ventas_hora");
+        jdbcTemplate.execute("DELETE FROM ventas_tipo_dia");
+        jdbcTemplate.execute("DELETE FROM ventas_gusto_dia");
+        jdbcTemplate.execute("DELETE FROM item_pedido_gustos");
+        jdbcTemplate.execute("DELETE FROM items_pedido");
+        jdbcTemplate.execute("DELETE FROM pedidos");
+        jdbcTemplate.execute("DELETE FROM gustos");
+        jdbcTemplate.execute("DELETE FROM tipos_producto");
+    }
+
+    @Test
+    void losReportesSalenDeLosAgregadosYLasCancelacionesRestan() {
+        pedidoService.crearPedido(pedido(item(kilo, 1, chocolate, limon)));
+        pedidoService.crearPedido(pedido(item(cuarto, 2, chocolate)));
+        Pedido cancelado = pedidoService.crearPedido(pedido(item(kilo, 3, limon)));
+        pedidoService.updateEstado(cancelado.getId(), EstadoPedido.CANCELADO, null);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        VentasResumenDTO resumen = analiticaService.resumen(null, null);
+        List<VentasPorItemDTO> tipos = analiticaService.porTipo(null, null);
+        List<VentasPorItemDTO> ranking = analiticaService.rankingGustos(null, null, 5);
+
+        assertThat(resumen.pedidos()).isEqualTo(2);
+        assertThat(resumen.ingresos()).isEqualByComparingTo("20000");
+        assertThat(resumen.ticketPromedio()).isEqualByComparingTo("10000");
+        assertThat(resumen.porDia()).singleElement()
+                .satisfies(dia -> assertThat(dia.dia()).isEqualTo(LocalDate.now()));
+        assertThat(tipos).extracting(VentasPorItemDTO::nombre, VentasPorItemDTO::unidades)
+                .containsExactlyInAnyOrder(tuple("1 Kilo", 1L), tuple("1/4 Kilo", 2L));
+        assertThat(ranking).first().satisfies(gusto -> {
+            assertThat(gusto.nombre()).isEqualTo("Chocolate");
+            assertThat(gusto.unidades()).isEqualTo(3);
+        });
+        // Ninguna consulta de los reportes pasa por la tabla de pedidos
+        assertThat(statistics.getQueries()).noneMatch(consulta -> consulta.contains("Pedido"));
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        // Reactivar el pedido cancelado lo vuelve a sumar
+        pedidoService.updateEstado(cancelado.getId(), EstadoPedido.PENDIENTE, null);
+        assertThat(analiticaService.resumen(null, null).pedidos()).isEqualTo(3);
+    }
+
+    @Test
+    void volcarMientrasSeVendeNoPierdeVentas() throws Exception {
+        List<Future<?>> tareas = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 40; i++) {
+                tareas.add(hilos.submit(() -> pedidoService.crearPedido(pedido(item(kilo, 1, chocolate)))));
+                if (i % 5 == 0) {
+                    tareas.add(hilos.submit(analiticaService::volcar));
+                }
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        }
+
+        VentasResumenDTO resumen = analiticaService.resumen(null, null);
+        assertThat(resumen.pedidos()).isEqualTo(40);
+        assertThat(resumen.ingresos()).isEqualByComparingTo("480000");
+        assertThat(analiticaService.rankingGustos(null, null, null)).singleElement()
+                .satisfies(gusto -> assertThat(gusto.unidades()).isEqualTo(40));
+    }
+
+    @Test
+    void dosVolcadosSumanSobreLasMismasFilas() {
+        pedidoService.crearPedido(pedido(item(kilo, 1, chocolate)));
+        analiticaService.volcar();
+        pedidoService.crearPedido(pedido(item(kilo, 2, chocolate)));
+        analiticaService.volcar();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ventas_hora", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForMap("SELECT pedidos, ingresos FROM ventas_hora"))
+                .satisfies(fila -> {
+                    assertThat(((Number) fila.get("pedidos")).longValue()).isEqualTo(2);
+                    assertThat((BigDecimal) fila.get("ingresos")).isEqualByComparingTo("36000");
+                });
+        assertThat(jdbcTemplate.queryForObject("SELECT unidades FROM ventas_tipo_dia", Long.class)).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT unidades FROM ventas_gusto_dia", Long.class)).isEqualTo(3);
+    }
+
+    @Test
+    void rechazaUnRangoInvertido() {
+        assertThatThrownBy(() -> analiticaService.resumen(LocalDate.now(), LocalDate.now().minusDays(1)))
+                .hasMessageContaining("posterior");
+    }
+
+    private TipoProducto tipo(String nombre, String precio) {
+        TipoProducto tipo = new TipoProducto();
+        tipo.setNombre(nombre);
+        tipo.setMaxGustos(4);
+        tipo.setPrecio(new BigDecimal(precio));
+        tipo.setEsPorPeso(true);
+        tipo.setPesoGramos(1000);
+        return tipoProductoRepository.save(tipo);
+    }
+
+    private Gusto gusto(String nombre) {
+        Gusto gusto = new Gusto();
+        gusto.setNombre(nombre);
+        gusto.setCategoria("Cremas");
+        return gustoRepository.save(gusto);
+    }
+
+    private ItemPedidoDTO item(TipoProducto tipo, int cantidad, Gusto... gustos) {
+        ItemPedidoDTO item = new ItemPedidoDTO();
+        item.setTipoProductoId(tipo.getId());
+        item.setGustoIds(Arrays.stream(gustos).map(Gusto::getId).toList());
+        item.setCantidad(cantidad);
+        return item;
+    }
+
+    private PedidoDTO pedido(ItemPedidoDTO item) {
+        PedidoDTO dto = new PedidoDTO();
+        dto.setNombreCliente("Ana");
+        dto.setMetodoPago("efectivo");
+        dto.setItems(List.of(item));
+        return dto;
+    }
+}
@@ -0,0 +1,192 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.ItemPedido;
+import com.heladeria.icecore.entity.PagoOutbox;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.repository.GustoRepository;
+import com.heladeria.icecore.repository.PagoOutboxRepository;
+import com.heladeria.icecore.repository.PedidoArchivadoRepository;
+import com.heladeria.icecore.repository.PedidoRepository;
+import com.heladeria.icecore.repository.TipoProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Archivo de pedidos: los entregados viejos salen de las tablas en caliente (con sus items y gustos)
+// de a lotes, y la exportación los sigue viendo.
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "icecore.archivo.dias=30",
+        "icecore.archivo.lote=2",
+        "icecore.archivo.espera-inicial-ms=3600000"
+})
+@Import({ ArchivoPedidosService.class, ExportacionPedidosService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ArchivoPedidosServiceTest {
+
+    @Autowired
+    private ArchivoPedidosService archivoPedidosService;
+
+    @Autowired
+    private ExportacionPedidosService exportacionPedidosService;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private PedidoArchivadoRepository pedidoArchivadoRepository;
+
+    @Autowired
+    private PagoOutboxRepository pagoOutboxRepository;
+
+    @Autowired
+    private TipoProductoRepository tipoProductoRepository;
+
+    @Autowired
+    private GustoRepository gustoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TipoProducto kilo;
+    private Gusto chocolate;
+    private Gusto limon;
+
+    @BeforeEach
+    void setUp() {
+        kilo = new TipoProducto();
+        kilo.setNombre("1 Kilo");
+        kilo.setMaxGustos(4);
+        kilo.setPrecio(new BigDecimal("12000"));
+        kilo = tipoProductoRepository.save(kilo);
+        chocolate = gusto("Chocolate");
+        limon = gusto("Limón");
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.execute("DELETE FROM item_pedido_gustos_archivo");
+        jdbcTemplate.execute("DELETE FROM items_pedido_archivo");
+        jdbcTemplate.execute("DELETE FROM pedidos_archivo");
+        jdbcTemplate.execute("DELETE FROM pagos_outbox");
+        jdbcTemplate.execute("DELETE FROM item_pedido_gustos");
+        jdbcTemplate.execute("DELETE FROM items_pedido");
+        jdbcTemplate.execute("DELETE FROM pedidos");
+        jdbcTemplate.execute("DELETE FROM gustos");
+        jdbcTemplate.execute("DELETE FROM tipos_producto");
+    }
+
+    @Test
+    void soloSeArchivanLosEntregadosViejosConTodoLoSuyo() {
+        LocalDateTime haceDosMeses = LocalDateTime.now().minusDays(60);
+        Long viejo1 = pedido(EstadoPedido.ENTREGADO, haceDosMeses);
+        Long viejo2 = pedido(EstadoPedido.ENTREGADO, haceDosMeses.plusHours(1));
+        Long viejo3 = pedido(EstadoPedido.ENTREGADO, haceDosMeses.plusHours(2));
+        Long reciente = pedido(EstadoPedido.ENTREGADO, LocalDateTime.now().minusDays(2));
+        Long cancelado = pedido(EstadoPedido.CANCELADO, haceDosMeses);
+        Long conPagoPendiente = pedido(EstadoPedido.ENTREGADO, haceDosMeses);
+        tareaDePago(viejo1, PagoOutbox.ENVIADO);
+        tareaDePago(conPagoPendiente, PagoOutbox.PENDIENTE);
+
+        // 3 archivables con lotes de 2: dos pasadas
+        assertThat(archivoPedidosService.archivar()).isEqualTo(3);
+
+        assertThat(pedidoRepository.findAll()).extracting(Pedido::getId)
+                .containsExactlyInAnyOrder(reciente, cancelado, conPagoPendiente);
+        assertThat(pedidoArchivadoRepository.findAllById(List.of(viejo1, viejo2, viejo3))).hasSize(3)
+                .allSatisfy(archivado -> {
+                    assertThat(archivado.getEstado()).isEqualTo("ENTREGADO");
+                    assertThat(archivado.getArchivadoEn()).isNotNull();
+                });
+        assertThat(contar("items_pedido")).isEqualTo(6);
+        assertThat(contar("items_pedido_archivo")).isEqualTo(6);
+        assertThat(contar("item_pedido_gustos")).isEqualTo(9);
+        assertThat(contar("item_pedido_gustos_archivo")).isEqualTo(9);
+        assertThat(pagoOutboxRepository.findAll()).singleElement()
+                .satisfies(tarea -> assertThat(tarea.getPedidoId()).isEqualTo(conPagoPendiente));
+
+        // Nada más para mover
+        assertThat(archivoPedidosService.archivar()).isZero();
+    }
+
+    @Test
+    void laExportacionIncluyeLoArchivado() throws Exception {
+        Long viejo = pedido(EstadoPedido.ENTREGADO, LocalDateTime.now().minusDays(90));
+        Long reciente = pedido(EstadoPedido.ENTREGADO, LocalDateTime.now());
+        archivoPedidosService.archivar();
+
+        StringWriter ndjson = new StringWriter();
+        exportacionPedidosService.escribir(null, null, ExportacionPedidosService.NDJSON, ndjson);
+
+        List<JsonNode> pedidos = ndjson.toString().lines().map(linea -> JsonMapper.shared().readTree(linea)).toList();
+        assertThat(pedidos).extracting(json -> json.get("id").asLong()).containsExactly(viejo, reciente);
+        JsonNode archivado = pedidos.get(0);
+        assertThat(archivado.get("items")).hasSize(2);
+        assertThat(archivado.get("items").get(1).get("producto").asString()).isEqualTo("1 Kilo");
+        assertThat(archivado.get("items").get(1).get("gustos")).extracting(JsonNode::asString)
+                .containsExactly("Chocolate", "Limón");
+    }
+
+    private int contar(String tabla) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + tabla, Integer.class);
+    }
+
+    private void tareaDePago(Long pedidoId, String estado) {
+        PagoOutbox tarea = new PagoOutbox();
+        tarea.setPedidoId(pedidoId);
+        tarea.setEstado(estado);
+        tarea.setProximoIntento(LocalDateTime.now());
+        pagoOutboxRepository.save(tarea);
+    }
+
+    private Gusto gusto(String nombre) {
+        Gusto gusto = new Gusto();
+        gusto.setNombre(nombre);
+        gusto.setCategoria("Cremas");
+        return gustoRepository.save(gusto);
+    }
+
+    private ItemPedido item(Pedido pedido, Gusto... gustos) {
+        ItemPedido item = new ItemPedido();
+        item.setPedido(pedido);
+        item.setTipoProducto(kilo);
+        item.setCantidad(1);
+        item.setSubtotal(kilo.getPrecio());
+        item.setGustos(List.of(gustos));
+        return item;
+    }
+
+    // Pedido de dos items (3 gustos en total) con la fecha dada (prePersist pone "ahora")
+    private Long pedido(EstadoPedido estado, LocalDateTime fecha) {
+        Pedido pedido = new Pedido();
+        pedido.setNombreCliente("Ana");
+        pedido.setMetodoPago("efectivo");
+        pedido.setEstado(estado);
+        pedido.setPrecioTotal(new BigDecimal("24000"));
+        pedido.getItems().add(item(pedido, chocolate));
+        pedido.getItems().add(item(pedido, chocolate, limon));
+        Long id = pedidoRepository.save(pedido).getId();
+        jdbcTemplate.update("UPDATE pedidos SET fecha = ? WHERE id = ?", Timestamp.valueOf(fecha), id);
+        return id;
+    }
+}
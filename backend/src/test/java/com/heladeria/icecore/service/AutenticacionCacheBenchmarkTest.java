@@ -0,0 +1,103 @@
+package com.heladeria.icecore.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Costo por petición de autenticar al admin con HTTP Basic: antes (BCrypt + búsqueda del
+// usuario en cada request) y después (caché de credenciales). Imprime el promedio de cada uno.
+class AutenticacionCacheBenchmarkTest {
+
+    private static final int PETICIONES = 50;
+
+    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final String hash = passwordEncoder.encode("admin123");
+    private final AtomicInteger consultasUsuario = new AtomicInteger();
+
+    // Hace de CustomUserDetailsService: cada llamada sería un SELECT a usuarios
+    private final UserDetailsService userDetailsService = username -> {
+        consultasUsuario.incrementAndGet();
+        return User.builder().username(username).password(hash).roles("ADMIN").build();
+    };
+
+    private AutenticacionCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AutenticacionCache();
+        ReflectionTestUtils.setField(cache, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(cache, "passwordEncoder", passwordEncoder);
+        ReflectionTestUtils.setField(cache, "ttlSegundos", 300L);
+        ReflectionTestUtils.setField(cache, "capacidad", 1000);
+        cache.init();
+    }
+
+    @Test
+    void conCacheSoloLaPrimeraPeticionPagaBcrypt() {
+        DaoAuthenticationProvider sinCache = new DaoAuthenticationProvider(userDetailsService);
+        sinCache.setPasswordEncoder(passwordEncoder);
+
+        long antes = promedioNanos(() -> sinCache.authenticate(credenciales("admin123")));
+        consultasUsuario.set(0);
+
+        cache.authenticate(credenciales("admin123"));
+        long despues = promedioNanos(() -> cache.authenticate(credenciales("admin123")));
+
+        System.out.printf("Auth por petición: sin caché %.3f ms, con caché %.3f ms (x%d)%n",
+                antes / 1e6, despues / 1e6, antes / Math.max(despues, 1));
+
+        assertThat(consultasUsuario).hasValue(1);
+        assertThat(cache.getFallos()).isEqualTo(1);
+        assertThat(cache.getAciertos()).isEqualTo(PETICIONES);
+        // BCrypt (strength 10) tarda decenas de ms; un acierto de caché, microsegundos
+        assertThat(despues * 20).isLessThan(antes);
+    }
+
+    @Test
+    void contrasenaIncorrectaNoSeCacheaNiPasa() {
+        cache.authenticate(credenciales("admin123"));
+
+        assertThatThrownBy(() -> cache.authenticate(credenciales("otra")))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> cache.authenticate(credenciales("otra")))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThat(consultasUsuario).hasValue(3);
+    }
+
+    @Test
+    void invalidarObligaAVerificarDeNuevo() {
+        Authentication primera = cache.authenticate(credenciales("admin123"));
+        assertThat(primera.isAuthenticated()).isTrue();
+        assertThat(primera.getCredentials()).isNull();
+
+        cache.invalidar("admin");
+        cache.authenticate(credenciales("admin123"));
+
+        assertThat(consultasUsuario).hasValue(2);
+    }
+
+    private long promedioNanos(Runnable autenticar) {
+        long inicio = System.nanoTime();
+        for (int i = 0; i < PETICIONES; i++) {
+            autenticar.run();
+        }
+        return (System.nanoTime() - inicio) / PETICIONES;
+    }
+
+    private UsernamePasswordAuthenticationToken credenciales(String password) {
+        return UsernamePasswordAuthenticationToken.unauthenticated("admin", password);
+    }
+}
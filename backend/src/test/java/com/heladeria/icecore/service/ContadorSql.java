@@ -0,0 +1,31 @@
+package com.heladeria.icecore.service;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Cuenta los SELECT de datos que Hibernate manda a la BD (se registra con
+// hibernate.session_factory.statement_inspector en los tests que lo usan).
+// Las llamadas a secuencias no cuentan: son reserva de ids, no búsquedas.
+public class ContadorSql implements StatementInspector {
+
+    private static final AtomicInteger selects = new AtomicInteger();
+
+    public static void reiniciar() {
+        selects.set(0);
+    }
+
+    public static int selects() {
+        return selects.get();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        String normalizado = sql.stripLeading().toLowerCase();
+        if (normalizado.startsWith("select") && !normalizado.contains("next value for")
+                && !normalizado.contains("nextval(")) {
+            selects.incrementAndGet();
+        }
+        return sql;
+    }
+}
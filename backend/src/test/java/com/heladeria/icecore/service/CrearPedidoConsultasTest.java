@@ -0,0 +1,172 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.ItemPedidoDTO;
+import com.heladeria.icecore.dto.PedidoDTO;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.TipoProducto;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// "Benchmark" de integración de crearPedido: la cantidad de SELECTs para validar un pedido
+// no puede crecer con el tamaño del carrito.
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.heladeria.icecore.service.ContadorSql",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true"
+})
+@Import({ PedidoServiceTestConfig.class, GustoService.class, ReintentosOptimistas.class })
+class CrearPedidoConsultasTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private GustoService gustoService;
+
+    private final List<TipoProducto> tipos = new ArrayList<>();
+    private final List<Gusto> gustos = new ArrayList<>();
+
+    @BeforeEach
+    void cargarCatalogo() {
+        for (int i = 1; i <= 4; i++) {
+            TipoProducto tipo = new TipoProducto();
+            tipo.setNombre("Pote " + i);
+            tipo.setMaxGustos(4);
+            tipo.setPrecio(BigDecimal.valueOf(1000L * i));
+            tipo.setEsPorPeso(true);
+            entityManager.persist(tipo);
+            tipos.add(tipo);
+        }
+        for (int i = 1; i <= 20; i++) {
+            Gusto gusto = new Gusto();
+            gusto.setNombre("Gusto " + i);
+            gusto.setCategoria("Cremas");
+            entityManager.persist(gusto);
+            gustos.add(gusto);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        catalogoCache.recargar();
+        // Como en producción, la foto del catálogo no queda atada a este contexto de persistencia
+        entityManager.clear();
+    }
+
+    @Test
+    void conCatalogoEnMemoriaNoHaySelectsSinImportarElTamanioDelCarrito() {
+        Map<Integer, Integer> selectsPorTamanio = new LinkedHashMap<>();
+        for (int potes : List.of(1, 10, 50)) {
+            ContadorSql.reiniciar();
+            Pedido pedido = pedidoService.crearPedido(carrito(potes));
+            entityManager.flush();
+            selectsPorTamanio.put(potes, ContadorSql.selects());
+            assertThat(pedido.getItems()).hasSize(potes);
+        }
+
+        assertThat(selectsPorTamanio).containsOnly(Map.entry(1, 0), Map.entry(10, 0), Map.entry(50, 0));
+    }
+
+    @Test
+    void losIdsQueNoEstanEnMemoriaSeResuelvenEnDosConsultasComoMaximo() {
+        // Altas que la caché todavía no vio (ej: hechas desde otra instancia)
+        TipoProducto tipoNuevo = new TipoProducto();
+        tipoNuevo.setNombre("Pote nuevo");
+        tipoNuevo.setMaxGustos(4);
+        tipoNuevo.setPrecio(BigDecimal.TEN);
+        tipoNuevo.setEsPorPeso(true);
+        entityManager.persist(tipoNuevo);
+        List<Gusto> gustosNuevos = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            Gusto gusto = new Gusto();
+            gusto.setNombre("Gusto nuevo " + i);
+            gusto.setCategoria("Frutales");
+            entityManager.persist(gusto);
+            gustosNuevos.add(gusto);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        PedidoDTO dto = carrito(30);
+        for (int i = 0; i < dto.getItems().size(); i++) {
+            ItemPedidoDTO item = dto.getItems().get(i);
+            item.setTipoProductoId(tipoNuevo.getId());
+            item.setGustoIds(List.of(gustosNuevos.get(i % 8).getId(), gustosNuevos.get((i + 1) % 8).getId()));
+        }
+
+        ContadorSql.reiniciar();
+        pedidoService.crearPedido(dto);
+        entityManager.flush();
+
+        assertThat(ContadorSql.selects()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void unPedidoGrandeSeInsertaEnLotes() {
+        pedidoService.crearPedido(carrito(1));
+        entityManager.flush();
+
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Pedido pedido = pedidoService.crearPedido(carrito(50));
+        entityManager.flush();
+
+        assertThat(pedido.getItems()).hasSize(50);
+        // secuencias + INSERT pedidos + lote de items_pedido + lote de item_pedido_gustos
+        // (con IDENTITY eran 1 + 50 + 100 sentencias)
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(6);
+    }
+
+    @Test
+    void rechazaGustosSinStock() {
+        // Como lo marca el admin: por GustoService, que guarda y actualiza la caché
+        Gusto agotado = gustoService.toggleStock(gustos.get(0).getId(), false);
+
+        PedidoDTO dto = carrito(1);
+        dto.getItems().get(0).setGustoIds(List.of(agotado.getId()));
+
+        assertThatThrownBy(() -> pedidoService.crearPedido(dto))
+                .hasMessageContaining("no está disponible");
+    }
+
+    private PedidoDTO carrito(int potes) {
+        PedidoDTO dto = new PedidoDTO();
+        dto.setNombreCliente("Cliente");
+        dto.setMetodoPago("Efectivo");
+        List<ItemPedidoDTO> items = new ArrayList<>();
+        for (int i = 0; i < potes; i++) {
+            ItemPedidoDTO item = new ItemPedidoDTO();
+            item.setTipoProductoId(tipos.get(i % tipos.size()).getId());
+            item.setGustoIds(List.of(gustos.get(i % gustos.size()).getId(),
+                    gustos.get((i + 1) % gustos.size()).getId()));
+            item.setCantidad(1);
+            items.add(item);
+        }
+        dto.setItems(items);
+        return dto;
+    }
+}
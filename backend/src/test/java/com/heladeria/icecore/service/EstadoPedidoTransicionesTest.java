@@ -0,0 +1,355 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.CambioEstadoLoteDTO;
+import com.heladeria.icecore.dto.CambioEstadoLoteResultadoDTO;
+import com.heladeria.icecore.dto.TransicionEstadoDTO;
+import com.heladeria.icecore.dto.VueltaRepartoDTO;
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.Repartidor;
+import com.heladeria.icecore.entity.VueltaReparto;
+import com.heladeria.icecore.event.PedidoEvent;
+import com.heladeria.icecore.event.PedidoEventType;
+import com.heladeria.icecore.repository.PedidoRepository;
+import com.heladeria.icecore.repository.VueltaRepartoRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Máquina de estados del pedido: cada paso es un UPDATE condicional sin cargar el pedido,
+// los pasos no permitidos se rechazan y dos cambios a la vez no se pisan; también en lote.
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({ PedidoServiceTestConfig.class, VueltaRepartoService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RecordApplicationEvents
+class EstadoPedidoTransicionesTest {
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private VueltaRepartoService vueltaRepartoService;
+
+    @Autowired
+    private RepartidorService repartidorService;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private VueltaRepartoRepository vueltaRepartoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEvents eventos;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        repartidorService.recargar();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.execute("DELETE FROM pedidos");
+        jdbcTemplate.execute("DELETE FROM vueltas_reparto");
+        jdbcTemplate.execute("DELETE FROM repartidores");
+    }
+
+    @Test
+    void unPasoEsUnSoloUpdateSinCargarElPedido() {
+        Long id = pedido(EstadoPedido.PENDIENTE).getId();
+
+        statistics.clear();
+        TransicionEstadoDTO transicion = pedidoService.updateEstado(id, EstadoPedido.EN_PREPARACION,
+                EstadoPedido.PENDIENTE);
+
+        assertThat(transicion.anterior()).isEqualTo(EstadoPedido.PENDIENTE);
+        assertThat(transicion.estado()).isEqualTo(EstadoPedido.EN_PREPARACION);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(estadoDe(id)).isEqualTo(EstadoPedido.EN_PREPARACION);
+        assertThat(eventos.stream(PedidoEvent.class)).singleElement().satisfies(evento -> {
+            assertThat(evento.estadoAnterior()).isEqualTo(EstadoPedido.PENDIENTE);
+            assertThat(evento.estado()).isEqualTo(EstadoPedido.EN_PREPARACION);
+        });
+    }
+
+    @Test
+    void losPasosNoPermitidosSeRechazan() {
+        Long entregado = pedido(EstadoPedido.ENTREGADO).getId();
+        Long cancelado = pedido(EstadoPedido.CANCELADO).getId();
+        Long pendiente = pedido(EstadoPedido.PENDIENTE).getId();
+        Long enPreparacion = pedido(EstadoPedido.EN_PREPARACION).getId();
+
+        assertThatThrownBy(() -> pedidoService.updateEstado(entregado, EstadoPedido.PENDIENTE, null))
+                .hasMessageContaining("no puede pasar");
+        assertThatThrownBy(() -> pedidoService.updateEstado(cancelado, EstadoPedido.ENTREGADO, null))
+                .hasMessageContaining("no puede pasar");
+        // Sin saltear pasos
+        assertThatThrownBy(() -> pedidoService.updateEstado(pendiente, EstadoPedido.LISTO, null))
+                .hasMessageContaining("no puede pasar");
+        assertThatThrownBy(() -> pedidoService.updateEstado(pendiente, EstadoPedido.EN_CAMINO, null))
+                .hasMessageContaining("no puede pasar");
+        assertThatThrownBy(() -> pedidoService.updateEstado(enPreparacion, EstadoPedido.EN_CAMINO, null))
+                .hasMessageContaining("no puede pasar");
+        // Retirado en el local (sin vuelta): no hay reparto que reabrir
+        assertThatThrownBy(() -> pedidoService.updateEstado(entregado, EstadoPedido.EN_CAMINO, null))
+                .hasMessageContaining("vuelta de reparto");
+        assertThatThrownBy(() -> EstadoPedido.desde("PERDIDO")).hasMessageContaining("no válido");
+
+        assertThat(estadoDe(entregado)).isEqualTo(EstadoPedido.ENTREGADO);
+        assertThat(estadoDe(cancelado)).isEqualTo(EstadoPedido.CANCELADO);
+        assertThat(estadoDe(pendiente)).isEqualTo(EstadoPedido.PENDIENTE);
+        assertThat(estadoDe(enPreparacion)).isEqualTo(EstadoPedido.EN_PREPARACION);
+        assertThat(eventos.stream(PedidoEvent.class)).isEmpty();
+    }
+
+    @Test
+    void unPanelDesactualizadoNoPisaElCambioDeOtro() {
+        Long id = pedido(EstadoPedido.EN_PREPARACION).getId();
+
+        // El panel todavía lo ve PENDIENTE, pero otro admin ya lo pasó a EN_PREPARACION
+        assertThatThrownBy(() -> pedidoService.updateEstado(id, EstadoPedido.CANCELADO, EstadoPedido.PENDIENTE))
+                .isInstanceOf(ReintentosOptimistas.CambioConcurrenteException.class);
+        assertThat(estadoDe(id)).isEqualTo(EstadoPedido.EN_PREPARACION);
+
+        // Los dos querían lo mismo: no es un conflicto, y no se avisa dos veces
+        TransicionEstadoDTO repetido = pedidoService.updateEstado(id, EstadoPedido.EN_PREPARACION,
+                EstadoPedido.PENDIENTE);
+        assertThat(repetido.anterior()).isEqualTo(repetido.estado());
+        assertThat(eventos.stream(PedidoEvent.class)).isEmpty();
+    }
+
+    @Test
+    void entregasRepetidasALaVezCobranUnaSolaVez() throws Exception {
+        Repartidor repartidor = new Repartidor();
+        repartidor.setNombre("Luis");
+        Long luis = repartidorService.crear(repartidor).getId();
+        Long id = pedido(EstadoPedido.LISTO).getId();
+        VueltaRepartoDTO vuelta = vueltaRepartoService.crear(luis, List.of(id));
+
+        List<Future<TransicionEstadoDTO>> entregas = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 10; i++) {
+                entregas.add(hilos.submit(() -> pedidoService.updateEstado(id, EstadoPedido.ENTREGADO,
+                        EstadoPedido.EN_CAMINO)));
+            }
+            int aplicadas = 0;
+            for (Future<TransicionEstadoDTO> entrega : entregas) {
+                if (entrega.get().anterior() == EstadoPedido.EN_CAMINO) {
+                    aplicadas++;
+                }
+            }
+            assertThat(aplicadas).isEqualTo(1);
+        }
+
+        VueltaReparto enCalle = vueltaRepartoRepository.findById(vuelta.id()).orElseThrow();
+        assertThat(enCalle.getPedidosEfectivo()).isEqualTo(1);
+        assertThat(enCalle.getEfectivoCobrado()).isEqualByComparingTo("12000");
+    }
+
+    @Test
+    void unEntregadoSeReabreMientrasSuVueltaSigueEnLaCalle() {
+        Repartidor repartidor = new Repartidor();
+        repartidor.setNombre("Luis");
+        Long luis = repartidorService.crear(repartidor).getId();
+        Long id = pedido(EstadoPedido.LISTO).getId();
+        VueltaRepartoDTO vuelta = vueltaRepartoService.crear(luis, List.of(id));
+        pedidoService.updateEstado(id, EstadoPedido.ENTREGADO, EstadoPedido.EN_CAMINO);
+
+        pedidoService.updateEstado(id, EstadoPedido.EN_CAMINO, EstadoPedido.ENTREGADO);
+
+        assertThat(estadoDe(id)).isEqualTo(EstadoPedido.EN_CAMINO);
+        VueltaReparto enCalle = vueltaRepartoRepository.findById(vuelta.id()).orElseThrow();
+        assertThat(enCalle.getPedidosEfectivo()).isZero();
+        assertThat(enCalle.getEfectivoCobrado()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void unEntregadoDeUnaVueltaRendidaNoSeReabre() {
+        Repartidor repartidor = new Repartidor();
+        repartidor.setNombre("Luis");
+        Long luis = repartidorService.crear(repartidor).getId();
+        Long id = pedido(EstadoPedido.LISTO).getId();
+        VueltaRepartoDTO vuelta = vueltaRepartoService.crear(luis, List.of(id));
+        vueltaRepartoService.finalizar(vuelta.id());
+
+        assertThatThrownBy(() -> pedidoService.updateEstado(id, EstadoPedido.EN_CAMINO, EstadoPedido.ENTREGADO))
+                .isInstanceOf(ReintentosOptimistas.CambioConcurrenteException.class)
+                .hasMessageContaining("ya se rindió");
+
+        // Ni el pedido ni la caja rendida cambiaron
+        assertThat(estadoDe(id)).isEqualTo(EstadoPedido.ENTREGADO);
+        VueltaReparto rendida = vueltaRepartoRepository.findById(vuelta.id()).orElseThrow();
+        assertThat(rendida.getPedidosEfectivo()).isEqualTo(1);
+        assertThat(rendida.getEfectivoCobrado()).isEqualByComparingTo("12000");
+        assertThat(eventos.stream(PedidoEvent.class))
+                .noneMatch(evento -> evento.estadoAnterior() == EstadoPedido.ENTREGADO);
+    }
+
+    // Cambio de estado en lote: todos los pedidos en una transacción con un batch de UPDATE,
+    // un resultado por pedido y un solo aviso al panel
+    @Test
+    void veintePedidosSonUnaLecturaYUnSoloAviso() {
+        List<CambioEstadoLoteDTO.Cambio> cambios = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            cambios.add(cambio(pedido(EstadoPedido.EN_PREPARACION).getId(), "LISTO", "EN_PREPARACION"));
+        }
+        statistics.clear();
+
+        CambioEstadoLoteResultadoDTO resultado = pedidoService.cambiarEstados(cambios);
+
+        assertThat(resultado.aplicados()).isEqualTo(20);
+        assertThat(resultado.rechazados()).isZero();
+        // Por JPA solo pasa la lectura que bloquea los pedidos; los UPDATE van en un batch JDBC
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pedidos WHERE estado = 'LISTO'",
+                Integer.class)).isEqualTo(20);
+        assertThat(eventos.stream(PedidoEvent.class)).singleElement().satisfies(evento -> {
+            assertThat(evento.tipo()).isEqualTo(PedidoEventType.ESTADOS_CAMBIADOS);
+            assertThat(evento.transiciones()).hasSize(20)
+                    .allSatisfy(t -> assertThat(t.estado()).isEqualTo(EstadoPedido.LISTO));
+        });
+    }
+
+    @Test
+    void cadaPedidoSeInformaPorSeparado() {
+        Long listo = pedido(EstadoPedido.EN_PREPARACION).getId();
+        Long entregado = pedido(EstadoPedido.ENTREGADO).getId();
+        Long yaCambio = pedido(EstadoPedido.CANCELADO).getId();
+        Long yaEstaba = pedido(EstadoPedido.LISTO).getId();
+        Long malEscrito = pedido(EstadoPedido.PENDIENTE).getId();
+
+        CambioEstadoLoteResultadoDTO resultado = pedidoService.cambiarEstados(List.of(
+                cambio(listo, "listo", null),
+                cambio(entregado, "LISTO", null),
+                cambio(yaCambio, "LISTO", "EN_PREPARACION"),
+                cambio(yaEstaba, "LISTO", "EN_PREPARACION"),
+                cambio(999_999L, "LISTO", null),
+                cambio(listo, "EN_CAMINO", null),
+                cambio(malEscrito, "LISTISIMO", null)));
+
+        assertThat(resultado.aplicados()).isEqualTo(2);
+        assertThat(resultado.rechazados()).isEqualTo(5);
+        assertThat(resultado.resultados()).extracting(CambioEstadoLoteResultadoDTO.Resultado::error)
+                .satisfiesExactly(
+                        error -> assertThat(error).isNull(),
+                        error -> assertThat(error).contains("no puede pasar"),
+                        error -> assertThat(error).contains("ya está CANCELADO"),
+                        error -> assertThat(error).isNull(),
+                        error -> assertThat(error).contains("no encontrado"),
+                        error -> assertThat(error).contains("más de una vez"),
+                        error -> assertThat(error).contains("no válido"));
+
+        assertThat(pedidoRepository.findById(listo).orElseThrow().getEstado()).isEqualTo(EstadoPedido.LISTO);
+        assertThat(pedidoRepository.findById(entregado).orElseThrow().getEstado()).isEqualTo(EstadoPedido.ENTREGADO);
+        assertThat(pedidoRepository.findById(yaCambio).orElseThrow().getEstado()).isEqualTo(EstadoPedido.CANCELADO);
+        // Solo el que realmente cambió viaja en el aviso
+        assertThat(eventos.stream(PedidoEvent.class)).singleElement()
+                .satisfies(evento -> assertThat(evento.transiciones()).singleElement()
+                        .satisfies(t -> assertThat(t.pedidoId()).isEqualTo(listo)));
+    }
+
+    @Test
+    void lasEntregasEnLoteSumanALaCajaDeLaVuelta() {
+        Repartidor repartidor = new Repartidor();
+        repartidor.setNombre("Luis");
+        Long luis = repartidorService.crear(repartidor).getId();
+        List<Long> ids = List.of(pedido(EstadoPedido.LISTO).getId(), pedido(EstadoPedido.LISTO).getId(),
+                pedido(EstadoPedido.LISTO).getId());
+        VueltaRepartoDTO vuelta = vueltaRepartoService.crear(luis, ids);
+
+        pedidoService.cambiarEstados(ids.stream().map(id -> cambio(id, "ENTREGADO", "EN_CAMINO")).toList());
+
+        VueltaReparto enCalle = vueltaRepartoRepository.findById(vuelta.id()).orElseThrow();
+        assertThat(enCalle.getPedidosEfectivo()).isEqualTo(3);
+        assertThat(enCalle.getEfectivoCobrado()).isEqualByComparingTo("36000");
+    }
+
+    @Test
+    void unLoteNoTocaLaCajaDeUnaVueltaRendida() {
+        Repartidor repartidor = new Repartidor();
+        repartidor.setNombre("Luis");
+        Long luis = repartidorService.crear(repartidor).getId();
+        Long id = pedido(EstadoPedido.LISTO).getId();
+        VueltaRepartoDTO vuelta = vueltaRepartoService.crear(luis, List.of(id));
+        pedidoService.cambiarEstados(List.of(cambio(id, "ENTREGADO", "EN_CAMINO")));
+        vueltaRepartoService.finalizar(vuelta.id());
+
+        CambioEstadoLoteResultadoDTO resultado = pedidoService.cambiarEstados(
+                List.of(cambio(id, "EN_CAMINO", "ENTREGADO")));
+
+        assertThat(resultado.aplicados()).isZero();
+        assertThat(resultado.resultados()).singleElement()
+                .satisfies(r -> assertThat(r.error()).contains("ya se rindió"));
+        assertThat(pedidoRepository.findById(id).orElseThrow().getEstado()).isEqualTo(EstadoPedido.ENTREGADO);
+        VueltaReparto rendida = vueltaRepartoRepository.findById(vuelta.id()).orElseThrow();
+        assertThat(rendida.getPedidosEfectivo()).isEqualTo(1);
+        assertThat(rendida.getEfectivoCobrado()).isEqualByComparingTo("12000");
+    }
+
+    @Test
+    void rechazaLotesVaciosODemasiadoGrandes() {
+        assertThatThrownBy(() -> pedidoService.cambiarEstados(List.of())).hasMessageContaining("No hay cambios");
+        List<CambioEstadoLoteDTO.Cambio> muchos = new ArrayList<>();
+        for (long i = 0; i < 201; i++) {
+            muchos.add(cambio(i, "LISTO", null));
+        }
+        assertThatThrownBy(() -> pedidoService.cambiarEstados(muchos)).hasMessageContaining("más de 200");
+    }
+
+    private EstadoPedido estadoDe(Long id) {
+        return pedidoRepository.findById(id).orElseThrow().getEstado();
+    }
+
+    private Pedido pedido(EstadoPedido estado) {
+        Pedido pedido = new Pedido();
+        pedido.setNombreCliente("Ana");
+        pedido.setMetodoPago("efectivo");
+        pedido.setPrecioTotal(new BigDecimal("12000"));
+        pedido.setEstado(estado);
+        return pedidoRepository.save(pedido);
+    }
+
+    private CambioEstadoLoteDTO.Cambio cambio(Long pedidoId, String estado, String actual) {
+        CambioEstadoLoteDTO.Cambio cambio = new CambioEstadoLoteDTO.Cambio();
+        cambio.setPedidoId(pedidoId);
+        cambio.setEstado(estado);
+        cambio.setActual(actual);
+        return cambio;
+    }
+}
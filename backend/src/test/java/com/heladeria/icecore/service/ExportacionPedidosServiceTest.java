@@ -0,0 +1,175 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.ItemPedido;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.repository.GustoRepository;
+import com.heladeria.icecore.repository.PedidoRepository;
+import com.heladeria.icecore.repository.TipoProductoRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Exportación del historial: un pedido por vez desde un cursor JDBC, con sus items y gustos,
+// sin cargar entidades en el contexto de persistencia.
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "icecore.exportacion.fetch-size=7"
+})
+@Import(ExportacionPedidosService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ExportacionPedidosServiceTest {
+
+    @Autowired
+    private ExportacionPedidosService exportacionPedidosService;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private TipoProductoRepository tipoProductoRepository;
+
+    @Autowired
+    private GustoRepository gustoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TipoProducto kilo;
+    private Gusto chocolate;
+    private Gusto limon;
+
+    @BeforeEach
+    void setUp() {
+        kilo = new TipoProducto();
+        kilo.setNombre("1 Kilo");
+        kilo.setMaxGustos(4);
+        kilo.setPrecio(new BigDecimal("12000"));
+        kilo = tipoProductoRepository.save(kilo);
+        chocolate = gusto("Chocolate");
+        limon = gusto("Limón");
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.execute("DELETE FROM item_pedido_gustos");
+        jdbcTemplate.execute("DELETE FROM items_pedido");
+        jdbcTemplate.execute("DELETE FROM pedidos");
+        jdbcTemplate.execute("DELETE FROM gustos");
+        jdbcTemplate.execute("DELETE FROM tipos_producto");
+    }
+
+    @Test
+    void elCsvTraeUnaFilaPorItemConSusGustos() throws Exception {
+        Pedido pedido = pedido("Ana", "Calle 1, depto \"B\"", item(2, chocolate, limon), item(1, limon));
+        pedido("Sin items", "Calle 2");
+
+        StringWriter csv = new StringWriter();
+        exportacionPedidosService.escribir(null, null, ExportacionPedidosService.CSV, csv);
+
+        List<String> lineas = csv.toString().lines().toList();
+        assertThat(lineas).hasSize(4);
+        assertThat(lineas.get(0)).startsWith("\uFEFFpedido_id,fecha,estado,cliente");
+        assertThat(lineas.get(1)).startsWith(pedido.getId() + ",")
+                .contains(",\"Calle 1, depto \"\"B\"\"\",")
+                .endsWith(",1 Kilo,2,24000.00,Chocolate / Limón");
+        assertThat(lineas.get(2)).endsWith(",1 Kilo,1,12000.00,Limón");
+        assertThat(lineas.get(3)).contains("Sin items").endsWith(",,,,");
+    }
+
+    @Test
+    void ndjsonEsUnPedidoPorLineaYNoCargaEntidades() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            ids.add(pedido("Cliente " + i, "Calle " + i, item(1, chocolate), item(3, chocolate, limon)).getId());
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportacionPedidosService.exportar(LocalDate.now(), LocalDate.now(), "NDJSON").writeTo(salida);
+
+        List<JsonNode> pedidos = salida.toString(StandardCharsets.UTF_8).lines()
+                .map(linea -> JsonMapper.shared().readTree(linea))
+                .toList();
+        assertThat(pedidos).extracting(json -> json.get("id").asLong()).containsExactlyElementsOf(ids);
+        JsonNode items = pedidos.get(0).get("items");
+        assertThat(items).hasSize(2);
+        assertThat(items.get(1).get("gustos")).extracting(JsonNode::asString).containsExactly("Chocolate", "Limón");
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        // Rango sin pedidos: nada
+        ByteArrayOutputStream vacia = new ByteArrayOutputStream();
+        exportacionPedidosService.exportar(LocalDate.now().minusDays(10), LocalDate.now().minusDays(5), "ndjson")
+                .writeTo(vacia);
+        assertThat(vacia.size()).isZero();
+    }
+
+    @Test
+    void rechazaFormatosYRangosInvalidos() {
+        assertThatThrownBy(() -> exportacionPedidosService.exportar(null, null, "xlsx"))
+                .hasMessageContaining("Formato");
+        LocalDate hoy = LocalDate.now();
+        assertThatThrownBy(() -> exportacionPedidosService.exportar(hoy, hoy.minusDays(1), null))
+                .hasMessageContaining("posterior");
+    }
+
+    private Gusto gusto(String nombre) {
+        Gusto gusto = new Gusto();
+        gusto.setNombre(nombre);
+        gusto.setCategoria("Cremas");
+        return gustoRepository.save(gusto);
+    }
+
+    private ItemPedido item(int cantidad, Gusto... gustos) {
+        ItemPedido item = new ItemPedido();
+        item.setTipoProducto(kilo);
+        item.setCantidad(cantidad);
+        item.setSubtotal(kilo.getPrecio().multiply(BigDecimal.valueOf(cantidad)));
+        item.setGustos(List.of(gustos));
+        return item;
+    }
+
+    private Pedido pedido(String cliente, String direccion, ItemPedido... items) {
+        Pedido pedido = new Pedido();
+        pedido.setNombreCliente(cliente);
+        pedido.setDireccion(direccion);
+        pedido.setMetodoPago("efectivo");
+        BigDecimal total = BigDecimal.ZERO;
+        for (ItemPedido item : items) {
+            item.setPedido(pedido);
+            pedido.getItems().add(item);
+            total = total.add(item.getSubtotal());
+        }
+        pedido.setPrecioTotal(total);
+        return pedidoRepository.save(pedido);
+    }
+}
@@ -0,0 +1,201 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.FranjaEntregaDTO;
+import com.heladeria.icecore.dto.ItemPedidoDTO;
+import com.heladeria.icecore.dto.PedidoDTO;
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.repository.GustoRepository;
+import com.heladeria.icecore.repository.TipoProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Cupo por franja de entrega: muchos checkouts simultáneos a la misma franja no pasan la capacidad,
+// y los lugares vuelven cuando el pedido hace rollback o se cancela.
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "icecore.entregas.capacidad-franja=5"
+})
+@Import(PedidoServiceTestConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FranjasEntregaServiceTest {
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private FranjasEntregaService franjasEntregaService;
+
+    @Autowired
+    private TipoProductoRepository tipoProductoRepository;
+
+    @Autowired
+    private GustoRepository gustoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TipoProducto kilo;
+    private Gusto chocolate;
+    private LocalDateTime franja;
+
+    @BeforeEach
+    void setUp() {
+        kilo = new TipoProducto();
+        kilo.setNombre("1 Kilo");
+        kilo.setMaxGustos(4);
+        kilo.setPrecio(new BigDecimal("12000"));
+        kilo.setEsPorPeso(true);
+        kilo = tipoProductoRepository.save(kilo);
+
+        chocolate = new Gusto();
+        chocolate.setNombre("Chocolate");
+        chocolate.setCategoria("Chocolates");
+        chocolate = gustoRepository.save(chocolate);
+
+        franjasEntregaService.reconciliar();
+        // Con los horarios por defecto siempre hay franjas de mañana
+        franja = franjasEntregaService.franjas().franjas().getLast().inicio();
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.execute("DELETE FROM item_pedido_gustos");
+        jdbcTemplate.execute("DELETE FROM items_pedido");
+        jdbcTemplate.execute("DELETE FROM pedidos");
+        jdbcTemplate.execute("DELETE FROM gustos");
+        jdbcTemplate.execute("DELETE FROM tipos_producto");
+        jdbcTemplate.execute("DELETE FROM business_hours");
+    }
+
+    @Test
+    void checkoutsSimultaneosNoPasanElCupo() throws Exception {
+        AtomicInteger creados = new AtomicInteger();
+        AtomicInteger rechazados = new AtomicInteger();
+        List<Future<?>> checkouts = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 50; i++) {
+                checkouts.add(hilos.submit(() -> {
+                    try {
+                        pedidoService.crearPedido(pedido(franja));
+                        creados.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        assertThat(e).hasMessageContaining("ya está completa");
+                        rechazados.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> checkout : checkouts) {
+                checkout.get();
+            }
+        }
+
+        assertThat(creados.get()).isEqualTo(5);
+        assertThat(rechazados.get()).isEqualTo(45);
+        assertThat(disponibles(franja)).isZero();
+
+        // Al reiniciar, el cupo se reconstruye desde la BD
+        franjasEntregaService.reconciliar();
+        assertThat(franjasEntregaService.ocupadasEn(franja)).isEqualTo(5);
+    }
+
+    @Test
+    void rollbackYCancelacionDevuelvenElLugar() {
+        transactionTemplate.executeWithoutResult(estado -> {
+            pedidoService.crearPedido(pedido(franja));
+            assertThat(franjasEntregaService.ocupadasEn(franja)).isEqualTo(1);
+            estado.setRollbackOnly();
+        });
+        assertThat(franjasEntregaService.ocupadasEn(franja)).isZero();
+
+        Pedido pedido = pedidoService.crearPedido(pedido(franja));
+        assertThat(pedido.getFranjaEntrega()).isEqualTo(franja);
+        assertThat(pedido.getHoraEntrega()).isEqualTo(franjasEntregaService.etiqueta(franja));
+        assertThat(disponibles(franja)).isEqualTo(4);
+
+        pedidoService.updateEstado(pedido.getId(), EstadoPedido.CANCELADO, null);
+        assertThat(disponibles(franja)).isEqualTo(5);
+        franjasEntregaService.reconciliar();
+        assertThat(franjasEntregaService.ocupadasEn(franja)).isZero();
+    }
+
+    @Test
+    void franjaQueNoSeOfreceSeRechaza() {
+        LocalDateTime pasada = LocalDateTime.now().minusDays(1).withHour(12).withMinute(0).withSecond(0).withNano(0);
+        LocalDateTime desfasada = franja.plusMinutes(7);
+
+        assertThatThrownBy(() -> pedidoService.crearPedido(pedido(pasada))).hasMessageContaining("ya no está disponible");
+        assertThatThrownBy(() -> pedidoService.crearPedido(pedido(desfasada))).hasMessageContaining("ya no está disponible");
+    }
+
+    @Test
+    void soloConLaHoraDeEntregaTambienSeRespetaElCupo() {
+        for (int i = 0; i < 5; i++) {
+            pedidoService.crearPedido(pedido(franja));
+        }
+
+        PedidoDTO soloHora = pedido(null);
+        soloHora.setHoraEntrega(franjasEntregaService.etiqueta(franja));
+        assertThatThrownBy(() -> pedidoService.crearPedido(soloHora)).hasMessageContaining("ya está completa");
+
+        PedidoDTO inventada = pedido(null);
+        inventada.setHoraEntrega("Hoy a las 25:00");
+        assertThatThrownBy(() -> pedidoService.crearPedido(inventada)).hasMessageContaining("no es una franja");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pedidos", Integer.class)).isEqualTo(5);
+
+        // Con lugar, toma la franja como si la hubiera elegido
+        LocalDateTime otra = franjasEntregaService.franjas().franjas().getFirst().inicio();
+        PedidoDTO conLugar = pedido(null);
+        conLugar.setHoraEntrega(" " + franjasEntregaService.etiqueta(otra).toLowerCase() + " ");
+        assertThat(pedidoService.crearPedido(conLugar).getFranjaEntrega()).isEqualTo(otra);
+        assertThat(franjasEntregaService.ocupadasEn(otra)).isEqualTo(1);
+    }
+
+    private int disponibles(LocalDateTime inicio) {
+        return franjasEntregaService.franjas().franjas().stream()
+                .filter(f -> f.inicio().equals(inicio))
+                .mapToInt(FranjaEntregaDTO::disponibles)
+                .findFirst().orElseThrow();
+    }
+
+    private PedidoDTO pedido(LocalDateTime franjaEntrega) {
+        ItemPedidoDTO item = new ItemPedidoDTO();
+        item.setTipoProductoId(kilo.getId());
+        item.setGustoIds(List.of(chocolate.getId()));
+        item.setCantidad(1);
+
+        PedidoDTO dto = new PedidoDTO();
+        dto.setNombreCliente("Ana");
+        dto.setMetodoPago("efectivo");
+        dto.setFranjaEntrega(franjaEntrega);
+        dto.setItems(List.of(item));
+        return dto;
+    }
+}
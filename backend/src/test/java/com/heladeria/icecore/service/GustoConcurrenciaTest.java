@@ -0,0 +1,122 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.event.DisponibilidadGustoEvent;
+import com.heladeria.icecore.repository.GustoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Varios admins cambiando el mismo gusto a la vez: con @Version + reintento no se pierde ningún cambio,
+// y la caché / las tiendas quedan con la última versión.
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "icecore.catalogo.reintentos=50"
+})
+@Import({ GustoService.class, CatalogoCache.class, ReintentosOptimistas.class, DisponibilidadFeedService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RecordApplicationEvents
+class GustoConcurrenciaTest {
+
+    @Autowired
+    private GustoService gustoService;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private GustoRepository gustoRepository;
+
+    @Autowired
+    private ApplicationEvents eventos;
+
+    private Gusto menta;
+
+    @BeforeEach
+    void setUp() {
+        menta = new Gusto();
+        menta.setNombre("Menta");
+        menta.setCategoria("Cremas");
+        menta = gustoService.save(menta);
+        catalogoCache.recargar();
+    }
+
+    @AfterEach
+    void limpiar() {
+        gustoRepository.deleteAll();
+    }
+
+    @Test
+    void cambiosSimultaneosNoSePierden() throws Exception {
+        int admins = 20;
+        List<Future<Gusto>> cambios = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < admins; i++) {
+                cambios.add(hilos.submit(() -> gustoService.toggleActive(menta.getId(), null)));
+            }
+            for (Future<Gusto> cambio : cambios) {
+                cambio.get();
+            }
+        }
+
+        // 20 inversiones aplicadas de a una: vuelve al valor original, versión +20
+        Gusto enBd = gustoRepository.findById(menta.getId()).orElseThrow();
+        assertThat(enBd.isActivo()).isTrue();
+        assertThat(enBd.getVersion()).isEqualTo(menta.getVersion() + admins);
+
+        // Aunque los commits terminen en desorden, la caché queda con la última versión
+        Gusto enCache = catalogoCache.seleccionar(Set.of(), Set.of(menta.getId())).gustos().get(menta.getId());
+        assertThat(enCache.getVersion()).isEqualTo(enBd.getVersion());
+        assertThat(enCache.isActivo()).isTrue();
+    }
+
+    @Test
+    void stockAbsolutoEsIdempotenteYSeAvisaALasTiendas() {
+        gustoService.toggleStock(menta.getId(), false);
+        gustoService.toggleStock(menta.getId(), false);
+
+        Gusto enCache = catalogoCache.seleccionar(Set.of(), Set.of(menta.getId())).gustos().get(menta.getId());
+        assertThat(enCache.isHayStock()).isFalse();
+        assertThat(catalogoCache.gustosActivos()).singleElement()
+                .satisfies(dto -> assertThat(dto.hayStock()).isFalse());
+        assertThat(eventos.stream(DisponibilidadGustoEvent.class))
+                .filteredOn(evento -> evento.gustoId().equals(menta.getId()) && !evento.hayStock())
+                .hasSize(2);
+    }
+
+    @Test
+    void formularioConVersionViejaNoPisaElCambioDeOtro() {
+        Gusto formulario = new Gusto();
+        formulario.setNombre("Menta granizada");
+        formulario.setCategoria("Cremas");
+        formulario.setVersion(menta.getVersion());
+
+        // Otro admin guardó primero
+        gustoService.toggleStock(menta.getId(), false);
+
+        assertThatThrownBy(() -> gustoService.update(menta.getId(), formulario))
+                .isInstanceOf(ReintentosOptimistas.CambioConcurrenteException.class);
+        assertThat(gustoRepository.findById(menta.getId()).orElseThrow().getNombre()).isEqualTo("Menta");
+
+        formulario.setVersion(gustoRepository.findById(menta.getId()).orElseThrow().getVersion());
+        assertThat(gustoService.update(menta.getId(), formulario).getNombre()).isEqualTo("Menta granizada");
+    }
+}
@@ -0,0 +1,50 @@
+package com.heladeria.icecore.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Los horarios se leen de memoria (el upsert de la fila de configuración se prueba contra
+// PostgreSQL en HorariosUpsertTest: H2 no entiende INSERT ... ON CONFLICT)
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.heladeria.icecore.service.ContadorSql"
+})
+@Import({ HorariosService.class, FranjasEntregaService.class })
+class HorariosServiceTest {
+
+    @Autowired
+    private HorariosService horariosService;
+
+    @Autowired
+    private FranjasEntregaService franjasEntregaService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void cargar() {
+        horariosService.recargar();
+    }
+
+    @Test
+    void lasLecturasNoVanALaBaseDeDatos() {
+        // Sin fila guardada: valores por defecto, sin escribir nada
+        assertThat(horariosService.getHours().getAperturaT1()).isEqualTo(660);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM business_hours", Integer.class)).isZero();
+
+        ContadorSql.reiniciar();
+        for (int i = 0; i < 1000; i++) {
+            horariosService.getHours();
+            horariosService.etag();
+            franjasEntregaService.franjas();
+        }
+        assertThat(ContadorSql.selects()).isZero();
+    }
+}
@@ -0,0 +1,81 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.entity.Horarios;
+import com.heladeria.icecore.event.HorariosActualizadosEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// El guardado de horarios es un único INSERT ... ON CONFLICT de la fila de configuración: se prueba
+// contra un PostgreSQL real con las migraciones de Flyway, en la 14 (que todavía no tiene MERGE).
+// Solo corre con el perfil de Maven "postgres" (mvn -Ppostgres test).
+@Tag("postgres")
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ HorariosService.class, FranjasEntregaService.class })
+@RecordApplicationEvents
+class HorariosUpsertTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:14-alpine");
+
+    @Autowired
+    private HorariosService horariosService;
+
+    @Autowired
+    private FranjasEntregaService franjasEntregaService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEvents eventos;
+
+    @BeforeEach
+    void cargar() {
+        horariosService.recargar();
+    }
+
+    @Test
+    void guardarHaceUpsertDeLaFilaUnicaYAvisa() {
+        String etagAntes = horariosService.etag();
+
+        Horarios nuevos = new Horarios();
+        nuevos.setId(99L); // el id que mande el cliente no importa
+        nuevos.setAperturaT1(600);
+        horariosService.save(nuevos);
+        nuevos.setAperturaT1(630);
+        Horarios guardados = horariosService.save(nuevos);
+
+        Map<String, Object> fila = jdbcTemplate.queryForMap("SELECT id, apertura_t1 FROM business_hours");
+        assertThat(((Number) fila.get("ID")).longValue()).isEqualTo(Horarios.ID_UNICO);
+        assertThat(fila.get("APERTURA_T1")).isEqualTo(630);
+
+        assertThat(guardados.getAperturaT1()).isEqualTo(630);
+        assertThat(horariosService.getHours()).isSameAs(guardados);
+        assertThat(horariosService.etag()).isNotEqualTo(etagAntes);
+        assertThat(eventos.stream(HorariosActualizadosEvent.class)).hasSize(2)
+                .last().satisfies(evento -> assertThat(evento.horarios()).isSameAs(guardados));
+
+        // Las franjas de entrega ya salen de los horarios nuevos (mañana arranca a las 10:30)
+        assertThat(franjasEntregaService.franjas().franjas())
+                .anySatisfy(franja -> assertThat(franja.etiqueta()).isEqualTo("Mañana a las 10:30"));
+    }
+}
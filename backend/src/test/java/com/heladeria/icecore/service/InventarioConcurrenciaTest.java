@@ -0,0 +1,272 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.CambioEstadoLoteDTO;
+import com.heladeria.icecore.dto.CambioEstadoLoteResultadoDTO;
+import com.heladeria.icecore.dto.ItemPedidoDTO;
+import com.heladeria.icecore.dto.PedidoDTO;
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.event.DisponibilidadGustoEvent;
+import com.heladeria.icecore.repository.GustoRepository;
+import com.heladeria.icecore.repository.TipoProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Stock en gramos bajo carga: 60 checkouts simultáneos contra un balde que alcanza para 12 kilos.
+// Se venden exactamente 12, el stock queda en 0 (nunca negativo) y el gusto se agota solo.
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(PedidoServiceTestConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RecordApplicationEvents
+class InventarioConcurrenciaTest {
+
+    private static final int CHECKOUTS = 60;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private GustoRepository gustoRepository;
+
+    @Autowired
+    private TipoProductoRepository tipoProductoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEvents eventos;
+
+    private TipoProducto kilo;
+    private Gusto dulceDeLeche;
+    private Gusto limon;
+    private Gusto frutilla;
+
+    @BeforeEach
+    void setUp() {
+        kilo = new TipoProducto();
+        kilo.setNombre("1 Kilo");
+        kilo.setMaxGustos(4);
+        kilo.setPrecio(new BigDecimal("12000"));
+        kilo.setEsPorPeso(true);
+        kilo.setPesoGramos(1000);
+        kilo = tipoProductoRepository.save(kilo);
+
+        dulceDeLeche = gusto("Dulce de leche", 12_000);
+        limon = gusto("Limón", 10_000);
+        frutilla = gusto("Frutilla", null);
+        catalogoCache.recargar();
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.execute("DELETE FROM item_pedido_gustos");
+        jdbcTemplate.execute("DELETE FROM items_pedido");
+        jdbcTemplate.execute("DELETE FROM pedidos");
+        jdbcTemplate.execute("DELETE FROM gustos");
+        jdbcTemplate.execute("DELETE FROM tipos_producto");
+    }
+
+    @Test
+    void checkoutsSimultaneosNoVendenMasDeLoQueHay() throws Exception {
+        AtomicInteger vendidos = new AtomicInteger();
+        AtomicInteger sinStock = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> checkouts = new ArrayList<>();
+
+        long inicio = System.nanoTime();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CHECKOUTS; i++) {
+                checkouts.add(hilos.submit(() -> {
+                    largada.await();
+                    try {
+                        pedidoService.crearPedido(pedido(1, dulceDeLeche));
+                        vendidos.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // Sin stock: o lo rechazó el UPDATE, o la caché ya lo mostraba agotado
+                        assertThat(e.getMessage()).containsAnyOf("No queda suficiente", "no está disponible");
+                        sinStock.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> checkout : checkouts) {
+                checkout.get(30, TimeUnit.SECONDS);
+            }
+        }
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        System.out.printf("Inventario: %d vendidos, %d sin stock, %d ms%n", vendidos.get(), sinStock.get(), ms);
+
+        assertThat(vendidos.get()).isEqualTo(12);
+        assertThat(sinStock.get()).isEqualTo(CHECKOUTS - 12);
+
+        Gusto enBd = gustoRepository.findById(dulceDeLeche.getId()).orElseThrow();
+        assertThat(enBd.getStockGramos()).isZero();
+        assertThat(enBd.isHayStock()).isFalse();
+
+        // La caché (y las tiendas) ya lo muestran agotado
+        Gusto enCache = catalogoCache.seleccionar(Set.of(), Set.of(dulceDeLeche.getId())).gustos()
+                .get(dulceDeLeche.getId());
+        assertThat(enCache.isHayStock()).isFalse();
+        assertThat(eventos.stream(DisponibilidadGustoEvent.class))
+                .anySatisfy(evento -> {
+                    assertThat(evento.gustoId()).isEqualTo(dulceDeLeche.getId());
+                    assertThat(evento.hayStock()).isFalse();
+                });
+    }
+
+    @Test
+    void elPesoSeRepartePorGustoYSinStockSeCancelaTodoElPedido() {
+        // 2 kilos de 3 gustos: 2000 g / 3 = 667 + 667 + 666; frutilla no lleva inventario
+        pedidoService.crearPedido(pedido(2, dulceDeLeche, limon, frutilla));
+
+        assertThat(stock(dulceDeLeche)).isEqualTo(12_000 - 667);
+        assertThat(stock(limon)).isEqualTo(10_000 - 667);
+        assertThat(stock(frutilla)).isNull();
+
+        // 20 kilos de limón no alcanzan: no se descuenta nada de ningún gusto
+        assertThatThrownBy(() -> pedidoService.crearPedido(pedido(20, dulceDeLeche, limon)))
+                .hasMessageContaining("No queda suficiente Limón");
+        assertThat(stock(dulceDeLeche)).isEqualTo(12_000 - 667);
+        assertThat(stock(limon)).isEqualTo(10_000 - 667);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pedidos", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void cancelarDevuelveElStockYReactivarLoVuelveADescontar() {
+        // 10 kilos de limón agotan el balde
+        Long id = pedidoService.crearPedido(pedido(10, limon)).getId();
+        assertThat(stock(limon)).isZero();
+        assertThat(gustoRepository.findById(limon.getId()).orElseThrow().isHayStock()).isFalse();
+
+        pedidoService.updateEstado(id, EstadoPedido.CANCELADO, EstadoPedido.PENDIENTE);
+
+        Gusto repuesto = gustoRepository.findById(limon.getId()).orElseThrow();
+        assertThat(repuesto.getStockGramos()).isEqualTo(10_000);
+        assertThat(repuesto.isHayStock()).isTrue();
+        assertThat(catalogoCache.seleccionar(Set.of(), Set.of(limon.getId())).gustos().get(limon.getId())
+                .isHayStock()).isTrue();
+
+        pedidoService.updateEstado(id, EstadoPedido.PENDIENTE, EstadoPedido.CANCELADO);
+        assertThat(stock(limon)).isZero();
+
+        // Si mientras estaba cancelado se vendió el limón, no se puede reactivar
+        pedidoService.updateEstado(id, EstadoPedido.CANCELADO, EstadoPedido.PENDIENTE);
+        pedidoService.crearPedido(pedido(1, limon));
+        assertThatThrownBy(() -> pedidoService.updateEstado(id, EstadoPedido.PENDIENTE, EstadoPedido.CANCELADO))
+                .hasMessageContaining("No queda suficiente Limón");
+        assertThat(jdbcTemplate.queryForObject("SELECT estado FROM pedidos WHERE id = ?", String.class, id))
+                .isEqualTo("CANCELADO");
+        assertThat(stock(limon)).isEqualTo(9_000);
+    }
+
+    @Test
+    void unDescuentoQueDejaGramosNoInvalidaElCatalogo() {
+        String etag = catalogoCache.etag();
+        String etagAdmin = catalogoCache.etagConStock();
+
+        pedidoService.crearPedido(pedido(1, limon));
+
+        // La foto ya tiene los gramos nuevos, pero para la tienda nada cambió
+        assertThat(catalogoCache.seleccionar(Set.of(), Set.of(limon.getId())).gustos().get(limon.getId())
+                .getStockGramos()).isEqualTo(9_000);
+        assertThat(catalogoCache.etag()).isEqualTo(etag);
+        assertThat(catalogoCache.etagConStock()).isNotEqualTo(etagAdmin);
+        assertThat(gustoRepository.findById(limon.getId()).orElseThrow().getVersion()).isEqualTo(limon.getVersion());
+        assertThat(eventos.stream(DisponibilidadGustoEvent.class)).isEmpty();
+
+        // Agotarlo sí cambia el catálogo
+        pedidoService.crearPedido(pedido(9, limon));
+        assertThat(catalogoCache.etag()).isNotEqualTo(etag);
+        assertThat(eventos.stream(DisponibilidadGustoEvent.class)).singleElement()
+                .satisfies(evento -> assertThat(evento.hayStock()).isFalse());
+    }
+
+    @Test
+    void unLoteReactivaLoQueAlcanzaYRechazaSoloLoQueNo() {
+        Long sinLimon = pedidoService.crearPedido(pedido(10, limon)).getId();
+        Long conDulce = pedidoService.crearPedido(pedido(5, dulceDeLeche)).getId();
+        pedidoService.updateEstado(sinLimon, EstadoPedido.CANCELADO, EstadoPedido.PENDIENTE);
+        pedidoService.updateEstado(conDulce, EstadoPedido.CANCELADO, EstadoPedido.PENDIENTE);
+        // Mientras estaban cancelados se vendió un kilo de limón: el primero ya no se puede reactivar
+        pedidoService.crearPedido(pedido(1, limon));
+
+        CambioEstadoLoteResultadoDTO resultado = pedidoService.cambiarEstados(List.of(
+                cambio(sinLimon, "PENDIENTE", "CANCELADO"),
+                cambio(conDulce, "PENDIENTE", "CANCELADO")));
+
+        assertThat(resultado.aplicados()).isEqualTo(1);
+        assertThat(resultado.resultados().get(0).error()).contains("No queda suficiente Limón");
+        assertThat(resultado.resultados().get(1).error()).isNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT estado FROM pedidos WHERE id = ?", String.class, sinLimon))
+                .isEqualTo("CANCELADO");
+        assertThat(jdbcTemplate.queryForObject("SELECT estado FROM pedidos WHERE id = ?", String.class, conDulce))
+                .isEqualTo("PENDIENTE");
+        assertThat(stock(limon)).isEqualTo(9_000);
+        assertThat(stock(dulceDeLeche)).isEqualTo(7_000);
+    }
+
+    private CambioEstadoLoteDTO.Cambio cambio(Long pedidoId, String estado, String actual) {
+        CambioEstadoLoteDTO.Cambio cambio = new CambioEstadoLoteDTO.Cambio();
+        cambio.setPedidoId(pedidoId);
+        cambio.setEstado(estado);
+        cambio.setActual(actual);
+        return cambio;
+    }
+
+    private Integer stock(Gusto gusto) {
+        return gustoRepository.findById(gusto.getId()).orElseThrow().getStockGramos();
+    }
+
+    private Gusto gusto(String nombre, Integer stockGramos) {
+        Gusto gusto = new Gusto();
+        gusto.setNombre(nombre);
+        gusto.setCategoria("Cremas");
+        gusto.setStockGramos(stockGramos);
+        return gustoRepository.save(gusto);
+    }
+
+    private PedidoDTO pedido(int kilos, Gusto... gustos) {
+        ItemPedidoDTO item = new ItemPedidoDTO();
+        item.setTipoProductoId(kilo.getId());
+        item.setGustoIds(java.util.Arrays.stream(gustos).map(Gusto::getId).toList());
+        item.setCantidad(kilos);
+
+        PedidoDTO dto = new PedidoDTO();
+        dto.setNombreCliente("Ana");
+        dto.setMetodoPago("efectivo");
+        dto.setItems(List.of(item));
+        return dto;
+    }
+}
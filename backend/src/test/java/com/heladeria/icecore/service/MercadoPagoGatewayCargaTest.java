@@ -0,0 +1,137 @@
+package com.heladeria.icecore.service;
+
+import com.mercadopago.client.preference.PreferenceItemRequest;
+import com.mercadopago.client.preference.PreferenceRequest;
+import com.mercadopago.net.MPHttpClient;
+import com.mercadopago.net.MPResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Prueba de carga del camino de pagos contra un Mercado Pago "de mentira" que tarda en responder.
+// Cada checkout corre en su propio hilo virtual (como con spring.threads.virtual.enabled):
+// con el proveedor lento, las llamadas abiertas no pasan del límite, el excedente falla rápido
+// y el resto de la API (acá, una consulta al catálogo) sigue respondiendo al instante.
+class MercadoPagoGatewayCargaTest {
+
+    private static final int LIMITE = 5;
+    private static final long LATENCIA_MS = 300;
+    private static final int CHECKOUTS = 200;
+
+    private final AtomicInteger enCursoStub = new AtomicInteger();
+    private final AtomicInteger maximoStub = new AtomicInteger();
+    private final AtomicInteger llamadasStub = new AtomicInteger();
+
+    // Stub de la API de preferencias con latencia inyectada
+    private final MPHttpClient mercadoPagoLento = request -> {
+        int abiertas = enCursoStub.incrementAndGet();
+        maximoStub.accumulateAndGet(abiertas, Math::max);
+        llamadasStub.incrementAndGet();
+        try {
+            Thread.sleep(LATENCIA_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            enCursoStub.decrementAndGet();
+        }
+        return new MPResponse(201, Map.of(),
+                "{\"id\":\"pref-" + llamadasStub.get() + "\",\"init_point\":\"https://mp.test/checkout\"}");
+    };
+
+    private MercadoPagoGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        gateway = new MercadoPagoGateway();
+        ReflectionTestUtils.setField(gateway, "maxConcurrentes", LIMITE);
+        ReflectionTestUtils.setField(gateway, "esperaMs", 100L);
+        ReflectionTestUtils.setField(gateway, "timeoutConexionMs", 2000);
+        ReflectionTestUtils.setField(gateway, "timeoutLecturaMs", 5000);
+        ReflectionTestUtils.setField(gateway, "httpClient", mercadoPagoLento);
+        gateway.init();
+    }
+
+    @Test
+    void proveedorLentoNoAgotaLaCapacidadDelResto() throws Exception {
+        AtomicInteger creadas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+        List<Future<?>> checkouts = new ArrayList<>();
+
+        long inicio = System.nanoTime();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CHECKOUTS; i++) {
+                checkouts.add(hilos.submit(() -> {
+                    try {
+                        gateway.crearPreferencia(preferencia());
+                        creadas.incrementAndGet();
+                    } catch (MercadoPagoGateway.PagosSaturadosException e) {
+                        rechazadas.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            // En plena tormenta de checkouts, otra petición (catálogo) se atiende enseguida
+            Thread.sleep(50);
+            long inicioCatalogo = System.nanoTime();
+            String catalogo = hilos.submit(() -> "gustos").get(1, TimeUnit.SECONDS);
+            long catalogoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioCatalogo);
+
+            for (Future<?> checkout : checkouts) {
+                checkout.get(10, TimeUnit.SECONDS);
+            }
+
+            assertThat(catalogo).isEqualTo("gustos");
+            assertThat(catalogoMs).isLessThan(100);
+        }
+        long totalMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        System.out.printf("Pagos: %d creadas, %d rechazadas rápido, máximo %d llamadas abiertas, %d ms en total%n",
+                creadas.get(), rechazadas.get(), maximoStub.get(), totalMs);
+
+        assertThat(maximoStub.get()).isLessThanOrEqualTo(LIMITE);
+        assertThat(creadas.get() + rechazadas.get()).isEqualTo(CHECKOUTS);
+        assertThat(creadas.get()).isEqualTo(llamadasStub.get()).isGreaterThanOrEqualTo(LIMITE);
+        assertThat(rechazadas.get()).isPositive();
+        // Nadie queda colgado esperando a Mercado Pago: todo termina en unas pocas latencias
+        assertThat(totalMs).isLessThan(LATENCIA_MS * 5);
+        assertThat(gateway.enCurso()).isZero();
+    }
+
+    @Test
+    void conCapacidadLibreNoSeRechazaNada() throws Exception {
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> checkouts = new ArrayList<>();
+            for (int i = 0; i < LIMITE; i++) {
+                checkouts.add(hilos.submit(() -> gateway.crearPreferencia(preferencia()).getInitPoint()));
+            }
+            for (Future<String> checkout : checkouts) {
+                assertThat(checkout.get(5, TimeUnit.SECONDS)).isEqualTo("https://mp.test/checkout");
+            }
+        }
+        assertThat(maximoStub.get()).isLessThanOrEqualTo(LIMITE);
+    }
+
+    private PreferenceRequest preferencia() {
+        return PreferenceRequest.builder()
+                .items(List.of(PreferenceItemRequest.builder()
+                        .title("1 Kilo")
+                        .quantity(1)
+                        .unitPrice(new BigDecimal("10000"))
+                        .currencyId("ARS")
+                        .build()))
+                .build();
+    }
+}
@@ -0,0 +1,254 @@
+package com.heladeria.icecore.service;
+
+import com.google.gson.JsonObject;
+import com.heladeria.icecore.dto.ItemPedidoDTO;
+import com.heladeria.icecore.dto.PedidoDTO;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.PagoOutbox;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.heladeria.icecore.repository.GustoRepository;
+import com.heladeria.icecore.repository.PagoOutboxRepository;
+import com.heladeria.icecore.repository.PedidoRepository;
+import com.heladeria.icecore.repository.TipoProductoRepository;
+import com.mercadopago.exceptions.MPApiException;
+import com.mercadopago.net.HttpMethod;
+import com.mercadopago.net.MPHttpClient;
+import com.mercadopago.net.MPRequest;
+import com.mercadopago.net.MPResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Checkout asincrónico con Mercado Pago contra un servidor de pagos falso:
+// el pedido se guarda con su tarea de outbox, el worker crea la preferencia (con reintentos)
+// y el webhook deja el resultado del pago en el pedido.
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "mercadopago.access_token=TEST-token",
+        // El worker no corre solo: el test lo invoca a mano
+        "icecore.pagos.outbox.intervalo-ms=3600000",
+        "icecore.pagos.outbox.espera-inicial-ms=0",
+        "icecore.pagos.outbox.max-intentos=5"
+})
+@Import({ PedidoServiceTestConfig.class, PagosService.class, MercadoPagoGateway.class, PagosOutboxWorker.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PagosOutboxTest {
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private PagosService pagosService;
+
+    @Autowired
+    private PagosOutboxWorker worker;
+
+    @Autowired
+    private MercadoPagoGateway gateway;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private PagoOutboxRepository pagoOutboxRepository;
+
+    @Autowired
+    private TipoProductoRepository tipoProductoRepository;
+
+    @Autowired
+    private GustoRepository gustoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final FakeMercadoPago mercadoPago = new FakeMercadoPago();
+
+    private TipoProducto kilo;
+    private Gusto chocolate;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(gateway, "httpClient", mercadoPago);
+        ReflectionTestUtils.invokeMethod(gateway, "init");
+
+        kilo = new TipoProducto();
+        kilo.setNombre("1 Kilo");
+        kilo.setMaxGustos(4);
+        kilo.setPrecio(new BigDecimal("12000"));
+        kilo.setEsPorPeso(true);
+        kilo = tipoProductoRepository.save(kilo);
+
+        chocolate = new Gusto();
+        chocolate.setNombre("Chocolate");
+        chocolate.setCategoria("Chocolates");
+        chocolate = gustoRepository.save(chocolate);
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.execute("DELETE FROM pagos_outbox");
+        jdbcTemplate.execute("DELETE FROM item_pedido_gustos");
+        jdbcTemplate.execute("DELETE FROM items_pedido");
+        jdbcTemplate.execute("DELETE FROM pedidos");
+        jdbcTemplate.execute("DELETE FROM gustos");
+        jdbcTemplate.execute("DELETE FROM tipos_producto");
+    }
+
+    @Test
+    void elPedidoVuelveEnseguidaYLaPreferenciaSeCreaEnSegundoPlanoConReintentos() {
+        mercadoPago.fallosPendientes.set(2);
+
+        Pedido pedido = pedidoService.crearPedido(pedido("mercadopago"));
+
+        // El POST no esperó a Mercado Pago
+        assertThat(pedido.getEstadoPago()).isEqualTo("PENDIENTE");
+        assertThat(mercadoPago.preferencias).isEmpty();
+        assertThat(pagoOutboxRepository.findAll()).singleElement()
+                .satisfies(tarea -> assertThat(tarea.getEstado()).isEqualTo(PagoOutbox.PENDIENTE));
+
+        // Dos respuestas 500 de la API: la tarea se reprograma
+        worker.procesarPendientes();
+        worker.procesarPendientes();
+        assertThat(pagoOutboxRepository.findAll().get(0).getIntentos()).isEqualTo(2);
+        assertThat(pedidoRepository.findById(pedido.getId()).orElseThrow().getInitPoint()).isNull();
+
+        worker.procesarPendientes();
+
+        Pedido actualizado = pedidoRepository.findById(pedido.getId()).orElseThrow();
+        assertThat(actualizado.getEstadoPago()).isEqualTo("ESPERANDO_PAGO");
+        assertThat(actualizado.getInitPoint()).isEqualTo("https://mp.test/checkout/pref-1");
+        assertThat(actualizado.getPreferenciaId()).isEqualTo("pref-1");
+        assertThat(pagoOutboxRepository.findAll().get(0).getEstado()).isEqualTo(PagoOutbox.ENVIADO);
+
+        JsonObject enviada = mercadoPago.preferencias.get(0);
+        assertThat(enviada.get("external_reference").getAsString()).isEqualTo(String.valueOf(pedido.getId()));
+        assertThat(enviada.getAsJsonArray("items").get(0).getAsJsonObject().get("unit_price").getAsBigDecimal())
+                .isEqualByComparingTo("12000");
+
+        // Ya enviada: otra pasada del worker no la vuelve a mandar
+        worker.procesarPendientes();
+        assertThat(mercadoPago.preferencias).hasSize(1);
+        // El checkout consulta con el token que recibió al crear el pedido; sin él, el pedido "no existe"
+        assertThat(pedido.getTokenPago()).isNotBlank();
+        assertThat(pagosService.estadoDePedido(pedido.getId(), pedido.getTokenPago()).initPoint())
+                .isEqualTo(actualizado.getInitPoint());
+        assertThatThrownBy(() -> pagosService.estadoDePedido(pedido.getId(), null))
+                .hasMessageContaining("no encontrado");
+        assertThatThrownBy(() -> pagosService.estadoDePedido(pedido.getId() + 1, pedido.getTokenPago()))
+                .hasMessageContaining("no encontrado");
+    }
+
+    @Test
+    void elWebhookLeeElPagoDeLaApiYActualizaElPedido() throws Exception {
+        Pedido pedido = pedidoService.crearPedido(pedido("mercadopago"));
+        worker.procesarPendientes();
+
+        mercadoPago.pagos.put(555L, Map.of("status", "approved", "external_reference", String.valueOf(pedido.getId())));
+        pagosService.registrarPago(555L);
+        pagosService.registrarPago(555L); // Mercado Pago repite notificaciones
+
+        Pedido pagado = pedidoRepository.findById(pedido.getId()).orElseThrow();
+        assertThat(pagado.getEstadoPago()).isEqualTo("APROBADO");
+        assertThat(pagado.getPagoId()).isEqualTo("555");
+
+        mercadoPago.pagos.put(555L, Map.of("status", "refunded", "external_reference", String.valueOf(pedido.getId())));
+        pagosService.registrarPago(555L);
+        assertThat(pedidoRepository.findById(pedido.getId()).orElseThrow().getEstadoPago()).isEqualTo("DEVUELTO");
+    }
+
+    @Test
+    void errorDefinitivoDeLaApiMarcaElPedidoConError() {
+        mercadoPago.estadoError = 400;
+        mercadoPago.fallosPendientes.set(1);
+
+        Pedido pedido = pedidoService.crearPedido(pedido("mercadopago"));
+        worker.procesarPendientes();
+
+        assertThat(pagoOutboxRepository.findAll().get(0).getEstado()).isEqualTo(PagoOutbox.FALLIDO);
+        assertThat(pedidoRepository.findById(pedido.getId()).orElseThrow().getEstadoPago()).isEqualTo("ERROR");
+    }
+
+    @Test
+    void sinMercadoPagoOConRollbackNoQuedaTarea() {
+        pedidoService.crearPedido(pedido("efectivo"));
+
+        PedidoDTO invalido = pedido("mercadopago");
+        invalido.getItems().get(0).setGustoIds(List.of(-1L));
+        assertThatThrownBy(() -> pedidoService.crearPedido(invalido)).isInstanceOf(RuntimeException.class);
+
+        assertThat(pagoOutboxRepository.count()).isZero();
+    }
+
+    private PedidoDTO pedido(String metodoPago) {
+        ItemPedidoDTO item = new ItemPedidoDTO();
+        item.setTipoProductoId(kilo.getId());
+        item.setGustoIds(List.of(chocolate.getId()));
+        item.setCantidad(1);
+
+        PedidoDTO dto = new PedidoDTO();
+        dto.setNombreCliente("Ana");
+        dto.setMetodoPago(metodoPago);
+        dto.setItems(List.of(item));
+        return dto;
+    }
+
+    // Servidor de pagos falso: responde preferencias y pagos como la API real (mismo JSON).
+    // Como MPDefaultHttpClient, las respuestas de error se lanzan como MPApiException.
+    static class FakeMercadoPago implements MPHttpClient {
+
+        final List<JsonObject> preferencias = new CopyOnWriteArrayList<>();
+        final Map<Long, Map<String, String>> pagos = new ConcurrentHashMap<>();
+        final AtomicInteger fallosPendientes = new AtomicInteger();
+        volatile int estadoError = 500;
+
+        @Override
+        public MPResponse send(MPRequest request) throws MPApiException {
+            MPResponse response = responder(request);
+            if (response.getStatusCode() >= 300) {
+                throw new MPApiException("Api error. Check response for details", response);
+            }
+            return response;
+        }
+
+        private MPResponse responder(MPRequest request) {
+            if (request.getMethod() == HttpMethod.POST && request.getUri().endsWith("/checkout/preferences")) {
+                if (fallosPendientes.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    return new MPResponse(estadoError, Map.of(), "{\"message\":\"error simulado\"}");
+                }
+                preferencias.add(request.getPayload());
+                String id = "pref-" + preferencias.size();
+                return new MPResponse(201, Map.of(),
+                        "{\"id\":\"" + id + "\",\"init_point\":\"https://mp.test/checkout/" + id + "\"}");
+            }
+            if (request.getMethod() == HttpMethod.GET && request.getUri().contains("/v1/payments/")) {
+                Long id = Long.valueOf(request.getUri().substring(request.getUri().lastIndexOf('/') + 1));
+                Map<String, String> pago = pagos.get(id);
+                if (pago == null) {
+                    return new MPResponse(404, Map.of(), "{\"message\":\"Payment not found\"}");
+                }
+                return new MPResponse(200, Map.of(), "{\"id\":" + id + ",\"status\":\"" + pago.get("status")
+                        + "\",\"external_reference\":\"" + pago.get("external_reference") + "\"}");
+            }
+            return new MPResponse(404, Map.of(), "{}");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.heladeria.icecore.service;
+
+import com.google.gson.JsonObject;
+import com.heladeria.icecore.dto.ItemPedidoDTO;
+import com.heladeria.icecore.entity.Gusto;
+import com.heladeria.icecore.entity.TipoProducto;
+import com.mercadopago.net.MPHttpClient;
+import com.mercadopago.net.MPResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// La preferencia de Mercado Pago se arma con los precios del catálogo, no con los del cliente
+class PagosServiceTest {
+
+    private final AtomicReference<JsonObject> enviado = new AtomicReference<>();
+
+    private PagosService pagosService;
+
+    @BeforeEach
+    void setUp() {
+        TipoProducto kilo = new TipoProducto();
+        kilo.setId(1L);
+        kilo.setNombre("1 Kilo");
+        kilo.setMaxGustos(4);
+        kilo.setPrecio(new BigDecimal("12000"));
+        kilo.setEsPorPeso(true);
+
+        Gusto chocolate = gusto(10L, "Chocolate", true);
+        Gusto menta = gusto(11L, "Menta", false);
+
+        CatalogoCache catalogoCache = mock(CatalogoCache.class);
+        when(catalogoCache.seleccionar(anyCollection(), anyCollection())).thenReturn(
+                new CatalogoCache.Seleccion(Map.of(1L, kilo), Map.of(10L, chocolate, 11L, menta)));
+
+        MPHttpClient mercadoPago = request -> {
+            enviado.set(request.getPayload());
+            return new MPResponse(201, Map.of(), "{\"id\":\"pref-1\",\"init_point\":\"https://mp.test/checkout\"}");
+        };
+        MercadoPagoGateway gateway = new MercadoPagoGateway();
+        ReflectionTestUtils.setField(gateway, "maxConcurrentes", 2);
+        ReflectionTestUtils.setField(gateway, "esperaMs", 100L);
+        ReflectionTestUtils.setField(gateway, "httpClient", mercadoPago);
+        gateway.init();
+
+        pagosService = new PagosService();
+        ReflectionTestUtils.setField(pagosService, "mercadoPagoGateway", gateway);
+        ReflectionTestUtils.setField(pagosService, "catalogoCache", catalogoCache);
+        ReflectionTestUtils.setField(pagosService, "accessToken", "TEST-token");
+        ReflectionTestUtils.setField(pagosService, "frontendUrl", "https://heladeria.test");
+        pagosService.init();
+    }
+
+    @Test
+    void precioYCantidadSalenDelCatalogo() throws Exception {
+        String initPoint = pagosService.crearPreferencia(List.of(item(1L, 2, 10L)));
+
+        assertThat(initPoint).isEqualTo("https://mp.test/checkout");
+        JsonObject item = enviado.get().getAsJsonArray("items").get(0).getAsJsonObject();
+        assertThat(item.get("unit_price").getAsBigDecimal()).isEqualByComparingTo("12000");
+        assertThat(item.get("quantity").getAsInt()).isEqualTo(2);
+        assertThat(item.get("title").getAsString()).isEqualTo("1 Kilo (Chocolate)");
+        assertThat(enviado.get().getAsJsonObject("back_urls").get("success").getAsString())
+                .isEqualTo("https://heladeria.test/success");
+        assertThat(pagosService.metricas().creadas()).isEqualTo(1);
+    }
+
+    @Test
+    void carritoInvalidoNoLlegaAMercadoPago() {
+        assertThatThrownBy(() -> pagosService.crearPreferencia(List.of(item(1L, 1, 11L))))
+                .hasMessageContaining("Menta no está disponible");
+        assertThatThrownBy(() -> pagosService.crearPreferencia(List.of(item(99L, 1))))
+                .hasMessageContaining("no encontrado");
+        assertThatThrownBy(() -> pagosService.crearPreferencia(List.of()))
+                .hasMessageContaining("vacío");
+
+        assertThat(enviado.get()).isNull();
+    }
+
+    private static Gusto gusto(Long id, String nombre, boolean hayStock) {
+        Gusto gusto = new Gusto();
+        gusto.setId(id);
+        gusto.setNombre(nombre);
+        gusto.setCategoria("Cremas");
+        gusto.setHayStock(hayStock);
+        return gusto;
+    }
+
+    private static ItemPedidoDTO item(Long tipoId, int cantidad, Long... gustoIds) {
+        ItemPedidoDTO item = new ItemPedidoDTO();
+        item.setTipoProductoId(tipoId);
+        item.setCantidad(cantidad);
+        item.setGustoIds(List.of(gustoIds));
+        return item;
+    }
+}
@@ -0,0 +1,125 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.event.PedidoEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Cada panel tiene su propia cola y su propio hilo: uno que no lee (proxy trabado, pestaña colgada)
+// no demora los eventos de los demás y se lo desconecta.
+class PedidoFeedServiceTest {
+
+    private PedidoFeedService feed;
+
+    @BeforeEach
+    void setUp() {
+        feed = new PedidoFeedService();
+        ReflectionTestUtils.setField(feed, "capacidadBuffer", 500);
+        ReflectionTestUtils.setField(feed, "capacidadCola", 4);
+        ReflectionTestUtils.setField(feed, "plazoEnvioMs", 200L);
+    }
+
+    @AfterEach
+    void cerrar() {
+        feed.cerrar();
+    }
+
+    @Test
+    void unPanelTrabadoNoDemoraALosDemasYSeLoDesconecta() throws Exception {
+        PanelTrabado trabado = new PanelTrabado();
+        PanelQueLee otro = new PanelQueLee(3);
+        feed.suscribir(null, trabado);
+        feed.suscribir(null, otro);
+
+        feed.onPedidoEvent(PedidoEvent.transicion(1L, EstadoPedido.PENDIENTE, EstadoPedido.EN_PREPARACION));
+        assertThat(trabado.enviando.await(5, TimeUnit.SECONDS)).isTrue();
+        feed.onPedidoEvent(PedidoEvent.transicion(2L, EstadoPedido.PENDIENTE, EstadoPedido.EN_PREPARACION));
+        feed.onPedidoEvent(PedidoEvent.transicion(3L, EstadoPedido.PENDIENTE, EstadoPedido.EN_PREPARACION));
+
+        // El otro panel recibe todo mientras el trabado sigue en su primer envío
+        assertThat(otro.recibidos.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(trabado.completado.getCount()).isEqualTo(1);
+
+        // Pasado el plazo, el próximo evento lo saca del feed y su hilo cierra la conexión
+        Thread.sleep(300);
+        feed.onPedidoEvent(PedidoEvent.transicion(4L, EstadoPedido.PENDIENTE, EstadoPedido.EN_PREPARACION));
+        assertThat(trabado.completado.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(trabado.envios).hasSize(1);
+    }
+
+    @Test
+    void unPanelQueNoDaAbastoSeDesconectaAlLlenarSuCola() throws Exception {
+        ReflectionTestUtils.setField(feed, "plazoEnvioMs", 60_000L);
+        PanelTrabado trabado = new PanelTrabado();
+        feed.suscribir(null, trabado);
+
+        feed.onPedidoEvent(PedidoEvent.transicion(1L, EstadoPedido.PENDIENTE, EstadoPedido.EN_PREPARACION));
+        assertThat(trabado.enviando.await(5, TimeUnit.SECONDS)).isTrue();
+        // El primero está "en el cable"; entran 4 más en la cola y el sexto ya no
+        for (long id = 2; id <= 6; id++) {
+            feed.onPedidoEvent(PedidoEvent.transicion(id, EstadoPedido.PENDIENTE, EstadoPedido.EN_PREPARACION));
+        }
+        assertThat(trabado.completado.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void despuesDeCerrarLosEventosTardiosSeDescartanSinError() throws Exception {
+        feed.cerrar();
+
+        // Un commit que termina durante el apagado, el heartbeat o un panel que reconecta tarde
+        feed.onPedidoEvent(PedidoEvent.transicion(1L, EstadoPedido.PENDIENTE, EstadoPedido.EN_PREPARACION));
+        feed.heartbeat();
+        PanelTrabado tarde = new PanelTrabado();
+        feed.suscribir(null, tarde);
+
+        assertThat(tarde.completado.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(tarde.envios).isEmpty();
+    }
+
+    // El primer envío no vuelve hasta que se corta el hilo
+    private static class PanelTrabado extends SseEmitter {
+        final CountDownLatch enviando = new CountDownLatch(1);
+        final CountDownLatch completado = new CountDownLatch(1);
+        final List<SseEventBuilder> envios = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder evento) throws IOException {
+            envios.add(evento);
+            enviando.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                throw new IOException("Conexión cortada", e);
+            }
+        }
+
+        @Override
+        public void complete() {
+            completado.countDown();
+        }
+    }
+
+    private static class PanelQueLee extends SseEmitter {
+        final CountDownLatch recibidos;
+
+        PanelQueLee(int esperados) {
+            recibidos = new CountDownLatch(esperados);
+        }
+
+        @Override
+        public void send(SseEventBuilder evento) {
+            recibidos.countDown();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.PedidoDTO;
+import com.heladeria.icecore.entity.Pedido;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Doble click / reintentos del checkout: una clave = un solo crearPedido,
+// aunque los duplicados lleguen todos juntos.
+class PedidoIdempotenciaServiceTest {
+
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+    private final AtomicLong ids = new AtomicLong();
+    private volatile CountDownLatch demora = new CountDownLatch(0);
+    private volatile boolean fallar = false;
+
+    private PedidoIdempotenciaService service;
+
+    @BeforeEach
+    void setUp() {
+        // PedidoService "de mentira": cuenta ejecuciones y puede demorarse o fallar
+        PedidoService pedidoService = new PedidoService() {
+            @Override
+            public Pedido crearPedido(PedidoDTO dto) {
+                ejecuciones.incrementAndGet();
+                try {
+                    demora.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (fallar) {
+                    throw new RuntimeException("Error: El gusto Menta no está disponible.");
+                }
+                Pedido pedido = new Pedido();
+                pedido.setId(ids.incrementAndGet());
+                return pedido;
+            }
+        };
+        service = new PedidoIdempotenciaService();
+        ReflectionTestUtils.setField(service, "pedidoService", pedidoService);
+        ReflectionTestUtils.setField(service, "capacidad", 100);
+        ReflectionTestUtils.setField(service, "ttlMinutos", 30L);
+        ReflectionTestUtils.setField(service, "esperaSegundos", 10L);
+    }
+
+    @Test
+    void duplicadosConcurrentesEsperanAlPrimeroYNoReEjecutan() throws Exception {
+        demora = new CountDownLatch(1);
+        PedidoDTO dto = pedido("Ana");
+        ExecutorService pool = Executors.newFixedThreadPool(20);
+        try {
+            List<Future<Pedido>> resultados = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                resultados.add(pool.submit(() -> service.crear("clave-1", dto)));
+            }
+            Thread.sleep(200);
+            demora.countDown();
+
+            for (Future<Pedido> resultado : resultados) {
+                assertThat(resultado.get(5, TimeUnit.SECONDS).getId()).isEqualTo(1L);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(ejecuciones).hasValue(1);
+    }
+
+    @Test
+    void reintentoPosteriorDevuelveElMismoPedido() {
+        Pedido primero = service.crear("clave-1", pedido("Ana"));
+        Pedido reintento = service.crear("clave-1", pedido("Ana"));
+
+        assertThat(reintento).isSameAs(primero);
+        assertThat(ejecuciones).hasValue(1);
+    }
+
+    @Test
+    void clavesDistintasOSinClaveCreanPedidosDistintos() {
+        service.crear("clave-1", pedido("Ana"));
+        service.crear("clave-2", pedido("Ana"));
+        service.crear(null, pedido("Ana"));
+
+        assertThat(ejecuciones).hasValue(3);
+    }
+
+    @Test
+    void siFallaLaClaveQuedaLibreParaReintentar() {
+        fallar = true;
+        assertThatThrownBy(() -> service.crear("clave-1", pedido("Ana")))
+                .hasMessageContaining("no está disponible");
+
+        fallar = false;
+        assertThat(service.crear("clave-1", pedido("Ana")).getId()).isEqualTo(1L);
+        assertThat(ejecuciones).hasValue(2);
+    }
+
+    @Test
+    void mismaClaveConOtroPedidoSeRechaza() {
+        service.crear("clave-1", pedido("Ana"));
+
+        assertThatThrownBy(() -> service.crear("clave-1", pedido("Beto")))
+                .hasMessageContaining("ya se usó para otro pedido");
+        assertThat(ejecuciones).hasValue(1);
+    }
+
+    @Test
+    void laCantidadDeClavesRecordadasEstaAcotada() {
+        for (int i = 0; i < 500; i++) {
+            service.crear("clave-" + i, pedido("Ana"));
+        }
+
+        assertThat(service.cantidadClaves()).isLessThanOrEqualTo(100);
+    }
+
+    private PedidoDTO pedido(String nombre) {
+        PedidoDTO dto = new PedidoDTO();
+        dto.setNombreCliente(nombre);
+        dto.setItems(List.of());
+        return dto;
+    }
+}
@@ -0,0 +1,12 @@
+package com.heladeria.icecore.service;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+
+// Lo que necesita PedidoService para arrancar en un @DataJpaTest (que solo levanta los repositorios).
+// Cuando PedidoService pasa a usar otro servicio, se agrega acá y no en cada test.
+@TestConfiguration
+@Import({ PedidoService.class, CatalogoCache.class, FranjasEntregaService.class, HorariosService.class,
+        InventarioService.class, RepartidorService.class, AnaliticaService.class, TokenPagoService.class })
+public class PedidoServiceTestConfig {
+}
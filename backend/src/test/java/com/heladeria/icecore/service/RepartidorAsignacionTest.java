@@ -0,0 +1,153 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.AsignacionResultadoDTO;
+import com.heladeria.icecore.dto.TransicionEstadoDTO;
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.Repartidor;
+import com.heladeria.icecore.event.PedidoEvent;
+import com.heladeria.icecore.event.PedidoEventType;
+import com.heladeria.icecore.repository.PedidoRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Asignación de repartidores: por id o por nombre sin ir a la tabla de repartidores,
+// y una vuelta de 15 pedidos en un solo UPDATE (no 15 idas y vueltas).
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(PedidoServiceTestConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RecordApplicationEvents
+class RepartidorAsignacionTest {
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private RepartidorService repartidorService;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEvents eventos;
+
+    private Repartidor luis;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        repartidorService.recargar();
+        luis = repartidorService.crear(repartidor("Luis"));
+        repartidorService.crear(repartidor("Claudio"));
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.execute("DELETE FROM pedidos");
+        jdbcTemplate.execute("DELETE FROM repartidores");
+    }
+
+    @Test
+    void unaVueltaSeAsignaEnUnSoloUpdate() {
+        List<Long> vuelta = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            vuelta.add(pedido(EstadoPedido.LISTO).getId());
+        }
+        Long cancelado = pedido(EstadoPedido.CANCELADO).getId();
+        vuelta.add(cancelado);
+
+        statistics.clear();
+        AsignacionResultadoDTO resultado = pedidoService.asignarRepartidor(vuelta, luis.getId());
+
+        assertThat(resultado.asignados()).hasSize(15);
+        assertThat(resultado.omitidos()).containsExactly(cancelado);
+        // Un SELECT de los pedidos despachables + un UPDATE; el repartidor sale de memoria
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pedidos WHERE repartidor_id = ? AND estado = 'EN_CAMINO'",
+                Integer.class, luis.getId())).isEqualTo(15);
+        assertThat(pedidoRepository.findById(cancelado).orElseThrow().getEstado()).isEqualTo(EstadoPedido.CANCELADO);
+        assertThat(eventos.stream(PedidoEvent.class))
+                .filteredOn(evento -> evento.tipo() == PedidoEventType.REPARTIDOR_ASIGNADO)
+                .hasSize(15)
+                .allSatisfy(evento -> assertThat(evento.repartidor()).isEqualTo("Luis"));
+    }
+
+    @Test
+    void seAsignaPorNombreSinDistinguirMayusculas() {
+        Long id = pedido(EstadoPedido.LISTO).getId();
+
+        statistics.clear();
+        TransicionEstadoDTO asignado = pedidoService.updateRepartidor(id, null, " luis ");
+
+        assertThat(asignado.anterior()).isEqualTo(EstadoPedido.LISTO);
+        assertThat(asignado.estado()).isEqualTo(EstadoPedido.EN_CAMINO);
+        // Un SELECT del estado + el UPDATE condicional: el pedido no se carga
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(pedidoRepository.findById(id).orElseThrow().getRepartidor().getId()).isEqualTo(luis.getId());
+
+        // Sin repartidor no puede seguir en camino
+        assertThat(pedidoService.updateRepartidor(id, null, null).estado()).isEqualTo(EstadoPedido.LISTO);
+        assertThat(pedidoRepository.findById(id).orElseThrow().getRepartidor()).isNull();
+    }
+
+    @Test
+    void nombresRepetidosYBajasSeReflejanEnElIndice() {
+        assertThatThrownBy(() -> repartidorService.crear(repartidor("LUIS")))
+                .hasMessageContaining("Ya existe");
+
+        repartidorService.eliminar(luis.getId());
+
+        assertThat(repartidorService.findActivos()).extracting(Repartidor::getNombre).containsExactly("Claudio");
+        assertThatThrownBy(() -> repartidorService.porNombre("Luis")).hasMessageContaining("no encontrado");
+        // Dado de baja, el nombre se puede volver a usar
+        assertThat(repartidorService.crear(repartidor("Luis")).getId()).isNotEqualTo(luis.getId());
+    }
+
+    private Repartidor repartidor(String nombre) {
+        Repartidor repartidor = new Repartidor();
+        repartidor.setNombre(nombre);
+        return repartidor;
+    }
+
+    private Pedido pedido(EstadoPedido estado) {
+        Pedido pedido = new Pedido();
+        pedido.setNombreCliente("Ana");
+        pedido.setMetodoPago("efectivo");
+        pedido.setPrecioTotal(BigDecimal.TEN);
+        pedido.setEstado(estado);
+        return pedidoRepository.save(pedido);
+    }
+}
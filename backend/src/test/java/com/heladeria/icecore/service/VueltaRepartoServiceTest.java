@@ -0,0 +1,199 @@
+package com.heladeria.icecore.service;
+
+import com.heladeria.icecore.dto.CajaRepartidoresDTO;
+import com.heladeria.icecore.dto.VueltaRepartoDTO;
+import com.heladeria.icecore.entity.EstadoPedido;
+import com.heladeria.icecore.entity.Pedido;
+import com.heladeria.icecore.entity.Repartidor;
+import com.heladeria.icecore.entity.VueltaReparto;
+import com.heladeria.icecore.repository.PedidoRepository;
+import com.heladeria.icecore.repository.VueltaRepartoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Vueltas de reparto: la caja de cada repartidor se va sumando a medida que entrega,
+// sin recalcular sus pedidos, y cierra exacta aunque las entregas lleguen a la vez.
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import({ PedidoServiceTestConfig.class, VueltaRepartoService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VueltaRepartoServiceTest {
+
+    @Autowired
+    private VueltaRepartoService vueltaRepartoService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private RepartidorService repartidorService;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private VueltaRepartoRepository vueltaRepartoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Repartidor luis;
+
+    @BeforeEach
+    void setUp() {
+        repartidorService.recargar();
+        Repartidor repartidor = new Repartidor();
+        repartidor.setNombre("Luis");
+        luis = repartidorService.crear(repartidor);
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.execute("DELETE FROM pedidos");
+        jdbcTemplate.execute("DELETE FROM vueltas_reparto");
+        jdbcTemplate.execute("DELETE FROM repartidores");
+    }
+
+    @Test
+    void laCajaSumaLoEntregadoEnEfectivoYSeRindeAlFinalizar() {
+        Long efectivo1 = pedido("efectivo", "12000").getId();
+        Long efectivo2 = pedido("Efectivo", "8000").getId();
+        Long mercadoPago = pedido("mercadopago", "5000").getId();
+        Long noListo = pedido("efectivo", "3000").getId();
+        pedidoService.updateEstado(noListo, EstadoPedido.CANCELADO, null);
+
+        VueltaRepartoDTO vuelta = vueltaRepartoService.crear(luis.getId(),
+                List.of(efectivo1, efectivo2, mercadoPago, noListo));
+
+        assertThat(vuelta.cantidadPedidos()).isEqualTo(3);
+        assertThat(vuelta.montoTotal()).isEqualByComparingTo("25000");
+        assertThat(vueltaRepartoService.enCalle()).singleElement()
+                .satisfies(v -> assertThat(v.repartidor().nombre()).isEqualTo("Luis"));
+        assertThat(deudaDe(luis)).isEqualByComparingTo("0");
+
+        pedidoService.updateEstado(efectivo1, EstadoPedido.ENTREGADO, null);
+        pedidoService.updateEstado(mercadoPago, EstadoPedido.ENTREGADO, null);
+        assertThat(deudaDe(luis)).isEqualByComparingTo("12000");
+
+        // Corrección: vuelve a "en camino" y se descuenta
+        pedidoService.updateEstado(efectivo1, EstadoPedido.EN_CAMINO, null);
+        assertThat(deudaDe(luis)).isEqualByComparingTo("0");
+
+        VueltaRepartoDTO finalizada = vueltaRepartoService.finalizar(vuelta.id());
+
+        assertThat(finalizada.estado()).isEqualTo(VueltaReparto.FINALIZADA);
+        assertThat(finalizada.fin()).isNotNull();
+        assertThat(finalizada.efectivoCobrado()).isEqualByComparingTo("20000");
+        assertThat(pedidoRepository.findAllById(List.of(efectivo1, efectivo2, mercadoPago)))
+                .allSatisfy(p -> assertThat(p.getEstado()).isEqualTo(EstadoPedido.ENTREGADO));
+        assertThat(vueltaRepartoService.caja().repartidores()).isEmpty();
+        assertThat(vueltaRepartoService.enCalle()).isEmpty();
+
+        assertThatThrownBy(() -> vueltaRepartoService.finalizar(vuelta.id())).hasMessageContaining("ya fue finalizada");
+    }
+
+    @Test
+    void unRepartidorNoSaleConDosVueltas() {
+        vueltaRepartoService.crear(luis.getId(), List.of(pedido("efectivo", "1000").getId()));
+        Long otro = pedido("efectivo", "1000").getId();
+
+        assertThatThrownBy(() -> vueltaRepartoService.crear(luis.getId(), List.of(otro)))
+                .hasMessageContaining("ya tiene una vuelta en calle");
+        assertThat(vueltaRepartoRepository.count()).isEqualTo(1);
+        assertThat(pedidoRepository.findById(otro).orElseThrow().getRepartidor()).isNull();
+    }
+
+    @Test
+    void entregasSimultaneasNoPierdenEfectivo() throws Exception {
+        List<Long> pedidos = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            pedidos.add(pedido("efectivo", "1500").getId());
+        }
+        VueltaRepartoDTO vuelta = vueltaRepartoService.crear(luis.getId(), pedidos);
+
+        List<Future<?>> entregas = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Long id : pedidos.subList(0, 15)) {
+                entregas.add(hilos.submit(() -> pedidoService.updateEstado(id, EstadoPedido.ENTREGADO, null)));
+            }
+            // Mientras tanto, el repartidor vuelve y se finaliza la vuelta
+            entregas.add(hilos.submit(() -> vueltaRepartoService.finalizar(vuelta.id())));
+            for (Future<?> entrega : entregas) {
+                entrega.get();
+            }
+        }
+
+        // Cada pedido se cobró exactamente una vez, entrara por updateEstado o por la finalización
+        VueltaReparto cerrada = vueltaRepartoRepository.findById(vuelta.id()).orElseThrow();
+        assertThat(cerrada.getEstado()).isEqualTo(VueltaReparto.FINALIZADA);
+        assertThat(cerrada.getEfectivoCobrado()).isEqualByComparingTo("30000");
+        assertThat(cerrada.getPedidosEfectivo()).isEqualTo(20);
+    }
+
+    @Test
+    void soloSalenPedidosListosQueNoSonDeOtraVueltaEnCalle() {
+        Long enCamino = pedido("efectivo", "1000").getId();
+        Long devuelto = pedido("efectivo", "2000").getId();
+        VueltaRepartoDTO primera = vueltaRepartoService.crear(luis.getId(), List.of(enCamino, devuelto));
+        // Volvió al local sin entregarse: sigue contando en la vuelta de Luis
+        pedidoService.updateEstado(devuelto, EstadoPedido.LISTO, EstadoPedido.EN_CAMINO);
+        Pedido pendiente = pedido("efectivo", "3000");
+        pendiente.setEstado(EstadoPedido.PENDIENTE);
+        Long enPreparacion = pedidoRepository.save(pendiente).getId();
+        Long listo = pedido("efectivo", "4000").getId();
+        Repartidor repartidor = new Repartidor();
+        repartidor.setNombre("Claudio");
+        Repartidor claudio = repartidorService.crear(repartidor);
+
+        VueltaRepartoDTO segunda = vueltaRepartoService.crear(claudio.getId(),
+                List.of(enCamino, devuelto, enPreparacion, listo));
+
+        assertThat(segunda.cantidadPedidos()).isEqualTo(1);
+        assertThat(segunda.montoTotal()).isEqualByComparingTo("4000");
+        assertThat(pedidoRepository.findById(enCamino).orElseThrow().getVueltaId()).isEqualTo(primera.id());
+        assertThat(pedidoRepository.findById(devuelto).orElseThrow().getVueltaId()).isEqualTo(primera.id());
+        assertThat(pedidoRepository.findById(enPreparacion).orElseThrow().getEstado())
+                .isEqualTo(EstadoPedido.PENDIENTE);
+
+        // Asignando de a uno, igual
+        assertThatThrownBy(() -> pedidoService.updateRepartidor(devuelto, claudio.getId(), null))
+                .hasMessageContaining("sigue en la calle");
+        assertThatThrownBy(() -> pedidoService.updateRepartidor(enPreparacion, claudio.getId(), null))
+                .hasMessageContaining("no se puede despachar");
+    }
+
+    private BigDecimal deudaDe(Repartidor repartidor) {
+        return vueltaRepartoService.caja().repartidores().stream()
+                .filter(r -> r.id().equals(repartidor.getId()))
+                .map(CajaRepartidoresDTO.Repartidor::totalDeuda)
+                .findFirst().orElse(BigDecimal.ZERO);
+    }
+
+    private Pedido pedido(String metodoPago, String total) {
+        Pedido pedido = new Pedido();
+        pedido.setNombreCliente("Ana");
+        pedido.setMetodoPago(metodoPago);
+        pedido.setPrecioTotal(new BigDecimal(total));
+        pedido.setEstado(EstadoPedido.LISTO);
+        return pedidoRepository.save(pedido);
+    }
+}
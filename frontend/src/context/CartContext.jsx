@@ -115,6 +115,32 @@ export const CartProvider = ({ children }) => {
         fetchCatalog();
     }, []);
 
+    // Disponibilidad en vivo: cuando el local marca un gusto sin stock (o lo oculta), deja de
+    // ofrecerse al instante. Si aparece un gusto que no conocemos, se recarga el catálogo.
+    useEffect(() => {
+        let source;
+        import('../lib/api').then(module => {
+            source = new EventSource(`${module.default.defaults.baseURL}/gustos/disponibilidad`);
+            source.addEventListener('DISPONIBILIDAD', (e) => {
+                const cambio = JSON.parse(e.data);
+                localStorage.removeItem('icecore_catalog_time');
+                setGustos(actuales => {
+                    const conocido = actuales.some(g => g.id === cambio.gustoId);
+                    if (!conocido) {
+                        if (cambio.activo) fetchCatalog();
+                        return actuales;
+                    }
+                    return cambio.activo
+                        ? actuales.map(g => g.id === cambio.gustoId ? { ...g, hayStock: cambio.hayStock } : g)
+                        : actuales.filter(g => g.id !== cambio.gustoId);
+                });
+            });
+            // EventSource se reconecta solo; al volver, el catálogo puede haber cambiado
+            source.onopen = () => fetchCatalog();
+        });
+        return () => source?.close();
+    }, []);
+
     // Auto-Corrección de IDs del Carrito (Sync Cart with Fresh Catalog)
     // Si el usuario tenía items con IDs viejos (del defaultCatalog) y ahora tenemos IDs nuevos (de la DB),
     // intentamos matchear por NOMBRE y actualizar los IDs en el carrito automáticamente.
@@ -0,0 +1,66 @@
+import { useEffect, useRef } from 'react';
+import api from '../lib/api';
+
+// Se suscribe al feed en vivo de pedidos (/pedidos/stream, Server-Sent Events).
+// Usamos fetch en lugar de EventSource porque EventSource no permite mandar el header Authorization.
+// Si la conexión se corta, reconecta mandando "Last-Event-ID" para recibir solo lo que se perdió.
+export function usePedidosStream(onEvent, enabled = true) {
+    const handlerRef = useRef(onEvent);
+    handlerRef.current = onEvent;
+
+    useEffect(() => {
+        if (!enabled) return;
+
+        const controller = new AbortController();
+        let lastEventId = null;
+        let retryTimer;
+
+        const dispatch = (raw) => {
+            let data = '';
+            raw.split('\n').forEach(line => {
+                if (line.startsWith('id:')) lastEventId = line.slice(3).trim();
+                else if (line.startsWith('data:')) data += line.slice(5);
+            });
+            if (data) handlerRef.current(JSON.parse(data));
+        };
+
+        const connect = async () => {
+            try {
+                const headers = { Accept: 'text/event-stream' };
+                const auth = api.defaults.headers.common['Authorization'];
+                if (auth) headers.Authorization = auth;
+                if (lastEventId) headers['Last-Event-ID'] = lastEventId;
+
+                const res = await fetch(`${api.defaults.baseURL}/pedidos/stream`, { headers, signal: controller.signal });
+                if (!res.ok || !res.body) throw new Error(`HTTP ${res.status}`);
+
+                // Si no estamos reanudando, el panel tiene que cargar la lista ahora (ya suscripto, sin huecos)
+                handlerRef.current({ tipo: 'CONECTADO', reanudado: lastEventId !== null });
+
+                const reader = res.body.getReader();
+                const decoder = new TextDecoder();
+                let buffer = '';
+                while (true) {
+                    const { value, done } = await reader.read();
+                    if (done) break;
+                    buffer += decoder.decode(value, { stream: true });
+                    let sep;
+                    while ((sep = buffer.indexOf('\n\n')) >= 0) {
+                        dispatch(buffer.slice(0, sep));
+                        buffer = buffer.slice(sep + 2);
+                    }
+                }
+            } catch (error) {
+                if (controller.signal.aborted) return;
+                console.warn("Feed de pedidos desconectado, reintentando...", error);
+            }
+            if (!controller.signal.aborted) retryTimer = setTimeout(connect, 3000);
+        };
+
+        connect();
+        return () => {
+            controller.abort();
+            clearTimeout(retryTimer);
+        };
+    }, [enabled]);
+}
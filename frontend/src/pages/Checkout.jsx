@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { useCart } from '../context/CartContext';
 import { useNavigate } from 'react-router-dom';
 import api from '../lib/api';
@@ -70,8 +70,9 @@ export default function Checkout() {
 
     // Pre-seleccionar el primer slot disponible cuando se carguen los datos
     useEffect(() => {
-        if (availableSlots.length > 0 && !deliverySlot) {
-            setDeliverySlot(availableSlots[0].value);
+        const libre = availableSlots.find(slot => slot.disponibles > 0);
+        if (libre && !availableSlots.some(slot => slot.value === deliverySlot && slot.disponibles > 0)) {
+            setDeliverySlot(libre.value);
         }
     }, [availableSlots]);
 
@@ -79,6 +80,10 @@ export default function Checkout() {
     const [paymentMethod, setPaymentMethod] = useState('');
     const [loading, setLoading] = useState(false);
 
+    // Clave de idempotencia del intento de compra: si la conexión se corta y el cliente
+    // reintenta (o toca dos veces), el backend devuelve el mismo pedido en vez de duplicarlo
+    const idempotencyKey = useRef(crypto.randomUUID());
+
     if (cart.length === 0) {
         return (
             <div className="min-h-screen flex items-center justify-center text-text-secondary">
@@ -102,16 +107,31 @@ export default function Checkout() {
 
         setLoading(true);
         try {
-            const res = await api.post('/payments/create_preference', cart);
-            window.location.href = res.data.init_point;
+            // El pedido se guarda al instante; la preferencia de pago la crea el backend en segundo
+            // plano y acá se espera a que esté lista (initPoint) para ir a Mercado Pago
+            const pedidoGuardado = await saveOrder('mercadopago');
+            const initPoint = await esperarPreferencia(pedidoGuardado.id, pedidoGuardado.tokenPago);
+            clearCart();
+            window.location.href = initPoint;
         } catch (error) {
             console.error(error);
-            showError("Error al iniciar pago con Mercado Pago");
+            const msg = typeof error.response?.data === 'string' ? error.response.data : null;
+            showError(msg || error.message || "Error al iniciar pago con Mercado Pago");
         } finally {
             setLoading(false);
         }
     };
 
+    const esperarPreferencia = async (pedidoId, token) => {
+        for (let intento = 0; intento < 30; intento++) {
+            const res = await api.get(`/payments/pedidos/${pedidoId}`, { params: { token } });
+            if (res.data.initPoint) return res.data.initPoint;
+            if (res.data.estadoPago === 'ERROR') break;
+            await new Promise(resolve => setTimeout(resolve, 1000));
+        }
+        throw new Error(`Tu pedido #${pedidoId} quedó registrado, pero no pudimos iniciar el pago con Mercado Pago. Escribinos por WhatsApp.`);
+    };
+
     const saveOrder = async (metodo) => {
         const itemsDTO = cart.map(item => ({
             tipoProductoId: item.product.id,
@@ -125,12 +145,24 @@ export default function Checkout() {
             direccion: formData.direccion,
             telefono: formData.telefono,
             metodoPago: metodo,
-            horaEntrega: deliverySlot,
+            horaEntrega: availableSlots.find(slot => slot.value === deliverySlot)?.etiqueta || '',
+            franjaEntrega: deliverySlot || null,
             items: itemsDTO
         };
 
-        const res = await api.post('/pedidos', pedidoDTO);
-        return res.data;
+        try {
+            const res = await api.post('/pedidos', pedidoDTO, {
+                headers: { 'Idempotency-Key': idempotencyKey.current }
+            });
+            return res.data;
+        } catch (error) {
+            // El servidor respondió (ej: gusto sin stock): el próximo envío es un intento nuevo.
+            // Sin respuesta (red caída) se conserva la clave para que el reintento no duplique.
+            if (error.response) {
+                idempotencyKey.current = crypto.randomUUID();
+            }
+            throw error;
+        }
     };
 
     const handleWhatsAppOrder = async (metodo) => {
@@ -229,7 +261,7 @@ export default function Checkout() {
                         >
                             <option value="" disabled>Elegí una franja horaria...</option>
                             {availableSlots.map((slot) => (
-                                <option key={slot.value} value={slot.value}>{slot.label}</option>
+                                <option key={slot.value} value={slot.value} disabled={slot.disponibles <= 0}>{slot.label}</option>
                             ))}
                         </select>
                     </section>
@@ -4,10 +4,22 @@ import api from '../../lib/api';
 import { LogOut, Plus, Search, CheckCircle, XCircle, Edit2, IceCream, Package, ShoppingBag, Truck, Calendar, Clock, DollarSign, User, MapPin } from 'lucide-react';
 import GustoFormModal from './GustoFormModal';
 import ProductFormModal from './ProductFormModal';
+import DeliveryManager from './DeliveryManager';
 import { defaultGustos, defaultProducts } from '../../data/defaultCatalog';
+import { usePedidosStream } from '../../hooks/usePedidosStream';
 
 import { useUI } from '../../context/UIContext';
 
+// Pasos permitidos entre estados (el mismo mapa que EstadoPedido en el backend)
+const SIGUIENTES_ESTADOS = {
+    PENDIENTE: ['EN_PREPARACION', 'CANCELADO'],
+    EN_PREPARACION: ['PENDIENTE', 'LISTO', 'CANCELADO'],
+    LISTO: ['EN_PREPARACION', 'EN_CAMINO', 'ENTREGADO', 'CANCELADO'],
+    EN_CAMINO: ['LISTO', 'ENTREGADO', 'CANCELADO'],
+    ENTREGADO: ['EN_CAMINO'],
+    CANCELADO: ['PENDIENTE'],
+};
+
 export default function Dashboard() {
     const { logout, user } = useAuth();
     const { showError } = useUI();
@@ -24,7 +36,9 @@ export default function Dashboard() {
     const [searchTerm, setSearchTerm] = useState('');
     const [activeTab, setActiveTab] = useState('gustos');
     const [viewMode, setViewMode] = useState('today');
+    const [historyCursor, setHistoryCursor] = useState(null); // Cursor de la próxima página del historial
     const [dismissedIds, setDismissedIds] = useState(new Set()); // IDs de pedidos cancelados y ocultados
+    const [seleccionados, setSeleccionados] = useState(new Set()); // Pedidos marcados para cambiar de estado juntos
 
     // Modal State
     const [isModalOpen, setIsModalOpen] = useState(false);
@@ -32,21 +46,56 @@ export default function Dashboard() {
     const [isProductModalOpen, setIsProductModalOpen] = useState(false);
     const [currentProduct, setCurrentProduct] = useState(null);
 
-    const REPARTIDORES = ["Luis", "Claudio", "Matias"];
+    const [repartidores, setRepartidores] = useState([]);
 
     useEffect(() => {
         fetchData();
-        // Polling para pedidos nuevos cada 30 seg
-        const interval = setInterval(() => {
-            if (activeTab === 'pedidos') fetchPedidos();
-        }, 10000);
-        return () => clearInterval(interval);
     }, [activeTab]);
 
+    useEffect(() => {
+        fetchPedidos();
+    }, [viewMode]);
+
+    // Pedidos en vivo: el backend empuja cada alta / cambio de estado / asignación (sin polling)
+    usePedidosStream((evento) => {
+        switch (evento.tipo) {
+            case 'CONECTADO':
+                if (!evento.reanudado) fetchPedidos();
+                break;
+            case 'RESYNC':
+                fetchPedidos();
+                break;
+            case 'CREADO':
+                setPedidos(prev => [evento.pedido, ...prev.filter(p => p.id !== evento.pedidoId)]);
+                break;
+            case 'ESTADO_CAMBIADO':
+                // Solo cambió el estado (el repartidor viene solo si lo trae la vuelta que se finalizó)
+                setPedidos(prev => prev.map(p => p.id === evento.pedidoId
+                    ? { ...p, estado: evento.estado, repartidor: evento.repartidor ?? p.repartidor }
+                    : p));
+                break;
+            case 'ESTADOS_CAMBIADOS': {
+                // Lote del tablero: un solo aviso con todas las transiciones
+                const nuevos = new Map(evento.transiciones.map(t => [t.pedidoId, t.estado]));
+                setPedidos(prev => prev.map(p => nuevos.has(p.id) ? { ...p, estado: nuevos.get(p.id) } : p));
+                break;
+            }
+            case 'REPARTIDOR_ASIGNADO':
+                setPedidos(prev => prev.map(p => p.id === evento.pedidoId
+                    ? { ...p, estado: evento.estado, repartidor: evento.repartidor }
+                    : p));
+                break;
+            default:
+                setPedidos(prev => prev.map(p => p.id === evento.pedidoId
+                    ? { ...p, estado: evento.estado, repartidor: evento.repartidor, estadoPago: evento.estadoPago }
+                    : p));
+        }
+    }, activeTab === 'pedidos');
+
     const fetchData = async () => {
         setLoading(true);
         try {
-            await Promise.all([fetchGustos(), fetchProductos(), fetchPedidos(), fetchBusinessHours()]);
+            await Promise.all([fetchGustos(), fetchProductos(), fetchPedidos(), fetchBusinessHours(), fetchRepartidores()]);
         } catch (error) {
             console.error("Error cargando datos:", error);
         } finally {
@@ -67,6 +116,15 @@ export default function Dashboard() {
         setProductos(res.data.sort((a, b) => a.precio - b.precio));
     };
 
+    const fetchRepartidores = async () => {
+        try {
+            const res = await api.get('/repartidores');
+            setRepartidores(res.data);
+        } catch (error) {
+            console.warn("No se pudieron cargar los repartidores.");
+        }
+    };
+
     const fetchBusinessHours = async () => {
         try {
             const res = await api.get('/business-hours');
@@ -133,11 +191,28 @@ export default function Dashboard() {
         }
     };
 
+    // "Hoy" solo trae los pedidos abiertos del día; el historial se pide por páginas
     const fetchPedidos = async () => {
         try {
-            const res = await api.get('/pedidos');
-            // Ordenar por ID descendente (más recientes primero) que es equivalente a fecha
-            setPedidos(res.data.sort((a, b) => b.id - a.id));
+            if (viewMode === 'today') {
+                const res = await api.get('/pedidos/hoy');
+                setPedidos(res.data);
+            } else {
+                const res = await api.get('/pedidos/buscar', { params: { limite: 100 } });
+                setPedidos(res.data.items);
+                setHistoryCursor(res.data.siguienteCursor);
+            }
+        } catch (error) {
+            console.error("Error fetching pedidos:", error);
+        }
+    };
+
+    const fetchMorePedidos = async () => {
+        if (!historyCursor) return;
+        try {
+            const res = await api.get('/pedidos/buscar', { params: { limite: 100, cursor: historyCursor } });
+            setPedidos(prev => [...prev, ...res.data.items]);
+            setHistoryCursor(res.data.siguienteCursor);
         } catch (error) {
             console.error("Error fetching pedidos:", error);
         }
@@ -147,20 +222,41 @@ export default function Dashboard() {
     const handleCreateGusto = () => { setCurrentGusto(null); setIsModalOpen(true); };
     const handleEditGusto = (gusto) => { setCurrentGusto(gusto); setIsModalOpen(true); };
 
+    // Se manda el valor final (no "invertir"): si dos admins tocan a la vez, gana el último
+    // en lugar de anularse entre sí
     const toggleStock = async (id) => {
+        const hayStock = !gustos.find(g => g.id === id)?.hayStock;
         try {
-            setGustos(gustos.map(g => g.id === id ? { ...g, hayStock: !g.hayStock } : g));
-            await api.put(`/gustos/${id}/stock`);
+            setGustos(gustos.map(g => g.id === id ? { ...g, hayStock } : g));
+            await api.put(`/gustos/${id}/stock`, null, { params: { hayStock } });
         } catch (error) {
             console.error("Error cambiando stock:", error);
             fetchGustos();
         }
     };
 
+    // Stock en gramos del balde (vacío = no se controla). Los pedidos lo descuentan solos
+    // y al llegar a 0 el gusto queda agotado.
+    const editarInventario = async (gusto) => {
+        const actual = gusto.stockGramos == null ? '' : String(gusto.stockGramos);
+        const valor = window.prompt(`Stock de ${gusto.nombre} en gramos (vacío para no controlar):`, actual);
+        if (valor === null) return;
+        const gramos = valor.trim() === '' ? null : parseInt(valor, 10);
+        if (gramos !== null && (isNaN(gramos) || gramos < 0)) return;
+        try {
+            const res = await api.put(`/gustos/${gusto.id}/inventario`, null, { params: gramos === null ? {} : { gramos } });
+            setGustos(gustos.map(g => g.id === gusto.id ? res.data : g));
+        } catch (error) {
+            console.error("Error cambiando inventario:", error);
+            fetchGustos();
+        }
+    };
+
     const toggleActive = async (id) => {
+        const activo = !gustos.find(g => g.id === id)?.activo;
         try {
-            setGustos(gustos.map(g => g.id === id ? { ...g, activo: !g.activo } : g));
-            await api.put(`/gustos/${id}/toggle`);
+            setGustos(gustos.map(g => g.id === id ? { ...g, activo } : g));
+            await api.put(`/gustos/${id}/toggle`, null, { params: { activo } });
         } catch (error) {
             console.error("Error cambiando visibilidad:", error);
             fetchGustos();
@@ -254,9 +350,11 @@ export default function Dashboard() {
     // --- LOGICA PEDIDOS ---
     const handleStatusChange = async (pedidoId, newStatus) => {
         try {
+            // Se manda el estado que se ve en pantalla: si otro lo cambió antes, el backend responde 409
+            const actual = pedidos.find(p => p.id === pedidoId)?.estado;
             // Optimistic update
             setPedidos(pedidos.map(p => p.id === pedidoId ? { ...p, estado: newStatus } : p));
-            await api.patch(`/pedidos/${pedidoId}/estado`, null, { params: { estado: newStatus } });
+            await api.patch(`/pedidos/${pedidoId}/estado`, null, { params: { estado: newStatus, actual } });
 
             // Si se cancela, ocultar la tarjeta tras 5 segundos (persiste aunque el polling recargue)
             if (newStatus === 'CANCELADO') {
@@ -266,6 +364,36 @@ export default function Dashboard() {
             }
         } catch (error) {
             console.error("Error actualizando estado:", error);
+            if (error.response?.status === 409) showError(error.response.data);
+            fetchPedidos();
+        }
+    };
+
+    const toggleSeleccion = (pedidoId) => {
+        setSeleccionados(prev => {
+            const siguiente = new Set(prev);
+            if (siguiente.has(pedidoId)) siguiente.delete(pedidoId); else siguiente.add(pedidoId);
+            return siguiente;
+        });
+    };
+
+    // Todos los seleccionados al mismo estado en una sola llamada (una transacción en el backend)
+    const handleBulkStatusChange = async (newStatus) => {
+        const cambios = pedidos
+            .filter(p => seleccionados.has(p.id))
+            .map(p => ({ pedidoId: p.id, estado: newStatus, actual: p.estado }));
+        if (cambios.length === 0) return;
+        try {
+            const res = await api.patch('/pedidos/estado', { cambios });
+            const aplicados = new Set(res.data.resultados.filter(r => !r.error).map(r => r.pedidoId));
+            setPedidos(prev => prev.map(p => aplicados.has(p.id) ? { ...p, estado: newStatus } : p));
+            setSeleccionados(new Set());
+            if (res.data.rechazados > 0) {
+                showError(res.data.resultados.filter(r => r.error).map(r => `#${r.pedidoId}: ${r.error}`).join('\n'));
+                fetchPedidos();
+            }
+        } catch (error) {
+            console.error("Error actualizando estados:", error);
             fetchPedidos();
         }
     };
@@ -275,9 +403,10 @@ export default function Dashboard() {
             // Actualización optimista (para que se vea instantáneo en pantalla)
             setPedidos(pedidos.map(p => p.id === pedidoId ? { ...p, repartidor: nuevoRepartidor } : p));
 
-            // Llamada al backend
+            // Llamada al backend (por id; sin parámetro se quita el repartidor)
+            const repartidor = repartidores.find(r => r.nombre === nuevoRepartidor);
             await api.patch(`/pedidos/${pedidoId}/repartidor`, null, {
-                params: { nombre: nuevoRepartidor }
+                params: repartidor ? { repartidorId: repartidor.id } : {}
             });
         } catch (error) {
             console.error("Error asignando repartidor:", error);
@@ -290,6 +419,7 @@ export default function Dashboard() {
             'PENDIENTE': 'bg-yellow-50 text-yellow-700 border-yellow-200',
             'EN_PREPARACION': 'bg-blue-50 text-blue-700 border-blue-200',
             'LISTO': 'bg-purple-50 text-purple-700 border-purple-200',
+            'EN_CAMINO': 'bg-indigo-50 text-indigo-700 border-indigo-200',
             'ENTREGADO': 'bg-green-50 text-green-700 border-green-200',
             'CANCELADO': 'bg-red-50 text-red-700 border-red-200',
         };
@@ -297,6 +427,7 @@ export default function Dashboard() {
             'PENDIENTE': 'Pendiente',
             'EN_PREPARACION': 'Preparando',
             'LISTO': 'Listo',
+            'EN_CAMINO': 'En camino',
             'ENTREGADO': 'Entregado',
             'CANCELADO': 'Cancelado',
         };
@@ -374,6 +505,7 @@ export default function Dashboard() {
                     <TabButton id="productos" icon={Package} label="Productos" />
                     <TabButton id="horarios" icon={Clock} label="Horarios" />
                     <TabButton id="pedidos" icon={ShoppingBag} label="Pedidos" liveCount={activeTab !== 'pedidos'} />
+                    <TabButton id="repartidores" icon={Truck} label="Repartidores" />
                 </div>
 
                 {/* CONTENIDO TAB GUSTOS */}
@@ -432,6 +564,12 @@ export default function Dashboard() {
                                                     >
                                                         {gusto.hayStock ? 'En Stock' : 'Agotado'}
                                                     </button>
+                                                    <button
+                                                        onClick={() => editarInventario(gusto)}
+                                                        className="block mx-auto mt-2 text-[10px] text-text-secondary hover:text-[#2C1B18] cursor-pointer"
+                                                    >
+                                                        {gusto.stockGramos == null ? 'Sin control' : `${(gusto.stockGramos / 1000).toFixed(1)} kg`}
+                                                    </button>
                                                 </td>
                                                 <td className="px-8 py-6 text-center cursor-pointer" onClick={() => toggleActive(gusto.id)}>
                                                     <div className={`mx-auto w-8 h-8 rounded-full flex items-center justify-center transition-colors ${gusto.activo ? 'bg-green-50 text-green-600' : 'bg-gray-100 text-gray-400'}`}>
@@ -497,6 +635,8 @@ export default function Dashboard() {
                     </div>
                 )}
                 {/* CONTENIDO TAB HORARIOS */}
+                {activeTab === 'repartidores' && <DeliveryManager />}
+
                 {activeTab === 'horarios' && (
                     <div className="animate-fade-in-up max-w-2xl mx-auto">
                         <h2 className="text-3xl font-bold text-[#2C1B18] mb-2">Horarios de Atención</h2>
@@ -606,9 +746,21 @@ export default function Dashboard() {
                                     Historial
                                 </button>
                             </div>
-                            <button onClick={fetchPedidos} className="text-xs font-bold uppercase tracking-wider text-[#2C1B18] hover:underline flex items-center gap-2">
-                                <Clock size={14} /> Actualizar
-                            </button>
+                            <div className="flex items-center gap-4">
+                                {seleccionados.size > 0 && (
+                                    <>
+                                        <button onClick={() => handleBulkStatusChange('LISTO')} className="px-4 py-2 text-xs font-bold uppercase tracking-wider rounded-lg bg-purple-50 text-purple-700 border border-purple-200 hover:bg-purple-100">
+                                            Marcar listos ({seleccionados.size})
+                                        </button>
+                                        <button onClick={() => handleBulkStatusChange('ENTREGADO')} className="px-4 py-2 text-xs font-bold uppercase tracking-wider rounded-lg bg-green-50 text-green-700 border border-green-200 hover:bg-green-100">
+                                            Marcar entregados ({seleccionados.size})
+                                        </button>
+                                    </>
+                                )}
+                                <button onClick={fetchPedidos} className="text-xs font-bold uppercase tracking-wider text-[#2C1B18] hover:underline flex items-center gap-2">
+                                    <Clock size={14} /> Actualizar
+                                </button>
+                            </div>
                         </div>
 
                         <div className="space-y-12">
@@ -634,6 +786,14 @@ export default function Dashboard() {
                                                     <div className="flex justify-between items-start mb-6 border-b border-gray-50 pb-4">
                                                         <div className="flex flex-col">
                                                             <div className="flex items-center gap-2 mb-1">
+                                                                {viewMode === 'today' && (
+                                                                    <input
+                                                                        type="checkbox"
+                                                                        checked={seleccionados.has(pedido.id)}
+                                                                        onChange={() => toggleSeleccion(pedido.id)}
+                                                                        className="rounded border-gray-300 text-[#2C1B18] focus:ring-[#2C1B18]"
+                                                                    />
+                                                                )}
                                                                 <span className="text-xl font-black text-[#2C1B18]">#{pedido.id}</span>
                                                                 <StatusBadge status={pedido.estado} />
                                                             </div>
@@ -654,7 +814,7 @@ export default function Dashboard() {
                                                                 ${pedido.precioTotal.toLocaleString()}
                                                             </div>
                                                             <div className="text-[10px] font-bold uppercase tracking-wider text-text-secondary bg-gray-50 px-2 py-0.5 rounded inline-block mt-1">
-                                                                {pedido.metodoPago}
+                                                                {pedido.metodoPago}{pedido.estadoPago && ` · ${pedido.estadoPago.replace('_', ' ')}`}
                                                             </div>
                                                         </div>
                                                     </div>
@@ -698,11 +858,19 @@ export default function Dashboard() {
                                                                 onChange={(e) => handleStatusChange(pedido.id, e.target.value)}
                                                                 className="w-full text-xs font-medium border-gray-200 rounded-lg focus:ring-[#2C1B18] focus:border-[#2C1B18] bg-white py-2"
                                                             >
-                                                                <option value="PENDIENTE">PENDIENTE</option>
-                                                                <option value="EN_PREPARACION">EN PREPARACIÓN</option>
-                                                                <option value="LISTO">LISTO</option>
-                                                                <option value="ENTREGADO">ENTREGADO</option>
-                                                                <option value="CANCELADO">CANCELADO</option>
+                                                                {[
+                                                                    ['PENDIENTE', 'PENDIENTE'],
+                                                                    ['EN_PREPARACION', 'EN PREPARACIÓN'],
+                                                                    ['LISTO', 'LISTO'],
+                                                                    ['EN_CAMINO', 'EN CAMINO'],
+                                                                    ['ENTREGADO', 'ENTREGADO'],
+                                                                    ['CANCELADO', 'CANCELADO'],
+                                                                ].map(([valor, etiqueta]) => (
+                                                                    <option key={valor} value={valor}
+                                                                        disabled={valor !== pedido.estado && !SIGUIENTES_ESTADOS[pedido.estado]?.includes(valor)}>
+                                                                        {etiqueta}
+                                                                    </option>
+                                                                ))}
                                                             </select>
                                                         </div>
                                                         <div>
@@ -711,13 +879,15 @@ export default function Dashboard() {
                                                                 <select
                                                                     value={pedido.repartidor || ""}
                                                                     onChange={(e) => handleRepartidorChange(pedido.id, e.target.value)}
+                                                                    // Solo se despacha un pedido LISTO; asignado, se le puede quitar el repartidor
+                                                                    disabled={!pedido.repartidor && pedido.estado !== 'LISTO'}
                                                                     className={`w-full text-xs font-medium border-gray-200 rounded-lg focus:ring-[#2C1B18] focus:border-[#2C1B18] py-2 pl-8 appearance-none
                                                                         ${pedido.repartidor ? 'bg-green-50 text-green-800 border-green-200' : 'bg-white text-gray-500'}
                                                                     `}
                                                                 >
                                                                     <option value="">Sin Asignar</option>
-                                                                    {REPARTIDORES.map((repa) => (
-                                                                        <option key={repa} value={repa}>{repa}</option>
+                                                                    {repartidores.map((repa) => (
+                                                                        <option key={repa.id} value={repa.nombre}>{repa.nombre}</option>
                                                                     ))}
                                                                 </select>
                                                                 <Truck className={`absolute left-2 top-1/2 -translate-y-1/2 w-4 h-4 ${pedido.repartidor ? 'text-green-600' : 'text-gray-400'}`} />
@@ -730,6 +900,13 @@ export default function Dashboard() {
                                     </div>
                                 ))
                             )}
+                            {viewMode === 'history' && historyCursor && (
+                                <div className="text-center">
+                                    <button onClick={fetchMorePedidos} className="text-xs font-bold uppercase tracking-wider text-[#2C1B18] hover:underline">
+                                        Ver pedidos anteriores
+                                    </button>
+                                </div>
+                            )}
                         </div>
                     </div>
                 )}
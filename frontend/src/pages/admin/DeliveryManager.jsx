@@ -71,15 +71,11 @@ export default function DeliveryManager() {
         try {
             const [roundsRes, ordersRes] = await Promise.all([
                 api.get('/repartidores/rounds/active'),
-                api.get('/pedidos') // TODO: Filter by pending/ready in backend for efficiency
+                // Pedidos de hoy LISTOS sin repartidor: el filtro lo hace el backend
+                api.get('/pedidos/para-despachar')
             ]);
             setActiveRounds(roundsRes.data);
-            // Filtrar pedidos que esten LISTO o PENDIENTE y SIN repartidor asignado (o con repartidor pero sin ronda)
-            // Simplificacion: Pedidos con estado PENDIENTE/LISTO
-            const eligible = ordersRes.data.filter(p =>
-                (p.estado === 'PENDIENTE' || p.estado === 'LISTO') && !p.deliveryRound
-            );
-            setPendingOrders(eligible);
+            setPendingOrders(ordersRes.data);
         } catch (error) {
             console.error("Error rounds data:", error);
         }
@@ -261,8 +257,8 @@ export default function DeliveryManager() {
                                     </div>
                                     <div className="text-right">
                                         <span className="text-[10px] font-bold uppercase tracking-wider text-gray-400 block mb-1">Caja a Rendir</span>
-                                        <div className="text-xl font-black text-[#2C1B18]">${round.cashToRender.toLocaleString()}</div>
-                                        <div className="text-xs text-gray-400">Total valor: ${round.totalAmount.toLocaleString()}</div>
+                                        <div className="text-xl font-black text-[#2C1B18]">${round.efectivoCobrado.toLocaleString()}</div>
+                                        <div className="text-xs text-gray-400">Total valor: ${round.montoTotal.toLocaleString()} ({round.cantidadPedidos} pedidos)</div>
                                     </div>
                                 </div>
                                 <div className="space-y-2 mb-4">
@@ -270,7 +266,7 @@ export default function DeliveryManager() {
                                     {/* Lista de pedidos simplificada, idealmente vendria del backend populada */}
                                     {/* Por ahora solo mostramos cantidad y hora */}
                                     <div className="text-sm text-gray-600">
-                                        Salida: {new Date(round.startTime).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' })}
+                                        Salida: {new Date(round.inicio).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' })}
                                     </div>
                                 </div>
                                 <button
@@ -37,7 +37,8 @@ export default function GustoFormModal({ isOpen, onClose, gustoToEdit, onSave })
         try {
             if (gustoToEdit) {
                 // Editar
-                await api.put(`/gustos/${gustoToEdit.id}`, formData);
+                // La versión cargada: si otro admin lo cambió mientras tanto, el backend responde 409
+                await api.put(`/gustos/${gustoToEdit.id}`, { ...formData, version: gustoToEdit.version });
             } else {
                 // Crear
                 await api.post('/gustos', formData);
@@ -39,7 +39,8 @@ export default function ProductFormModal({ isOpen, onClose, productToEdit, onSav
         setLoading(true);
         try {
             if (productToEdit) {
-                await api.put(`/tipos-producto/${productToEdit.id}`, formData);
+                // La versión cargada: si otro admin lo cambió mientras tanto, el backend responde 409
+                await api.put(`/tipos-producto/${productToEdit.id}`, { ...formData, version: productToEdit.version });
             } else {
                 await api.post('/tipos-producto', formData);
             }
@@ -47,7 +48,7 @@ export default function ProductFormModal({ isOpen, onClose, productToEdit, onSav
             onClose();
         } catch (error) {
             console.error("Error guardando producto:", error);
-            showError("Error al guardar producto.");
+            showError(error?.response?.status === 409 ? error.response.data : "Error al guardar producto.");
         } finally {
             setLoading(false);
         }